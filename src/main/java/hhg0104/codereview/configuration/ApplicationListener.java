@@ -1,13 +1,14 @@
 package hhg0104.codereview.configuration;
 
+import hhg0104.codereview.video.storage.StorageReconciler;
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
-import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 public class ApplicationListener implements ServletContextListener {
 
@@ -15,23 +16,28 @@ public class ApplicationListener implements ServletContextListener {
 
     private String uploadBasePath;
 
-    ApplicationListener(String uploadBasePath) {
+    private StorageReconciler reconciler;
+
+    ApplicationListener(String uploadBasePath, StorageReconciler reconciler) {
         this.uploadBasePath = uploadBasePath;
+        this.reconciler = reconciler;
     }
 
+    /**
+     * Prepare the upload directory and start its reconciliation with the DB in the background,
+     * so the start takes the same time however many files are stored.
+     */
     @Override
     public void contextInitialized(ServletContextEvent sce) {
 
         try {
-            clearUploadDirectory();
+            Files.createDirectories(Path.of(this.uploadBasePath));
         } catch (IOException e) {
-            LOG.error("Couldn't clear the video file upload directory" + this.uploadBasePath);
+            LOG.error("Couldn't create the video file upload directory: " + this.uploadBasePath);
         }
 
-        ServletContextListener.super.contextInitialized(sce);
-    }
+        reconciler.start();
 
-    private void clearUploadDirectory() throws IOException {
-        FileUtils.cleanDirectory(new File(this.uploadBasePath));
+        ServletContextListener.super.contextInitialized(sce);
     }
 }
@@ -2,11 +2,16 @@ package hhg0104.codereview.configuration;
 
 import hhg0104.codereview.data.ApiResponseTemplate;
 import hhg0104.codereview.exception.AlreadyExistFileException;
+import hhg0104.codereview.exception.InvalidRequestException;
+import hhg0104.codereview.exception.RangeNotSatisfiableException;
 import hhg0104.codereview.exception.UnsupportedFileException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import java.io.FileNotFoundException;
 
@@ -14,33 +19,59 @@ import java.io.FileNotFoundException;
 public class ExceptionHandleAdvice {
 
     @ExceptionHandler(FileNotFoundException.class)
-    public ResponseEntity<String> handleBindException(FileNotFoundException ex) {
+    public ResponseEntity<byte[]> handleBindException(FileNotFoundException ex) {
         return createErrorResponseEntity(ex.getMessage(), HttpStatus.NOT_FOUND);
     }
 
     @ExceptionHandler(UnsupportedFileException.class)
-    public ResponseEntity<String> handleUnsupportedFileException(UnsupportedFileException ex) {
+    public ResponseEntity<byte[]> handleUnsupportedFileException(UnsupportedFileException ex) {
         return createErrorResponseEntity(ex.getMessage(), HttpStatus.UNSUPPORTED_MEDIA_TYPE);
     }
 
     @ExceptionHandler(AlreadyExistFileException.class)
-    public ResponseEntity<String> handleAlreadyExistFileException(AlreadyExistFileException ex) {
+    public ResponseEntity<byte[]> handleAlreadyExistFileException(AlreadyExistFileException ex) {
         return createErrorResponseEntity(ex.getMessage(), HttpStatus.CONFLICT);
     }
 
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<byte[]> handleInvalidRequestException(InvalidRequestException ex) {
+        return createErrorResponseEntity(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<byte[]> handleMethodArgumentTypeMismatchException(MethodArgumentTypeMismatchException ex) {
+        return createErrorResponseEntity("Invalid value of the parameter: " + ex.getName(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(RangeNotSatisfiableException.class)
+    public ResponseEntity<byte[]> handleRangeNotSatisfiableException(RangeNotSatisfiableException ex) {
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.CONTENT_RANGE, "bytes */" + ex.getFileLength());
+
+        return createErrorResponseEntity(ex.getMessage(), HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, headers);
+    }
+
     @ExceptionHandler(Exception.class)
-    public ResponseEntity<String> handleException(Exception ex) {
+    public ResponseEntity<byte[]> handleException(Exception ex) {
         return createErrorResponseEntity(ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
-    private ResponseEntity<String> createErrorResponseEntity(String errorMessage, HttpStatus httpStatus) {
-        String errorJson = ApiResponseTemplate.builder()
+    private ResponseEntity<byte[]> createErrorResponseEntity(String errorMessage, HttpStatus httpStatus) {
+        return createErrorResponseEntity(errorMessage, httpStatus, new HttpHeaders());
+    }
+
+    private ResponseEntity<byte[]> createErrorResponseEntity(String errorMessage, HttpStatus httpStatus,
+                                                             HttpHeaders headers) {
+        byte[] errorJson = ApiResponseTemplate.builder()
                 .errorMessage(errorMessage)
                 .build()
-                .toJson();
+                .toJsonBytes();
 
         return ResponseEntity
                 .status(httpStatus)
+                .contentType(MediaType.APPLICATION_JSON)
+                .headers(headers)
                 .body(errorJson);
     }
 }
@@ -1,6 +1,7 @@
 package hhg0104.codereview.configuration;
 
 import hhg0104.codereview.video.property.FileProperties;
+import hhg0104.codereview.video.storage.StorageReconciler;
 import jakarta.servlet.ServletContextListener;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.web.servlet.ServletListenerRegistrationBean;
@@ -12,10 +13,11 @@ import org.springframework.context.annotation.Configuration;
 public class GeneralConfiguration {
 
     @Bean
-    public ServletListenerRegistrationBean<ServletContextListener> servletListener(FileProperties fileProp) {
+    public ServletListenerRegistrationBean<ServletContextListener> servletListener(FileProperties fileProp,
+                                                                                  StorageReconciler reconciler) {
 
         ServletListenerRegistrationBean<ServletContextListener> servletListener = new ServletListenerRegistrationBean<>();
-        servletListener.setListener(new ApplicationListener(fileProp.getUploadBasePath()));
+        servletListener.setListener(new ApplicationListener(fileProp.getUploadBasePath(), reconciler));
 
         return servletListener;
     }
@@ -3,9 +3,15 @@ package hhg0104.codereview.data;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.Builder;
 import lombok.Getter;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 
 @Getter
 @Builder
@@ -13,15 +19,100 @@ import lombok.Getter;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class ApiResponseTemplate {
 
+    /**
+     * An ObjectWriter is immutable and thread-safe, and it keeps the resolved serializer of the template, so one
+     * instance serves every response.
+     */
+    private static final ObjectWriter WRITER = new ObjectMapper().writerFor(ApiResponseTemplate.class);
+
+    /**
+     * Pre-encoded body of a response without a message.
+     */
+    private static final byte[] EMPTY_JSON = ApiResponseTemplate.builder().build().toJsonBytes();
+
+    /**
+     * Pre-encoded body of an upload response.
+     */
+    private static final byte[] FILE_UPLOADED_JSON = ApiResponseTemplate.builder()
+            .message("File uploaded")
+            .build()
+            .toJsonBytes();
+
+    private static final Resource EMPTY_JSON_BODY = new JsonBody(EMPTY_JSON, "empty JSON");
+
+    private static final Resource FILE_UPLOADED_JSON_BODY = new JsonBody(FILE_UPLOADED_JSON, "file uploaded JSON");
+
     private String message;
 
     private String errorMessage;
 
+    /**
+     * Body of a response without a message. The pre-encoded bytes are written as they are, and only read.
+     */
+    public static Resource emptyJson() {
+        return EMPTY_JSON_BODY;
+    }
+
+    /**
+     * Body of an upload response. The pre-encoded bytes are written as they are, and only read.
+     */
+    public static Resource fileUploadedJson() {
+        return FILE_UPLOADED_JSON_BODY;
+    }
+
     public String toJson() {
         try {
-            return new ObjectMapper().writeValueAsString(this);
+            return WRITER.writeValueAsString(this);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Serialize the template to UTF-8 JSON, which can be written to the response as it is.
+     *
+     * @return JSON bytes
+     */
+    public byte[] toJsonBytes() {
+        try {
+            return WRITER.writeValueAsBytes(this);
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * A read-only resource of pre-encoded bytes. Unlike a ByteArrayResource, it does not hand out its array.
+     */
+    private static final class JsonBody extends AbstractResource {
+
+        private final byte[] bytes;
+
+        private final String description;
+
+        private JsonBody(byte[] bytes, String description) {
+            this.bytes = bytes;
+            this.description = description;
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public long contentLength() {
+            return bytes.length;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public String getDescription() {
+            return "Pre-encoded " + description + " body";
+        }
+    }
 }
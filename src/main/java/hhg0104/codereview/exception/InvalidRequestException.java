@@ -0,0 +1,16 @@
+package hhg0104.codereview.exception;
+
+public class InvalidRequestException extends Exception{
+
+    public InvalidRequestException() {
+        super();
+    }
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+
+    public InvalidRequestException(String message, Exception ex) {
+        super(message, ex);
+    }
+}
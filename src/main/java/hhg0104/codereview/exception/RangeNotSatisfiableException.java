@@ -0,0 +1,14 @@
+package hhg0104.codereview.exception;
+
+import lombok.Getter;
+
+@Getter
+public class RangeNotSatisfiableException extends Exception{
+
+    private final long fileLength;
+
+    public RangeNotSatisfiableException(long fileLength) {
+        super("The requested range is not satisfiable for the file length: " + fileLength);
+        this.fileLength = fileLength;
+    }
+}
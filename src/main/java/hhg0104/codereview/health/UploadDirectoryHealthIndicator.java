@@ -0,0 +1,49 @@
+package hhg0104.codereview.health;
+
+import hhg0104.codereview.video.property.FileProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+
+/**
+ * This is a health check of the upload directory, a part of the readiness at /actuator/health/readiness.
+ * The directory is down when it is missing, not writable, or its free space is under file.upload.min-free-space,
+ * since an upload would fail then.
+ */
+@Component
+public class UploadDirectoryHealthIndicator extends AbstractHealthIndicator {
+
+    private FileProperties fileProp;
+
+    @Autowired
+    public UploadDirectoryHealthIndicator(FileProperties fileProp) {
+        super("The upload directory check failed");
+        this.fileProp = fileProp;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+
+        File directory = new File(fileProp.getUploadBasePath());
+        long threshold = fileProp.getUploadMinFreeSpace().toBytes();
+        builder.withDetail("path", directory.getAbsolutePath())
+                .withDetail("threshold", threshold);
+
+        if (!directory.isDirectory() || !directory.canWrite()) {
+            builder.down()
+                    .withDetail("error", "The upload directory is missing or not writable.");
+            return;
+        }
+
+        long free = directory.getUsableSpace();
+        builder.withDetail("free", free);
+        if (free < threshold) {
+            builder.down();
+        } else {
+            builder.up();
+        }
+    }
+}
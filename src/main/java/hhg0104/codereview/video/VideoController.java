@@ -2,12 +2,23 @@ package hhg0104.codereview.video;
 
 import hhg0104.codereview.data.ApiResponseTemplate;
 import hhg0104.codereview.exception.AlreadyExistFileException;
+import hhg0104.codereview.exception.InvalidRequestException;
+import hhg0104.codereview.exception.RangeNotSatisfiableException;
 import hhg0104.codereview.exception.UnsupportedFileException;
-import hhg0104.codereview.video.entity.VideoEntity;
-import org.apache.commons.io.FilenameUtils;
+import hhg0104.codereview.video.download.VideoDownloader;
+import hhg0104.codereview.video.export.CatalogExporter;
+import hhg0104.codereview.video.export.ExportFormat;
+import hhg0104.codereview.video.property.FileProperties;
+import hhg0104.codereview.video.request.FileListQuery;
+import hhg0104.codereview.video.response.FileInfo;
+import hhg0104.codereview.video.response.FileListPage;
+import hhg0104.codereview.video.response.UploadedFileInfo;
+import hhg0104.codereview.video.upload.StreamingMultipartReader;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -16,16 +27,19 @@ import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This is a controller class for handling the video files.
@@ -33,81 +47,100 @@ import java.util.List;
 @RestController
 public class VideoController {
 
-    private static final List<String> ACCEPT_EXTENSIONS = Arrays.asList(new String[]{"mp4", "mpg4", "mpg", "mpeg"});
-
     private VideoService service;
 
+    private VideoDownloader downloader;
+
+    private FileProperties fileProp;
+
+    private CatalogExporter exporter;
+
 
     @Autowired
-    public VideoController(VideoService service) {
+    public VideoController(VideoService service, VideoDownloader downloader, FileProperties fileProp,
+                           CatalogExporter exporter) {
         this.service = service;
+        this.downloader = downloader;
+        this.fileProp = fileProp;
+        this.exporter = exporter;
     }
 
     /**
      * Download a video file by fileid. The file name will be restored as it was when you uploaded it.
+     * Byte range requests (Range, If-Range) are answered with 206 partial content.
      *
-     * @param fileId File id to download
-     * @return
+     * @param fileId         File id to download
+     * @param requestHeaders Request headers
+     * @param request        Current request
+     * @param response       Response to write the file to
      */
     @GetMapping("/files/{fileid}")
-    public ResponseEntity<Resource> download(@PathVariable(value = "fileid") int fileId) throws FileNotFoundException, UnsupportedFileException {
+    public void download(@PathVariable(value = "fileid") int fileId, @RequestHeader HttpHeaders requestHeaders,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException, UnsupportedFileException,
+            RangeNotSatisfiableException {
 
-        File file = service.fetchFile(fileId);
+        VideoFile file = service.fetchFile(fileId);
         String name = file.getName();
 
         checkVideoFile(name);
 
-        Resource resource;
-        try {
-            resource = new UrlResource(file.toURI());
-        } catch (MalformedURLException e) {
-            throw new FileNotFoundException("This is invalid file: " + file.getAbsolutePath());
-        }
-
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType("application/octet-stream"))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + name + "\"")
-                .body(resource);
+        downloader.download(file, requestHeaders, request, response);
     }
 
     private void checkVideoFile(String fileName) throws UnsupportedFileException {
-
-        String extension = FilenameUtils.getExtension(fileName);
-        if (!ACCEPT_EXTENSIONS.contains(extension)) {
-            throw new UnsupportedFileException(ACCEPT_EXTENSIONS + " type files are only supported.");
-        }
+        VideoFileType.check(fileName);
     }
 
     /**
-     * Delete a video file.
+     * Delete a video file. The file is gone at once, its bytes are reclaimed in the background.
      *
      * @param fileId File Id for a file to be deleted
      * @return
      */
     @DeleteMapping("/files/{fileid}")
-    public ResponseEntity<String> delete(@PathVariable(value = "fileid") long fileId) throws IOException {
+    public ResponseEntity<Resource> delete(@PathVariable(value = "fileid") long fileId) throws IOException {
 
         service.delete(fileId);
 
-        return createSuccessResponseEntity(null, HttpStatus.NO_CONTENT, null);
+        return createSuccessResponseEntity(ApiResponseTemplate.emptyJson(), HttpStatus.ACCEPTED, null);
     }
 
-    private ResponseEntity<String> createSuccessResponseEntity(String message, HttpStatus httpStatus, HttpHeaders headers) {
+    /**
+     * Delete video files. Either all the files are deleted or, when some of them do not exist, none.
+     * The files are gone at once, their bytes are reclaimed in the background.
+     *
+     * @param fileIds File IDs of the files to be deleted
+     * @return
+     */
+    @DeleteMapping("/files")
+    public ResponseEntity<Resource> delete(@RequestParam(value = "file_ids") List<Long> fileIds) throws IOException,
+            InvalidRequestException {
+
+        checkBatchSize(fileIds.size());
+
+        service.delete(fileIds);
+
+        return createSuccessResponseEntity(ApiResponseTemplate.emptyJson(), HttpStatus.ACCEPTED, null);
+    }
+
+    private void checkBatchSize(int size) throws InvalidRequestException {
+        if (size < 1 || size > fileProp.getUploadBatchMaxFiles()) {
+            throw new InvalidRequestException("A batch must have 1 to " + fileProp.getUploadBatchMaxFiles() + " files.");
+        }
+    }
+
+    private ResponseEntity<Resource> createSuccessResponseEntity(Resource body, HttpStatus httpStatus,
+                                                                 HttpHeaders headers) {
 
         if (headers == null) {
             headers = new HttpHeaders();
         }
 
-        String successMessage = ApiResponseTemplate.builder()
-                .message(message)
-                .build()
-                .toJson();
-
         return ResponseEntity
                 .status(httpStatus)
                 .contentType(MediaType.APPLICATION_JSON)
                 .headers(headers)
-                .body(successMessage);
+                .body(body);
     }
 
     /**
@@ -117,7 +150,7 @@ public class VideoController {
      * @return File create success message
      */
     @PostMapping(value = "/files")
-    public ResponseEntity<String> upload(@RequestParam(value = "file") MultipartFile file) throws UnsupportedFileException,
+    public ResponseEntity<Resource> upload(@RequestParam(value = "file") MultipartFile file) throws UnsupportedFileException,
             IOException, AlreadyExistFileException {
 
         String fileName = file.getOriginalFilename();
@@ -128,16 +161,138 @@ public class VideoController {
         HttpHeaders headers = new HttpHeaders();
         headers.add("Location", createdFileLocation);
 
-        return createSuccessResponseEntity("File uploaded", HttpStatus.CREATED, headers);
+        return createSuccessResponseEntity(ApiResponseTemplate.fileUploadedJson(), HttpStatus.CREATED, headers);
+    }
+
+    /**
+     * Upload video files in one request. Either all the files are uploaded or none.
+     *
+     * @param files Files to be uploaded, each with a distinct name
+     * @return Uploaded files with their IDs and locations
+     */
+    @PostMapping(value = "/files/batch")
+    public ResponseEntity<List<UploadedFileInfo>> upload(@RequestParam(value = "files") List<MultipartFile> files)
+            throws UnsupportedFileException, IOException, AlreadyExistFileException, InvalidRequestException {
+
+        checkBatchSize(files.size());
+
+        Set<String> fileNames = new HashSet<>();
+        for (MultipartFile file : files) {
+            String fileName = file.getOriginalFilename();
+            checkVideoFile(fileName);
+            if (!fileNames.add(fileName)) {
+                throw new InvalidRequestException("This file is in the batch more than once: " + fileName);
+            }
+        }
+
+        List<UploadedFileInfo> uploadedFiles = service.upload(files);
+
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(uploadedFiles);
+    }
+
+    /**
+     * Upload a video file while the multipart body is being received. Unlike POST /files, the body is not spooled
+     * to a temporary file before it is stored, so the file is written to disk only once.
+     *
+     * @param request Multipart request with a file part
+     * @return File create success message
+     */
+    @PostMapping(value = "/files/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Resource> uploadStream(HttpServletRequest request) throws UnsupportedFileException,
+            IOException, AlreadyExistFileException, InvalidRequestException {
+
+        String boundary = MediaType.parseMediaType(request.getContentType()).getParameter("boundary");
+        if (boundary == null || boundary.isEmpty()) {
+            throw new InvalidRequestException("The multipart boundary is missing.");
+        }
+
+        StreamingMultipartReader reader = new StreamingMultipartReader(request.getInputStream(),
+                StringUtils.trimLeadingCharacter(StringUtils.trimTrailingCharacter(boundary, '"'), '"'),
+                fileProp.getUploadBufferSize());
+
+        String fileName = reader.nextFile();
+        if (fileName == null) {
+            throw new InvalidRequestException("There is no file part in the request.");
+        }
+        checkVideoFile(fileName);
+
+        String createdFileLocation = service.upload(fileName, reader);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Location", createdFileLocation);
+
+        return createSuccessResponseEntity(ApiResponseTemplate.fileUploadedJson(), HttpStatus.CREATED, headers);
     }
 
     /**
-     * List uploaded files.
+     * Export the whole file catalog as NDJSON or CSV. The rows are streamed while they are read from the DB.
      *
-     * @return Uploaded file list
+     * @param format   Export format: ndjson or csv
+     * @param response Response to write the catalog to
+     */
+    @GetMapping("/files/export")
+    public void export(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                       HttpServletResponse response) throws IOException, InvalidRequestException {
+
+        ExportFormat exportFormat = ExportFormat.of(format);
+
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"files." + exportFormat.getParameter() + "\"");
+
+        exporter.export(exportFormat, response.getWriter());
+    }
+
+    /**
+     * List uploaded files page by page. The next page is linked with the Link header (rel="next") when there is one.
+     *
+     * @param sort        Sort key: file_id, created_at, size, name or duration, which lists only the files with a
+     *                    known duration
+     * @param order       Sort order: asc or desc
+     * @param limit       Page size, up to 1000
+     * @param cursor      Cursor of the page, from the Link header of the previous page
+     * @param namePrefix  File name prefix filter
+     * @param createdFrom Created time filter, inclusive
+     * @param createdTo   Created time filter, exclusive
+     * @param videoCodec  Video codec filter, e.g. avc1
+     * @param minHeight   Smallest video height filter, inclusive
+     * @param minDuration Shortest duration filter in seconds, inclusive
+     * @param maxDuration Longest duration filter in seconds, exclusive
+     * @return Uploaded file list of the page
      */
     @GetMapping("/files")
-    public List<VideoEntity> list() {
-        return service.list();
+    public ResponseEntity<List<FileInfo>> list(@RequestParam(value = "sort", defaultValue = "file_id") String sort,
+                                               @RequestParam(value = "order", defaultValue = "asc") String order,
+                                               @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                               @RequestParam(value = "cursor", required = false) String cursor,
+                                               @RequestParam(value = "name_prefix", required = false) String namePrefix,
+                                               @RequestParam(value = "created_from", required = false)
+                                               @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+                                               @RequestParam(value = "created_to", required = false)
+                                               @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+                                               @RequestParam(value = "video_codec", required = false) String videoCodec,
+                                               @RequestParam(value = "min_height", required = false) Integer minHeight,
+                                               @RequestParam(value = "min_duration", required = false) Long minDuration,
+                                               @RequestParam(value = "max_duration", required = false) Long maxDuration)
+            throws InvalidRequestException {
+
+        FileListQuery query = FileListQuery.of(sort, order, limit, cursor, namePrefix, createdFrom, createdTo,
+                videoCodec, minHeight, minDuration, maxDuration);
+
+        FileListPage page = service.list(query);
+
+        HttpHeaders headers = new HttpHeaders();
+        if (page.getNextCursor() != null) {
+            String nextUri = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor", page.getNextCursor())
+                    .toUriString();
+            headers.add(HttpHeaders.LINK, "<" + nextUri + ">; rel=\"next\"");
+        }
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(page.getFiles());
     }
 }
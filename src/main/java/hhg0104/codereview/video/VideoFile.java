@@ -0,0 +1,43 @@
+package hhg0104.codereview.video;
+
+import hhg0104.codereview.video.storage.StoredObject;
+import lombok.Getter;
+
+import java.io.File;
+
+/**
+ * A stored video file. The name is the one it was uploaded with, which can differ from the stored object name.
+ */
+@Getter
+public class VideoFile {
+
+    private String name;
+
+    /**
+     * Content hash of the object in the video storage, null for a file stored by its name.
+     */
+    private String key;
+
+    private long length;
+
+    private long lastModified;
+
+    /**
+     * Local file of a file stored by its name, null for an object in the video storage.
+     */
+    private File file;
+
+    public VideoFile(String name, String key, StoredObject object) {
+        this.name = name;
+        this.key = key;
+        this.length = object.getLength();
+        this.lastModified = object.getLastModified();
+    }
+
+    public VideoFile(String name, File file) {
+        this.name = name;
+        this.length = file.length();
+        this.lastModified = file.lastModified();
+        this.file = file;
+    }
+}
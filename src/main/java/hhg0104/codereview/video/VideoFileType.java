@@ -0,0 +1,61 @@
+package hhg0104.codereview.video;
+
+import hhg0104.codereview.exception.UnsupportedFileException;
+import hhg0104.codereview.video.media.MediaContainer;
+import org.apache.commons.io.FilenameUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This is a class for the video file types accepted by the APIs.
+ */
+public final class VideoFileType {
+
+    public static final List<String> ACCEPT_EXTENSIONS = Arrays.asList(new String[]{"mp4", "mpg4", "mpg", "mpeg"});
+
+    /**
+     * Containers the content of a file of each accepted extension can be in.
+     */
+    private static final Map<String, Set<MediaContainer>> ACCEPT_CONTAINERS = Map.of(
+            "mp4", Set.of(MediaContainer.MP4),
+            "mpg4", Set.of(MediaContainer.MP4),
+            "mpg", Set.of(MediaContainer.MPEG_PS, MediaContainer.MPEG_VIDEO),
+            "mpeg", Set.of(MediaContainer.MPEG_PS, MediaContainer.MPEG_VIDEO));
+
+    private VideoFileType() {
+    }
+
+    /**
+     * Check whether a file has one of the accepted video extensions.
+     *
+     * @param fileName File name
+     * @throws UnsupportedFileException Not accepted extension exception
+     */
+    public static void check(String fileName) throws UnsupportedFileException {
+
+        String extension = FilenameUtils.getExtension(fileName);
+        if (!ACCEPT_EXTENSIONS.contains(extension)) {
+            throw new UnsupportedFileException(ACCEPT_EXTENSIONS + " type files are only supported.");
+        }
+    }
+
+    /**
+     * Check whether the content of a file is in a container of its extension, e.g. that a '.mp4' file is an MP4 file
+     * and not a renamed one.
+     *
+     * @param fileName  File name
+     * @param container Container recognized from the content
+     * @throws UnsupportedFileException The content is not in a container of the extension
+     */
+    public static void checkContainer(String fileName, MediaContainer container) throws UnsupportedFileException {
+
+        String extension = FilenameUtils.getExtension(fileName);
+        if (!ACCEPT_CONTAINERS.getOrDefault(extension, Set.of()).contains(container)) {
+            throw new UnsupportedFileException("The content of this file is not a valid ." + extension + " file: "
+                    + fileName);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package hhg0104.codereview.video;
+
+import hhg0104.codereview.video.entity.VideoEntity;
+import hhg0104.codereview.video.entity.VideoState;
+import hhg0104.codereview.video.property.FileProperties;
+import hhg0104.codereview.video.repository.VideoRepository;
+import hhg0104.codereview.video.storage.VideoGarbageCollector;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is a periodic cleanup of the video files left in a state by a failed or interrupted transition.
+ * <p>
+ * An upload whose PENDING row was not refreshed for the timeout, as its node stopped transferring it, is given up,
+ * and one which is STORED but was never published is deleted. A DELETING file which the garbage collector could not take or reclaim is handed over again, and
+ * the GONE rows are purged. The blobs replaced by a remux are deleted once their grace period has passed.
+ */
+@Slf4j
+@Component
+public class VideoReaper {
+
+    private VideoRepository repository;
+
+    private VideoGarbageCollector garbageCollector;
+
+    private Duration interval;
+
+    private Duration timeout;
+
+    private int batchSize;
+
+    private final ScheduledExecutorService executor;
+
+    @Autowired
+    public VideoReaper(VideoRepository repository, VideoGarbageCollector garbageCollector, FileProperties fileProp) {
+        this.repository = repository;
+        this.garbageCollector = garbageCollector;
+        this.interval = fileProp.getReaperInterval();
+        this.timeout = fileProp.getReaperTimeout();
+        this.batchSize = fileProp.getReaperBatchSize();
+        this.executor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("video-reaper").daemon().factory());
+
+        long intervalMillis = interval.toMillis();
+        executor.scheduleWithFixedDelay(this::runReap, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void runReap() {
+        try {
+            reap();
+        } catch (RuntimeException e) {
+            log.warn("The video reaper failed.", e);
+        }
+    }
+
+    /**
+     * Move on the files left in a state, one pass.
+     */
+    void reap() {
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime timedOut = now.minus(timeout);
+        int abandoned = repository.updateStateBefore(VideoState.PENDING, VideoState.GONE, timedOut, now);
+        int unpublished = repository.updateStateBefore(VideoState.STORED, VideoState.DELETING, timedOut, now);
+
+        // A fresh tombstone is still in the queue of the garbage collector, only the ones older than an interval
+        // were left behind. The handing over stops when the queue is full, not when a page was all queued already.
+        LocalDateTime stale = now.minus(interval);
+        int resubmitted = 0;
+        long lastFileId = 0;
+        List<VideoEntity> videos;
+        do {
+            videos = repository.findByStateAndStateChangedAtBeforeAndFileIdGreaterThanOrderByFileId(
+                    VideoState.DELETING, stale, lastFileId, Limit.of(batchSize));
+            if (videos.isEmpty()) {
+                break;
+            }
+            lastFileId = videos.get(videos.size() - 1).getFileId();
+            VideoGarbageCollector.Submission submission = garbageCollector.submit(videos);
+            resubmitted += submission.accepted();
+            if (submission.rejected() > 0) {
+                break;
+            }
+        } while (videos.size() == batchSize);
+
+        int purged = purge(VideoState.GONE);
+        int replacedBlobs = garbageCollector.reclaimReplacedBlobs(batchSize);
+
+        if (abandoned > 0 || unpublished > 0 || resubmitted > 0) {
+            log.info("The video reaper gave up {} uploads, deleted {} unpublished files and handed over {} deleted files.",
+                    abandoned, unpublished, resubmitted);
+        }
+        log.debug("The video reaper purged {} rows and deleted {} replaced blobs.", purged, replacedBlobs);
+    }
+
+    /**
+     * Delete the rows in a state page by page, so no statement locks more than a page of rows.
+     *
+     * @return Count of the deleted rows
+     */
+    private int purge(VideoState state) {
+
+        int purged = 0;
+        List<Long> fileIds;
+        int deleted;
+        do {
+            fileIds = repository.findFileIdsByState(state, Limit.of(batchSize));
+            if (fileIds.isEmpty()) {
+                break;
+            }
+            deleted = repository.deleteInBatchByState(fileIds, state);
+            purged += deleted;
+        } while (fileIds.size() == batchSize && deleted > 0);
+
+        return purged;
+    }
+}
@@ -1,24 +1,74 @@
 package hhg0104.codereview.video;
 
 import hhg0104.codereview.exception.AlreadyExistFileException;
+import hhg0104.codereview.exception.UnsupportedFileException;
+import hhg0104.codereview.video.cache.VideoMetadataCache;
+import hhg0104.codereview.video.entity.MediaInfo;
 import hhg0104.codereview.video.entity.VideoEntity;
+import hhg0104.codereview.video.entity.VideoState;
+import hhg0104.codereview.video.media.FastStartPipeline;
+import hhg0104.codereview.video.media.MediaProbe;
+import hhg0104.codereview.video.metrics.VideoMetrics;
 import hhg0104.codereview.video.property.FileProperties;
 import hhg0104.codereview.video.repository.VideoRepository;
+import hhg0104.codereview.video.request.FileListCursor;
+import hhg0104.codereview.video.request.FileListQuery;
+import hhg0104.codereview.video.response.FileInfo;
+import hhg0104.codereview.video.response.FileListPage;
+import hhg0104.codereview.video.response.UploadedFileInfo;
+import hhg0104.codereview.video.storage.BlobReferences;
+import hhg0104.codereview.video.storage.ContentHash;
+import hhg0104.codereview.video.storage.HashingChannel;
+import hhg0104.codereview.video.storage.StoredObject;
+import hhg0104.codereview.video.storage.VideoGarbageCollector;
+import hhg0104.codereview.video.storage.VideoStorage;
+import hhg0104.codereview.video.thumbnail.ThumbnailPipeline;
+import hhg0104.codereview.video.tracing.TracedPhase;
+import hhg0104.codereview.video.tracing.VideoTracing;
+import hhg0104.codereview.video.upload.StreamingMultipartReader;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * This is a service class to handle the uploading and downloading for video file.
+ * <p>
+ * No file is written or deleted inside a DB transaction. A file moves through the {@link VideoState}s with one short
+ * update per transition, and the file transfer happens in between. The PENDING rows of the transfers in progress
+ * are refreshed periodically, so the reaper only gives up an upload which is not being transferred any more.
  */
+@Slf4j
 @Component
 public class VideoService {
 
@@ -26,10 +76,85 @@ public class VideoService {
 
     private FileProperties fileProp;
 
+    private VideoMetadataCache metadataCache;
+
+    private VideoStorage storage;
+
+    private BlobReferences blobReferences;
+
+    private VideoGarbageCollector garbageCollector;
+
+    private ThumbnailPipeline thumbnailPipeline;
+
+    private FastStartPipeline fastStartPipeline;
+
+    private VideoMetrics metrics;
+
+    private VideoTracing tracing;
+
+    /**
+     * Writes the files of a batch upload in parallel.
+     */
+    private ExecutorService batchExecutor;
+
+    /**
+     * Refreshes the PENDING rows of the uploads in progress.
+     */
+    private ScheduledExecutorService heartbeatExecutor;
+
+    /**
+     * File IDs of the PENDING files whose content is being transferred on this node.
+     */
+    private final Set<Long> transferringFileIds = ConcurrentHashMap.newKeySet();
+
     @Autowired
-    public VideoService(VideoRepository repository, FileProperties fileProp) {
+    public VideoService(VideoRepository repository, FileProperties fileProp, VideoMetadataCache metadataCache,
+                        VideoStorage storage, BlobReferences blobReferences, VideoGarbageCollector garbageCollector,
+                        ThumbnailPipeline thumbnailPipeline, FastStartPipeline fastStartPipeline,
+                        VideoMetrics metrics, VideoTracing tracing) {
         this.repository = repository;
         this.fileProp = fileProp;
+        this.metadataCache = metadataCache;
+        this.storage = storage;
+        this.blobReferences = blobReferences;
+        this.garbageCollector = garbageCollector;
+        this.thumbnailPipeline = thumbnailPipeline;
+        this.fastStartPipeline = fastStartPipeline;
+        this.metrics = metrics;
+        this.tracing = tracing;
+        this.batchExecutor = Executors.newFixedThreadPool(Math.max(fileProp.getUploadBatchParallelism(), 1),
+                Thread.ofPlatform().name("video-batch-", 0).daemon().factory());
+        this.heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("video-upload-heartbeat").daemon().factory());
+
+        long heartbeatMillis = fileProp.getReaperHeartbeatInterval().toMillis();
+        heartbeatExecutor.scheduleWithFixedDelay(this::runHeartbeat, heartbeatMillis, heartbeatMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batchExecutor.shutdownNow();
+        heartbeatExecutor.shutdownNow();
+    }
+
+    private void runHeartbeat() {
+        try {
+            heartbeat();
+        } catch (RuntimeException e) {
+            log.warn("Couldn't refresh the uploads in progress.", e);
+        }
+    }
+
+    /**
+     * Refresh the state change time of the PENDING files being transferred, one pass.
+     */
+    void heartbeat() {
+
+        if (transferringFileIds.isEmpty()) {
+            return;
+        }
+        repository.touchPending(List.copyOf(transferringFileIds), LocalDateTime.now());
     }
 
     /**
@@ -38,96 +163,535 @@ public class VideoService {
      * @param fileId File ID
      * @return Existing video file.
      * @throws FileNotFoundException File not exists exception
+     * @throws IOException           Video storage access exception
      */
-    public File fetchFile(long fileId) throws FileNotFoundException {
+    public VideoFile fetchFile(long fileId) throws IOException {
 
-        VideoEntity info = fetchFileInfoFromDB(fileId);
+        try (TracedPhase phase = tracing.start("video.fetch")) {
+            boolean[] loaded = {false};
+            VideoFile file = metadataCache.get(fileId, id -> {
+                loaded[0] = true;
+                return loadFile(id);
+            });
+            phase.tag("cache", loaded[0] ? "miss" : "hit");
 
-        return convertToFile(info);
+            return file;
+        }
+    }
+
+    private VideoFile loadFile(long fileId) throws IOException {
+
+        VideoEntity info;
+        try (TracedPhase lookup = tracing.start("video.db.lookup")) {
+            info = fetchFileInfoFromDB(fileId);
+        }
+
+        try (TracedPhase stat = tracing.start("video.stat")) {
+            return convertToFile(info);
+        }
     }
 
     private VideoEntity fetchFileInfoFromDB(long fileId) throws FileNotFoundException {
 
         VideoEntity info = repository.findById(fileId).orElse(null);
-        if (info == null) {
+        if (info == null || info.getState() != VideoState.ACTIVE) {
             throw new FileNotFoundException("There is no file by this file id: " + fileId);
         }
 
         return info;
     }
 
-    private File convertToFile(VideoEntity info) throws FileNotFoundException {
+    private VideoFile convertToFile(VideoEntity info) throws IOException {
 
         String fileName = info.getName();
+        if (info.getContentHash() != null) {
+            StoredObject object = storage.stat(info.getContentHash());
+            if (object == null) {
+                throw new FileNotFoundException("Cannot find this file: " + fileName);
+            }
+            return new VideoFile(fileName, info.getContentHash(), object);
+        }
+
         File file = new File(fileProp.getUploadBasePath(), fileName);
         if (!file.exists()) {
             throw new FileNotFoundException("Cannot find this file: " + fileName);
         }
 
-        return file;
+        return new VideoFile(fileName, file);
     }
 
     /**
-     * Delete an existing file.
+     * Delete an existing file. The file is marked DELETING, which hides it at once, and its content is reclaimed
+     * by the garbage collector in the background.
      *
      * @param fileId File ID
      * @throws FileNotFoundException File not exists exception
-     * @throws IOException           File delete fail exception
+     * @throws IOException           Video storage access exception
      */
-    @Transactional
     public void delete(long fileId) throws FileNotFoundException, IOException {
 
         VideoEntity info = fetchFileInfoFromDB(fileId);
+        convertToFile(info);
 
-        repository.delete(info);
+        if (repository.updateState(List.of(fileId), VideoState.ACTIVE, VideoState.DELETING, LocalDateTime.now()) == 0) {
+            throw new FileNotFoundException("There is no file by this file id: " + fileId);
+        }
+        metadataCache.invalidate(fileId);
 
-        File file = convertToFile(info);
-        boolean deleted = file.delete();
-        if (!deleted) {
-            throw new IOException("This file cannot be deleted. :" + file.getName());
+        garbageCollector.submit(List.of(info));
+    }
+
+    /**
+     * Delete existing files. The files are marked DELETING in one statement, and their content is reclaimed
+     * by the garbage collector in the background.
+     *
+     * @param fileIds File IDs
+     * @throws FileNotFoundException Some of the files do not exist, nothing is deleted then
+     */
+    public void delete(Collection<Long> fileIds) throws FileNotFoundException {
+
+        Set<Long> missingIds = new LinkedHashSet<>(fileIds);
+        List<VideoEntity> infos = repository.findAllById(missingIds).stream()
+                .filter(info -> info.getState() == VideoState.ACTIVE)
+                .toList();
+        infos.forEach(info -> missingIds.remove(info.getFileId()));
+        if (!missingIds.isEmpty()) {
+            throw new FileNotFoundException("There are no files by these file ids: " + missingIds);
         }
+
+        repository.updateState(fileIds, VideoState.ACTIVE, VideoState.DELETING, LocalDateTime.now());
+        infos.forEach(info -> metadataCache.invalidate(info.getFileId()));
+
+        garbageCollector.submit(infos);
     }
 
     /**
-     * Upload a new video file.
+     * Upload a new video file. The content is hashed and its container parsed while it is written, and it is stored
+     * once for all the files of the same content.
      *
      * @param file New video file
      * @return Created file location
      * @throws IOException               File upload exception
      * @throws AlreadyExistFileException File already exist exception
+     * @throws UnsupportedFileException  The content is not in a container of the file extension
      */
-    @Transactional
-    public String upload(MultipartFile file) throws IOException, AlreadyExistFileException {
+    public String upload(MultipartFile file) throws IOException, AlreadyExistFileException,
+            UnsupportedFileException {
 
         String fileName = file.getOriginalFilename();
-        File newFile = new File(fileProp.getUploadBasePath(), fileName);
-        if (newFile.exists()) {
+        checkNewFile(fileName);
+
+        return upload(fileName, fileId -> storeContent(fileId, file));
+    }
+
+    /**
+     * Upload a new video file while the request body is being received. The file part is written, hashed and
+     * parsed once, directly into the upload directory.
+     *
+     * @param fileName New video file name
+     * @param reader   Multipart reader positioned on the file part
+     * @return Created file location
+     * @throws IOException               File upload exception
+     * @throws AlreadyExistFileException File already exist exception
+     * @throws UnsupportedFileException  The content is not in a container of the file extension
+     */
+    public String upload(String fileName, StreamingMultipartReader reader) throws IOException,
+            AlreadyExistFileException, UnsupportedFileException {
+
+        checkNewFile(fileName);
+
+        return upload(fileName, fileId -> {
+            Path tempPath = createTempPath(fileName);
+            try {
+                long size;
+                String hash;
+                MediaProbe probe = newMediaProbe();
+                try (HashingChannel channel = openTempFile(tempPath)) {
+                    size = reader.transferTo(probe.observe(channel));
+                    hash = channel.getHash();
+                }
+                MediaInfo media = inspect(fileName, probe, size);
+
+                return new StoredFile(size, hash, media, put(fileId, hash, tempPath));
+            } finally {
+                Files.deleteIfExists(tempPath);
+            }
+        });
+    }
+
+    /**
+     * Register a video file which is already written to a staging path in the upload directory.
+     * The staged file is hashed and parsed in one read, and stored in the video storage.
+     *
+     * @param fileName   New video file name
+     * @param stagedPath Path of the written file
+     * @param size       File size
+     * @return Created file location
+     * @throws IOException               File move exception
+     * @throws AlreadyExistFileException File already exist exception
+     * @throws UnsupportedFileException  The content is not in a container of the file extension
+     */
+    public String upload(String fileName, Path stagedPath, long size) throws IOException, AlreadyExistFileException,
+            UnsupportedFileException {
+
+        checkNewFile(fileName);
+
+        return upload(fileName, fileId -> {
+            MediaProbe probe = newMediaProbe();
+            String hash = ContentHash.of(stagedPath, probe::update);
+            MediaInfo media = inspect(fileName, probe, size);
+            return new StoredFile(size, hash, media, put(fileId, hash, stagedPath));
+        });
+    }
+
+    private String upload(String fileName, ContentWriter writer) throws IOException, AlreadyExistFileException,
+            UnsupportedFileException {
+
+        Timer.Sample sample = metrics.startUpload();
+        List<StoredFile> storedFiles = new ArrayList<>();
+        String outcome = VideoMetrics.FAILURE;
+        try {
+            List<VideoEntity> newVideos = reserve(List.of(fileName));
+            try {
+                try (TracedPhase phase = tracing.start("video.store")) {
+                    StoredFile storedFile = writer.write(newVideos.get(0).getFileId());
+                    phase.transferred(storedFile.size());
+                    storedFiles.add(storedFile);
+                }
+
+                String location = publish(newVideos, storedFiles).get(0).getLocation();
+                outcome = VideoMetrics.SUCCESS;
+                return location;
+            } catch (IOException | UnsupportedFileException | RuntimeException e) {
+                discard(newVideos, storedFiles);
+                throw e;
+            } finally {
+                endTransfer(newVideos);
+            }
+        } finally {
+            metrics.stopUpload(sample, outcome, VideoMetrics.SUCCESS.equals(outcome) ? totalSize(storedFiles) : 0);
+        }
+    }
+
+    /**
+     * Upload new video files of one request. The files are written to the video storage in parallel, and they are
+     * published together, so either all the files are uploaded or none.
+     *
+     * @param files New video files, each with a distinct name
+     * @return Uploaded files in the order of the request
+     * @throws IOException               File upload exception
+     * @throws AlreadyExistFileException Some of the files already exist
+     * @throws UnsupportedFileException  The content of some file is not in a container of its extension
+     */
+    public List<UploadedFileInfo> upload(List<MultipartFile> files) throws IOException, AlreadyExistFileException,
+            UnsupportedFileException {
+
+        List<String> fileNames = files.stream()
+                .map(MultipartFile::getOriginalFilename)
+                .toList();
+        List<String> existingNames = new ArrayList<>(repository.findExistingNames(fileNames, VideoState.LIVE));
+        for (String fileName : fileNames) {
+            if (!existingNames.contains(fileName) && new File(fileProp.getUploadBasePath(), fileName).exists()) {
+                existingNames.add(fileName);
+            }
+        }
+        if (!existingNames.isEmpty()) {
+            throw new AlreadyExistFileException("These files already exist: " + existingNames);
+        }
+
+        Timer.Sample sample = metrics.startUpload();
+        List<StoredFile> storedFiles = new ArrayList<>();
+        String outcome = VideoMetrics.FAILURE;
+        try {
+            List<VideoEntity> newVideos = reserve(fileNames);
+
+            List<Callable<StoredFile>> writes = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                MultipartFile file = files.get(i);
+                long fileId = newVideos.get(i).getFileId();
+                writes.add(tracing.wrap(() -> {
+                    try (TracedPhase phase = tracing.start("video.store")) {
+                        StoredFile storedFile = storeContent(fileId, file);
+                        phase.transferred(storedFile.size());
+                        return storedFile;
+                    }
+                }));
+            }
+
+            try {
+                awaitAll(submitAll(writes), storedFiles);
+
+                List<UploadedFileInfo> uploadedFiles = publish(newVideos, storedFiles);
+                outcome = VideoMetrics.SUCCESS;
+                return uploadedFiles;
+            } catch (IOException | UnsupportedFileException | RuntimeException e) {
+                discard(newVideos, storedFiles);
+                throw e;
+            } finally {
+                endTransfer(newVideos);
+            }
+        } finally {
+            metrics.stopUpload(sample, outcome, VideoMetrics.SUCCESS.equals(outcome) ? totalSize(storedFiles) : 0);
+        }
+    }
+
+    private long totalSize(List<StoredFile> storedFiles) {
+        return storedFiles.stream()
+                .mapToLong(StoredFile::size)
+                .sum();
+    }
+
+    /**
+     * Insert the new files as PENDING, in JDBC batches, which reserves their names before any content is written.
+     * The names are unique among the live files in the DB, so of two uploads of a name at the same time, only one
+     * inserts its file. The new files are refreshed by the heartbeat until {@link #endTransfer(List)}.
+     *
+     * @throws AlreadyExistFileException Some of the names are taken by a live file
+     */
+    private List<VideoEntity> reserve(List<String> fileNames) throws AlreadyExistFileException {
+
+        try (TracedPhase phase = tracing.start("video.reserve")) {
+            LocalDateTime now = LocalDateTime.now();
+            List<VideoEntity> newVideos = new ArrayList<>();
+            for (String fileName : fileNames) {
+                VideoEntity newVideo = new VideoEntity();
+                newVideo.setName(fileName);
+                newVideo.setState(VideoState.PENDING);
+                newVideo.setStateChangedAt(now);
+                newVideos.add(newVideo);
+            }
+            try {
+                repository.saveAll(newVideos);
+            } catch (DataIntegrityViolationException e) {
+                // A new row only sets its name and state, so the live name is the constraint it can violate.
+                phase.error(e);
+                throw new AlreadyExistFileException(fileNames.size() == 1
+                        ? "This file already exists: " + fileNames.get(0)
+                        : "These files already exist: " + fileNames, e);
+            }
+
+            for (VideoEntity newVideo : newVideos) {
+                transferringFileIds.add(newVideo.getFileId());
+            }
+            return newVideos;
+        }
+    }
+
+    /**
+     * Stop refreshing the files reserved by an upload, which is published or discarded.
+     */
+    private void endTransfer(List<VideoEntity> newVideos) {
+        for (VideoEntity newVideo : newVideos) {
+            transferringFileIds.remove(newVideo.getFileId());
+        }
+    }
+
+    /**
+     * Record the stored content of the PENDING files, then make them visible all at once. Their thumbnails are
+     * generated, and an MP4 content with the moov box at the end is remuxed for the fast start, in the background.
+     */
+    private List<UploadedFileInfo> publish(List<VideoEntity> newVideos, List<StoredFile> storedFiles)
+            throws IOException {
+
+        try (TracedPhase phase = tracing.start("video.publish")) {
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < newVideos.size(); i++) {
+                VideoEntity newVideo = newVideos.get(i);
+                StoredFile storedFile = storedFiles.get(i);
+                if (repository.markStored(newVideo.getFileId(), storedFile.size(), storedFile.hash(),
+                        storedFile.media(), now) == 0) {
+                    throw new IOException("The upload was abandoned before it was stored: " + newVideo.getName());
+                }
+            }
+
+            List<Long> fileIds = newVideos.stream()
+                    .map(VideoEntity::getFileId)
+                    .toList();
+            repository.updateState(fileIds, VideoState.STORED, VideoState.ACTIVE, now);
+
+            List<UploadedFileInfo> uploadedFiles = new ArrayList<>();
+            for (int i = 0; i < newVideos.size(); i++) {
+                VideoEntity newVideo = newVideos.get(i);
+                metadataCache.invalidate(newVideo.getFileId());
+                thumbnailPipeline.submit(newVideo.getFileId(), storedFiles.get(i).hash(), null);
+                fastStartPipeline.submit(storedFiles.get(i).hash(), storedFiles.get(i).media());
+                uploadedFiles.add(new UploadedFileInfo(newVideo.getFileId(), newVideo.getName(),
+                        storage.getLocation(storedFiles.get(i).hash())));
+            }
+
+            return uploadedFiles;
+        }
+    }
+
+    /**
+     * Give up a failed upload: the files are moved to GONE, and the blobs which were stored by the upload are deleted
+     * unless a live file references them, including an upload in progress which found the same content stored.
+     * What cannot be cleaned up here is left to the reaper and the reconciliation.
+     */
+    private void discard(List<VideoEntity> newVideos, List<StoredFile> storedFiles) {
+
+        try {
+            List<Long> fileIds = newVideos.stream()
+                    .map(VideoEntity::getFileId)
+                    .toList();
+            LocalDateTime now = LocalDateTime.now();
+            repository.updateState(fileIds, VideoState.PENDING, VideoState.GONE, now);
+            repository.updateState(fileIds, VideoState.STORED, VideoState.GONE, now);
+
+            Set<String> hashes = storedFiles.stream()
+                    .filter(StoredFile::stored)
+                    .map(StoredFile::hash)
+                    .collect(Collectors.toSet());
+            blobReferences.deleteUnreferenced(hashes, hash -> {
+                try {
+                    storage.delete(hash);
+                } catch (IOException e) {
+                    log.warn("Couldn't delete the blob of a failed upload: " + hash, e);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Couldn't clean up a failed upload.", e);
+        }
+    }
+
+    private StoredFile storeContent(long fileId, MultipartFile file) throws IOException, UnsupportedFileException {
+
+        Path tempPath = createTempPath(file.getOriginalFilename());
+        try {
+            String hash;
+            MediaProbe probe = newMediaProbe();
+            try (InputStream in = file.getInputStream(); HashingChannel channel = openTempFile(tempPath)) {
+                in.transferTo(Channels.newOutputStream(probe.observe(channel)));
+                hash = channel.getHash();
+            }
+            MediaInfo media = inspect(file.getOriginalFilename(), probe, file.getSize());
+
+            return new StoredFile(file.getSize(), hash, media, put(fileId, hash, tempPath));
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * Store the content of a PENDING file, which references the content hash first.
+     */
+    private boolean put(long fileId, String hash, Path path) throws IOException {
+        return blobReferences.reference(fileId, hash, () -> storage.put(hash, path));
+    }
+
+    private <T> List<Future<T>> submitAll(List<Callable<T>> tasks) {
+        return tasks.stream()
+                .map(batchExecutor::submit)
+                .toList();
+    }
+
+    /**
+     * Wait for all the tasks, even after one failed, so no task is still writing when the caller cleans up.
+     * The results of the succeeded tasks are collected and the first failure is thrown.
+     */
+    private <T> void awaitAll(List<Future<T>> futures, List<T> results) throws IOException,
+            UnsupportedFileException {
+
+        Throwable failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                throw new InterruptedIOException("Interrupted while waiting for the batch.");
+            }
+        }
+
+        if (failure instanceof IOException e) {
+            throw e;
+        } else if (failure instanceof UnsupportedFileException e) {
+            throw e;
+        } else if (failure instanceof RuntimeException e) {
+            throw e;
+        } else if (failure instanceof Error e) {
+            throw e;
+        } else if (failure != null) {
+            throw new IOException(failure);
+        }
+    }
+
+    /**
+     * Check that no video has the file name yet.
+     *
+     * @param fileName New video file name
+     * @throws AlreadyExistFileException File already exist exception
+     */
+    public void checkNewFile(String fileName) throws AlreadyExistFileException {
+
+        if (repository.existsByNameAndStateIn(fileName, VideoState.LIVE)
+                || new File(fileProp.getUploadBasePath(), fileName).exists()) {
             throw new AlreadyExistFileException("This file already exists: " + fileName);
         }
+    }
 
-        long size = file.getSize();
-        insertInfo(fileName, size);
+    /**
+     * A file is written under a hidden temporary name in the upload directory first, so a crash never leaves
+     * a partial file in the store.
+     */
+    private Path createTempPath(String fileName) {
+        return Path.of(fileProp.getUploadBasePath(), "." + fileName + "." + UUID.randomUUID() + ".part");
+    }
 
-        Path uploadFilePath = Path.of(newFile.getAbsolutePath());
-        Files.copy(file.getInputStream(), uploadFilePath);
+    private HashingChannel openTempFile(Path tempPath) throws IOException {
+        return new HashingChannel(FileChannel.open(tempPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+    }
 
-        return newFile.getAbsolutePath();
+    private MediaProbe newMediaProbe() {
+        return new MediaProbe((int) Math.min(fileProp.getMediaMaxMoovSize().toBytes(), Integer.MAX_VALUE));
     }
 
-    private void insertInfo(String newFileName, long size) {
-        VideoEntity newVideo = new VideoEntity();
-        newVideo.setName(newFileName);
-        newVideo.setSize(size);
+    /**
+     * Finish the parsing of a written file, and check its container against its extension.
+     *
+     * @throws UnsupportedFileException The content is not in a container of the file extension
+     */
+    private MediaInfo inspect(String fileName, MediaProbe probe, long size) throws UnsupportedFileException {
+
+        MediaInfo media = probe.finish(size);
+        if (fileProp.isMediaVerifyContainer()) {
+            VideoFileType.checkContainer(fileName, media.getContainer());
+        }
 
-        repository.save(newVideo);
+        return media;
     }
 
     /**
-     * Return all video file list.
+     * Return a page of the video file list.
      *
-     * @return All video file list
+     * @param query Page request
+     * @return Video files of the page and the cursor of the next page
      */
-    public List<VideoEntity> list() {
-        return repository.findAll();
+    public FileListPage list(FileListQuery query) {
+
+        List<FileInfo> files = repository.findPage(query);
+        if (files.size() <= query.getLimit()) {
+            return new FileListPage(files, null);
+        }
+
+        List<FileInfo> page = files.subList(0, query.getLimit());
+        String nextCursor = FileListCursor.after(query.getSort(), page.get(page.size() - 1)).encode();
+
+        return new FileListPage(page, nextCursor);
+    }
+
+    /**
+     * Writes the content of a new file to the video storage.
+     */
+    @FunctionalInterface
+    private interface ContentWriter {
+        StoredFile write(long fileId) throws IOException, UnsupportedFileException;
+    }
+
+    private record StoredFile(long size, String hash, MediaInfo media, boolean stored) {
     }
 }
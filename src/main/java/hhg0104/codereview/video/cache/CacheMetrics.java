@@ -0,0 +1,40 @@
+package hhg0104.codereview.video.cache;
+
+import hhg0104.codereview.video.hls.HlsIndexCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * This is the binding of the in-process caches to the meter registry, as the cache.* meters tagged with the cache
+ * name: video.metadata, video.hls-index and, when it is enabled, video.content.
+ */
+@Component
+public class CacheMetrics implements MeterBinder {
+
+    private VideoMetadataCache metadataCache;
+
+    private VideoContentCache contentCache;
+
+    private HlsIndexCache hlsIndexCache;
+
+    @Autowired
+    public CacheMetrics(VideoMetadataCache metadataCache, VideoContentCache contentCache,
+                        HlsIndexCache hlsIndexCache) {
+        this.metadataCache = metadataCache;
+        this.contentCache = contentCache;
+        this.hlsIndexCache = hlsIndexCache;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+
+        CaffeineCacheMetrics.monitor(registry, metadataCache.getNativeCache(), "video.metadata");
+        CaffeineCacheMetrics.monitor(registry, hlsIndexCache.getNativeCache(), "video.hls-index");
+        if (contentCache.getNativeCache() != null) {
+            CaffeineCacheMetrics.monitor(registry, contentCache.getNativeCache(), "video.content");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package hhg0104.codereview.video.cache;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import hhg0104.codereview.video.response.CacheStatsInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * This is a controller class for the statistics of the in-process caches.
+ */
+@RestController
+public class CacheStatsController {
+
+    private VideoMetadataCache metadataCache;
+
+    private VideoContentCache contentCache;
+
+
+    @Autowired
+    public CacheStatsController(VideoMetadataCache metadataCache, VideoContentCache contentCache) {
+        this.metadataCache = metadataCache;
+        this.contentCache = contentCache;
+    }
+
+    /**
+     * Statistics of the video metadata cache since the start.
+     *
+     * @return Size, hit, miss and eviction counts of the cache
+     */
+    @GetMapping("/caches/metadata")
+    public CacheStatsInfo metadataCacheStats() {
+
+        CacheStats stats = metadataCache.stats();
+
+        return new CacheStatsInfo(metadataCache.size(), stats.hitCount(), stats.missCount(), stats.evictionCount(),
+                stats.hitRate());
+    }
+
+    /**
+     * Statistics of the video content cache since the start, all zero when the cache is disabled.
+     *
+     * @return Size, hit, miss and eviction counts of the cache
+     */
+    @GetMapping("/caches/content")
+    public CacheStatsInfo contentCacheStats() {
+
+        CacheStats stats = contentCache.stats();
+
+        return new CacheStatsInfo(contentCache.size(), stats.hitCount(), stats.missCount(), stats.evictionCount(),
+                stats.hitRate());
+    }
+}
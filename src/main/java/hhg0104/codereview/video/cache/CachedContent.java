@@ -0,0 +1,114 @@
+package hhg0104.codereview.video.cache;
+
+import hhg0104.codereview.video.download.ByteRange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The cached leading bytes of a video file, held in off-heap slabs.
+ * <p>
+ * The slabs go back to the pool when the entry is evicted and no reader holds it any more. A reader must
+ * {@link #release()} the content it got from {@link VideoContentCache#acquire}.
+ */
+public class CachedContent {
+
+    private final SlabPool pool;
+
+    private final ByteBuffer[] slabs;
+
+    private final long length;
+
+    private final long fileLength;
+
+    private final long lastModified;
+
+    /**
+     * One reference of the cache itself and one per reader.
+     */
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    CachedContent(SlabPool pool, ByteBuffer[] slabs, long length, long fileLength, long lastModified) {
+        this.pool = pool;
+        this.slabs = slabs;
+        this.length = length;
+        this.fileLength = fileLength;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Count of the slabs held, whose last one can be partly used.
+     */
+    public int getSlabCount() {
+        return slabs.length;
+    }
+
+    /**
+     * Whether the range is in the cached bytes.
+     */
+    public boolean covers(ByteRange range) {
+        return range.getEnd() < length;
+    }
+
+    /**
+     * Write a cached range to an output stream.
+     *
+     * @param range Byte range in the cached bytes
+     * @param out   Output stream to write to
+     * @throws IOException Stream write exception
+     */
+    public void write(ByteRange range, OutputStream out) throws IOException {
+
+        // The target channel wraps the response stream, it must not be closed here.
+        WritableByteChannel target = Channels.newChannel(out);
+
+        int slabSize = pool.getSlabSize();
+        long position = range.getStart();
+        long remaining = range.getLength();
+        while (remaining > 0) {
+            int offset = (int) (position % slabSize);
+            int count = (int) Math.min(remaining, slabSize - offset);
+
+            ByteBuffer chunk = slabs[(int) (position / slabSize)].duplicate();
+            chunk.limit(offset + count).position(offset);
+            while (chunk.hasRemaining()) {
+                target.write(chunk);
+            }
+
+            position += count;
+            remaining -= count;
+        }
+    }
+
+    public void release() {
+        if (references.decrementAndGet() == 0) {
+            pool.free(slabs);
+        }
+    }
+
+    long getLength() {
+        return length;
+    }
+
+    boolean isValidFor(long fileLength, long lastModified) {
+        return this.fileLength == fileLength && this.lastModified == lastModified;
+    }
+
+    /**
+     * Take a reader reference, unless the slabs are already given back to the pool.
+     */
+    boolean retain() {
+        int count;
+        do {
+            count = references.get();
+            if (count == 0) {
+                return false;
+            }
+        } while (!references.compareAndSet(count, count + 1));
+        return true;
+    }
+}
@@ -0,0 +1,78 @@
+package hhg0104.codereview.video.cache;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of fixed-size off-heap slabs. Slabs are allocated lazily up to the budget and reused after that,
+ * so the cached content never lives on the heap and the direct memory is not churned.
+ */
+class SlabPool {
+
+    private final int slabSize;
+
+    private final int maxSlabCount;
+
+    private final AtomicInteger allocatedCount = new AtomicInteger();
+
+    private final ConcurrentLinkedQueue<ByteBuffer> freeSlabs = new ConcurrentLinkedQueue<>();
+
+    SlabPool(long budget, int slabSize) {
+        this.slabSize = slabSize;
+        this.maxSlabCount = (int) (budget / slabSize);
+    }
+
+    int getSlabSize() {
+        return slabSize;
+    }
+
+    /**
+     * Take slabs enough for a length, or nothing when the budget is used up by entries still being read.
+     *
+     * @param length Byte length to hold
+     * @return Slabs, or null when they are not available
+     */
+    ByteBuffer[] allocate(long length) {
+
+        int count = (int) ((length + slabSize - 1) / slabSize);
+        ByteBuffer[] slabs = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            ByteBuffer slab = take();
+            if (slab == null) {
+                free(slabs);
+                return null;
+            }
+            slabs[i] = slab;
+        }
+
+        return slabs;
+    }
+
+    void free(ByteBuffer[] slabs) {
+        for (ByteBuffer slab : slabs) {
+            if (slab != null) {
+                slab.clear();
+                freeSlabs.offer(slab);
+            }
+        }
+    }
+
+    private ByteBuffer take() {
+
+        ByteBuffer slab = freeSlabs.poll();
+        if (slab != null) {
+            return slab;
+        }
+
+        int allocated;
+        do {
+            allocated = allocatedCount.get();
+            if (allocated >= maxSlabCount) {
+                return null;
+            }
+        } while (!allocatedCount.compareAndSet(allocated, allocated + 1));
+
+        return ByteBuffer.allocateDirect(slabSize);
+    }
+}
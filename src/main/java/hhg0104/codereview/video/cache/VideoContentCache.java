@@ -0,0 +1,172 @@
+package hhg0104.codereview.video.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import hhg0104.codereview.video.property.FileProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This is an off-heap cache of the content of popular video files, so their downloads and range requests are served
+ * from memory instead of the disk.
+ * <p>
+ * Up to the max entry size of the leading bytes of a file are held in slabs of a fixed memory budget. A file is
+ * admitted only after it was requested as many times as the admission threshold, so a one-off download of a large
+ * file never pushes the hot set out. Between the admitted files Caffeine evicts by W-TinyLFU.
+ * <p>
+ * An entry is weighed by the whole slabs it holds, and the slabs of one max size entry are kept out of the Caffeine
+ * budget: the slabs of a new entry are taken before it is inserted and the coldest entries are evicted, so the pool
+ * must still have them when the cache is full.
+ */
+@Component
+public class VideoContentCache {
+
+    private static final int FREQUENCY_MAXIMUM_SIZE = 10_000;
+
+    private static final Duration FREQUENCY_EXPIRE_AFTER_WRITE = Duration.ofMinutes(10);
+
+    private final boolean enabled;
+
+    private SlabPool pool;
+
+    private long maxEntrySize;
+
+    private int admissionThreshold;
+
+    private Cache<String, CachedContent> cache;
+
+    private Cache<String, AtomicInteger> frequencies;
+
+    @Autowired
+    public VideoContentCache(FileProperties fileProp) {
+        this(fileProp.isContentCacheEnabled(), fileProp.getContentCacheBudget().toBytes(),
+                (int) fileProp.getContentCacheSlabSize().toBytes(), fileProp.getContentCacheMaxEntrySize().toBytes(),
+                fileProp.getContentCacheAdmissionThreshold());
+    }
+
+    public VideoContentCache(boolean enabled, long budget, int slabSize, long maxEntrySize, int admissionThreshold) {
+
+        this.enabled = enabled;
+        if (!enabled) {
+            return;
+        }
+
+        this.pool = new SlabPool(budget, slabSize);
+        long slabCount = budget / slabSize;
+        // An entry can take up to half of the slabs, the other half holds the hot set.
+        this.maxEntrySize = Math.min(maxEntrySize, slabCount / 2 * slabSize);
+        this.admissionThreshold = admissionThreshold;
+        long reservedSlabCount = (this.maxEntrySize + slabSize - 1) / slabSize;
+
+        // Removal runs on the calling thread, so the slabs of an evicted entry are back in the pool right away.
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight((slabCount - reservedSlabCount) * slabSize)
+                .weigher((String key, CachedContent content) -> content.getSlabCount() * slabSize)
+                .removalListener((String key, CachedContent content, RemovalCause cause) -> {
+                    if (content != null) {
+                        content.release();
+                    }
+                })
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+        this.frequencies = Caffeine.newBuilder()
+                .maximumSize(FREQUENCY_MAXIMUM_SIZE)
+                .expireAfterWrite(FREQUENCY_EXPIRE_AFTER_WRITE)
+                .build();
+    }
+
+    /**
+     * Return the cached content of a file, loading it when the file is requested often enough.
+     * The returned content must be released after it is written.
+     *
+     * @param file         Video file
+     * @param fileLength   Current length of the file
+     * @param lastModified Current last modified time of the file
+     * @return Cached content, or null when the file is not cached
+     */
+    public CachedContent acquire(File file, long fileLength, long lastModified) {
+
+        if (!enabled || fileLength == 0) {
+            return null;
+        }
+
+        String key = file.getAbsolutePath();
+        CachedContent content = cache.getIfPresent(key);
+        if (content != null) {
+            if (content.isValidFor(fileLength, lastModified)) {
+                return content.retain() ? content : null;
+            }
+            // The file was replaced since it was cached.
+            cache.asMap().remove(key, content);
+        }
+
+        int frequency = frequencies.get(key, k -> new AtomicInteger()).incrementAndGet();
+        if (frequency < admissionThreshold) {
+            return null;
+        }
+
+        try {
+            content = cache.asMap().computeIfAbsent(key, k -> load(file, fileLength, lastModified));
+        } catch (UncheckedIOException e) {
+            // The download reads the file itself and reports the failure.
+            return null;
+        }
+
+        return content != null && content.retain() ? content : null;
+    }
+
+    public long size() {
+        return enabled ? cache.estimatedSize() : 0;
+    }
+
+    public CacheStats stats() {
+        return enabled ? cache.stats() : CacheStats.empty();
+    }
+
+    /**
+     * Underlying cache, for the metrics binding, null when the cache is disabled.
+     */
+    public Cache<String, CachedContent> getNativeCache() {
+        return cache;
+    }
+
+    private CachedContent load(File file, long fileLength, long lastModified) {
+
+        long length = Math.min(fileLength, maxEntrySize);
+        ByteBuffer[] slabs = pool.allocate(length);
+        if (slabs == null) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long position = 0;
+            for (ByteBuffer slab : slabs) {
+                slab.clear().limit((int) Math.min(slab.capacity(), length - position));
+                while (slab.hasRemaining()) {
+                    if (channel.read(slab, position + slab.position()) < 0) {
+                        throw new EOFException("The file is shorter than expected: " + file.getName());
+                    }
+                }
+                position += slab.limit();
+            }
+        } catch (IOException e) {
+            pool.free(slabs);
+            throw new UncheckedIOException(e);
+        }
+
+        return new CachedContent(pool, slabs, length, fileLength, lastModified);
+    }
+}
@@ -0,0 +1,121 @@
+package hhg0104.codereview.video.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import hhg0104.codereview.video.VideoFile;
+import hhg0104.codereview.video.property.FileProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is a bounded in-process cache of the resolved video files by file id.
+ * <p>
+ * An entry is a file whose DB row was found and whose existence was checked, so a hit costs neither a DB round trip
+ * nor a stat call. Caffeine evicts by W-TinyLFU, which keeps a small hot set of popular videos cached.
+ * <p>
+ * A file is loaded by an atomic compute of its entry, so an invalidation of the file id waits for a load in
+ * progress and then removes the loaded file. A file read from the DB before a delete or a repoint of its content is
+ * never cached after the invalidation.
+ */
+@Component
+public class VideoMetadataCache {
+
+    private final Cache<Long, VideoFile> cache;
+
+    /**
+     * Count of the invalidations of all entries. Caffeine's invalidateAll doesn't discard the loads in progress,
+     * a load which saw this count change removes its own entry again.
+     */
+    private final AtomicLong invalidateAllCount = new AtomicLong();
+
+    /**
+     * Loads a file on a cache miss.
+     */
+    @FunctionalInterface
+    public interface Loader {
+
+        VideoFile load(long fileId) throws IOException;
+    }
+
+    @Autowired
+    public VideoMetadataCache(FileProperties fileProp) {
+        this(fileProp.getMetadataCacheMaximumSize(), fileProp.getMetadataCacheExpireAfterWrite());
+    }
+
+    public VideoMetadataCache(long maximumSize, Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Return the cached file of a file id, null when it is not cached.
+     */
+    public VideoFile get(long fileId) {
+        return cache.getIfPresent(fileId);
+    }
+
+    /**
+     * Return the cached file of a file id, loaded and cached when it is not. Concurrent misses of a file id wait for
+     * a single load.
+     *
+     * @param fileId File id
+     * @param loader Loader of the file
+     * @return Cached or loaded file
+     * @throws IOException Load exception, nothing is cached
+     */
+    public VideoFile get(long fileId, Loader loader) throws IOException {
+
+        long invalidateAllCountBefore = invalidateAllCount.get();
+        VideoFile file;
+        try {
+            file = cache.get(fileId, id -> {
+                try {
+                    return loader.load(id);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (invalidateAllCount.get() != invalidateAllCountBefore) {
+            cache.invalidate(fileId);
+        }
+
+        return file;
+    }
+
+    public void invalidate(long fileId) {
+        cache.invalidate(fileId);
+    }
+
+    public void invalidateAll() {
+        invalidateAllCount.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Underlying cache, for the metrics binding.
+     */
+    public Cache<Long, VideoFile> getNativeCache() {
+        return cache;
+    }
+}
@@ -0,0 +1,24 @@
+package hhg0104.codereview.video.download;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A satisfiable byte range of a file. Both positions are inclusive, as in the Content-Range header.
+ */
+@Getter
+@AllArgsConstructor
+public class ByteRange {
+
+    private long start;
+
+    private long end;
+
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    public String toContentRange(long fileLength) {
+        return "bytes " + start + "-" + end + "/" + fileLength;
+    }
+}
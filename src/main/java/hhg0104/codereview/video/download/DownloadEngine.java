@@ -0,0 +1,59 @@
+package hhg0104.codereview.video.download;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * This is an interface for the strategies to move the bytes of a video file to the client.
+ * The engine is chosen by the 'file.download.engine' property.
+ */
+public interface DownloadEngine {
+
+    /**
+     * Send a byte range of the file as the whole response body. The status and headers are already set.
+     *
+     * @param file     Video file
+     * @param range    Byte range to send
+     * @param request  Current request
+     * @param response Current response
+     * @throws IOException File read or response write exception
+     */
+    void send(File file, ByteRange range, HttpServletRequest request, HttpServletResponse response) throws IOException;
+
+    /**
+     * Whether {@link #send} handed the response body over to the container, to be written after the request is
+     * handled, so its bytes are not transferred yet.
+     *
+     * @param request Current request
+     * @return True when the body is written by the container
+     */
+    default boolean isHandedOver(HttpServletRequest request) {
+        return false;
+    }
+
+    /**
+     * Copy a byte range of the file to an output stream, e.g. as a part of a multipart/byteranges body.
+     *
+     * @param file  Video file
+     * @param range Byte range to copy
+     * @param out   Output stream to write to
+     * @throws IOException File read or stream write exception
+     */
+    void copy(File file, ByteRange range, OutputStream out) throws IOException;
+
+    /**
+     * Copy byte ranges of the file to an output stream one after another, e.g. the samples of an HLS segment.
+     * The file is opened once for all the ranges.
+     *
+     * @param file   Video file
+     * @param ranges Byte ranges to copy, in the order they are written
+     * @param out    Output stream to write to
+     * @throws IOException File read or stream write exception
+     */
+    void copy(File file, List<ByteRange> ranges, OutputStream out) throws IOException;
+}
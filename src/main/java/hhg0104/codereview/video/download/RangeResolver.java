@@ -0,0 +1,103 @@
+package hhg0104.codereview.video.download;
+
+import hhg0104.codereview.exception.RangeNotSatisfiableException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This is a class to resolve the Range and If-Range request headers (RFC 7233) against a file.
+ */
+@Component
+public class RangeResolver {
+
+    /**
+     * Resolve the requested byte ranges. Overlapping or adjacent ranges are merged and returned in ascending order.
+     *
+     * @param requestHeaders Request headers
+     * @param fileLength     File length
+     * @param eTag           Current entity tag of the file
+     * @param lastModified   Current last modified time of the file
+     * @return Requested ranges, or an empty list when the whole file should be sent
+     * @throws RangeNotSatisfiableException None of the requested ranges overlaps the file
+     */
+    public List<ByteRange> resolve(HttpHeaders requestHeaders, long fileLength, String eTag, long lastModified)
+            throws RangeNotSatisfiableException {
+
+        String rangeHeader = requestHeaders.getFirst(HttpHeaders.RANGE);
+        if (rangeHeader == null || !isIfRangeMatched(requestHeaders, eTag, lastModified)) {
+            return Collections.emptyList();
+        }
+
+        List<HttpRange> httpRanges;
+        try {
+            httpRanges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            // An invalid or unknown-unit Range header is ignored and the whole file is sent.
+            return Collections.emptyList();
+        }
+
+        List<ByteRange> ranges = new ArrayList<>();
+        for (HttpRange httpRange : httpRanges) {
+            long start = httpRange.getRangeStart(fileLength);
+            if (start >= fileLength) {
+                continue;
+            }
+            ranges.add(new ByteRange(start, httpRange.getRangeEnd(fileLength)));
+        }
+
+        if (ranges.isEmpty()) {
+            throw new RangeNotSatisfiableException(fileLength);
+        }
+
+        return merge(ranges);
+    }
+
+    private boolean isIfRangeMatched(HttpHeaders requestHeaders, String eTag, long lastModified) {
+
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(eTag);
+        }
+
+        if (ifRange.startsWith("W/")) {
+            // Weak entity tags never match for If-Range.
+            return false;
+        }
+
+        try {
+            long ifRangeDate = requestHeaders.getFirstDate(HttpHeaders.IF_RANGE);
+            return ifRangeDate == lastModified / 1000 * 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private List<ByteRange> merge(List<ByteRange> ranges) {
+
+        ranges.sort(Comparator.comparingLong(ByteRange::getStart));
+
+        List<ByteRange> merged = new ArrayList<>();
+        ByteRange current = ranges.get(0);
+        for (ByteRange next : ranges.subList(1, ranges.size())) {
+            if (next.getStart() <= current.getEnd() + 1) {
+                current = new ByteRange(current.getStart(), Math.max(current.getEnd(), next.getEnd()));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+
+        return merged;
+    }
+}
@@ -0,0 +1,51 @@
+package hhg0104.codereview.video.download;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * This is a download engine copying the file through a heap buffer with the plain stream API.
+ */
+@Component
+@ConditionalOnProperty(name = "file.download.engine", havingValue = "stream")
+public class StreamDownloadEngine implements DownloadEngine {
+
+    @Override
+    public void send(File file, ByteRange range, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        copy(file, range, response.getOutputStream());
+    }
+
+    @Override
+    public void copy(File file, ByteRange range, OutputStream out) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            StreamUtils.copyRange(in, out, range.getStart(), range.getEnd());
+        }
+    }
+
+    @Override
+    public void copy(File file, List<ByteRange> ranges, OutputStream out) throws IOException {
+
+        // The ranges are not in the file order, so the position is set for each of them.
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            InputStream in = Channels.newInputStream(channel);
+            for (ByteRange range : ranges) {
+                channel.position(range.getStart());
+                StreamUtils.copyRange(in, out, 0, range.getLength() - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package hhg0104.codereview.video.download;
+
+import hhg0104.codereview.exception.RangeNotSatisfiableException;
+import hhg0104.codereview.video.VideoFile;
+import hhg0104.codereview.video.cache.CachedContent;
+import hhg0104.codereview.video.cache.VideoContentCache;
+import hhg0104.codereview.video.metrics.VideoMetrics;
+import hhg0104.codereview.video.storage.VideoStorage;
+import hhg0104.codereview.video.tracing.TracedPhase;
+import hhg0104.codereview.video.tracing.VideoTracing;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This is a class to write a video file to the response, the whole file or the requested byte ranges.
+ */
+@Component
+public class VideoDownloader {
+
+    private static final Map<String, MediaType> CONTENT_TYPES = Map.of(
+            "mp4", MediaType.parseMediaType("video/mp4"),
+            "mpg4", MediaType.parseMediaType("video/mp4"),
+            "mpg", MediaType.parseMediaType("video/mpeg"),
+            "mpeg", MediaType.parseMediaType("video/mpeg"));
+
+    private static final String CRLF = "\r\n";
+
+    private RangeResolver rangeResolver;
+
+    private DownloadEngine engine;
+
+    private VideoContentCache contentCache;
+
+    private VideoStorage storage;
+
+    private VideoMetrics metrics;
+
+    private VideoTracing tracing;
+
+    @Autowired
+    public VideoDownloader(RangeResolver rangeResolver, DownloadEngine engine, VideoContentCache contentCache,
+                           VideoStorage storage, VideoMetrics metrics, VideoTracing tracing) {
+        this.rangeResolver = rangeResolver;
+        this.engine = engine;
+        this.contentCache = contentCache;
+        this.storage = storage;
+        this.metrics = metrics;
+        this.tracing = tracing;
+    }
+
+    /**
+     * Write a video file to the response. Answers 206 with the requested ranges when the request has a satisfiable
+     * Range header, otherwise 200 with the whole file. The ranges in the cached content of a popular file are written
+     * from memory, a file on a local disk is sent by the download engine, and any other file is streamed from the
+     * video storage.
+     *
+     * @param video          Video file
+     * @param requestHeaders Request headers
+     * @param request        Current request
+     * @param response       Response to write to
+     * @throws IOException                  File read or response write exception
+     * @throws RangeNotSatisfiableException None of the requested ranges overlaps the file
+     */
+    public void download(VideoFile video, HttpHeaders requestHeaders, HttpServletRequest request,
+                         HttpServletResponse response) throws IOException, RangeNotSatisfiableException {
+
+        File file = video.getKey() == null ? video.getFile() : storage.getLocalFile(video.getKey());
+        long fileLength = video.getLength();
+        long lastModified = video.getLastModified();
+        String eTag = createETag(fileLength, lastModified);
+
+        List<ByteRange> ranges = rangeResolver.resolve(requestHeaders, fileLength, eTag, lastModified);
+
+        MediaType contentType = resolveContentType(video.getName());
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + video.getName() + "\"");
+
+        String outcome = VideoMetrics.FAILURE;
+        long bytes = 0;
+        Timer.Sample sample = metrics.startDownload();
+        TracedPhase phase = tracing.start("video.write").tag("ranges", describe(ranges));
+        CachedContent content = file == null ? null : contentCache.acquire(file, fileLength, lastModified);
+        try {
+            phase.tag("source", content != null ? "cache" : file != null ? "file" : "storage");
+            if (ranges.isEmpty()) {
+                writeFull(video, file, content, contentType, request, response);
+            } else if (ranges.size() == 1) {
+                writeSingleRange(video, file, content, ranges.get(0), contentType, request, response);
+            } else {
+                writeMultipleRanges(video, file, content, ranges, contentType, response);
+            }
+            outcome = VideoMetrics.SUCCESS;
+            bytes = contentLength(ranges, fileLength);
+            if (engine.isHandedOver(request)) {
+                phase.handedOver(bytes, "sendfile");
+            } else {
+                phase.transferred(bytes);
+            }
+        } catch (IOException | RuntimeException e) {
+            phase.error(e);
+            throw e;
+        } finally {
+            if (content != null) {
+                content.release();
+            }
+            phase.close();
+            metrics.stopDownload(sample, outcome, describe(ranges), bytes);
+        }
+    }
+
+    /**
+     * Return the video content type for a file name, 'application/octet-stream' for an unknown extension.
+     *
+     * @param fileName File name
+     * @return Content type
+     */
+    public MediaType resolveContentType(String fileName) {
+        String extension = FilenameUtils.getExtension(fileName).toLowerCase();
+        return CONTENT_TYPES.getOrDefault(extension, MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    private String describe(List<ByteRange> ranges) {
+        return ranges.isEmpty() ? "whole" : ranges.size() == 1 ? "single" : "multiple";
+    }
+
+    private long contentLength(List<ByteRange> ranges, long fileLength) {
+        return ranges.isEmpty() ? fileLength : ranges.stream().mapToLong(ByteRange::getLength).sum();
+    }
+
+    private String createETag(long fileLength, long lastModified) {
+        return "\"" + Long.toHexString(fileLength) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    private void writeFull(VideoFile video, File file, CachedContent content, MediaType contentType,
+                           HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        long fileLength = video.getLength();
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(contentType.toString());
+        response.setContentLengthLong(fileLength);
+
+        if (fileLength > 0) {
+            send(video, file, content, new ByteRange(0, fileLength - 1), request, response);
+        }
+    }
+
+    private void writeSingleRange(VideoFile video, File file, CachedContent content, ByteRange range,
+                                  MediaType contentType, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType(contentType.toString());
+        response.setHeader(HttpHeaders.CONTENT_RANGE, range.toContentRange(video.getLength()));
+        response.setContentLengthLong(range.getLength());
+
+        send(video, file, content, range, request, response);
+    }
+
+    private void writeMultipleRanges(VideoFile video, File file, CachedContent content, List<ByteRange> ranges,
+                                     MediaType contentType, HttpServletResponse response) throws IOException {
+
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+
+        List<byte[]> partHeaders = new ArrayList<>();
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            byte[] partHeader = (CRLF + "--" + boundary + CRLF
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + CRLF
+                    + HttpHeaders.CONTENT_RANGE + ": " + range.toContentRange(video.getLength()) + CRLF
+                    + CRLF).getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + range.getLength();
+        }
+        byte[] closeDelimiter = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+        contentLength += closeDelimiter.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+
+        OutputStream out = response.getOutputStream();
+        for (int i = 0; i < ranges.size(); i++) {
+            out.write(partHeaders.get(i));
+            ByteRange range = ranges.get(i);
+            if (content != null && content.covers(range)) {
+                content.write(range, out);
+            } else if (file != null) {
+                engine.copy(file, range, out);
+            } else {
+                copyFromStorage(video, range, out);
+            }
+        }
+        out.write(closeDelimiter);
+    }
+
+    private void send(VideoFile video, File file, CachedContent content, ByteRange range,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        if (content != null && content.covers(range)) {
+            content.write(range, response.getOutputStream());
+        } else if (file != null) {
+            engine.send(file, range, request, response);
+        } else {
+            copyFromStorage(video, range, response.getOutputStream());
+        }
+    }
+
+    private void copyFromStorage(VideoFile video, ByteRange range, OutputStream out) throws IOException {
+        try (InputStream in = storage.get(video.getKey(), range)) {
+            in.transferTo(out);
+        }
+    }
+}
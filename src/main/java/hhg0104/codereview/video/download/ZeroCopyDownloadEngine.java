@@ -0,0 +1,92 @@
+package hhg0104.codereview.video.download;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * This is a download engine avoiding the heap copies of the file bytes.
+ * <p>
+ * A whole response body is handed over to the container's sendfile support when it is available (Tomcat NIO),
+ * so the bytes go from the page cache to the socket in the kernel. Otherwise, and for the parts of a multipart
+ * response, the bytes are moved with {@link FileChannel#transferTo}.
+ */
+@Component
+@ConditionalOnProperty(name = "file.download.engine", havingValue = "zero-copy", matchIfMissing = true)
+public class ZeroCopyDownloadEngine implements DownloadEngine {
+
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Same threshold as Tomcat's DefaultServlet, a smaller body is cheaper to write directly.
+     */
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    @Override
+    public void send(File file, ByteRange range, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+
+        if (range.getLength() >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.getCanonicalPath());
+            request.setAttribute(SENDFILE_START_ATTR, range.getStart());
+            request.setAttribute(SENDFILE_END_ATTR, range.getEnd() + 1);
+            return;
+        }
+
+        copy(file, range, response.getOutputStream());
+    }
+
+    @Override
+    public boolean isHandedOver(HttpServletRequest request) {
+        return request.getAttribute(SENDFILE_FILENAME_ATTR) != null;
+    }
+
+    @Override
+    public void copy(File file, ByteRange range, OutputStream out) throws IOException {
+        copy(file, List.of(range), out);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The target is a channel over the stream, not a socket, so the bytes pass a buffer of the JDK on the way.
+     */
+    @Override
+    public void copy(File file, List<ByteRange> ranges, OutputStream out) throws IOException {
+
+        // The target channel wraps the response stream, it must not be closed here.
+        WritableByteChannel target = Channels.newChannel(out);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for (ByteRange range : ranges) {
+                long position = range.getStart();
+                long remaining = range.getLength();
+                while (remaining > 0) {
+                    long transferred = channel.transferTo(position, remaining, target);
+                    if (transferred <= 0) {
+                        throw new EOFException("The file was truncated while sending it: " + file.getName());
+                    }
+                    position += transferred;
+                    remaining -= transferred;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package hhg0104.codereview.video.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * A blob which was replaced by another one, e.g. its fast-start remux, and is deleted after a grace period unless
+ * a live file references it again by then.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "blob_deletion", indexes = {
+        @Index(name = "idx_blob_deletion_delete_after", columnList = "delete_after, content_hash")
+})
+public class BlobDeletionEntity {
+
+    @Id
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "delete_after", nullable = false)
+    private LocalDateTime deleteAfter;
+}
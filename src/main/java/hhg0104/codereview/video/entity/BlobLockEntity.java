@@ -0,0 +1,28 @@
+package hhg0104.codereview.video.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A row of a blob which is being deleted, or stored and referenced by an update which does not reference it yet.
+ * The row is locked for the reference check and the delete of the blob, so every API node sharing the video
+ * storage sees the same order of them. The row is deleted with the blob.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "blob_lock")
+public class BlobLockEntity {
+
+    @Id
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+}
@@ -0,0 +1,76 @@
+package hhg0104.codereview.video.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import hhg0104.codereview.video.media.MediaContainer;
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Media attributes of a video file, read from its container while it was uploaded. An attribute the container does
+ * not tell is null, and all of them are null for a file uploaded before they were recorded.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Embeddable
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MediaInfo {
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private MediaContainer container;
+
+    @Column(name = "duration_ms")
+    @JsonProperty("duration_ms")
+    private Long durationMillis;
+
+    /**
+     * Sample entry type of the first video track, e.g. 'avc1', or 'mpeg2video' of an MPEG stream.
+     */
+    @Column(name = "video_codec", length = 16)
+    @JsonProperty("video_codec")
+    private String videoCodec;
+
+    /**
+     * Sample entry type of the first audio track, e.g. 'mp4a'.
+     */
+    @Column(name = "audio_codec", length = 16)
+    @JsonProperty("audio_codec")
+    private String audioCodec;
+
+    private Integer width;
+
+    private Integer height;
+
+    /**
+     * Average bits per second over the whole file, or the mux rate of an MPEG program stream.
+     */
+    @Column(name = "bit_rate")
+    @JsonProperty("bit_rate")
+    private Long bitRate;
+
+    /**
+     * Offset of the moov box of an MP4 file. Behind the media data, a player has to read the whole file before
+     * it can start.
+     */
+    @Column(name = "moov_offset")
+    @JsonIgnore
+    private Long moovOffset;
+
+    /**
+     * Whether the moov box of an MP4 file comes before the media data, so a player can start before the whole
+     * file is downloaded.
+     */
+    @Column(name = "fast_start")
+    @JsonProperty("fast_start")
+    private Boolean fastStart;
+}
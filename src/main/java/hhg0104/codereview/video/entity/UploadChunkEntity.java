@@ -0,0 +1,47 @@
+package hhg0104.codereview.video.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * A chunk of an upload session which is completely written to the staging file.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@IdClass(UploadChunkEntity.ChunkId.class)
+@Table(name = "upload_chunk")
+public class UploadChunkEntity {
+
+    @Id
+    @Column(name = "upload_id", nullable = false, length = 36)
+    private String uploadId;
+
+    @Id
+    @Column(name = "chunk_index", nullable = false)
+    private int chunkIndex;
+
+    @Getter
+    @Setter
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ChunkId implements Serializable {
+
+        private String uploadId;
+
+        private int chunkIndex;
+    }
+}
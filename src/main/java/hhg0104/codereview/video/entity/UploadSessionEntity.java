@@ -0,0 +1,72 @@
+package hhg0104.codereview.video.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "upload_session")
+public class UploadSessionEntity {
+
+    @Id
+    @Column(name = "upload_id", nullable = false, length = 36)
+    @JsonProperty("upload_id")
+    private String uploadId;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Column(nullable = false)
+    private long size;
+
+    @Column(name = "chunk_size", nullable = false)
+    @JsonProperty("chunk_size")
+    private long chunkSize;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, columnDefinition = "DATETIME DEFAULT CURRENT_TIMESTAMP")
+    @JsonProperty("created_at")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime createdAt;
+
+    /**
+     * Time the last chunk was written, or the creation time. A session idle for the session TTL is expired.
+     */
+    @Column(name = "last_written_at")
+    @JsonProperty("last_written_at")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime lastWrittenAt;
+
+    /**
+     * Chunk count, which is limited by the max chunk count when a session is created.
+     */
+    public int getChunkCount() {
+        return Math.toIntExact(getChunkCount(size, chunkSize));
+    }
+
+    public static long getChunkCount(long size, long chunkSize) {
+        return size / chunkSize + (size % chunkSize == 0 ? 0 : 1);
+    }
+
+    public long getChunkOffset(int chunkIndex) {
+        return chunkIndex * chunkSize;
+    }
+
+    public long getChunkLength(int chunkIndex) {
+        return Math.min(chunkSize, size - getChunkOffset(chunkIndex));
+    }
+}
@@ -1,13 +1,20 @@
 package hhg0104.codereview.video.entity;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.Column;
+import jakarta.persistence.Embedded;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import jakarta.persistence.TemporalType;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -24,11 +31,25 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "video")
+@Table(name = "video", indexes = {
+        @Index(name = "idx_video_created_at", columnList = "created_at, file_id"),
+        @Index(name = "idx_video_size", columnList = "size, file_id"),
+        @Index(name = "idx_video_name", columnList = "name, file_id"),
+        @Index(name = "idx_video_content_hash", columnList = "content_hash"),
+        @Index(name = "idx_video_state", columnList = "state, state_changed_at"),
+        @Index(name = "idx_video_duration", columnList = "duration_ms, file_id"),
+        @Index(name = "idx_video_height", columnList = "height, file_id"),
+        @Index(name = "idx_video_video_codec", columnList = "video_codec, file_id")
+}, uniqueConstraints = @UniqueConstraint(name = "uk_video_live_name", columnNames = "live_name"))
 public class VideoEntity {
 
+    /**
+     * Drawn from a sequence by the pooled optimizer, 50 IDs per round trip. Unlike an identity column, the ID is
+     * known before the insert, so Hibernate can send the inserts of a batch upload in JDBC batches.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "video_seq")
+    @SequenceGenerator(name = "video_seq", sequenceName = "video_seq", allocationSize = 50)
     @Column(name = "file_id", nullable = false)
     @JsonProperty("file_id")
     private long fileId;
@@ -39,9 +60,45 @@ public class VideoEntity {
     @Column(nullable = false)
     private long size;
 
+    /**
+     * SHA-256 hash of the content, which names the blob of the file. Null for a file stored by its name before
+     * the content-addressed store.
+     */
+    @Column(name = "content_hash", length = 64)
+    @JsonProperty("content_hash")
+    private String contentHash;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, columnDefinition = "DATETIME DEFAULT CURRENT_TIMESTAMP")
     @JsonProperty("created_at")
-    @JsonFormat(pattern = "yyyy-MM-dd hh:mm:ss")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime createdAt;
+
+    /**
+     * Only an ACTIVE file is visible, see {@link VideoState}. The rows from before the states are ACTIVE.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, columnDefinition = "VARCHAR(16) DEFAULT 'ACTIVE'")
+    @JsonIgnore
+    private VideoState state;
+
+    @Column(name = "state_changed_at")
+    @JsonIgnore
+    private LocalDateTime stateChangedAt;
+
+    /**
+     * Read from the container while the file was uploaded, null for a file uploaded before.
+     */
+    @Embedded
+    private MediaInfo media;
+
+    /**
+     * The name while the file is live, null otherwise, computed by the DB from the name and the state. Its unique
+     * constraint is what keeps two uploads of the same name from both inserting a live file.
+     */
+    @Column(name = "live_name", insertable = false, updatable = false,
+            columnDefinition = "VARCHAR(255) GENERATED ALWAYS AS "
+                    + "(CASE WHEN state IN ('PENDING', 'STORED', 'ACTIVE') THEN name END)")
+    @JsonIgnore
+    private String liveName;
 }
@@ -0,0 +1,43 @@
+package hhg0104.codereview.video.entity;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Lifecycle of a video file. An upload goes PENDING -> STORED -> ACTIVE and a delete ACTIVE -> DELETING -> GONE.
+ * The file transfer happens between two states, outside any DB transaction, and every transition is one short
+ * update. A file left in a state by a failed or interrupted transfer is moved on by the reaper.
+ */
+public enum VideoState {
+
+    /**
+     * The name is reserved and the content is being written.
+     */
+    PENDING,
+
+    /**
+     * The content is in the video storage, but the file is not visible yet.
+     */
+    STORED,
+
+    /**
+     * The file is listed and can be downloaded.
+     */
+    ACTIVE,
+
+    /**
+     * The file is deleted and its content is being reclaimed.
+     */
+    DELETING,
+
+    /**
+     * The content is reclaimed and the row is purged by the reaper.
+     */
+    GONE;
+
+    /**
+     * States in which a file holds its name and references its blob. The live name column of
+     * {@link VideoEntity} lists them as well.
+     */
+    public static final Set<VideoState> LIVE = EnumSet.of(PENDING, STORED, ACTIVE);
+}
@@ -0,0 +1,122 @@
+package hhg0104.codereview.video.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import hhg0104.codereview.video.response.FileInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * This is a class to export the whole file catalog.
+ * <p>
+ * The video table is read with a forward-only JDBC cursor and every row is written out as soon as it is read,
+ * without entities or a persistence context, so the memory use doesn't depend on the table size.
+ */
+@Component
+public class CatalogExporter {
+
+    private static final String EXPORT_QUERY = "select file_id, name, size, created_at from video where state = 'ACTIVE' order by file_id";
+
+    private static final String CSV_HEADER = "file_id,name,size,created_at\n";
+
+    private static final DateTimeFormatter CREATED_AT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final int FLUSH_INTERVAL = 1000;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private ObjectWriter fileInfoWriter;
+
+    @Autowired
+    public CatalogExporter(DataSource dataSource, ObjectMapper objectMapper,
+                           @Value("${file.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        // The rows are flushed in batches, not after every value.
+        this.fileInfoWriter = objectMapper.writerFor(FileInfo.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Write every file of the catalog, ordered by the file id.
+     *
+     * @param format Export format
+     * @param writer Writer to write to, it is flushed every 1000 rows
+     * @throws IOException Write exception
+     */
+    public void export(ExportFormat format, Writer writer) throws IOException {
+
+        JsonGenerator generator = fileInfoWriter.createGenerator(writer);
+        generator.setRootValueSeparator(null);
+        if (format == ExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+        }
+
+        int[] rowCount = {0};
+        try {
+            jdbcTemplate.query(EXPORT_QUERY, resultSet -> {
+                try {
+                    if (format == ExportFormat.CSV) {
+                        writeCsv(resultSet, writer);
+                    } else {
+                        writeJson(resultSet, generator);
+                    }
+
+                    if (++rowCount[0] % FLUSH_INTERVAL == 0) {
+                        generator.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        generator.flush();
+    }
+
+    private void writeJson(ResultSet resultSet, JsonGenerator generator) throws SQLException, IOException {
+        fileInfoWriter.writeValue(generator, toFileInfo(resultSet));
+        generator.writeRaw('\n');
+    }
+
+    private void writeCsv(ResultSet resultSet, Writer writer) throws SQLException, IOException {
+
+        FileInfo file = toFileInfo(resultSet);
+
+        writer.write(String.valueOf(file.getFileId()));
+        writer.write(',');
+        writer.write(escapeCsv(file.getName()));
+        writer.write(',');
+        writer.write(String.valueOf(file.getSize()));
+        writer.write(',');
+        writer.write(file.getCreatedAt() == null ? "" : CREATED_AT_FORMAT.format(file.getCreatedAt()));
+        writer.write('\n');
+    }
+
+    private FileInfo toFileInfo(ResultSet resultSet) throws SQLException {
+        return new FileInfo(resultSet.getLong("file_id"), resultSet.getString("name"), resultSet.getLong("size"),
+                resultSet.getObject("created_at", LocalDateTime.class));
+    }
+
+    private String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,29 @@
+package hhg0104.codereview.video.export;
+
+import hhg0104.codereview.exception.InvalidRequestException;
+import lombok.Getter;
+
+@Getter
+public enum ExportFormat {
+
+    NDJSON("ndjson", "application/x-ndjson"),
+    CSV("csv", "text/csv");
+
+    private final String parameter;
+
+    private final String contentType;
+
+    ExportFormat(String parameter, String contentType) {
+        this.parameter = parameter;
+        this.contentType = contentType;
+    }
+
+    public static ExportFormat of(String parameter) throws InvalidRequestException {
+        for (ExportFormat format : values()) {
+            if (format.parameter.equals(parameter)) {
+                return format;
+            }
+        }
+        throw new InvalidRequestException("The format must be ndjson or csv.");
+    }
+}
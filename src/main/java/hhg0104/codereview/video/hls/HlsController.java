@@ -0,0 +1,134 @@
+package hhg0104.codereview.video.hls;
+
+import hhg0104.codereview.exception.UnsupportedFileException;
+import hhg0104.codereview.video.VideoFile;
+import hhg0104.codereview.video.VideoService;
+import hhg0104.codereview.video.property.FileProperties;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * This is a controller class for the HLS streams of the stored MP4 files. A player opens the master playlist of a
+ * file, and the segment index is computed from the sample tables of the file on the first request.
+ */
+@RestController
+public class HlsController {
+
+    private static final MediaType PLAYLIST = MediaType.parseMediaType("application/vnd.apple.mpegurl");
+
+    private static final MediaType VIDEO_MP4 = MediaType.parseMediaType("video/mp4");
+
+    private VideoService service;
+
+    private HlsPackager packager;
+
+    private FileProperties fileProp;
+
+
+    @Autowired
+    public HlsController(VideoService service, HlsPackager packager, FileProperties fileProp) {
+        this.service = service;
+        this.packager = packager;
+        this.fileProp = fileProp;
+    }
+
+    /**
+     * Master playlist of a video file.
+     *
+     * @param fileId File id
+     * @return Master playlist
+     * @throws FileNotFoundException    There is no such file
+     * @throws UnsupportedFileException The file is not an MP4 file with a video track
+     */
+    @GetMapping("/files/{fileid}/hls/master.m3u8")
+    public ResponseEntity<String> masterPlaylist(@PathVariable(value = "fileid") long fileId) throws IOException,
+            UnsupportedFileException {
+
+        HlsIndex index = packager.getIndex(service.fetchFile(fileId));
+        return ResponseEntity.ok()
+                .contentType(PLAYLIST)
+                .cacheControl(cacheControl())
+                .body(packager.createMasterPlaylist(index));
+    }
+
+    /**
+     * Media playlist of a video file, all of its segments.
+     *
+     * @param fileId File id
+     * @return Media playlist
+     * @throws FileNotFoundException    There is no such file
+     * @throws UnsupportedFileException The file is not an MP4 file with a video track
+     */
+    @GetMapping("/files/{fileid}/hls/media.m3u8")
+    public ResponseEntity<String> mediaPlaylist(@PathVariable(value = "fileid") long fileId) throws IOException,
+            UnsupportedFileException {
+
+        HlsIndex index = packager.getIndex(service.fetchFile(fileId));
+        return ResponseEntity.ok()
+                .contentType(PLAYLIST)
+                .cacheControl(cacheControl())
+                .body(packager.createMediaPlaylist(index));
+    }
+
+    /**
+     * Initialization segment of a video file.
+     *
+     * @param fileId File id
+     * @return Initialization segment
+     * @throws FileNotFoundException    There is no such file
+     * @throws UnsupportedFileException The file is not an MP4 file with a video track
+     */
+    @GetMapping("/files/{fileid}/hls/init.mp4")
+    public ResponseEntity<byte[]> initSegment(@PathVariable(value = "fileid") long fileId) throws IOException,
+            UnsupportedFileException {
+
+        HlsIndex index = packager.getIndex(service.fetchFile(fileId));
+        return ResponseEntity.ok()
+                .contentType(VIDEO_MP4)
+                .cacheControl(cacheControl())
+                .body(index.getInitSegment());
+    }
+
+    /**
+     * Media segment of a video file.
+     *
+     * @param fileId   File id
+     * @param segment  Segment index, from 0
+     * @param response Response to write to
+     * @throws FileNotFoundException    There is no such file or segment
+     * @throws UnsupportedFileException The file is not an MP4 file with a video track
+     */
+    @GetMapping("/files/{fileid}/hls/segment-{segment}.m4s")
+    public void segment(@PathVariable(value = "fileid") long fileId, @PathVariable(value = "segment") int segment,
+                        HttpServletResponse response) throws IOException, UnsupportedFileException {
+
+        VideoFile video = service.fetchFile(fileId);
+        HlsIndex index = packager.getIndex(video);
+        if (segment < 0 || segment >= index.getSegmentCount()) {
+            throw new FileNotFoundException("There is no such segment of this file: " + segment);
+        }
+
+        byte[] header = index.getSegmentHeader(segment);
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(VIDEO_MP4.toString());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl().getHeaderValue());
+        response.setContentLengthLong(header.length + index.getPayloadLength(segment));
+
+        packager.writeSegment(video, index, segment, header, response.getOutputStream());
+    }
+
+    private CacheControl cacheControl() {
+        return CacheControl.maxAge(fileProp.getHlsCacheMaxAge()).cachePublic();
+    }
+}
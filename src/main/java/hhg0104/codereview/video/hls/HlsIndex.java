@@ -0,0 +1,360 @@
+package hhg0104.codereview.video.hls;
+
+import hhg0104.codereview.exception.UnsupportedFileException;
+import hhg0104.codereview.video.download.ByteRange;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is the segment index of a stored MP4 file, computed once from its sample tables.
+ * <p>
+ * The file is cut at the sync samples of its video track, each segment at least the target duration long, and the
+ * samples of the other tracks go to the segment their decode times fall in. A segment is served as a fragment of
+ * fragmented MP4: a moof box built from the sample tables, and an mdat box whose payload is the byte ranges of its
+ * samples in the stored file, in the track order. So a segment is a lookup of its first samples and a copy of
+ * a few ranges of the file, and the file is never rewritten.
+ */
+public class HlsIndex {
+
+    private static final int TRUN_DATA_OFFSET = 0x000001;
+
+    private static final int TRUN_SAMPLE_DURATION = 0x000100;
+
+    private static final int TRUN_SAMPLE_SIZE = 0x000200;
+
+    private static final int TRUN_SAMPLE_FLAGS = 0x000400;
+
+    private static final int TRUN_COMPOSITION_OFFSET = 0x000800;
+
+    private static final int TFHD_DEFAULT_BASE_IS_MOOF = 0x020000;
+
+    /**
+     * sample_depends_on 2, an independent sample.
+     */
+    private static final int SYNC_SAMPLE_FLAGS = 0x02000000;
+
+    /**
+     * sample_depends_on 1 and sample_is_non_sync_sample.
+     */
+    private static final int NON_SYNC_SAMPLE_FLAGS = 0x01010000;
+
+    private final List<HlsTrack> tracks;
+
+    private final HlsTrack video;
+
+    /**
+     * First sample of each segment in each track, and the sample count of the track as the last entry.
+     */
+    private final int[][] firstSamples;
+
+    /**
+     * Byte ranges of the mdat payload of each segment, computed once as they are read by every segment request.
+     */
+    private final List<List<ByteRange>> segmentRanges;
+
+    private final byte[] initSegment;
+
+    /**
+     * Cut the tracks of a movie into segments.
+     *
+     * @param mvhd                  Movie header box
+     * @param tracks                Video and audio tracks
+     * @param targetDurationMillis  Shortest segment, but the last one
+     * @throws UnsupportedFileException The movie has no video track
+     */
+    HlsIndex(byte[] mvhd, List<HlsTrack> tracks, long targetDurationMillis) throws UnsupportedFileException {
+
+        this.tracks = tracks;
+        this.video = tracks.stream()
+                .filter(track -> track.handler.equals(HlsTrack.VIDEO) && track.sampleCount() > 0)
+                .findFirst()
+                .orElseThrow(() -> new UnsupportedFileException("There is no video track to stream in this file."));
+
+        List<Integer> segmentStarts = new ArrayList<>();
+        segmentStarts.add(0);
+        long[] videoTimes = video.decodeTimes;
+        for (int i = 1; i < video.sampleCount(); i++) {
+            long elapsedMillis = (videoTimes[i] - videoTimes[segmentStarts.get(segmentStarts.size() - 1)]) * 1000
+                    / video.timescale;
+            if (video.isSync(i) && elapsedMillis >= targetDurationMillis) {
+                segmentStarts.add(i);
+            }
+        }
+
+        int segmentCount = segmentStarts.size();
+        this.firstSamples = new int[tracks.size()][];
+        for (int t = 0; t < tracks.size(); t++) {
+            HlsTrack track = tracks.get(t);
+            int[] first = new int[segmentCount + 1];
+            first[segmentCount] = track.sampleCount();
+            int sample = 0;
+            for (int k = 1; k < segmentCount; k++) {
+                if (track == video) {
+                    first[k] = segmentStarts.get(k);
+                    continue;
+                }
+                // The first sample at or after the start of the segment, compared in both timescales.
+                long boundary = videoTimes[segmentStarts.get(k)];
+                while (sample < track.sampleCount()
+                        && track.decodeTimes[sample] * video.timescale < boundary * track.timescale) {
+                    sample++;
+                }
+                first[k] = sample;
+            }
+            firstSamples[t] = first;
+        }
+
+        List<List<ByteRange>> ranges = new ArrayList<>(segmentCount);
+        for (int k = 0; k < segmentCount; k++) {
+            ranges.add(List.copyOf(buildSegmentRanges(k)));
+        }
+        this.segmentRanges = List.copyOf(ranges);
+
+        this.initSegment = buildInitSegment(mvhd);
+    }
+
+    public int getSegmentCount() {
+        return firstSamples[0].length - 1;
+    }
+
+    /**
+     * Duration of a segment in seconds, by its video track.
+     */
+    public double getSegmentDuration(int segment) {
+        int videoIndex = tracks.indexOf(video);
+        long start = video.decodeTimes[firstSamples[videoIndex][segment]];
+        long end = video.decodeTimes[firstSamples[videoIndex][segment + 1]];
+        return (double) (end - start) / video.timescale;
+    }
+
+    /**
+     * Longest segment duration, rounded up to whole seconds.
+     */
+    public int getTargetDuration() {
+        double longest = 0;
+        for (int k = 0; k < getSegmentCount(); k++) {
+            longest = Math.max(longest, getSegmentDuration(k));
+        }
+        return (int) Math.ceil(longest);
+    }
+
+    /**
+     * Bits per second of the segment with the highest bit rate.
+     */
+    public long getPeakBandwidth() {
+        long peak = 0;
+        for (int k = 0; k < getSegmentCount(); k++) {
+            double duration = getSegmentDuration(k);
+            if (duration > 0) {
+                peak = Math.max(peak, (long) Math.ceil(getPayloadLength(k) * 8 / duration));
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Bits per second over the whole video.
+     */
+    public long getAverageBandwidth() {
+        long bytes = 0;
+        double duration = 0;
+        for (int k = 0; k < getSegmentCount(); k++) {
+            bytes += getPayloadLength(k);
+            duration += getSegmentDuration(k);
+        }
+        return duration > 0 ? (long) Math.ceil(bytes * 8 / duration) : 0;
+    }
+
+    public int getWidth() {
+        return video.width;
+    }
+
+    public int getHeight() {
+        return video.height;
+    }
+
+    /**
+     * RFC 6381 codecs of the tracks, comma separated, null when one of them is not known.
+     */
+    public String getCodecs() {
+        List<String> codecs = tracks.stream()
+                .map(track -> track.codec)
+                .distinct()
+                .toList();
+        return codecs.contains(null) ? null : String.join(",", codecs);
+    }
+
+    /**
+     * Initialization segment: a moov box with the sample descriptions of the tracks and empty sample tables.
+     */
+    public byte[] getInitSegment() {
+        return initSegment;
+    }
+
+    /**
+     * Build the moof box and the mdat box header of a segment, which precede its sample data.
+     *
+     * @param segment Segment index
+     * @return Bytes of the moof box and the mdat box header
+     */
+    public byte[] getSegmentHeader(int segment) {
+
+        // The sizes of the track fragments are needed for the data offsets, before they are written.
+        int moofSize = 8 + 16;
+        for (int t = 0; t < tracks.size(); t++) {
+            int count = sampleCount(t, segment);
+            if (count > 0) {
+                int perSample = tracks.get(t).compositionOffsets != null ? 16 : 12;
+                moofSize += 8 + 16 + 20 + 20 + count * perSample;
+            }
+        }
+        long payloadLength = getPayloadLength(segment);
+        if (8 + payloadLength > Integer.MAX_VALUE) {
+            throw new IllegalStateException("The segment is too large: " + payloadLength + " bytes");
+        }
+
+        Mp4Writer writer = new Mp4Writer();
+        writer.start("moof");
+        writer.start("mfhd", 0, 0).writeInt(segment + 1).end();
+
+        long dataOffset = moofSize + 8;
+        for (int t = 0; t < tracks.size(); t++) {
+            HlsTrack track = tracks.get(t);
+            int first = firstSamples[t][segment];
+            int count = sampleCount(t, segment);
+            if (count == 0) {
+                continue;
+            }
+
+            writer.start("traf");
+            writer.start("tfhd", 0, TFHD_DEFAULT_BASE_IS_MOOF).writeInt(track.trackId).end();
+            writer.start("tfdt", 1, 0).writeLong(track.decodeTimes[first]).end();
+
+            int flags = TRUN_DATA_OFFSET | TRUN_SAMPLE_DURATION | TRUN_SAMPLE_SIZE | TRUN_SAMPLE_FLAGS
+                    | (track.compositionOffsets != null ? TRUN_COMPOSITION_OFFSET : 0);
+            writer.start("trun", 1, flags).writeInt(count).writeInt((int) dataOffset);
+            for (int i = first; i < first + count; i++) {
+                writer.writeInt((int) (track.decodeTimes[i + 1] - track.decodeTimes[i]));
+                writer.writeInt(track.sizes[i]);
+                writer.writeInt(track.isSync(i) ? SYNC_SAMPLE_FLAGS : NON_SYNC_SAMPLE_FLAGS);
+                if (track.compositionOffsets != null) {
+                    writer.writeInt(track.compositionOffsets[i]);
+                }
+                dataOffset += track.sizes[i];
+            }
+            writer.end();
+            writer.end();
+        }
+        writer.end();
+
+        writer.writeInt((int) (8 + payloadLength)).writeType("mdat");
+
+        return writer.toByteArray();
+    }
+
+    /**
+     * Byte ranges of the stored file which make the mdat payload of a segment. The adjacent samples of a track are
+     * merged into one range, so an interleaved file has a few ranges per track.
+     *
+     * @param segment Segment index
+     * @return Byte ranges in the order they are sent
+     */
+    public List<ByteRange> getSegmentRanges(int segment) {
+        return segmentRanges.get(segment);
+    }
+
+    private List<ByteRange> buildSegmentRanges(int segment) {
+
+        List<ByteRange> ranges = new ArrayList<>();
+        for (int t = 0; t < tracks.size(); t++) {
+            HlsTrack track = tracks.get(t);
+            int first = firstSamples[t][segment];
+            int end = first + sampleCount(t, segment);
+
+            int i = first;
+            while (i < end) {
+                long start = track.offsets[i];
+                long next = start;
+                while (i < end && track.offsets[i] == next) {
+                    next += track.sizes[i++];
+                }
+                if (next > start) {
+                    ranges.add(new ByteRange(start, next - 1));
+                }
+            }
+        }
+
+        return ranges;
+    }
+
+    /**
+     * Length of the mdat payload of a segment.
+     */
+    public long getPayloadLength(int segment) {
+        long length = 0;
+        for (int t = 0; t < tracks.size(); t++) {
+            HlsTrack track = tracks.get(t);
+            int first = firstSamples[t][segment];
+            for (int i = first; i < first + sampleCount(t, segment); i++) {
+                length += track.sizes[i];
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Approximate heap size of the index, for the cache budget.
+     */
+    public long weight() {
+        // A byte range is an object of two longs, 32 bytes, and its reference in the list.
+        long rangeCount = segmentRanges.stream().mapToLong(List::size).sum();
+        return tracks.stream().mapToLong(HlsTrack::weight).sum()
+                + (long) firstSamples.length * firstSamples[0].length * 4 + initSegment.length
+                + rangeCount * 40 + segmentRanges.size() * 16L;
+    }
+
+    private int sampleCount(int track, int segment) {
+        return firstSamples[track][segment + 1] - firstSamples[track][segment];
+    }
+
+    private byte[] buildInitSegment(byte[] mvhd) {
+
+        Mp4Writer writer = new Mp4Writer();
+        writer.start("ftyp").writeType("iso6").writeInt(0).writeType("iso6").writeType("mp41").end();
+
+        writer.start("moov").write(mvhd);
+        for (HlsTrack track : tracks) {
+            writer.start("trak").write(track.tkhd);
+            if (track.edts != null) {
+                writer.write(track.edts);
+            }
+            writer.start("mdia").write(track.mdhd).write(track.hdlr);
+            writer.start("minf");
+            if (track.mediaHeader != null) {
+                writer.write(track.mediaHeader);
+            }
+            if (track.dinf != null) {
+                writer.write(track.dinf);
+            } else {
+                // A data reference to this file.
+                writer.start("dinf").start("dref", 0, 0).writeInt(1).start("url ", 0, 1).end().end().end();
+            }
+            writer.start("stbl").write(track.stsd);
+            writer.start("stts", 0, 0).writeInt(0).end();
+            writer.start("stsc", 0, 0).writeInt(0).end();
+            writer.start("stsz", 0, 0).writeInt(0).writeInt(0).end();
+            writer.start("stco", 0, 0).writeInt(0).end();
+            writer.end().end().end().end();
+        }
+
+        writer.start("mvex");
+        for (HlsTrack track : tracks) {
+            writer.start("trex", 0, 0).writeInt(track.trackId).writeInt(1).writeInt(0).writeInt(0).writeInt(0).end();
+        }
+        writer.end();
+        writer.end();
+
+        return writer.toByteArray();
+    }
+}
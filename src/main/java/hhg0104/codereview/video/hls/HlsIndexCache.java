@@ -0,0 +1,98 @@
+package hhg0104.codereview.video.hls;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import hhg0104.codereview.exception.UnsupportedFileException;
+import hhg0104.codereview.video.property.FileProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * This is a bounded in-process cache of the segment indexes of the streamed files.
+ * <p>
+ * An index is computed from the sample tables of a file once, on the first playlist or segment request of the file,
+ * and it is weighed by its expanded tables, so a budget holds many short videos or a few long ones. Concurrent
+ * requests of a file which is not cached wait for a single build of its index.
+ */
+@Component
+public class HlsIndexCache {
+
+    private final Cache<String, HlsIndex> cache;
+
+    /**
+     * Builds an index on a cache miss.
+     */
+    @FunctionalInterface
+    public interface Loader {
+
+        HlsIndex load(String key) throws IOException, UnsupportedFileException;
+    }
+
+    @Autowired
+    public HlsIndexCache(FileProperties fileProp) {
+        this(fileProp.getHlsIndexCacheBudget().toBytes());
+    }
+
+    public HlsIndexCache(long budget) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(budget)
+                .weigher((String key, HlsIndex index) -> (int) Math.min(Integer.MAX_VALUE, index.weight()))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Return the cached index of a file, null when it is not cached.
+     *
+     * @param key Content hash of the file, or its path and last modified time for a file stored by its name
+     */
+    public HlsIndex get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Return the cached index of a file, built and cached when it is not. Concurrent misses of a file wait for
+     * a single build.
+     *
+     * @param key    Content hash of the file, or its path and last modified time for a file stored by its name
+     * @param loader Builder of the index
+     * @return Cached or built index
+     * @throws IOException              Read exception, nothing is cached
+     * @throws UnsupportedFileException The file cannot be segmented, nothing is cached
+     */
+    public HlsIndex get(String key, Loader loader) throws IOException, UnsupportedFileException {
+        try {
+            return cache.get(key, k -> {
+                try {
+                    return loader.load(k);
+                } catch (IOException | UnsupportedFileException e) {
+                    throw new LoadException(e);
+                }
+            });
+        } catch (LoadException e) {
+            if (e.getCause() instanceof UnsupportedFileException unsupported) {
+                throw unsupported;
+            }
+            throw (IOException) e.getCause();
+        }
+    }
+
+    /**
+     * Underlying cache, for the metrics binding.
+     */
+    public Cache<String, HlsIndex> getNativeCache() {
+        return cache;
+    }
+
+    /**
+     * Carries a checked exception of a loader out of the cache.
+     */
+    private static final class LoadException extends RuntimeException {
+
+        private LoadException(Exception cause) {
+            super(cause);
+        }
+    }
+}
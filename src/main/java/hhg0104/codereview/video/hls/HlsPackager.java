@@ -0,0 +1,221 @@
+package hhg0104.codereview.video.hls;
+
+import hhg0104.codereview.exception.UnsupportedFileException;
+import hhg0104.codereview.video.VideoFile;
+import hhg0104.codereview.video.download.ByteRange;
+import hhg0104.codereview.video.download.DownloadEngine;
+import hhg0104.codereview.video.property.FileProperties;
+import hhg0104.codereview.video.storage.VideoStorage;
+import hhg0104.codereview.video.tracing.TracedPhase;
+import hhg0104.codereview.video.tracing.VideoTracing;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * This is a class to package a stored MP4 file as an HLS stream of fragmented MP4 segments, without transcoding
+ * or rewriting the file.
+ * <pre>
+ * master.m3u8     the variant stream of the file, with its bandwidth, resolution and codecs
+ * media.m3u8      the segments and their durations
+ * init.mp4        the initialization segment, the sample descriptions of the tracks
+ * segment-N.m4s   a moof box and an mdat box header, followed by the sample data copied from the file
+ * </pre>
+ * The sample data of a file on a local disk is copied by the download engine, which opens the file once per
+ * segment. It is a copy through a buffer into the response stream, not a sendfile, as a segment is a header
+ * followed by many ranges of the file. The sample data of a remote object is read by the byte ranges of the video
+ * storage.
+ */
+@Component
+public class HlsPackager {
+
+    private static final String SEGMENT_URI = "segment-%d.m4s";
+
+    private VideoStorage storage;
+
+    private DownloadEngine engine;
+
+    private HlsIndexCache indexCache;
+
+    private FileProperties fileProp;
+
+    private VideoTracing tracing;
+
+    @Autowired
+    public HlsPackager(VideoStorage storage, DownloadEngine engine, HlsIndexCache indexCache,
+                       FileProperties fileProp, VideoTracing tracing) {
+        this.storage = storage;
+        this.engine = engine;
+        this.indexCache = indexCache;
+        this.fileProp = fileProp;
+        this.tracing = tracing;
+    }
+
+    /**
+     * Return the segment index of a file, computed from its sample tables when it is not cached. Concurrent requests
+     * of a file which is not cached share one computation.
+     *
+     * @param video Video file
+     * @return Segment index
+     * @throws IOException              File read exception
+     * @throws UnsupportedFileException The file is not an MP4 file with a video track
+     */
+    public HlsIndex getIndex(VideoFile video) throws IOException, UnsupportedFileException {
+
+        // A file stored by its name can be replaced, an object in the video storage never is.
+        String cacheKey = video.getKey() != null
+                ? video.getKey()
+                : video.getFile().getPath() + "@" + video.getLastModified();
+
+        return indexCache.get(cacheKey, key -> {
+            TracedPhase phase = tracing.start("video.hls-index");
+            try {
+                HlsIndex index = buildIndex(video);
+                phase.tag("segments", Integer.toString(index.getSegmentCount()));
+                return index;
+            } catch (IOException | UnsupportedFileException | RuntimeException e) {
+                phase.error(e);
+                throw e;
+            } finally {
+                phase.close();
+            }
+        });
+    }
+
+    /**
+     * Write the master playlist, a single variant stream of the media playlist.
+     */
+    public String createMasterPlaylist(HlsIndex index) {
+
+        StringBuilder playlist = new StringBuilder()
+                .append("#EXTM3U\n")
+                .append("#EXT-X-VERSION:7\n")
+                .append("#EXT-X-INDEPENDENT-SEGMENTS\n")
+                .append("#EXT-X-STREAM-INF:BANDWIDTH=").append(Math.max(1, index.getPeakBandwidth()))
+                .append(",AVERAGE-BANDWIDTH=").append(Math.max(1, index.getAverageBandwidth()));
+        if (index.getWidth() > 0 && index.getHeight() > 0) {
+            playlist.append(",RESOLUTION=").append(index.getWidth()).append('x').append(index.getHeight());
+        }
+        if (index.getCodecs() != null) {
+            playlist.append(",CODECS=\"").append(index.getCodecs()).append('"');
+        }
+        playlist.append('\n')
+                .append("media.m3u8\n");
+
+        return playlist.toString();
+    }
+
+    /**
+     * Write the media playlist, a VOD playlist of all the segments.
+     */
+    public String createMediaPlaylist(HlsIndex index) {
+
+        StringBuilder playlist = new StringBuilder()
+                .append("#EXTM3U\n")
+                .append("#EXT-X-VERSION:7\n")
+                .append("#EXT-X-TARGETDURATION:").append(index.getTargetDuration()).append('\n')
+                .append("#EXT-X-MEDIA-SEQUENCE:0\n")
+                .append("#EXT-X-PLAYLIST-TYPE:VOD\n")
+                .append("#EXT-X-INDEPENDENT-SEGMENTS\n")
+                .append("#EXT-X-MAP:URI=\"init.mp4\"\n");
+        for (int k = 0; k < index.getSegmentCount(); k++) {
+            playlist.append(String.format(Locale.ROOT, "#EXTINF:%.3f,\n", index.getSegmentDuration(k)))
+                    .append(String.format(SEGMENT_URI, k)).append('\n');
+        }
+        playlist.append("#EXT-X-ENDLIST\n");
+
+        return playlist.toString();
+    }
+
+    /**
+     * Write a segment: its moof box and mdat box header, then the byte ranges of its samples in the file.
+     *
+     * @param video   Video file
+     * @param index   Segment index of the file
+     * @param segment Segment index
+     * @param header  Segment header, from {@link HlsIndex#getSegmentHeader}
+     * @param out     Output stream to write to
+     * @throws IOException File read or stream write exception
+     */
+    public void writeSegment(VideoFile video, HlsIndex index, int segment, byte[] header, OutputStream out)
+            throws IOException {
+
+        File file = video.getKey() == null ? video.getFile() : storage.getLocalFile(video.getKey());
+
+        TracedPhase phase = tracing.start("video.hls-segment")
+                .tag("segment", Integer.toString(segment))
+                .tag("source", file != null ? "file" : "storage");
+        try {
+            out.write(header);
+            List<ByteRange> ranges = index.getSegmentRanges(segment);
+            if (file != null) {
+                engine.copy(file, ranges, out);
+            } else {
+                for (ByteRange range : ranges) {
+                    try (InputStream in = storage.get(video.getKey(), range)) {
+                        in.transferTo(out);
+                    }
+                }
+            }
+            phase.transferred(header.length + index.getPayloadLength(segment));
+        } catch (IOException | RuntimeException e) {
+            phase.error(e);
+            throw e;
+        } finally {
+            phase.close();
+        }
+    }
+
+    private HlsIndex buildIndex(VideoFile video) throws IOException, UnsupportedFileException {
+
+        int maxMoovSize = (int) Math.min(Integer.MAX_VALUE, fileProp.getMediaMaxMoovSize().toBytes());
+        long targetMillis = fileProp.getHlsSegmentDuration().toMillis();
+
+        File file = video.getKey() == null ? video.getFile() : storage.getLocalFile(video.getKey());
+        Mp4SampleTables.Movie movie;
+        if (file != null) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                movie = Mp4SampleTables.read((position, length) -> readFully(channel, position, length),
+                        channel.size(), maxMoovSize);
+            }
+        } else {
+            movie = Mp4SampleTables.read((position, length) -> readFromStorage(video.getKey(), position, length),
+                    video.getLength(), maxMoovSize);
+        }
+
+        return new HlsIndex(movie.mvhd(), movie.tracks(), targetMillis);
+    }
+
+    private ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("The file was truncated while reading it at: " + position);
+            }
+        }
+
+        return buffer.flip();
+    }
+
+    private ByteBuffer readFromStorage(String key, long position, int length) throws IOException {
+
+        try (InputStream in = storage.get(key, new ByteRange(position, position + length - 1))) {
+            byte[] bytes = in.readNBytes(length);
+            if (bytes.length < length) {
+                throw new EOFException("The object was truncated while reading it at: " + position);
+            }
+            return ByteBuffer.wrap(bytes);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package hhg0104.codereview.video.hls;
+
+/**
+ * A video or audio track of an MP4 file with its sample tables expanded to one entry per sample, so the samples
+ * of a segment are found by their indexes. The boxes which describe the track are kept as they are, for the
+ * initialization segment.
+ */
+final class HlsTrack {
+
+    static final String VIDEO = "vide";
+
+    static final String SOUND = "soun";
+
+    final int trackId;
+
+    /**
+     * Handler type, 'vide' or 'soun'.
+     */
+    final String handler;
+
+    final long timescale;
+
+    /**
+     * RFC 6381 codec of the sample entry, e.g. 'avc1.64001f', null when it is not known.
+     */
+    final String codec;
+
+    final int width;
+
+    final int height;
+
+    final byte[] tkhd;
+
+    /**
+     * Edit list of the track, null when there is none.
+     */
+    final byte[] edts;
+
+    final byte[] mdhd;
+
+    final byte[] hdlr;
+
+    /**
+     * vmhd or smhd box.
+     */
+    final byte[] mediaHeader;
+
+    final byte[] dinf;
+
+    final byte[] stsd;
+
+    /**
+     * File offset of each sample.
+     */
+    final long[] offsets;
+
+    final int[] sizes;
+
+    /**
+     * Decode time of each sample in the timescale, and the end time of the track as the last entry.
+     */
+    final long[] decodeTimes;
+
+    /**
+     * Composition time offset of each sample, null when the presentation order is the decode order.
+     */
+    final int[] compositionOffsets;
+
+    /**
+     * Whether each sample is a sync sample, null when all of them are.
+     */
+    final boolean[] syncSamples;
+
+    HlsTrack(int trackId, String handler, long timescale, String codec, int width, int height, byte[] tkhd,
+             byte[] edts, byte[] mdhd, byte[] hdlr, byte[] mediaHeader, byte[] dinf, byte[] stsd, long[] offsets,
+             int[] sizes, long[] decodeTimes, int[] compositionOffsets, boolean[] syncSamples) {
+        this.trackId = trackId;
+        this.handler = handler;
+        this.timescale = timescale;
+        this.codec = codec;
+        this.width = width;
+        this.height = height;
+        this.tkhd = tkhd;
+        this.edts = edts;
+        this.mdhd = mdhd;
+        this.hdlr = hdlr;
+        this.mediaHeader = mediaHeader;
+        this.dinf = dinf;
+        this.stsd = stsd;
+        this.offsets = offsets;
+        this.sizes = sizes;
+        this.decodeTimes = decodeTimes;
+        this.compositionOffsets = compositionOffsets;
+        this.syncSamples = syncSamples;
+    }
+
+    int sampleCount() {
+        return sizes.length;
+    }
+
+    boolean isSync(int sample) {
+        return syncSamples == null || syncSamples[sample];
+    }
+
+    /**
+     * Approximate heap size of the expanded tables.
+     */
+    long weight() {
+        long perSample = 8 + 4 + 8 + (compositionOffsets != null ? 4 : 0) + (syncSamples != null ? 1 : 0);
+        return sampleCount() * perSample + stsd.length + tkhd.length + mdhd.length + hdlr.length;
+    }
+}
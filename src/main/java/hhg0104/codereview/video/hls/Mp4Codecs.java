@@ -0,0 +1,145 @@
+package hhg0104.codereview.video.hls;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reader of the RFC 6381 codec of a sample entry, for the CODECS attribute of a variant stream:
+ * <pre>
+ * avc1/avc3  'avc1.PPCCLL' from the profile, constraints and level of the avcC box
+ * mp4a       'mp4a.40.N' from the audio object type in the esds box, 'mp4a.OO' for another object type
+ * </pre>
+ * The codec of any other sample entry is not known.
+ */
+final class Mp4Codecs {
+
+    /**
+     * Size of a sample entry before the fields of a visual sample entry.
+     */
+    private static final int SAMPLE_ENTRY_SIZE = 16;
+
+    private static final int VISUAL_SAMPLE_ENTRY_FIELDS = 70;
+
+    private static final int AUDIO_SAMPLE_ENTRY_FIELDS = 20;
+
+    private static final int ES_DESCRIPTOR_TAG = 0x03;
+
+    private static final int DECODER_CONFIG_DESCRIPTOR_TAG = 0x04;
+
+    private static final int DECODER_SPECIFIC_INFO_TAG = 0x05;
+
+    private static final int MPEG4_AUDIO_OBJECT_TYPE = 0x40;
+
+    private Mp4Codecs() {
+    }
+
+    /**
+     * Return the codec of the first sample entry of a stsd box.
+     *
+     * @param data Buffer of the box
+     * @param stsd stsd box
+     * @return RFC 6381 codec, null when it is not known
+     */
+    static String of(ByteBuffer data, Mp4SampleTables.Box stsd) {
+        try {
+            int entry = stsd.payload() + 8;
+            if (entry + 8 > stsd.end()) {
+                return null;
+            }
+            int entryEnd = Math.min(stsd.end(), entry + data.getInt(entry));
+            String type = Mp4SampleTables.type(data, entry + 4);
+
+            return switch (type) {
+                case "avc1", "avc3" -> avc(data, type, entry + SAMPLE_ENTRY_SIZE + VISUAL_SAMPLE_ENTRY_FIELDS,
+                        entryEnd);
+                case "mp4a" -> mp4a(data, entry, entryEnd);
+                default -> null;
+            };
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private static String avc(ByteBuffer data, String type, int childStart, int entryEnd) {
+        for (Mp4SampleTables.Box box : Mp4SampleTables.children(data, childStart, entryEnd)) {
+            if (box.type().equals("avcC") && box.payloadLength() >= 4) {
+                return String.format("%s.%02x%02x%02x", type, data.get(box.payload() + 1),
+                        data.get(box.payload() + 2), data.get(box.payload() + 3));
+            }
+        }
+        return null;
+    }
+
+    private static String mp4a(ByteBuffer data, int entry, int entryEnd) {
+
+        // A QuickTime sound sample entry of version 1 or 2 has more fields.
+        int version = data.getShort(entry + SAMPLE_ENTRY_SIZE) & 0xFFFF;
+        int childStart = entry + SAMPLE_ENTRY_SIZE + AUDIO_SAMPLE_ENTRY_FIELDS + (version == 1 ? 16 : version == 2 ? 36 : 0);
+
+        for (Mp4SampleTables.Box box : Mp4SampleTables.children(data, childStart, entryEnd)) {
+            if (box.type().equals("esds")) {
+                return esds(data, box.payload() + 4, box.end());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read the object type of the decoder config descriptor in the ES descriptor, ISO/IEC 14496-1.
+     */
+    private static String esds(ByteBuffer data, int offset, int end) {
+
+        int[] descriptor = readDescriptor(data, offset);
+        if (descriptor[0] != ES_DESCRIPTOR_TAG) {
+            return null;
+        }
+        offset = descriptor[1] + 2;
+        int flags = data.get(offset++) & 0xFF;
+        if ((flags & 0x80) != 0) {
+            offset += 2;
+        }
+        if ((flags & 0x40) != 0) {
+            offset += 1 + (data.get(offset) & 0xFF);
+        }
+        if ((flags & 0x20) != 0) {
+            offset += 2;
+        }
+
+        descriptor = readDescriptor(data, offset);
+        if (descriptor[0] != DECODER_CONFIG_DESCRIPTOR_TAG) {
+            return null;
+        }
+        int objectType = data.get(descriptor[1]) & 0xFF;
+        if (objectType != MPEG4_AUDIO_OBJECT_TYPE) {
+            return String.format("mp4a.%02X", objectType);
+        }
+
+        descriptor = readDescriptor(data, descriptor[1] + 13);
+        if (descriptor[0] != DECODER_SPECIFIC_INFO_TAG || descriptor[1] >= end) {
+            return null;
+        }
+        int first = data.get(descriptor[1]) & 0xFF;
+        int audioObjectType = first >> 3;
+        if (audioObjectType == 31) {
+            audioObjectType = 32 + (((first & 0x07) << 3) | ((data.get(descriptor[1] + 1) & 0xFF) >> 5));
+        }
+
+        return "mp4a.40." + audioObjectType;
+    }
+
+    /**
+     * Read the tag and the variable length size of a descriptor.
+     *
+     * @return Tag and the offset of the payload
+     */
+    private static int[] readDescriptor(ByteBuffer data, int offset) {
+
+        int tag = data.get(offset++) & 0xFF;
+        for (int i = 0; i < 4; i++) {
+            if ((data.get(offset++) & 0x80) == 0) {
+                break;
+            }
+        }
+
+        return new int[]{tag, offset};
+    }
+}
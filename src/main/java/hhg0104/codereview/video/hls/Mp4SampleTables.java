@@ -0,0 +1,359 @@
+package hhg0104.codereview.video.hls;
+
+import hhg0104.codereview.exception.UnsupportedFileException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reader of the sample tables of an MP4 file, ISO/IEC 14496-12. The moov box is found by the headers of the top-level
+ * boxes and read whole, and the tables of each video and audio track are expanded:
+ * <pre>
+ * stsz  size of each sample
+ * stsc  samples per chunk, with stco/co64 the offset of each chunk, so the offset of each sample
+ * stts  decode duration of each sample
+ * ctts  composition time offset of each sample, of a stream with B-frames
+ * stss  sync samples, where a segment can start
+ * </pre>
+ */
+final class Mp4SampleTables {
+
+    private static final long MAX_UINT32 = 0xFFFFFFFFL;
+
+    private Mp4SampleTables() {
+    }
+
+    /**
+     * Reads a range of the file.
+     */
+    @FunctionalInterface
+    interface RangeReader {
+
+        ByteBuffer read(long position, int length) throws IOException;
+    }
+
+    /**
+     * The movie header and the tracks of an MP4 file.
+     */
+    record Movie(byte[] mvhd, List<HlsTrack> tracks) {
+    }
+
+    /**
+     * Read the sample tables of an MP4 file.
+     *
+     * @param reader      Reader of the file
+     * @param fileLength  File length
+     * @param maxMoovSize Largest moov box read
+     * @return Movie header and the video and audio tracks
+     * @throws IOException              File read exception
+     * @throws UnsupportedFileException Not an MP4 file, a fragmented one, or one with broken sample tables
+     */
+    static Movie read(RangeReader reader, long fileLength, int maxMoovSize) throws IOException,
+            UnsupportedFileException {
+
+        long offset = 0;
+        while (offset + 8 <= fileLength) {
+            ByteBuffer header = reader.read(offset, (int) Math.min(16, fileLength - offset));
+            long size = header.getInt(0) & MAX_UINT32;
+            String type = type(header, 4);
+            int headerSize = 8;
+            if (size == 1 && header.limit() >= 16) {
+                size = header.getLong(8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = fileLength - offset;
+            }
+            if (offset == 0 && !type.equals("ftyp")) {
+                throw new UnsupportedFileException("Only MP4 files can be streamed with HLS.");
+            }
+            if (size < headerSize || size > fileLength - offset) {
+                throw new UnsupportedFileException("This MP4 file is broken, a box runs past its end at: " + offset);
+            }
+
+            if (type.equals("moov")) {
+                if (size - headerSize > maxMoovSize) {
+                    throw new UnsupportedFileException("The moov box of this file is too large to be streamed: "
+                            + size + " bytes");
+                }
+                return parseMoov(reader.read(offset + headerSize, (int) (size - headerSize)));
+            }
+            offset += size;
+        }
+
+        throw new UnsupportedFileException("There is no moov box in this MP4 file.");
+    }
+
+    private static Movie parseMoov(ByteBuffer moov) throws UnsupportedFileException {
+
+        byte[] mvhd = null;
+        List<HlsTrack> tracks = new ArrayList<>();
+        for (Box box : children(moov, 0, moov.limit())) {
+            if (box.type().equals("mvhd")) {
+                mvhd = box.copy(moov);
+            } else if (box.type().equals("mvex")) {
+                throw new UnsupportedFileException("A fragmented MP4 file cannot be streamed with HLS.");
+            } else if (box.type().equals("trak")) {
+                HlsTrack track = parseTrack(moov, box);
+                if (track != null) {
+                    tracks.add(track);
+                }
+            }
+        }
+        if (mvhd == null) {
+            throw new UnsupportedFileException("This MP4 file is broken, there is no movie header.");
+        }
+
+        return new Movie(mvhd, tracks);
+    }
+
+    /**
+     * Parse a track, null for a track which is neither video nor audio.
+     */
+    private static HlsTrack parseTrack(ByteBuffer data, Box trak) throws UnsupportedFileException {
+
+        Map<String, Box> boxes = new HashMap<>();
+        collect(data, trak, boxes);
+
+        Box hdlr = boxes.get("hdlr");
+        String handler = hdlr != null && hdlr.payloadLength() >= 12 ? type(data, hdlr.payload() + 8) : null;
+        if (!HlsTrack.VIDEO.equals(handler) && !HlsTrack.SOUND.equals(handler)) {
+            return null;
+        }
+
+        for (String type : List.of("tkhd", "mdhd", "stsd", "stts", "stsz", "stsc")) {
+            if (!boxes.containsKey(type)) {
+                throw new UnsupportedFileException("This MP4 file is broken, a track has no " + type + " box.");
+            }
+        }
+        if (!boxes.containsKey("stco") && !boxes.containsKey("co64")) {
+            throw new UnsupportedFileException("This MP4 file is broken, a track has no chunk offsets.");
+        }
+
+        Box tkhd = boxes.get("tkhd");
+        int tkhdVersion = data.get(tkhd.payload()) & 0xFF;
+        int trackId = data.getInt(tkhd.payload() + (tkhdVersion == 1 ? 20 : 12));
+        int sizeOffset = tkhd.payload() + (tkhdVersion == 1 ? 88 : 76);
+        int width = sizeOffset + 8 <= tkhd.end() ? data.getInt(sizeOffset) >>> 16 : 0;
+        int height = sizeOffset + 8 <= tkhd.end() ? data.getInt(sizeOffset + 4) >>> 16 : 0;
+
+        Box mdhd = boxes.get("mdhd");
+        int mdhdVersion = data.get(mdhd.payload()) & 0xFF;
+        long timescale = data.getInt(mdhd.payload() + (mdhdVersion == 1 ? 20 : 12)) & MAX_UINT32;
+        if (timescale == 0) {
+            throw new UnsupportedFileException("This MP4 file is broken, a track has no timescale.");
+        }
+
+        int[] sizes = readSizes(data, boxes.get("stsz"));
+        long[] decodeTimes = readDecodeTimes(data, boxes.get("stts"), sizes.length);
+        int[] compositionOffsets = boxes.containsKey("ctts")
+                ? readCompositionOffsets(data, boxes.get("ctts"), sizes.length)
+                : null;
+        boolean[] syncSamples = boxes.containsKey("stss") ? readSyncSamples(data, boxes.get("stss"), sizes.length) : null;
+        long[] offsets = readOffsets(data, boxes.get("stsc"), boxes.getOrDefault("stco", boxes.get("co64")), sizes);
+
+        Box stsd = boxes.get("stsd");
+        Box mediaHeader = boxes.getOrDefault("vmhd", boxes.get("smhd"));
+        Box edts = boxes.get("edts");
+        Box dinf = boxes.get("dinf");
+
+        return new HlsTrack(trackId, handler, timescale, Mp4Codecs.of(data, stsd), width, height, tkhd.copy(data),
+                edts != null ? edts.copy(data) : null, mdhd.copy(data), hdlr.copy(data),
+                mediaHeader != null ? mediaHeader.copy(data) : null, dinf != null ? dinf.copy(data) : null,
+                stsd.copy(data), offsets, sizes, decodeTimes, compositionOffsets, syncSamples);
+    }
+
+    /**
+     * Collect the boxes of a track by their types, down to the sample table.
+     */
+    private static void collect(ByteBuffer data, Box parent, Map<String, Box> boxes) throws UnsupportedFileException {
+        for (Box box : children(data, parent.payload(), parent.end())) {
+            switch (box.type()) {
+                case "mdia", "minf", "stbl" -> collect(data, box, boxes);
+                case "stz2" -> throw new UnsupportedFileException("Compact sample sizes are not supported.");
+                default -> boxes.putIfAbsent(box.type(), box);
+            }
+        }
+    }
+
+    private static int[] readSizes(ByteBuffer data, Box stsz) throws UnsupportedFileException {
+
+        int payload = stsz.payload();
+        check(stsz, 12);
+        int sampleSize = data.getInt(payload + 4);
+        int count = count(data, stsz, payload + 8, sampleSize == 0 ? 4 : 0, 12);
+
+        int[] sizes = new int[count];
+        if (sampleSize != 0) {
+            Arrays.fill(sizes, sampleSize);
+        } else {
+            for (int i = 0; i < count; i++) {
+                sizes[i] = data.getInt(payload + 12 + i * 4);
+            }
+        }
+
+        return sizes;
+    }
+
+    private static long[] readDecodeTimes(ByteBuffer data, Box stts, int sampleCount) throws UnsupportedFileException {
+
+        int entries = count(data, stts, stts.payload() + 4, 8, 8);
+        long[] decodeTimes = new long[sampleCount + 1];
+        int sample = 0;
+        for (int i = 0; i < entries && sample < sampleCount; i++) {
+            int entry = stts.payload() + 8 + i * 8;
+            long count = data.getInt(entry) & MAX_UINT32;
+            long delta = data.getInt(entry + 4) & MAX_UINT32;
+            for (long j = 0; j < count && sample < sampleCount; j++, sample++) {
+                decodeTimes[sample + 1] = decodeTimes[sample] + delta;
+            }
+        }
+        if (sample < sampleCount) {
+            throw new UnsupportedFileException("This MP4 file is broken, the decode times miss some samples.");
+        }
+
+        return decodeTimes;
+    }
+
+    private static int[] readCompositionOffsets(ByteBuffer data, Box ctts, int sampleCount)
+            throws UnsupportedFileException {
+
+        int entries = count(data, ctts, ctts.payload() + 4, 8, 8);
+        int[] offsets = new int[sampleCount];
+        int sample = 0;
+        for (int i = 0; i < entries && sample < sampleCount; i++) {
+            int entry = ctts.payload() + 8 + i * 8;
+            long count = data.getInt(entry) & MAX_UINT32;
+            int offset = data.getInt(entry + 4);
+            for (long j = 0; j < count && sample < sampleCount; j++) {
+                offsets[sample++] = offset;
+            }
+        }
+
+        return offsets;
+    }
+
+    private static boolean[] readSyncSamples(ByteBuffer data, Box stss, int sampleCount)
+            throws UnsupportedFileException {
+
+        int entries = count(data, stss, stss.payload() + 4, 4, 8);
+        boolean[] syncSamples = new boolean[sampleCount];
+        for (int i = 0; i < entries; i++) {
+            long sample = (data.getInt(stss.payload() + 8 + i * 4) & MAX_UINT32) - 1;
+            if (sample >= 0 && sample < sampleCount) {
+                syncSamples[(int) sample] = true;
+            }
+        }
+
+        return syncSamples;
+    }
+
+    /**
+     * Offset of each sample, from the first chunk of each run of chunks with the same samples per chunk.
+     */
+    private static long[] readOffsets(ByteBuffer data, Box stsc, Box chunkOffsetBox, int[] sizes)
+            throws UnsupportedFileException {
+
+        int entrySize = chunkOffsetBox.type().equals("co64") ? 8 : 4;
+        int chunkCount = count(data, chunkOffsetBox, chunkOffsetBox.payload() + 4, entrySize, 8);
+        int runs = count(data, stsc, stsc.payload() + 4, 12, 8);
+
+        long[] offsets = new long[sizes.length];
+        int sample = 0;
+        for (int i = 0; i < runs && sample < sizes.length; i++) {
+            int entry = stsc.payload() + 8 + i * 12;
+            long firstChunk = data.getInt(entry) & MAX_UINT32;
+            long nextFirstChunk = i + 1 < runs ? data.getInt(entry + 12) & MAX_UINT32 : chunkCount + 1L;
+            long samplesPerChunk = data.getInt(entry + 4) & MAX_UINT32;
+            for (long chunk = firstChunk; chunk < nextFirstChunk && chunk <= chunkCount && sample < sizes.length;
+                 chunk++) {
+                int chunkEntry = chunkOffsetBox.payload() + 8 + (int) (chunk - 1) * entrySize;
+                long offset = entrySize == 8 ? data.getLong(chunkEntry) : data.getInt(chunkEntry) & MAX_UINT32;
+                for (long j = 0; j < samplesPerChunk && sample < sizes.length; j++) {
+                    offsets[sample] = offset;
+                    offset += sizes[sample++];
+                }
+            }
+        }
+        if (sample < sizes.length) {
+            throw new UnsupportedFileException("This MP4 file is broken, the chunks miss some samples.");
+        }
+
+        return offsets;
+    }
+
+    /**
+     * Read the entry count of a table and check that its entries fit in the box.
+     */
+    private static int count(ByteBuffer data, Box box, int countOffset, int entrySize, int entriesStart)
+            throws UnsupportedFileException {
+
+        check(box, entriesStart);
+        long count = data.getInt(countOffset) & MAX_UINT32;
+        if (count > Integer.MAX_VALUE || count * entrySize > box.payloadLength() - entriesStart) {
+            throw new UnsupportedFileException("This MP4 file is broken, the " + box.type() + " box is truncated.");
+        }
+
+        return (int) count;
+    }
+
+    private static void check(Box box, int minLength) throws UnsupportedFileException {
+        if (box.payloadLength() < minLength) {
+            throw new UnsupportedFileException("This MP4 file is broken, the " + box.type() + " box is truncated.");
+        }
+    }
+
+    /**
+     * Child boxes in a range of the data. A box with an invalid size ends the list.
+     */
+    static List<Box> children(ByteBuffer data, int start, int end) {
+
+        List<Box> boxes = new ArrayList<>();
+        int offset = start;
+        while (offset + 8 <= end) {
+            long size = data.getInt(offset) & MAX_UINT32;
+            int headerSize = 8;
+            if (size == 1 && offset + 16 <= end) {
+                size = data.getLong(offset + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - offset;
+            }
+            if (size < headerSize || size > end - offset) {
+                break;
+            }
+
+            boxes.add(new Box(type(data, offset + 4), offset, offset + headerSize, (int) (offset + size)));
+            offset += (int) size;
+        }
+
+        return boxes;
+    }
+
+    static String type(ByteBuffer data, int offset) {
+        byte[] type = new byte[4];
+        data.get(offset, type);
+        return new String(type, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * A box in a buffer: the offsets of its start, its payload and its end.
+     */
+    record Box(String type, int start, int payload, int end) {
+
+        int payloadLength() {
+            return end - payload;
+        }
+
+        byte[] copy(ByteBuffer data) {
+            byte[] bytes = new byte[end - start];
+            data.get(start, bytes);
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package hhg0104.codereview.video.hls;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * A writer of ISO base media boxes into a byte array. A box is started, its fields and child boxes are written,
+ * and its size is filled in when it is ended.
+ */
+final class Mp4Writer {
+
+    private byte[] bytes = new byte[256];
+
+    private int length;
+
+    private final Deque<Integer> boxStarts = new ArrayDeque<>();
+
+    Mp4Writer start(String type) {
+        boxStarts.push(length);
+        writeInt(0);
+        writeType(type);
+        return this;
+    }
+
+    /**
+     * Start a full box, which has a version and flags.
+     */
+    Mp4Writer start(String type, int version, int flags) {
+        start(type);
+        return writeInt(version << 24 | flags);
+    }
+
+    Mp4Writer end() {
+        int start = boxStarts.pop();
+        int size = length - start;
+        bytes[start] = (byte) (size >>> 24);
+        bytes[start + 1] = (byte) (size >>> 16);
+        bytes[start + 2] = (byte) (size >>> 8);
+        bytes[start + 3] = (byte) size;
+        return this;
+    }
+
+    Mp4Writer writeInt(int value) {
+        ensureCapacity(4);
+        bytes[length++] = (byte) (value >>> 24);
+        bytes[length++] = (byte) (value >>> 16);
+        bytes[length++] = (byte) (value >>> 8);
+        bytes[length++] = (byte) value;
+        return this;
+    }
+
+    Mp4Writer writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        return writeInt((int) value);
+    }
+
+    Mp4Writer writeType(String type) {
+        return write(type.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    Mp4Writer write(byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, bytes, length, value.length);
+        length += value.length;
+        return this;
+    }
+
+    int length() {
+        return length;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    private void ensureCapacity(int count) {
+        if (length + count > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+        }
+    }
+}
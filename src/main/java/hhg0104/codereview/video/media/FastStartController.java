@@ -0,0 +1,31 @@
+package hhg0104.codereview.video.media;
+
+import hhg0104.codereview.video.response.FastStartStatusInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * This is a controller class for the background fast-start remux of the uploaded files.
+ */
+@RestController
+public class FastStartController {
+
+    private FastStartPipeline pipeline;
+
+
+    @Autowired
+    public FastStartController(FastStartPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * Queue depth and counters of the fast-start remux since the start.
+     *
+     * @return Status of the fast-start pipeline
+     */
+    @GetMapping("/media/fast-start")
+    public FastStartStatusInfo status() {
+        return pipeline.getStatus();
+    }
+}
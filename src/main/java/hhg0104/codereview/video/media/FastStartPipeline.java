@@ -0,0 +1,213 @@
+package hhg0104.codereview.video.media;
+
+import hhg0104.codereview.video.cache.VideoMetadataCache;
+import hhg0104.codereview.video.entity.MediaInfo;
+import hhg0104.codereview.video.entity.VideoState;
+import hhg0104.codereview.video.property.FileProperties;
+import hhg0104.codereview.video.repository.VideoRepository;
+import hhg0104.codereview.video.response.FastStartStatusInfo;
+import hhg0104.codereview.video.storage.BlobReferences;
+import hhg0104.codereview.video.storage.HashingChannel;
+import hhg0104.codereview.video.storage.VideoGarbageCollector;
+import hhg0104.codereview.video.storage.VideoStorage;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is a background fast-start remux of the uploaded MP4 files whose moov box is behind the media data.
+ * <p>
+ * An upload hands such a content over here once it is published, and a bounded pool of workers remuxes it with
+ * the {@link FastStartRemuxer} into a temporary file in the upload directory, hashing it on the way. The remuxed
+ * content is stored as a new object, as the objects are keyed by their content hash, and all the live files of
+ * the previous content are moved to it in one update. The previous object is deleted by the garbage collector
+ * after a grace period, as the requests which resolved a file before the update can still be reading it. Until the
+ * update, the files are served as they were uploaded.
+ */
+@Slf4j
+@Component
+public class FastStartPipeline {
+
+    /**
+     * States of the files which are moved to the remuxed content. A PENDING file keeps the content it was hashed
+     * to, as its upload records that hash again when it is stored, and it is remuxed once it is published.
+     */
+    private static final Set<VideoState> REPLACED_STATES = EnumSet.of(VideoState.STORED, VideoState.ACTIVE);
+
+    private VideoRepository repository;
+
+    private VideoStorage storage;
+
+    private BlobReferences blobReferences;
+
+    private VideoGarbageCollector garbageCollector;
+
+    private VideoMetadataCache metadataCache;
+
+    private FileProperties fileProp;
+
+    private final FastStartRemuxer remuxer;
+
+    private final BlockingQueue<Runnable> queue;
+
+    /**
+     * Contents in the queue or being remuxed, so the files of one content are remuxed once.
+     */
+    private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+
+    private final ThreadPoolExecutor workers;
+
+    private final AtomicLong remuxedFiles = new AtomicLong();
+
+    private final AtomicLong failedFiles = new AtomicLong();
+
+    private final AtomicLong rejectedFiles = new AtomicLong();
+
+    @Autowired
+    public FastStartPipeline(VideoRepository repository, VideoStorage storage, BlobReferences blobReferences,
+                             VideoGarbageCollector garbageCollector, VideoMetadataCache metadataCache,
+                             FileProperties fileProp) {
+        this.repository = repository;
+        this.storage = storage;
+        this.blobReferences = blobReferences;
+        this.garbageCollector = garbageCollector;
+        this.metadataCache = metadataCache;
+        this.fileProp = fileProp;
+        this.remuxer = new FastStartRemuxer((int) Math.min(fileProp.getMediaMaxMoovSize().toBytes(),
+                Integer.MAX_VALUE));
+        this.queue = new ArrayBlockingQueue<>(Math.max(fileProp.getMediaFastStartQueueCapacity(), 1));
+
+        int workerCount = Math.max(fileProp.getMediaFastStartWorkers(), 1);
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS, queue,
+                Thread.ofPlatform().name("video-fast-start-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Queue the remux of an uploaded content, when the fast start is enabled and the content is an MP4 file with
+     * the moov box behind the media data.
+     *
+     * @param key   Content hash
+     * @param media Media attributes of the content
+     * @return True when the content is queued, false when it needs no remux, is queued already or the queue is full
+     */
+    public boolean submit(String key, MediaInfo media) {
+
+        if (!fileProp.isMediaFastStartEnabled() || media == null || !Boolean.FALSE.equals(media.getFastStart())) {
+            return false;
+        }
+        if (!pendingKeys.add(key)) {
+            return false;
+        }
+
+        try {
+            workers.execute(() -> remux(key, media));
+            return true;
+        } catch (RejectedExecutionException e) {
+            pendingKeys.remove(key);
+            rejectedFiles.incrementAndGet();
+            return false;
+        }
+    }
+
+    public FastStartStatusInfo getStatus() {
+        return new FastStartStatusInfo(queue.size(), queue.size() + queue.remainingCapacity(),
+                remuxedFiles.get(), failedFiles.get(), rejectedFiles.get());
+    }
+
+    private void remux(String key, MediaInfo media) {
+
+        Path copyPath = null;
+        Path tempPath = Path.of(fileProp.getUploadBasePath(), "." + key + "." + UUID.randomUUID() + ".part");
+        try {
+            File localFile = storage.getLocalFile(key);
+            if (localFile == null) {
+                copyPath = storage.copyToTempFile(key, "fast-start-");
+                localFile = copyPath.toFile();
+            }
+
+            long moovOffset;
+            String hash;
+            try (FileChannel source = FileChannel.open(localFile.toPath(), StandardOpenOption.READ);
+                 HashingChannel target = new HashingChannel(FileChannel.open(tempPath,
+                         StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))) {
+                moovOffset = remuxer.remux(source, target);
+                hash = target.getHash();
+            }
+            if (moovOffset < 0) {
+                return;
+            }
+
+            long size = Files.size(tempPath);
+            replace(key, hash, tempPath, size, new MediaInfo(media.getContainer(), media.getDurationMillis(),
+                    media.getVideoCodec(), media.getAudioCodec(), media.getWidth(), media.getHeight(),
+                    media.getBitRate(), moovOffset, true));
+            remuxedFiles.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Couldn't remux the content for the fast start, it is served as it is: " + key, e);
+            failedFiles.incrementAndGet();
+        } finally {
+            pendingKeys.remove(key);
+            deleteQuietly(tempPath);
+            if (copyPath != null) {
+                deleteQuietly(copyPath);
+            }
+        }
+    }
+
+    /**
+     * Store the remuxed content and move the files of the previous content to it. The previous content is deleted
+     * after the grace period, and the remuxed one at once when the files were deleted in the meantime.
+     */
+    private void replace(String previousKey, String key, Path path, long size, MediaInfo media) throws IOException {
+
+        // The remuxed content can be the blob of a deleted file, so it is held until the files reference it.
+        blobReferences.hold(key, () -> {
+            storage.put(key, path);
+            return repository.replaceContent(previousKey, size, key, media, REPLACED_STATES);
+        });
+        // A cached file must not point at an object which is deleted.
+        repository.findFileIdsByContentHash(key, VideoState.LIVE).forEach(metadataCache::invalidate);
+
+        blobReferences.deleteUnreferenced(List.of(key), unreferencedKey -> {
+            try {
+                storage.delete(unreferencedKey);
+            } catch (IOException e) {
+                log.warn("Couldn't delete the unreferenced content, the reconciliation quarantines it: "
+                        + unreferencedKey, e);
+            }
+        });
+        garbageCollector.deleteLater(previousKey);
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Couldn't delete the temporary file: " + path, e);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package hhg0104.codereview.video.media;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This is a fast-start remuxer of MP4 files, like qt-faststart: a moov box behind the media data is moved in front
+ * of it, and the chunk offsets in its stco and co64 boxes are shifted by its size, so a player can start from the
+ * first bytes of a progressive download instead of fetching the whole file first.
+ * <p>
+ * The file is streamed. Its top-level boxes are found by their headers, the media data is copied from channel to
+ * channel, and only the moov box is held in memory, up to a limit. The samples themselves are not touched.
+ */
+public class FastStartRemuxer {
+
+    /**
+     * Boxes on the way from moov to the chunk offset boxes.
+     */
+    private static final Set<String> CONTAINER_TYPES = Set.of("moov", "trak", "mdia", "minf", "stbl");
+
+    private static final long MAX_UINT32 = 0xFFFFFFFFL;
+
+    private final int maxMoovSize;
+
+    /**
+     * @param maxMoovSize Largest moov box moved, a file with a larger one is not remuxed
+     */
+    public FastStartRemuxer(int maxMoovSize) {
+        this.maxMoovSize = maxMoovSize;
+    }
+
+    /**
+     * Write the fast-start layout of an MP4 file: the boxes before the first media data, the moov box, then the rest
+     * of the file without the moov box.
+     *
+     * @param source MP4 file
+     * @param target Channel the remuxed file is written to
+     * @return Offset of the moov box in the remuxed file, or -1 when the file is fast-start already and nothing is
+     * written
+     * @throws IOException File read or write exception, or a file which cannot be remuxed
+     */
+    public long remux(FileChannel source, WritableByteChannel target) throws IOException {
+
+        List<Box> boxes = readTopLevelBoxes(source);
+        Box moov = boxes.stream()
+                .filter(box -> box.type().equals("moov"))
+                .findFirst()
+                .orElseThrow(() -> new IOException("There is no moov box in the file."));
+        Box mediaData = boxes.stream()
+                .filter(box -> box.type().equals("mdat"))
+                .findFirst()
+                .orElse(null);
+        if (mediaData == null || mediaData.offset() > moov.offset()) {
+            return -1;
+        }
+        if (moov.size() > maxMoovSize) {
+            throw new IOException("The moov box is too large to be moved: " + moov.size() + " bytes");
+        }
+
+        ByteBuffer moovBytes = ByteBuffer.allocate((int) moov.size());
+        readFully(source, moovBytes, moov.offset());
+        long insertOffset = mediaData.offset();
+        shiftChunkOffsets(moovBytes, moov.headerSize(), moovBytes.limit(), insertOffset, moov);
+
+        transfer(source, 0, insertOffset, target);
+        writeFully(target, moovBytes.rewind());
+        transfer(source, insertOffset, moov.offset() - insertOffset, target);
+        transfer(source, moov.end(), source.size() - moov.end(), target);
+
+        return insertOffset;
+    }
+
+    /**
+     * Read the headers of the top-level boxes. They have to cover the file exactly.
+     */
+    private static List<Box> readTopLevelBoxes(FileChannel source) throws IOException {
+
+        long fileSize = source.size();
+        List<Box> boxes = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(16);
+        long offset = 0;
+        while (offset < fileSize) {
+            header.clear().limit((int) Math.min(16, fileSize - offset));
+            readFully(source, header, offset);
+            if (header.limit() < 8) {
+                throw new IOException("The file is not a valid MP4 file, it ends in a box header.");
+            }
+
+            long size = header.getInt(0) & MAX_UINT32;
+            String type = new String(header.array(), 4, 4, StandardCharsets.ISO_8859_1);
+            int headerSize = 8;
+            if (size == 1) {
+                if (header.limit() < 16) {
+                    throw new IOException("The file is not a valid MP4 file, it ends in a box header.");
+                }
+                size = header.getLong(8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = fileSize - offset;
+            }
+            if (size < headerSize || size > fileSize - offset) {
+                throw new IOException("The file is not a valid MP4 file, a box runs past its end at: " + offset);
+            }
+
+            boxes.add(new Box(type, offset, size, headerSize));
+            offset += size;
+        }
+
+        return boxes;
+    }
+
+    /**
+     * Shift the chunk offsets which point between the insert offset and the moov box, as the moov box is inserted
+     * before them. The ones behind the moov box stay where they are.
+     */
+    private static void shiftChunkOffsets(ByteBuffer data, int start, int end, long insertOffset, Box moov)
+            throws IOException {
+
+        int offset = start;
+        while (offset + 8 <= end) {
+            long size = data.getInt(offset) & MAX_UINT32;
+            String type = new String(data.array(), offset + 4, 4, StandardCharsets.ISO_8859_1);
+            int headerSize = 8;
+            if (size == 1 && offset + 16 <= end) {
+                size = data.getLong(offset + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - offset;
+            }
+            if (size < headerSize || size > end - offset) {
+                throw new IOException("The moov box is broken, a box runs past its parent at: " + offset);
+            }
+
+            int payload = offset + headerSize;
+            int payloadEnd = (int) (offset + size);
+            if (CONTAINER_TYPES.contains(type)) {
+                shiftChunkOffsets(data, payload, payloadEnd, insertOffset, moov);
+            } else if (type.equals("stco") || type.equals("co64")) {
+                int entrySize = type.equals("stco") ? 4 : 8;
+                long count = payload + 8 <= payloadEnd ? data.getInt(payload + 4) & MAX_UINT32 : -1;
+                if (count < 0 || count * entrySize > payloadEnd - payload - 8) {
+                    throw new IOException("The moov box is broken, a chunk offset box is truncated.");
+                }
+                for (int i = 0; i < count; i++) {
+                    int entry = payload + 8 + i * entrySize;
+                    long chunkOffset = entrySize == 4 ? data.getInt(entry) & MAX_UINT32 : data.getLong(entry);
+                    if (chunkOffset >= insertOffset && chunkOffset < moov.offset()) {
+                        chunkOffset += moov.size();
+                    }
+                    if (entrySize == 4) {
+                        if (chunkOffset > MAX_UINT32) {
+                            throw new IOException("The chunk offsets would need 64 bits after the move.");
+                        }
+                        data.putInt(entry, (int) chunkOffset);
+                    } else {
+                        data.putLong(entry, chunkOffset);
+                    }
+                }
+            } else if (type.equals("cmov")) {
+                throw new IOException("A compressed moov box is not supported.");
+            }
+
+            offset = payloadEnd;
+        }
+    }
+
+    private static void readFully(FileChannel source, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = source.read(buffer, position);
+            if (count < 0) {
+                throw new EOFException("The file ended at: " + position);
+            }
+            position += count;
+        }
+        buffer.flip();
+    }
+
+    private static void writeFully(WritableByteChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private static void transfer(FileChannel source, long position, long count, WritableByteChannel target)
+            throws IOException {
+        while (count > 0) {
+            long transferred = source.transferTo(position, count, target);
+            if (transferred <= 0) {
+                throw new EOFException("The file ended at: " + position);
+            }
+            position += transferred;
+            count -= transferred;
+        }
+    }
+
+    private record Box(String type, long offset, long size, int headerSize) {
+
+        long end() {
+            return offset + size;
+        }
+    }
+}
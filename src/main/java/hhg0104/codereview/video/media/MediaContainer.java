@@ -0,0 +1,35 @@
+package hhg0104.codereview.video.media;
+
+/**
+ * Containers of the video files, as recognized from their content.
+ */
+public enum MediaContainer {
+
+    /**
+     * ISO base media file format with an MP4 brand.
+     */
+    MP4,
+
+    /**
+     * QuickTime movie, the ISO base media file format with the 'qt' brand or without a file type box.
+     */
+    QUICKTIME,
+
+    /**
+     * MPEG-1 system stream or MPEG-2 program stream.
+     */
+    MPEG_PS,
+
+    /**
+     * MPEG-1/2 video elementary stream.
+     */
+    MPEG_VIDEO,
+
+    MPEG_TS,
+
+    MATROSKA,
+
+    AVI,
+
+    UNKNOWN
+}
@@ -0,0 +1,311 @@
+package hhg0104.codereview.video.media;
+
+import hhg0104.codereview.video.entity.MediaInfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * This is a streaming parser of the container of a video file. It is fed with the bytes while the upload is written,
+ * so the file is never read again for its media attributes.
+ * <p>
+ * An MP4 file is walked box by box: the top-level boxes are skipped by their sizes, and only the moov box is kept in
+ * memory, up to a limit, and parsed for the duration and the tracks. Of an MPEG stream the leading bytes are kept,
+ * where the pack header and the first sequence header have the bit rate, the resolution and the MPEG version.
+ * The other containers are only recognized by their signatures. One probe reads one file, it is not thread-safe.
+ */
+public class MediaProbe {
+
+    private static final int SIGNATURE_SIZE = 12;
+
+    /**
+     * Leading bytes of an MPEG stream searched for the headers.
+     */
+    private static final int MPEG_HEAD_SIZE = 256 * 1024;
+
+    private static final Set<String> QUICKTIME_TOP_LEVEL_TYPES = Set.of("moov", "mdat", "free", "skip", "wide");
+
+    private final int maxMoovSize;
+
+    private final byte[] signature = new byte[SIGNATURE_SIZE];
+
+    private int signatureLength;
+
+    private MediaContainer container;
+
+    /**
+     * Bytes walked so far.
+     */
+    private long position;
+
+    private final byte[] boxHeader = new byte[16];
+
+    private int boxHeaderLength;
+
+    /**
+     * Payload bytes of the current top-level box still to come, -1 for a box to the end of the file.
+     */
+    private long boxRemaining;
+
+    private boolean fileTypeSeen;
+
+    private boolean broken;
+
+    private long moovOffset = -1;
+
+    private boolean mediaDataSeen;
+
+    private boolean moovBeforeMediaData;
+
+    private byte[] moov;
+
+    private int moovLength;
+
+    private MediaInfo moovInfo;
+
+    private byte[] mpegHead;
+
+    private int mpegHeadLength;
+
+    /**
+     * @param maxMoovSize Largest moov box parsed, the attributes of a file with a larger one are not read
+     */
+    public MediaProbe(int maxMoovSize) {
+        this.maxMoovSize = maxMoovSize;
+    }
+
+    /**
+     * Return a channel which writes to the target and feeds the written bytes to this probe.
+     *
+     * @param target Channel the upload is written to
+     * @return Probing channel, closing it closes the target
+     */
+    public WritableByteChannel observe(WritableByteChannel target) {
+        return new WritableByteChannel() {
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                ByteBuffer written = src.duplicate();
+                int count = target.write(src);
+                update(written.limit(written.position() + count));
+                return count;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return target.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                target.close();
+            }
+        };
+    }
+
+    /**
+     * Feed the next bytes of the file. The buffer is consumed.
+     *
+     * @param buffer Next bytes
+     */
+    public void update(ByteBuffer buffer) {
+
+        if (container == null) {
+            int count = Math.min(buffer.remaining(), SIGNATURE_SIZE - signatureLength);
+            buffer.get(signature, signatureLength, count);
+            signatureLength += count;
+            if (signatureLength < SIGNATURE_SIZE) {
+                return;
+            }
+            recognize();
+        }
+
+        consume(buffer);
+    }
+
+    /**
+     * Finish the file and return its media attributes.
+     *
+     * @param size File size
+     * @return Media attributes, the container is UNKNOWN for an unrecognized or broken file
+     */
+    public MediaInfo finish(long size) {
+
+        if (container == null) {
+            recognize();
+        }
+
+        MediaInfo info = switch (container) {
+            case MP4, QUICKTIME -> finishBoxes(size);
+            case MPEG_PS, MPEG_VIDEO -> MpegHeaders.parse(container, mpegHead, mpegHeadLength);
+            default -> new MediaInfo();
+        };
+        if (info.getContainer() == null) {
+            info.setContainer(container);
+        }
+
+        return info;
+    }
+
+    private void recognize() {
+
+        container = recognize(signature, signatureLength);
+
+        ByteBuffer head = ByteBuffer.wrap(signature, 0, signatureLength);
+        if (container == MediaContainer.MPEG_PS || container == MediaContainer.MPEG_VIDEO) {
+            mpegHead = new byte[MPEG_HEAD_SIZE];
+        }
+        consume(head);
+    }
+
+    private static MediaContainer recognize(byte[] bytes, int length) {
+
+        if (length >= 8) {
+            String type = new String(bytes, 4, 4, StandardCharsets.ISO_8859_1);
+            if (type.equals("ftyp")) {
+                String brand = length >= 12 ? new String(bytes, 8, 4, StandardCharsets.ISO_8859_1) : "";
+                return brand.equals("qt  ") ? MediaContainer.QUICKTIME : MediaContainer.MP4;
+            }
+            if (QUICKTIME_TOP_LEVEL_TYPES.contains(type)) {
+                return MediaContainer.QUICKTIME;
+            }
+        }
+        if (length >= 4 && bytes[0] == 0 && bytes[1] == 0 && bytes[2] == 1) {
+            if ((bytes[3] & 0xFF) == 0xBA) {
+                return MediaContainer.MPEG_PS;
+            }
+            if ((bytes[3] & 0xFF) == 0xB3) {
+                return MediaContainer.MPEG_VIDEO;
+            }
+        }
+        if (length >= 4 && (bytes[0] & 0xFF) == 0x1A && (bytes[1] & 0xFF) == 0x45 && (bytes[2] & 0xFF) == 0xDF
+                && (bytes[3] & 0xFF) == 0xA3) {
+            return MediaContainer.MATROSKA;
+        }
+        if (length >= 12 && new String(bytes, 0, 4, StandardCharsets.ISO_8859_1).equals("RIFF")
+                && new String(bytes, 8, 4, StandardCharsets.ISO_8859_1).equals("AVI ")) {
+            return MediaContainer.AVI;
+        }
+        if (length >= 1 && bytes[0] == 0x47) {
+            return MediaContainer.MPEG_TS;
+        }
+
+        return MediaContainer.UNKNOWN;
+    }
+
+    private void consume(ByteBuffer buffer) {
+        switch (container) {
+            case MP4, QUICKTIME -> walkBoxes(buffer);
+            case MPEG_PS, MPEG_VIDEO -> {
+                int count = Math.min(buffer.remaining(), mpegHead.length - mpegHeadLength);
+                buffer.get(mpegHead, mpegHeadLength, count);
+                mpegHeadLength += count;
+                buffer.position(buffer.limit());
+            }
+            default -> buffer.position(buffer.limit());
+        }
+    }
+
+    /**
+     * Walk the top-level boxes: read each header, then skip the payload, or collect it for the moov box.
+     */
+    private void walkBoxes(ByteBuffer buffer) {
+
+        while (buffer.hasRemaining() && !broken) {
+            if (boxRemaining != 0) {
+                int count = boxRemaining < 0 ? buffer.remaining() : (int) Math.min(buffer.remaining(), boxRemaining);
+                if (moov != null) {
+                    buffer.get(moov, moovLength, count);
+                    moovLength += count;
+                } else {
+                    buffer.position(buffer.position() + count);
+                }
+                position += count;
+                if (boxRemaining > 0) {
+                    boxRemaining -= count;
+                    if (boxRemaining == 0 && moov != null) {
+                        moovInfo = Mp4Boxes.parseMoov(moov, moovLength);
+                        moov = null;
+                    }
+                }
+                continue;
+            }
+
+            int headerSize = boxHeaderLength >= 8 && readUint32(boxHeader, 0) == 1 ? 16 : 8;
+            int count = Math.min(buffer.remaining(), headerSize - boxHeaderLength);
+            buffer.get(boxHeader, boxHeaderLength, count);
+            boxHeaderLength += count;
+            position += count;
+            if (boxHeaderLength < 8 || (boxHeaderLength < 16 && readUint32(boxHeader, 0) == 1)) {
+                continue;
+            }
+
+            startBox();
+        }
+    }
+
+    private void startBox() {
+
+        long size = readUint32(boxHeader, 0);
+        int headerSize = 8;
+        if (size == 1) {
+            size = ByteBuffer.wrap(boxHeader, 8, 8).getLong();
+            headerSize = 16;
+        }
+        String type = new String(boxHeader, 4, 4, StandardCharsets.ISO_8859_1);
+        long offset = position - headerSize;
+        boxHeaderLength = 0;
+
+        if (size == 0) {
+            boxRemaining = -1;
+        } else if (size < headerSize) {
+            broken = true;
+            return;
+        } else {
+            boxRemaining = size - headerSize;
+        }
+
+        if (type.equals("ftyp")) {
+            fileTypeSeen = true;
+        } else if (type.equals("mdat")) {
+            mediaDataSeen = true;
+        } else if (type.equals("moov") && moovOffset < 0) {
+            moovOffset = offset;
+            moovBeforeMediaData = !mediaDataSeen;
+            if (boxRemaining > 0 && boxRemaining <= maxMoovSize) {
+                moov = new byte[(int) boxRemaining];
+                moovLength = 0;
+            }
+        }
+    }
+
+    private MediaInfo finishBoxes(long size) {
+
+        // A box running past the end of the file, or a partial header, is a truncated or a foreign file.
+        boolean complete = !broken && boxHeaderLength == 0 && boxRemaining <= 0 && position == size;
+        if (!complete || (container == MediaContainer.MP4 && !fileTypeSeen)) {
+            MediaInfo info = new MediaInfo();
+            info.setContainer(MediaContainer.UNKNOWN);
+            return info;
+        }
+
+        MediaInfo info = moovInfo != null ? moovInfo : new MediaInfo();
+        if (moovOffset >= 0) {
+            info.setMoovOffset(moovOffset);
+            info.setFastStart(moovBeforeMediaData);
+        }
+        if (info.getDurationMillis() != null && info.getDurationMillis() > 0) {
+            info.setBitRate(size * 8 * 1000 / info.getDurationMillis());
+        }
+
+        return info;
+    }
+
+    static long readUint32(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFFL) << 24) | ((bytes[offset + 1] & 0xFFL) << 16)
+                | ((bytes[offset + 2] & 0xFFL) << 8) | (bytes[offset + 3] & 0xFFL);
+    }
+}
@@ -0,0 +1,164 @@
+package hhg0104.codereview.video.media;
+
+import hhg0104.codereview.video.entity.MediaInfo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parser of the moov box of an MP4 file, ISO/IEC 14496-12. Only the boxes on the way to the attributes are read:
+ * <pre>
+ * moov/mvhd                    timescale and duration
+ * moov/trak/tkhd               width and height of the presentation
+ * moov/trak/mdia/hdlr          track type, 'vide' or 'soun'
+ * moov/trak/mdia/minf/stbl/stsd  sample entry type, the codec
+ * </pre>
+ */
+final class Mp4Boxes {
+
+    private Mp4Boxes() {
+    }
+
+    /**
+     * Parse the payload of a moov box.
+     *
+     * @param moov   Payload bytes
+     * @param length Payload length
+     * @return Attributes of the movie, without the container
+     */
+    static MediaInfo parseMoov(byte[] moov, int length) {
+
+        MediaInfo info = new MediaInfo();
+        ByteBuffer data = ByteBuffer.wrap(moov, 0, length);
+
+        forEachBox(data, 0, length, (type, start, end) -> {
+            if (type.equals("mvhd")) {
+                parseMovieHeader(data, start, end, info);
+            } else if (type.equals("trak")) {
+                Track track = new Track();
+                parseTrack(data, start, end, track);
+                if ("vide".equals(track.handler) && info.getVideoCodec() == null) {
+                    info.setVideoCodec(track.codec);
+                    info.setWidth(track.width > 0 ? track.width : track.codedWidth);
+                    info.setHeight(track.height > 0 ? track.height : track.codedHeight);
+                } else if ("soun".equals(track.handler) && info.getAudioCodec() == null) {
+                    info.setAudioCodec(track.codec);
+                }
+            }
+        });
+
+        return info;
+    }
+
+    private static void parseMovieHeader(ByteBuffer data, int start, int end, MediaInfo info) {
+
+        int version = data.get(start) & 0xFF;
+        long timescale;
+        long duration;
+        if (version == 1 && end - start >= 32) {
+            timescale = MediaProbe.readUint32(data.array(), start + 20);
+            duration = data.getLong(start + 24);
+        } else if (version == 0 && end - start >= 20) {
+            timescale = MediaProbe.readUint32(data.array(), start + 12);
+            duration = MediaProbe.readUint32(data.array(), start + 16);
+        } else {
+            return;
+        }
+
+        // All ones is an unknown duration, e.g. of a fragmented file.
+        if (timescale > 0 && duration > 0 && duration != 0xFFFFFFFFL && duration != -1) {
+            info.setDurationMillis(duration * 1000 / timescale);
+        }
+    }
+
+    private static void parseTrack(ByteBuffer data, int start, int end, Track track) {
+
+        forEachBox(data, start, end, (type, boxStart, boxEnd) -> {
+            switch (type) {
+                case "mdia", "minf", "stbl" -> parseTrack(data, boxStart, boxEnd, track);
+                case "tkhd" -> {
+                    // The width and height are 16.16 fixed point numbers at the end of the box.
+                    int version = data.get(boxStart) & 0xFF;
+                    int offset = boxStart + (version == 1 ? 88 : 76);
+                    if (offset + 8 <= boxEnd) {
+                        track.width = (int) (MediaProbe.readUint32(data.array(), offset) >> 16);
+                        track.height = (int) (MediaProbe.readUint32(data.array(), offset + 4) >> 16);
+                    }
+                }
+                case "hdlr" -> {
+                    // A QuickTime file has another one in minf, of the data handler.
+                    if (track.handler == null && boxStart + 12 <= boxEnd) {
+                        track.handler = fourcc(data, boxStart + 8);
+                    }
+                }
+                case "stsd" -> {
+                    // version and flags, entry count, then the first sample entry: size, type, and for a visual
+                    // sample entry the coded width and height after 24 bytes of reserved and predefined fields.
+                    int entry = boxStart + 8;
+                    if (entry + 8 <= boxEnd) {
+                        track.codec = fourcc(data, entry + 4).strip();
+                    }
+                    if (entry + 36 <= boxEnd) {
+                        track.codedWidth = data.getShort(entry + 32) & 0xFFFF;
+                        track.codedHeight = data.getShort(entry + 34) & 0xFFFF;
+                    }
+                }
+                default -> {
+                }
+            }
+        });
+    }
+
+    /**
+     * Visit the boxes in a range of the data. A box with an invalid size ends the walk.
+     */
+    private static void forEachBox(ByteBuffer data, int start, int end, BoxVisitor visitor) {
+
+        int offset = start;
+        while (offset + 8 <= end) {
+            long size = MediaProbe.readUint32(data.array(), offset);
+            String type = fourcc(data, offset + 4);
+            int headerSize = 8;
+            if (size == 1) {
+                if (offset + 16 > end) {
+                    return;
+                }
+                size = data.getLong(offset + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - offset;
+            }
+            if (size < headerSize || size > end - offset) {
+                return;
+            }
+
+            visitor.visit(type, offset + headerSize, (int) (offset + size));
+            offset += (int) size;
+        }
+    }
+
+    private static String fourcc(ByteBuffer data, int offset) {
+        return new String(data.array(), offset, 4, StandardCharsets.ISO_8859_1);
+    }
+
+    @FunctionalInterface
+    private interface BoxVisitor {
+
+        void visit(String type, int start, int end);
+    }
+
+    private static class Track {
+
+        private String handler;
+
+        private String codec;
+
+        private int width;
+
+        private int height;
+
+        private int codedWidth;
+
+        private int codedHeight;
+    }
+}
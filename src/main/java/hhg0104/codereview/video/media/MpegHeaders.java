@@ -0,0 +1,108 @@
+package hhg0104.codereview.video.media;
+
+import hhg0104.codereview.video.entity.MediaInfo;
+
+/**
+ * Parser of the leading headers of an MPEG-1/2 stream, ISO/IEC 11172-1/2 and 13818-1/2: the pack header of
+ * a program stream for its mux rate, and the first video sequence header for the resolution. A sequence extension
+ * right after the sequence header makes it MPEG-2 video.
+ * <p>
+ * The duration is not read, it would take the time stamps of the last pack at the end of the stream.
+ */
+final class MpegHeaders {
+
+    private static final int PACK_START_CODE = 0xBA;
+
+    private static final int SEQUENCE_HEADER_CODE = 0xB3;
+
+    private static final int EXTENSION_START_CODE = 0xB5;
+
+    private static final int SEQUENCE_EXTENSION_ID = 1;
+
+    /**
+     * Bit rate value of a variable bit rate MPEG-1 video stream.
+     */
+    private static final int VARIABLE_BIT_RATE = 0x3FFFF;
+
+    private MpegHeaders() {
+    }
+
+    /**
+     * Parse the leading bytes of an MPEG stream.
+     *
+     * @param container MPEG_PS or MPEG_VIDEO
+     * @param head      Leading bytes
+     * @param length    Count of the leading bytes
+     * @return Attributes found in the headers
+     */
+    static MediaInfo parse(MediaContainer container, byte[] head, int length) {
+
+        MediaInfo info = new MediaInfo();
+
+        if (container == MediaContainer.MPEG_PS && length >= 13 && startCodeAt(head, 0, PACK_START_CODE)) {
+            long muxRate;
+            if ((head[4] & 0xC0) == 0x40) {
+                muxRate = ((head[10] & 0xFFL) << 14) | ((head[11] & 0xFFL) << 6) | ((head[12] & 0xFFL) >> 2);
+            } else {
+                muxRate = ((head[9] & 0x7FL) << 15) | ((head[10] & 0xFFL) << 7) | ((head[11] & 0xFFL) >> 1);
+            }
+            // In units of 50 bytes per second.
+            if (muxRate > 0) {
+                info.setBitRate(muxRate * 50 * 8);
+            }
+        }
+
+        int sequenceHeader = find(head, length, SEQUENCE_HEADER_CODE);
+        if (sequenceHeader < 0 || sequenceHeader + 12 > length) {
+            return info;
+        }
+
+        int offset = sequenceHeader + 4;
+        info.setWidth(((head[offset] & 0xFF) << 4) | ((head[offset + 1] & 0xF0) >> 4));
+        info.setHeight(((head[offset + 1] & 0x0F) << 8) | (head[offset + 2] & 0xFF));
+
+        int bitRateValue = ((head[offset + 4] & 0xFF) << 10) | ((head[offset + 5] & 0xFF) << 2)
+                | ((head[offset + 6] & 0xC0) >> 6);
+        if (container == MediaContainer.MPEG_VIDEO && bitRateValue > 0 && bitRateValue != VARIABLE_BIT_RATE) {
+            // In units of 400 bits per second.
+            info.setBitRate(bitRateValue * 400L);
+        }
+
+        // The quantizer matrices in between have no zero bytes, so the next start code follows the header.
+        int next = findNext(head, length, sequenceHeader + 12);
+        boolean mpeg2 = next >= 0 && next + 4 < length && (head[next + 3] & 0xFF) == EXTENSION_START_CODE
+                && (head[next + 4] & 0xF0) >> 4 == SEQUENCE_EXTENSION_ID;
+        info.setVideoCodec(mpeg2 ? "mpeg2video" : "mpeg1video");
+
+        return info;
+    }
+
+    /**
+     * Offset of the first start code of the value, -1 if there is none.
+     */
+    private static int find(byte[] bytes, int length, int code) {
+        for (int i = 0; i + 3 < length; i++) {
+            if (startCodeAt(bytes, i, code)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Offset of the first start code of any value from the offset, -1 if there is none.
+     */
+    private static int findNext(byte[] bytes, int length, int from) {
+        for (int i = from; i + 3 < length; i++) {
+            if (bytes[i] == 0 && bytes[i + 1] == 0 && bytes[i + 2] == 1) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startCodeAt(byte[] bytes, int offset, int code) {
+        return bytes[offset] == 0 && bytes[offset + 1] == 0 && bytes[offset + 2] == 1
+                && (bytes[offset + 3] & 0xFF) == code;
+    }
+}
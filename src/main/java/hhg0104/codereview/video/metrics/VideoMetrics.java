@@ -0,0 +1,106 @@
+package hhg0104.codereview.video.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This is the set of application meters of the video transfers, scraped with the other meters at
+ * /actuator/prometheus.
+ * <ul>
+ *     <li>video.upload, video.download: latency timers with percentile histograms, tagged by the outcome</li>
+ *     <li>video.upload.bytes, video.download.bytes: transferred content bytes</li>
+ *     <li>video.upload.active, video.download.active: transfers in progress</li>
+ * </ul>
+ * A download handed over to the container's sendfile support is timed until the hand-over, the transfer itself is
+ * in http.server.requests.
+ */
+@Component
+public class VideoMetrics {
+
+    public static final String SUCCESS = "success";
+
+    public static final String FAILURE = "failure";
+
+    private MeterRegistry registry;
+
+    private final AtomicInteger activeUploads = new AtomicInteger();
+
+    private final AtomicInteger activeDownloads = new AtomicInteger();
+
+    private final Counter uploadedBytes;
+
+    private final Counter downloadedBytes;
+
+    @Autowired
+    public VideoMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.uploadedBytes = Counter.builder("video.upload.bytes")
+                .baseUnit("bytes")
+                .description("Content bytes of the uploaded files")
+                .register(registry);
+        this.downloadedBytes = Counter.builder("video.download.bytes")
+                .baseUnit("bytes")
+                .description("Content bytes of the downloads")
+                .register(registry);
+        registry.gauge("video.upload.active", activeUploads);
+        registry.gauge("video.download.active", activeDownloads);
+    }
+
+    /**
+     * Start timing an upload, it is counted as active until it is stopped.
+     */
+    public Timer.Sample startUpload() {
+        activeUploads.incrementAndGet();
+        return Timer.start(registry);
+    }
+
+    /**
+     * Stop timing an upload.
+     *
+     * @param sample  Sample returned by {@link #startUpload()}
+     * @param outcome {@link #SUCCESS} or {@link #FAILURE}
+     * @param bytes   Content bytes of the uploaded files, 0 for a failure
+     */
+    public void stopUpload(Timer.Sample sample, String outcome, long bytes) {
+        activeUploads.decrementAndGet();
+        sample.stop(timer("video.upload", "Latency of the uploads, from the first byte to the publication",
+                "outcome", outcome));
+        uploadedBytes.increment(bytes);
+    }
+
+    /**
+     * Start timing a download, it is counted as active until it is stopped.
+     */
+    public Timer.Sample startDownload() {
+        activeDownloads.incrementAndGet();
+        return Timer.start(registry);
+    }
+
+    /**
+     * Stop timing a download.
+     *
+     * @param sample  Sample returned by {@link #startDownload()}
+     * @param outcome {@link #SUCCESS} or {@link #FAILURE}
+     * @param ranges  whole, single or multiple
+     * @param bytes   Content bytes written to the response
+     */
+    public void stopDownload(Timer.Sample sample, String outcome, String ranges, long bytes) {
+        activeDownloads.decrementAndGet();
+        sample.stop(timer("video.download", "Latency of the downloads",
+                "outcome", outcome, "ranges", ranges));
+        downloadedBytes.increment(bytes);
+    }
+
+    private Timer timer(String name, String description, String... tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -4,6 +4,9 @@ import lombok.Getter;
 import lombok.Setter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
 
 @Getter
 @Setter
@@ -12,4 +15,190 @@ public class FileProperties {
 
     @Value("${file.upload.base}")
     private String uploadBasePath;
+
+    @Value("${file.upload.buffer-size:65536}")
+    private int uploadBufferSize;
+
+    @Value("${file.upload.batch-max-files:100}")
+    private int uploadBatchMaxFiles;
+
+    @Value("${file.upload.batch-parallelism:4}")
+    private int uploadBatchParallelism;
+
+    @Value("${file.upload.min-free-space:1GB}")
+    private DataSize uploadMinFreeSpace;
+
+    @Value("${file.upload.min-chunk-size:64KB}")
+    private DataSize uploadMinChunkSize;
+
+    @Value("${file.upload.max-chunk-count:10000}")
+    private int uploadMaxChunkCount;
+
+    @Value("${file.upload.session-ttl:24h}")
+    private Duration uploadSessionTtl;
+
+    @Value("${file.media.verify-container:true}")
+    private boolean mediaVerifyContainer;
+
+    @Value("${file.media.max-moov-size:16MB}")
+    private DataSize mediaMaxMoovSize;
+
+    @Value("${file.media.fast-start.enabled:false}")
+    private boolean mediaFastStartEnabled;
+
+    @Value("${file.media.fast-start.workers:1}")
+    private int mediaFastStartWorkers;
+
+    @Value("${file.media.fast-start.queue-capacity:1000}")
+    private int mediaFastStartQueueCapacity;
+
+    @Value("${file.metadata-cache.maximum-size:10000}")
+    private long metadataCacheMaximumSize;
+
+    @Value("${file.metadata-cache.expire-after-write:10m}")
+    private Duration metadataCacheExpireAfterWrite;
+
+    @Value("${file.storage.layout-depth:2}")
+    private int storageLayoutDepth;
+
+    @Value("${file.storage.migration-batch-size:100}")
+    private int storageMigrationBatchSize;
+
+    @Value("${file.reconciliation.enabled:true}")
+    private boolean reconciliationEnabled;
+
+    @Value("${file.reconciliation.batch-size:500}")
+    private int reconciliationBatchSize;
+
+    @Value("${file.reconciliation.parallelism:4}")
+    private int reconciliationParallelism;
+
+    @Value("${file.reconciliation.grace-period:1h}")
+    private Duration reconciliationGracePeriod;
+
+    @Value("${file.storage.tiered.hot-path:}")
+    private String tieredHotPath;
+
+    @Value("${file.storage.tiered.cold-path:}")
+    private String tieredColdPath;
+
+    @Value("${file.storage.tiered.hot-capacity:100GB}")
+    private DataSize tieredHotCapacity;
+
+    @Value("${file.storage.tiered.demote-after:7d}")
+    private Duration tieredDemoteAfter;
+
+    @Value("${file.storage.tiered.demotion-interval:10m}")
+    private Duration tieredDemotionInterval;
+
+    @Value("${file.storage.s3.endpoint:}")
+    private String s3Endpoint;
+
+    @Value("${file.storage.s3.region:us-east-1}")
+    private String s3Region;
+
+    @Value("${file.storage.s3.bucket:}")
+    private String s3Bucket;
+
+    @Value("${file.storage.s3.prefix:videos/}")
+    private String s3Prefix;
+
+    @Value("${file.storage.s3.access-key:}")
+    private String s3AccessKey;
+
+    @Value("${file.storage.s3.secret-key:}")
+    private String s3SecretKey;
+
+    @Value("${file.storage.s3.path-style:true}")
+    private boolean s3PathStyle;
+
+    @Value("${file.content-cache.enabled:false}")
+    private boolean contentCacheEnabled;
+
+    @Value("${file.content-cache.budget:256MB}")
+    private DataSize contentCacheBudget;
+
+    @Value("${file.content-cache.slab-size:1MB}")
+    private DataSize contentCacheSlabSize;
+
+    @Value("${file.content-cache.max-entry-size:16MB}")
+    private DataSize contentCacheMaxEntrySize;
+
+    @Value("${file.content-cache.admission-threshold:2}")
+    private int contentCacheAdmissionThreshold;
+
+    @Value("${file.reaper.interval:1m}")
+    private Duration reaperInterval;
+
+    @Value("${file.reaper.timeout:1h}")
+    private Duration reaperTimeout;
+
+    @Value("${file.reaper.heartbeat-interval:5m}")
+    private Duration reaperHeartbeatInterval;
+
+    @Value("${file.reaper.batch-size:100}")
+    private int reaperBatchSize;
+
+    @Value("${file.gc.workers:2}")
+    private int gcWorkers;
+
+    @Value("${file.gc.queue-capacity:10000}")
+    private int gcQueueCapacity;
+
+    @Value("${file.gc.batch-size:50}")
+    private int gcBatchSize;
+
+    @Value("${file.gc.max-files-per-second:100}")
+    private int gcMaxFilesPerSecond;
+
+    @Value("${file.gc.replaced-blob-grace-period:1h}")
+    private Duration gcReplacedBlobGracePeriod;
+
+    @Value("${file.thumbnail.workers:2}")
+    private int thumbnailWorkers;
+
+    @Value("${file.thumbnail.queue-capacity:1000}")
+    private int thumbnailQueueCapacity;
+
+    @Value("${file.thumbnail.poster-width:640}")
+    private int thumbnailPosterWidth;
+
+    @Value("${file.thumbnail.poster-position:0.1}")
+    private double thumbnailPosterPosition;
+
+    @Value("${file.thumbnail.sprite-columns:5}")
+    private int thumbnailSpriteColumns;
+
+    @Value("${file.thumbnail.sprite-rows:5}")
+    private int thumbnailSpriteRows;
+
+    @Value("${file.thumbnail.sprite-tile-width:160}")
+    private int thumbnailSpriteTileWidth;
+
+    @Value("${file.thumbnail.ffmpeg-path:ffmpeg}")
+    private String thumbnailFfmpegPath;
+
+    @Value("${file.thumbnail.ffprobe-path:ffprobe}")
+    private String thumbnailFfprobePath;
+
+    @Value("${file.thumbnail.timeout:2m}")
+    private Duration thumbnailTimeout;
+
+    @Value("${file.thumbnail.cache-max-age:1d}")
+    private Duration thumbnailCacheMaxAge;
+
+    @Value("${file.thumbnail.retry-after:1m}")
+    private Duration thumbnailRetryAfter;
+
+    @Value("${file.thumbnail.max-retry-after:1d}")
+    private Duration thumbnailMaxRetryAfter;
+
+    @Value("${file.hls.segment-duration:6s}")
+    private Duration hlsSegmentDuration;
+
+    @Value("${file.hls.index-cache-budget:64MB}")
+    private DataSize hlsIndexCacheBudget;
+
+    @Value("${file.hls.cache-max-age:1d}")
+    private Duration hlsCacheMaxAge;
 }
@@ -0,0 +1,19 @@
+package hhg0104.codereview.video.repository;
+
+import hhg0104.codereview.video.entity.BlobDeletionEntity;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface BlobDeletionRepository extends JpaRepository<BlobDeletionEntity, String> {
+
+    /**
+     * Blobs whose grace period has passed before the time, after the content hash.
+     */
+    List<BlobDeletionEntity> findByDeleteAfterBeforeAndContentHashGreaterThanOrderByContentHash(
+            LocalDateTime deleteAfter, String contentHash, Limit limit);
+}
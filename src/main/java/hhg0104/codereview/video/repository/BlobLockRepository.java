@@ -0,0 +1,23 @@
+package hhg0104.codereview.video.repository;
+
+import hhg0104.codereview.video.entity.BlobLockEntity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface BlobLockRepository extends JpaRepository<BlobLockEntity, String> {
+
+    /**
+     * Lock the row of a blob until the end of the transaction, waiting for the transaction which holds it.
+     *
+     * @return The row, or empty when there is none, e.g. it was deleted with the blob while this waited
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from BlobLockEntity b where b.contentHash = :contentHash")
+    Optional<BlobLockEntity> lockByContentHash(String contentHash);
+}
@@ -0,0 +1,22 @@
+package hhg0104.codereview.video.repository;
+
+import hhg0104.codereview.video.entity.UploadChunkEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface UploadChunkRepository extends JpaRepository<UploadChunkEntity, UploadChunkEntity.ChunkId> {
+
+    @Query("select c.chunkIndex from UploadChunkEntity c where c.uploadId = :uploadId order by c.chunkIndex")
+    List<Integer> findChunkIndexes(String uploadId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from UploadChunkEntity c where c.uploadId = :uploadId")
+    void deleteByUploadId(String uploadId);
+}
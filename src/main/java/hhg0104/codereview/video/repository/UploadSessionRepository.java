@@ -0,0 +1,23 @@
+package hhg0104.codereview.video.repository;
+
+import hhg0104.codereview.video.entity.UploadSessionEntity;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSessionEntity, String> {
+
+    List<UploadSessionEntity> findByLastWrittenAtBeforeOrderByUploadId(LocalDateTime before, Limit limit);
+
+    @Transactional
+    @Modifying
+    @Query("update UploadSessionEntity s set s.lastWrittenAt = :writtenAt where s.uploadId = :uploadId")
+    int updateLastWrittenAt(String uploadId, LocalDateTime writtenAt);
+}
@@ -1,9 +1,157 @@
 package hhg0104.codereview.video.repository;
 
+import hhg0104.codereview.video.entity.MediaInfo;
 import hhg0104.codereview.video.entity.VideoEntity;
+import hhg0104.codereview.video.entity.VideoState;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 @Repository
-public interface VideoRepository extends JpaRepository<VideoEntity, Long> {
+public interface VideoRepository extends JpaRepository<VideoEntity, Long>, VideoRepositoryCustom {
+
+    boolean existsByNameAndStateIn(String name, Collection<VideoState> states);
+
+    boolean existsByFileIdAndState(long fileId, VideoState state);
+
+    /**
+     * Names of the given ones which are used by a video in one of the states.
+     */
+    @Query("select v.name from VideoEntity v where v.name in :names and v.state in :states")
+    List<String> findExistingNames(Collection<String> names, Collection<VideoState> states);
+
+    /**
+     * Files stored by their name, not in the content-addressed store yet, in one of the states.
+     */
+    List<VideoEntity> findByContentHashIsNullAndStateInAndFileIdGreaterThanOrderByFileId(Collection<VideoState> states,
+                                                                                         long fileId, Limit limit);
+
+    /**
+     * Content hashes of the given ones which are referenced by a video in one of the states.
+     */
+    @Query("select distinct v.contentHash from VideoEntity v where v.contentHash in :contentHashes and v.state in :states")
+    List<String> findReferencedContentHashes(Collection<String> contentHashes, Collection<VideoState> states);
+
+    /**
+     * Names of the given ones which are a video stored by its name, in one of the states.
+     */
+    @Query("select v.name from VideoEntity v where v.contentHash is null and v.name in :names and v.state in :states")
+    List<String> findReferencedNames(Collection<String> names, Collection<VideoState> states);
+
+    /**
+     * Files which have been in a state since before the time, after the file ID.
+     */
+    List<VideoEntity> findByStateAndStateChangedAtBeforeAndFileIdGreaterThanOrderByFileId(VideoState state,
+                                                                                         LocalDateTime stateChangedAt,
+                                                                                         long fileId, Limit limit);
+
+    /**
+     * Move the files which are still in the from state to the to state.
+     *
+     * @return Count of the moved files
+     */
+    @Transactional
+    @Modifying
+    @Query("update VideoEntity v set v.state = :to, v.stateChangedAt = :now where v.fileId in :fileIds and v.state = :from")
+    int updateState(Collection<Long> fileIds, VideoState from, VideoState to, LocalDateTime now);
+
+    /**
+     * Move all the files which have been in the from state since before the time to the to state.
+     *
+     * @return Count of the moved files
+     */
+    @Transactional
+    @Modifying
+    @Query("update VideoEntity v set v.state = :to, v.stateChangedAt = :now where v.state = :from and v.stateChangedAt < :before")
+    int updateStateBefore(VideoState from, VideoState to, LocalDateTime before, LocalDateTime now);
+
+    /**
+     * Refresh the state change time of the files which are still PENDING, so the reaper does not give up an upload
+     * which is still being transferred.
+     *
+     * @return Count of the refreshed files
+     */
+    @Transactional
+    @Modifying
+    @Query("update VideoEntity v set v.stateChangedAt = :now "
+            + "where v.fileId in :fileIds and v.state = hhg0104.codereview.video.entity.VideoState.PENDING")
+    int touchPending(Collection<Long> fileIds, LocalDateTime now);
+
+    /**
+     * Record the content hash of a file stored by its name, which is still in one of the states, once its content is
+     * in the content-addressed store. Only the hash is written, so a concurrent change of the file is kept.
+     *
+     * @return 1, or 0 when the file is not in the states or has a content hash already
+     */
+    @Transactional
+    @Modifying
+    @Query("update VideoEntity v set v.contentHash = :contentHash "
+            + "where v.fileId = :fileId and v.contentHash is null and v.state in :states")
+    int updateContentHash(long fileId, String contentHash, Collection<VideoState> states);
+
+    /**
+     * Record the content hash of a PENDING file before its content is stored, so the blob is referenced while the
+     * upload is in progress.
+     *
+     * @return 1, or 0 when the file is not PENDING any more
+     */
+    @Transactional
+    @Modifying
+    @Query("update VideoEntity v set v.contentHash = :contentHash "
+            + "where v.fileId = :fileId and v.state = hhg0104.codereview.video.entity.VideoState.PENDING")
+    int markHashed(long fileId, String contentHash);
+
+    /**
+     * Record the stored content of a PENDING file and move it to STORED.
+     *
+     * @return 1, or 0 when the file is not PENDING any more
+     */
+    @Transactional
+    @Modifying
+    @Query("update VideoEntity v set v.size = :size, v.contentHash = :contentHash, v.media = :media, "
+            + "v.state = hhg0104.codereview.video.entity.VideoState.STORED, v.stateChangedAt = :now "
+            + "where v.fileId = :fileId and v.state = hhg0104.codereview.video.entity.VideoState.PENDING")
+    int markStored(long fileId, long size, String contentHash, MediaInfo media, LocalDateTime now);
+
+    /**
+     * File IDs of the videos of a content, in one of the states.
+     */
+    @Query("select v.fileId from VideoEntity v where v.contentHash = :contentHash and v.state in :states")
+    List<Long> findFileIdsByContentHash(String contentHash, Collection<VideoState> states);
+
+    /**
+     * Move the videos of a content, in one of the states, to another content which replaces it, e.g. a remux of it.
+     *
+     * @return Count of the moved files
+     */
+    @Transactional
+    @Modifying
+    @Query("update VideoEntity v set v.size = :size, v.contentHash = :contentHash, v.media = :media "
+            + "where v.contentHash = :previousHash and v.state in :states")
+    int replaceContent(String previousHash, long size, String contentHash, MediaInfo media,
+                       Collection<VideoState> states);
+
+    /**
+     * File IDs of some files in a state, in no order. The rows are deleted page by page with it, so a page is never
+     * read twice.
+     */
+    @Query("select v.fileId from VideoEntity v where v.state = :state")
+    List<Long> findFileIdsByState(VideoState state, Limit limit);
+
+    /**
+     * Delete the files which are still in the state.
+     *
+     * @return Count of the deleted files
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from VideoEntity v where v.fileId in :fileIds and v.state = :state")
+    int deleteInBatchByState(Collection<Long> fileIds, VideoState state);
 }
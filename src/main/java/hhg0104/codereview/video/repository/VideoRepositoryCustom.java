@@ -0,0 +1,17 @@
+package hhg0104.codereview.video.repository;
+
+import hhg0104.codereview.video.request.FileListQuery;
+import hhg0104.codereview.video.response.FileInfo;
+
+import java.util.List;
+
+public interface VideoRepositoryCustom {
+
+    /**
+     * Find a page of the file list with a keyset (seek) query, so the cost doesn't grow with the page position.
+     *
+     * @param query Page request
+     * @return Up to limit + 1 files, one more than the page to tell whether there is a next page
+     */
+    List<FileInfo> findPage(FileListQuery query);
+}
@@ -0,0 +1,127 @@
+package hhg0104.codereview.video.repository;
+
+import hhg0104.codereview.video.entity.VideoEntity;
+import hhg0104.codereview.video.entity.VideoState;
+import hhg0104.codereview.video.request.FileListCursor;
+import hhg0104.codereview.video.request.FileListQuery;
+import hhg0104.codereview.video.request.FileSort;
+import hhg0104.codereview.video.response.FileInfo;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class VideoRepositoryImpl implements VideoRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<FileInfo> findPage(FileListQuery query) {
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<FileInfo> criteria = cb.createQuery(FileInfo.class);
+        Root<VideoEntity> video = criteria.from(VideoEntity.class);
+
+        criteria.select(cb.construct(FileInfo.class,
+                video.get("fileId"), video.get("name"), video.get("size"), video.get("createdAt"),
+                video.get("media")));
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.equal(video.get("state"), VideoState.ACTIVE));
+        if (query.getNamePrefix() != null && !query.getNamePrefix().isEmpty()) {
+            predicates.add(cb.like(video.get("name"), escapeLike(query.getNamePrefix()) + "%", '\\'));
+        }
+        if (query.getCreatedFrom() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(video.get("createdAt"), query.getCreatedFrom()));
+        }
+        if (query.getCreatedTo() != null) {
+            predicates.add(cb.lessThan(video.get("createdAt"), query.getCreatedTo()));
+        }
+        Path<Object> media = video.get("media");
+        if (query.getVideoCodec() != null) {
+            predicates.add(cb.equal(media.get("videoCodec"), query.getVideoCodec()));
+        }
+        if (query.getMinHeight() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(media.get("height"), query.getMinHeight()));
+        }
+        if (query.getMinDurationMillis() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(media.get("durationMillis"), query.getMinDurationMillis()));
+        }
+        if (query.getMaxDurationMillis() != null) {
+            predicates.add(cb.lessThan(media.get("durationMillis"), query.getMaxDurationMillis()));
+        }
+        if (query.getSort().isNullable()) {
+            predicates.add(cb.isNotNull(attribute(video, query.getSort())));
+        }
+        if (query.getCursor() != null) {
+            predicates.add(createAfterCursor(cb, video, query.getCursor(), query.isDescending()));
+        }
+        criteria.where(predicates.toArray(new Predicate[0]));
+
+        Path<Long> fileId = video.get("fileId");
+        List<Order> orders = new ArrayList<>();
+        if (query.getSort() != FileSort.FILE_ID) {
+            orders.add(createOrder(cb, attribute(video, query.getSort()), query.isDescending()));
+        }
+        orders.add(createOrder(cb, fileId, query.isDescending()));
+        criteria.orderBy(orders);
+
+        return entityManager.createQuery(criteria)
+                .setMaxResults(query.getLimit() + 1)
+                .getResultList();
+    }
+
+    /**
+     * (sort key, file id) is after the cursor. Written out instead of a row value comparison, which JPQL doesn't
+     * have, the indexes on (sort key, file_id) still serve it.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate createAfterCursor(CriteriaBuilder cb, Root<VideoEntity> video, FileListCursor cursor,
+                                       boolean descending) {
+
+        Path<Long> fileId = video.get("fileId");
+        Predicate afterFileId = descending
+                ? cb.lessThan(fileId, cursor.getFileId())
+                : cb.greaterThan(fileId, cursor.getFileId());
+
+        if (cursor.getSort() == FileSort.FILE_ID) {
+            return afterFileId;
+        }
+
+        Expression sortKey = attribute(video, cursor.getSort());
+        Comparable value = cursor.getValue();
+        Predicate afterSortKey = descending ? cb.lessThan(sortKey, value) : cb.greaterThan(sortKey, value);
+
+        return cb.or(afterSortKey, cb.and(cb.equal(sortKey, value), afterFileId));
+    }
+
+    /**
+     * Path of the attribute of a sort key, which can be in an embedded object, e.g. 'media.durationMillis'.
+     */
+    private Path<Object> attribute(Root<VideoEntity> video, FileSort sort) {
+
+        Path<Object> path = null;
+        for (String name : sort.getAttribute().split("\\.")) {
+            path = path == null ? video.get(name) : path.get(name);
+        }
+
+        return path;
+    }
+
+    private Order createOrder(CriteriaBuilder cb, Expression<?> expression, boolean descending) {
+        return descending ? cb.desc(expression) : cb.asc(expression);
+    }
+
+    private String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
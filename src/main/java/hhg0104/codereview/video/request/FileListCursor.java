@@ -0,0 +1,69 @@
+package hhg0104.codereview.video.request;
+
+import hhg0104.codereview.exception.InvalidRequestException;
+import hhg0104.codereview.video.response.FileInfo;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * An opaque position in the file list, the sort key value and the file id of the last file of a page.
+ */
+@Getter
+@AllArgsConstructor
+public class FileListCursor {
+
+    private static final String SEPARATOR = "\n";
+
+    private FileSort sort;
+
+    private Comparable<?> value;
+
+    private long fileId;
+
+    /**
+     * Create the cursor pointing after a file.
+     *
+     * @param sort Sort key of the list
+     * @param file Last file of a page
+     * @return Cursor
+     */
+    public static FileListCursor after(FileSort sort, FileInfo file) {
+        return new FileListCursor(sort, sort.valueOf(file), file.getFileId());
+    }
+
+    /**
+     * Decode a cursor returned with a previous page.
+     *
+     * @param encoded Encoded cursor
+     * @param sort    Sort key of the current request, it must be the sort key of the cursor
+     * @return Cursor
+     * @throws InvalidRequestException Invalid cursor
+     */
+    public static FileListCursor decode(String encoded, FileSort sort) throws InvalidRequestException {
+
+        String[] tokens;
+        try {
+            tokens = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8).split(SEPARATOR, 3);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Invalid cursor: " + encoded, e);
+        }
+
+        if (tokens.length != 3 || !tokens[0].equals(sort.getParameter())) {
+            throw new InvalidRequestException("The cursor doesn't belong to a list sorted by " + sort.getParameter());
+        }
+
+        try {
+            return new FileListCursor(sort, sort.parse(tokens[2]), Long.parseLong(tokens[1]));
+        } catch (NumberFormatException e) {
+            throw new InvalidRequestException("Invalid cursor: " + encoded, e);
+        }
+    }
+
+    public String encode() {
+        String plain = sort.getParameter() + SEPARATOR + fileId + SEPARATOR + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,79 @@
+package hhg0104.codereview.video.request;
+
+import hhg0104.codereview.exception.InvalidRequestException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * A page request of the file list.
+ */
+@Getter
+@AllArgsConstructor
+public class FileListQuery {
+
+    public static final int MAX_LIMIT = 1000;
+
+    private FileSort sort;
+
+    private boolean descending;
+
+    private int limit;
+
+    private String namePrefix;
+
+    private LocalDateTime createdFrom;
+
+    private LocalDateTime createdTo;
+
+    private String videoCodec;
+
+    private Integer minHeight;
+
+    private Long minDurationMillis;
+
+    private Long maxDurationMillis;
+
+    /**
+     * Position after the last file of the previous page, null for the first page.
+     */
+    private FileListCursor cursor;
+
+    /**
+     * Create a page request from the request parameters.
+     *
+     * @param minDuration Shortest duration in seconds, inclusive
+     * @param maxDuration Longest duration in seconds, exclusive
+     * @throws InvalidRequestException Invalid request parameters
+     */
+    public static FileListQuery of(String sort, String order, int limit, String cursor, String namePrefix,
+                                   LocalDateTime createdFrom, LocalDateTime createdTo, String videoCodec,
+                                   Integer minHeight, Long minDuration, Long maxDuration)
+            throws InvalidRequestException {
+
+        FileSort fileSort = FileSort.of(sort);
+
+        if (!"asc".equals(order) && !"desc".equals(order)) {
+            throw new InvalidRequestException("The order must be asc or desc.");
+        }
+
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new InvalidRequestException("The limit must be between 1 and " + MAX_LIMIT);
+        }
+
+        if ((minHeight != null && minHeight < 0) || (minDuration != null && minDuration < 0)
+                || (maxDuration != null && maxDuration < 0)) {
+            throw new InvalidRequestException("The media filters must not be negative.");
+        }
+
+        FileListCursor fileListCursor = cursor == null ? null : FileListCursor.decode(cursor, fileSort);
+
+        return new FileListQuery(fileSort, "desc".equals(order), limit, namePrefix, createdFrom, createdTo,
+                videoCodec, minHeight, toMillis(minDuration), toMillis(maxDuration), fileListCursor);
+    }
+
+    private static Long toMillis(Long seconds) {
+        return seconds == null ? null : seconds * 1000;
+    }
+}
@@ -0,0 +1,85 @@
+package hhg0104.codereview.video.request;
+
+import hhg0104.codereview.exception.InvalidRequestException;
+import hhg0104.codereview.video.response.FileInfo;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Sort keys of the file list. Every sort is made unique with the file id as the last key, which makes it
+ * usable for keyset pagination. A sort by a media attribute lists only the files which have the attribute.
+ */
+@Getter
+public enum FileSort {
+
+    FILE_ID("file_id", "fileId"),
+    CREATED_AT("created_at", "createdAt"),
+    SIZE("size", "size"),
+    NAME("name", "name"),
+    DURATION("duration", "media.durationMillis", true);
+
+    private final String parameter;
+
+    private final String attribute;
+
+    /**
+     * The attribute can be null, the files without it are left out of the sort.
+     */
+    private final boolean nullable;
+
+    FileSort(String parameter, String attribute) {
+        this(parameter, attribute, false);
+    }
+
+    FileSort(String parameter, String attribute, boolean nullable) {
+        this.parameter = parameter;
+        this.attribute = attribute;
+        this.nullable = nullable;
+    }
+
+    /**
+     * Find a sort key by its request parameter value.
+     *
+     * @param parameter Request parameter value, e.g. 'created_at'
+     * @return Sort key
+     * @throws InvalidRequestException Unknown sort key
+     */
+    public static FileSort of(String parameter) throws InvalidRequestException {
+        for (FileSort sort : values()) {
+            if (sort.parameter.equals(parameter)) {
+                return sort;
+            }
+        }
+        throw new InvalidRequestException("The sort must be one of file_id, created_at, size, name and duration.");
+    }
+
+    /**
+     * Return the sort key value of a file.
+     */
+    public Comparable<?> valueOf(FileInfo file) {
+        return switch (this) {
+            case FILE_ID -> file.getFileId();
+            case CREATED_AT -> file.getCreatedAt();
+            case SIZE -> file.getSize();
+            case NAME -> file.getName();
+            case DURATION -> file.getMedia().getDurationMillis();
+        };
+    }
+
+    /**
+     * Parse a sort key value kept in a cursor, the reverse of its toString().
+     */
+    public Comparable<?> parse(String value) throws InvalidRequestException {
+        try {
+            return switch (this) {
+                case FILE_ID, SIZE, DURATION -> Long.valueOf(value);
+                case CREATED_AT -> LocalDateTime.parse(value);
+                case NAME -> value;
+            };
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new InvalidRequestException("Invalid cursor value: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package hhg0104.codereview.video.request;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class UploadSessionRequest {
+
+    private String name;
+
+    private long size;
+
+    @JsonProperty("chunk_size")
+    private long chunkSize;
+}
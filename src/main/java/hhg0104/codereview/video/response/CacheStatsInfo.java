@@ -0,0 +1,26 @@
+package hhg0104.codereview.video.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class CacheStatsInfo {
+
+    private long size;
+
+    @JsonProperty("hit_count")
+    private long hitCount;
+
+    @JsonProperty("miss_count")
+    private long missCount;
+
+    @JsonProperty("eviction_count")
+    private long evictionCount;
+
+    @JsonProperty("hit_rate")
+    private double hitRate;
+}
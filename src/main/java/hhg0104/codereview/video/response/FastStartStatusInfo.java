@@ -0,0 +1,27 @@
+package hhg0104.codereview.video.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class FastStartStatusInfo {
+
+    @JsonProperty("queue_depth")
+    private int queueDepth;
+
+    @JsonProperty("queue_capacity")
+    private int queueCapacity;
+
+    @JsonProperty("remuxed_files")
+    private long remuxedFiles;
+
+    @JsonProperty("failed_files")
+    private long failedFiles;
+
+    @JsonProperty("rejected_files")
+    private long rejectedFiles;
+}
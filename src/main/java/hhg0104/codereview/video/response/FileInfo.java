@@ -1,19 +1,37 @@
 package hhg0104.codereview.video.response;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import hhg0104.codereview.video.entity.MediaInfo;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.time.LocalDateTime;
 
 @Getter
 @Setter
+@AllArgsConstructor
+@NoArgsConstructor
 public class FileInfo {
 
-    private String fileId;
+    @JsonProperty("file_id")
+    private long fileId;
 
     private String name;
 
     private long size;
 
+    @JsonProperty("created_at")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime createdAt;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private MediaInfo media;
+
+    public FileInfo(long fileId, String name, long size, LocalDateTime createdAt) {
+        this(fileId, name, size, createdAt, null);
+    }
 }
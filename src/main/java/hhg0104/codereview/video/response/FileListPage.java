@@ -0,0 +1,18 @@
+package hhg0104.codereview.video.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class FileListPage {
+
+    private List<FileInfo> files;
+
+    /**
+     * Cursor of the next page, null when this is the last page.
+     */
+    private String nextCursor;
+}
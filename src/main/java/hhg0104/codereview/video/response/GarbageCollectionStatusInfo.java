@@ -0,0 +1,30 @@
+package hhg0104.codereview.video.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class GarbageCollectionStatusInfo {
+
+    @JsonProperty("queue_depth")
+    private int queueDepth;
+
+    @JsonProperty("queue_capacity")
+    private int queueCapacity;
+
+    @JsonProperty("reclaimed_files")
+    private long reclaimedFiles;
+
+    @JsonProperty("reclaimed_bytes")
+    private long reclaimedBytes;
+
+    @JsonProperty("failed_files")
+    private long failedFiles;
+
+    @JsonProperty("deferred_files")
+    private long deferredFiles;
+}
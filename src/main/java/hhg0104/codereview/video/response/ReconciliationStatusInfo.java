@@ -0,0 +1,34 @@
+package hhg0104.codereview.video.response;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class ReconciliationStatusInfo {
+
+    private String state;
+
+    @JsonProperty("scanned_files")
+    private long scannedFiles;
+
+    @JsonProperty("quarantined_files")
+    private long quarantinedFiles;
+
+    @JsonProperty("failed_files")
+    private long failedFiles;
+
+    @JsonProperty("started_at")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime startedAt;
+
+    @JsonProperty("finished_at")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime finishedAt;
+}
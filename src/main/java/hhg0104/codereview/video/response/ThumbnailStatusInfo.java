@@ -0,0 +1,27 @@
+package hhg0104.codereview.video.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class ThumbnailStatusInfo {
+
+    @JsonProperty("queue_depth")
+    private int queueDepth;
+
+    @JsonProperty("queue_capacity")
+    private int queueCapacity;
+
+    @JsonProperty("generated_files")
+    private long generatedFiles;
+
+    @JsonProperty("failed_files")
+    private long failedFiles;
+
+    @JsonProperty("rejected_files")
+    private long rejectedFiles;
+}
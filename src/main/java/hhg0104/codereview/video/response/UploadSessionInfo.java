@@ -0,0 +1,30 @@
+package hhg0104.codereview.video.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class UploadSessionInfo {
+
+    @JsonProperty("upload_id")
+    private String uploadId;
+
+    private String name;
+
+    private long size;
+
+    @JsonProperty("chunk_size")
+    private long chunkSize;
+
+    @JsonProperty("chunk_count")
+    private int chunkCount;
+
+    @JsonProperty("completed_chunks")
+    private List<Integer> completedChunks;
+}
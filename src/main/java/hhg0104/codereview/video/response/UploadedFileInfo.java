@@ -0,0 +1,19 @@
+package hhg0104.codereview.video.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class UploadedFileInfo {
+
+    @JsonProperty("file_id")
+    private long fileId;
+
+    private String name;
+
+    private String location;
+}
@@ -0,0 +1,221 @@
+package hhg0104.codereview.video.storage;
+
+import hhg0104.codereview.video.entity.BlobLockEntity;
+import hhg0104.codereview.video.entity.VideoState;
+import hhg0104.codereview.video.repository.BlobLockRepository;
+import hhg0104.codereview.video.repository.VideoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * This is the reference check of the blobs, for everything which deletes a blob once no video references it.
+ * <p>
+ * A blob is referenced by the content hash of a live video. An upload records the hash on its PENDING row before
+ * it stores the blob, as a dedup hit does not touch the blob, so the row is the only sign of the upload. The check
+ * and the delete of a blob hold a lock of its row in the blob lock table, and an upload waits for that lock after
+ * it recorded the hash, so on every API node sharing the video storage, a delete either sees the upload or is
+ * done before the upload stores the blob. The hashes are also locked in the JVM first, so the uploads and deletes
+ * of one node wait there rather than in the DB.
+ */
+@Slf4j
+@Component
+public class BlobReferences {
+
+    private static final int LOCK_STRIPES = 64;
+
+    /**
+     * Attempts to lock the row of a blob, which another node can delete while this waits for it.
+     */
+    private static final int MAX_LOCK_ATTEMPTS = 10;
+
+    private VideoRepository repository;
+
+    private BlobLockRepository lockRepository;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    @Autowired
+    public BlobReferences(VideoRepository repository, BlobLockRepository lockRepository,
+                          PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.lockRepository = lockRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Record the content hash of a PENDING file, then store its content.
+     *
+     * @param fileId File ID of the PENDING file
+     * @param hash   Content hash
+     * @param store  Store of the content
+     * @return Result of the store
+     * @throws IOException The file is not PENDING any more, or the store failed
+     */
+    public <T> T reference(long fileId, String hash, Store<T> store) throws IOException {
+
+        ReentrantLock lock = locks[stripe(hash)];
+        lock.lock();
+        try {
+            if (repository.markHashed(fileId, hash) == 0) {
+                throw new IOException("The upload was abandoned before it was stored: " + fileId);
+            }
+            // A delete of the blob in progress on another node ends before the store, which stores it again then.
+            transactionTemplate.executeWithoutResult(status -> lockRepository.lockByContentHash(hash));
+            return store.store();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Store a content which is referenced by the end of the store, so its blob is not deleted meanwhile. The row of
+     * the blob is locked for the whole store, which holds a DB connection, so this is for the background jobs.
+     *
+     * @param hash  Content hash
+     * @param store Store of the content, and the update which references it
+     * @return Result of the store
+     * @throws IOException Store exception
+     */
+    public <T> T hold(String hash, Store<T> store) throws IOException {
+
+        ReentrantLock lock = locks[stripe(hash)];
+        lock.lock();
+        try {
+            return lockBlob(hash, store);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Delete the blobs of the given hashes which no live video references. The delete handles its own failures.
+     * A blob whose row cannot be locked is kept, and found by the reconciliation if nothing references it.
+     *
+     * @param hashes Content hashes
+     * @param delete Delete of a blob
+     * @return Hashes which were not referenced, and were handed to the delete
+     */
+    public Set<String> deleteUnreferenced(Collection<String> hashes, Consumer<String> delete) {
+
+        Set<String> candidates = new HashSet<>(hashes);
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+
+        // The stripes are locked in order, so two batches never wait for each other.
+        Set<Integer> stripes = new TreeSet<>();
+        for (String hash : candidates) {
+            stripes.add(stripe(hash));
+        }
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+        }
+        try {
+            repository.findReferencedContentHashes(candidates, VideoState.LIVE).forEach(candidates::remove);
+
+            Set<String> unreferenced = new HashSet<>();
+            for (String hash : candidates) {
+                try {
+                    // Checked again under the row lock, as an upload on another node can reference it meanwhile.
+                    boolean deleted = lockBlob(hash, () -> {
+                        if (repository.findReferencedContentHashes(List.of(hash), VideoState.LIVE).contains(hash)) {
+                            return false;
+                        }
+                        delete.accept(hash);
+                        return true;
+                    });
+                    if (deleted) {
+                        unreferenced.add(hash);
+                    }
+                } catch (IOException | DataAccessException e) {
+                    log.warn("Couldn't lock the blob to delete it: " + hash, e);
+                }
+            }
+            return unreferenced;
+        } finally {
+            for (int stripe : stripes) {
+                locks[stripe].unlock();
+            }
+        }
+    }
+
+    /**
+     * Run an action in a transaction which holds the lock of the row of a blob, and deletes the row at its end.
+     */
+    private <T> T lockBlob(String hash, Store<T> action) throws IOException {
+
+        for (int attempt = 0; attempt < MAX_LOCK_ATTEMPTS; attempt++) {
+            insertRow(hash);
+
+            AtomicReference<T> result = new AtomicReference<>();
+            boolean locked;
+            try {
+                locked = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                    if (lockRepository.lockByContentHash(hash).isEmpty()) {
+                        return false;
+                    }
+                    try {
+                        result.set(action.store());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    lockRepository.deleteById(hash);
+                    return true;
+                }));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            if (locked) {
+                return result.get();
+            }
+        }
+
+        throw new IOException("The row of the blob was deleted by another node on every attempt: " + hash);
+    }
+
+    private void insertRow(String hash) {
+
+        if (lockRepository.existsById(hash)) {
+            return;
+        }
+        try {
+            lockRepository.save(new BlobLockEntity(hash));
+        } catch (DataIntegrityViolationException e) {
+            // Inserted by another node meanwhile.
+        }
+    }
+
+    private int stripe(String hash) {
+        return Math.floorMod(hash.hashCode(), LOCK_STRIPES);
+    }
+
+    /**
+     * Stores a content.
+     */
+    @FunctionalInterface
+    public interface Store<T> {
+        T store() throws IOException;
+    }
+}
@@ -0,0 +1,172 @@
+package hhg0104.codereview.video.storage;
+
+import hhg0104.codereview.video.property.FileProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * This is a content-addressed store of the video files in the upload directory.
+ * <p>
+ * A blob is named by the SHA-256 hash of its content and placed under the 'blobs' directory by the
+ * {@link StorageLayout}. Identical uploads share one blob, which is referenced by every video row of the same
+ * content hash.
+ */
+@Component
+public class BlobStore {
+
+    private static final String BLOB_DIRECTORY = "blobs";
+
+    private Path blobDirectory;
+
+    private StorageLayout layout;
+
+    @Autowired
+    public BlobStore(FileProperties fileProp, StorageLayout layout) {
+        this(Path.of(fileProp.getUploadBasePath(), BLOB_DIRECTORY), layout);
+    }
+
+    public BlobStore(Path blobDirectory, StorageLayout layout) {
+        this.blobDirectory = blobDirectory;
+        this.layout = layout;
+    }
+
+    /**
+     * Return the path of a blob. A blob which is not migrated to the current layout yet is found at its previous
+     * path, otherwise the path of the current layout is returned whether the blob exists or not.
+     *
+     * @param hash Content hash
+     * @return Blob path
+     */
+    public Path resolve(String hash) {
+
+        Path blobPath = getLayoutPath(hash);
+        if (Files.exists(blobPath)) {
+            return blobPath;
+        }
+
+        for (Path previousPath : layout.previousPaths(hash)) {
+            Path path = getBlobDirectory().resolve(previousPath);
+            if (Files.exists(path)) {
+                return path;
+            }
+        }
+
+        return blobPath;
+    }
+
+    /**
+     * Return the path of a blob in the current layout.
+     */
+    public Path getLayoutPath(String hash) {
+        return getBlobDirectory().resolve(layout.resolve(hash));
+    }
+
+    public int getLayoutDepth() {
+        return layout.getDepth();
+    }
+
+    public Path getBlobDirectory() {
+        return blobDirectory;
+    }
+
+    /**
+     * Move a written file into the store. When the blob already exists, the written file is a duplicate and is
+     * deleted instead. A file on another file system is copied next to the blob first, so the blob appears
+     * atomically either way.
+     *
+     * @param writtenPath Path of the written file
+     * @param hash        Content hash of the file
+     * @return True when a new blob is stored, false when the content was already stored
+     * @throws IOException File move exception
+     */
+    public boolean store(Path writtenPath, String hash) throws IOException {
+
+        Path blobPath = resolve(hash);
+        if (Files.exists(blobPath)) {
+            Files.delete(writtenPath);
+            return false;
+        }
+
+        Files.createDirectories(blobPath.getParent());
+        try {
+            Files.move(writtenPath, blobPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            copy(writtenPath, blobPath);
+            Files.delete(writtenPath);
+        } catch (FileAlreadyExistsException e) {
+            // Another upload of the same content was stored first.
+            Files.delete(writtenPath);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Copy a file into the store, e.g. from another storage tier.
+     *
+     * @param path Path of the file
+     * @param hash Content hash of the file
+     * @throws IOException File copy exception
+     */
+    public void copyFrom(Path path, String hash) throws IOException {
+
+        Path blobPath = resolve(hash);
+        if (Files.exists(blobPath)) {
+            return;
+        }
+
+        Files.createDirectories(blobPath.getParent());
+        copy(path, blobPath);
+    }
+
+    private void copy(Path path, Path blobPath) throws IOException {
+        Path tempPath = blobPath.resolveSibling(blobPath.getFileName() + "." + UUID.randomUUID() + ".part");
+        try {
+            Files.copy(path, tempPath);
+            Files.move(tempPath, blobPath, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * Add a file to the store without moving it, so it stays readable at its own path until it is deleted.
+     * The file is hard linked, or copied when the file system has no hard links.
+     *
+     * @param path Path of the file, in the upload directory
+     * @param hash Content hash of the file
+     * @return Blob path
+     * @throws IOException File link exception
+     */
+    public Path link(Path path, String hash) throws IOException {
+
+        Path blobPath = resolve(hash);
+        if (Files.exists(blobPath)) {
+            return blobPath;
+        }
+
+        Files.createDirectories(blobPath.getParent());
+        try {
+            Files.createLink(blobPath, path);
+        } catch (FileAlreadyExistsException e) {
+            // The same content was stored meanwhile.
+        } catch (UnsupportedOperationException e) {
+            copy(path, blobPath);
+        }
+
+        return blobPath;
+    }
+
+    public void delete(String hash) throws IOException {
+        Files.deleteIfExists(resolve(hash));
+    }
+}
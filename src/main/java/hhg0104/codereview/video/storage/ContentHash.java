@@ -0,0 +1,73 @@
+package hhg0104.codereview.video.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.Consumer;
+
+/**
+ * SHA-256 content hash of the stored video files, as a lower case hex string.
+ */
+public final class ContentHash {
+
+    private static final String ALGORITHM = "SHA-256";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ContentHash() {
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String toHex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hash a written file. Used where the content was not received in order, so it could not be hashed on the way in.
+     *
+     * @param path File path
+     * @return Content hash
+     * @throws IOException File read exception
+     */
+    public static String of(Path path) throws IOException {
+        return of(path, buffer -> {
+        });
+    }
+
+    /**
+     * Hash a written file, and pass the read bytes to an observer on the way, so they are read only once.
+     *
+     * @param path     File path
+     * @param observer Observer of the bytes, in file order
+     * @return Content hash
+     * @throws IOException File read exception
+     */
+    public static String of(Path path, Consumer<ByteBuffer> observer) throws IOException {
+
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                observer.accept(buffer.duplicate());
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        return toHex(digest);
+    }
+}
@@ -0,0 +1,31 @@
+package hhg0104.codereview.video.storage;
+
+import hhg0104.codereview.video.response.GarbageCollectionStatusInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * This is a controller class for the background reclamation of the deleted video files.
+ */
+@RestController
+public class GarbageCollectionController {
+
+    private VideoGarbageCollector collector;
+
+
+    @Autowired
+    public GarbageCollectionController(VideoGarbageCollector collector) {
+        this.collector = collector;
+    }
+
+    /**
+     * Queue depth and counters of the garbage collector since the start.
+     *
+     * @return Status of the garbage collector
+     */
+    @GetMapping("/storage/gc")
+    public GarbageCollectionStatusInfo status() {
+        return collector.getStatus();
+    }
+}
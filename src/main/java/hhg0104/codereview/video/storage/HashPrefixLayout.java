@@ -0,0 +1,71 @@
+package hhg0104.codereview.video.storage;
+
+import hhg0104.codereview.video.property.FileProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is a fan-out layout by the leading characters of the content hash, two characters per directory level,
+ * as in 'ab/cd/abcd...' for the depth 2.
+ * <p>
+ * Each level splits the blobs into 256 directories, so the depth 2 keeps a directory under a thousand entries
+ * up to a few hundred million blobs. The depth 0 keeps every blob in one flat directory.
+ */
+@Component
+public class HashPrefixLayout implements StorageLayout {
+
+    public static final int MAX_DEPTH = 4;
+
+    private static final int LEVEL_WIDTH = 2;
+
+    private final int depth;
+
+    @Autowired
+    public HashPrefixLayout(FileProperties fileProp) {
+        this(fileProp.getStorageLayoutDepth());
+    }
+
+    public HashPrefixLayout(int depth) {
+        if (depth < 0 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("The storage layout depth must be between 0 and " + MAX_DEPTH);
+        }
+        this.depth = depth;
+    }
+
+    @Override
+    public Path resolve(String hash) {
+        return resolve(hash, depth);
+    }
+
+    @Override
+    public List<Path> previousPaths(String hash) {
+
+        List<Path> paths = new ArrayList<>();
+        for (int otherDepth = 0; otherDepth <= MAX_DEPTH; otherDepth++) {
+            if (otherDepth != depth) {
+                paths.add(resolve(hash, otherDepth));
+            }
+        }
+
+        return paths;
+    }
+
+    @Override
+    public int getDepth() {
+        return depth;
+    }
+
+    private Path resolve(String hash, int depth) {
+
+        Path path = Path.of("");
+        for (int level = 0; level < depth; level++) {
+            path = path.resolve(hash.substring(level * LEVEL_WIDTH, (level + 1) * LEVEL_WIDTH));
+        }
+
+        return path.resolve(hash);
+    }
+}
@@ -0,0 +1,48 @@
+package hhg0104.codereview.video.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+
+/**
+ * A channel which hashes the bytes written through it, so the content hash is ready when the upload is written
+ * without reading the file again.
+ */
+public class HashingChannel implements WritableByteChannel {
+
+    private final WritableByteChannel target;
+
+    private final MessageDigest digest = ContentHash.newDigest();
+
+    public HashingChannel(WritableByteChannel target) {
+        this.target = target;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+
+        ByteBuffer written = src.duplicate();
+        int count = target.write(src);
+        digest.update(written.limit(written.position() + count));
+
+        return count;
+    }
+
+    /**
+     * Content hash of the bytes written so far. Call it once, after the last write.
+     */
+    public String getHash() {
+        return ContentHash.toHex(digest);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return target.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        target.close();
+    }
+}
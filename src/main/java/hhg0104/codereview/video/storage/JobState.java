@@ -0,0 +1,8 @@
+package hhg0104.codereview.video.storage;
+
+/**
+ * State of a background storage job.
+ */
+public enum JobState {
+    IDLE, RUNNING, DONE, FAILED
+}
@@ -0,0 +1,90 @@
+package hhg0104.codereview.video.storage;
+
+import hhg0104.codereview.video.download.ByteRange;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * This is a video storage on the local disk, the blob store in the upload directory.
+ */
+@Component
+@ConditionalOnProperty(name = "file.storage.type", havingValue = "local", matchIfMissing = true)
+public class LocalVideoStorage implements VideoStorage {
+
+    private BlobStore blobStore;
+
+    @Autowired
+    public LocalVideoStorage(BlobStore blobStore) {
+        this.blobStore = blobStore;
+    }
+
+    @Override
+    public StoredObject stat(String key) throws IOException {
+        return stat(blobStore, key);
+    }
+
+    @Override
+    public boolean put(String key, InputStream in, long length) throws IOException {
+        return put(blobStore, key, in);
+    }
+
+    @Override
+    public boolean put(String key, Path writtenPath) throws IOException {
+        return blobStore.store(writtenPath, key);
+    }
+
+    @Override
+    public InputStream get(String key, ByteRange range) throws IOException {
+        return get(blobStore.resolve(key), range);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        blobStore.delete(key);
+    }
+
+    @Override
+    public File getLocalFile(String key) {
+        File file = blobStore.resolve(key).toFile();
+        return file.exists() ? file : null;
+    }
+
+    @Override
+    public String getLocation(String key) {
+        return blobStore.resolve(key).toFile().getAbsolutePath();
+    }
+
+    static StoredObject stat(BlobStore blobStore, String key) {
+        File file = blobStore.resolve(key).toFile();
+        return file.exists() ? new StoredObject(file.length(), file.lastModified()) : null;
+    }
+
+    static boolean put(BlobStore blobStore, String key, InputStream in) throws IOException {
+
+        Path tempPath = blobStore.getBlobDirectory().resolve(key + "." + UUID.randomUUID() + ".part");
+        Files.createDirectories(tempPath.getParent());
+        try {
+            Files.copy(in, tempPath);
+            return blobStore.store(tempPath, key);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    static InputStream get(Path path, ByteRange range) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ).position(range.getStart());
+        return new BoundedInputStream(Channels.newInputStream(channel), range.getLength());
+    }
+}
@@ -0,0 +1,163 @@
+package hhg0104.codereview.video.storage;
+
+import hhg0104.codereview.video.download.ByteRange;
+import hhg0104.codereview.video.property.FileProperties;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * This is a video storage on an S3-compatible object storage, e.g. Amazon S3 or MinIO.
+ * <p>
+ * The objects are kept flat under a key prefix, an object storage needs no directory fan-out. A download is
+ * streamed from a ranged GET, as there is no local file to send with the zero-copy engine. An object is written
+ * with a single PUT, so it can be up to 5GB.
+ */
+@Component
+@ConditionalOnProperty(name = "file.storage.type", havingValue = "s3")
+public class S3VideoStorage implements VideoStorage {
+
+    private static final int NOT_FOUND = 404;
+
+    private final S3Client client;
+
+    private final String bucket;
+
+    private final String prefix;
+
+    @Autowired
+    public S3VideoStorage(FileProperties fileProp) {
+        this(createClient(fileProp), fileProp.getS3Bucket(), fileProp.getS3Prefix());
+    }
+
+    public S3VideoStorage(S3Client client, String bucket, String prefix) {
+        this.client = client;
+        this.bucket = bucket;
+        this.prefix = prefix;
+    }
+
+    private static S3Client createClient(FileProperties fileProp) {
+
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(fileProp.getS3Region()))
+                .forcePathStyle(fileProp.isS3PathStyle());
+        if (!fileProp.getS3Endpoint().isEmpty()) {
+            builder.endpointOverride(URI.create(fileProp.getS3Endpoint()));
+        }
+        if (!fileProp.getS3AccessKey().isEmpty()) {
+            builder.credentialsProvider(StaticCredentialsProvider.create(
+                    AwsBasicCredentials.create(fileProp.getS3AccessKey(), fileProp.getS3SecretKey())));
+        }
+
+        return builder.build();
+    }
+
+    @PreDestroy
+    public void close() {
+        client.close();
+    }
+
+    @Override
+    public StoredObject stat(String key) throws IOException {
+        try {
+            HeadObjectResponse response = client.headObject(request -> request.bucket(bucket).key(toObjectKey(key)));
+            return new StoredObject(response.contentLength(), response.lastModified().toEpochMilli());
+        } catch (S3Exception e) {
+            if (e.statusCode() == NOT_FOUND) {
+                return null;
+            }
+            throw new IOException("Couldn't read the object metadata: " + key, e);
+        } catch (SdkException e) {
+            throw new IOException("Couldn't read the object metadata: " + key, e);
+        }
+    }
+
+    @Override
+    public boolean put(String key, InputStream in, long length) throws IOException {
+
+        if (stat(key) != null) {
+            return false;
+        }
+
+        put(key, RequestBody.fromInputStream(in, length));
+        return true;
+    }
+
+    @Override
+    public boolean put(String key, Path writtenPath) throws IOException {
+        try {
+            if (stat(key) != null) {
+                return false;
+            }
+
+            put(key, RequestBody.fromFile(writtenPath));
+            return true;
+        } finally {
+            Files.deleteIfExists(writtenPath);
+        }
+    }
+
+    private void put(String key, RequestBody body) throws IOException {
+        try {
+            client.putObject(request -> request.bucket(bucket).key(toObjectKey(key)), body);
+        } catch (SdkException e) {
+            throw new IOException("Couldn't write the object: " + key, e);
+        }
+    }
+
+    @Override
+    public InputStream get(String key, ByteRange range) throws IOException {
+        try {
+            return client.getObject(request -> request.bucket(bucket).key(toObjectKey(key))
+                    .range("bytes=" + range.getStart() + "-" + range.getEnd()));
+        } catch (S3Exception e) {
+            if (e.statusCode() == NOT_FOUND) {
+                throw new NoSuchFileException(key);
+            }
+            throw new IOException("Couldn't read the object: " + key, e);
+        } catch (SdkException e) {
+            throw new IOException("Couldn't read the object: " + key, e);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            client.deleteObject(request -> request.bucket(bucket).key(toObjectKey(key)));
+        } catch (SdkException e) {
+            throw new IOException("Couldn't delete the object: " + key, e);
+        }
+    }
+
+    @Override
+    public File getLocalFile(String key) {
+        return null;
+    }
+
+    @Override
+    public String getLocation(String key) {
+        return "s3://" + bucket + "/" + toObjectKey(key);
+    }
+
+    private String toObjectKey(String key) {
+        return prefix + key;
+    }
+}
@@ -0,0 +1,32 @@
+package hhg0104.codereview.video.storage;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A directory layout of the blobs in the store.
+ */
+public interface StorageLayout {
+
+    /**
+     * Return the path of a blob, relative to the blob directory.
+     *
+     * @param hash Content hash of the blob
+     * @return Relative blob path
+     */
+    Path resolve(String hash);
+
+    /**
+     * Return the other paths a blob can be found at, when it was stored with another layout configuration
+     * and is not migrated yet.
+     *
+     * @param hash Content hash of the blob
+     * @return Relative blob paths
+     */
+    List<Path> previousPaths(String hash);
+
+    /**
+     * Return the directory levels between the blob directory and a blob.
+     */
+    int getDepth();
+}
@@ -0,0 +1,44 @@
+package hhg0104.codereview.video.storage;
+
+import hhg0104.codereview.video.response.MigrationStatusInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * This is a controller class for the migration of the stored files into the current storage layout.
+ */
+@RestController
+public class StorageMigrationController {
+
+    private StorageMigrator migrator;
+
+
+    @Autowired
+    public StorageMigrationController(StorageMigrator migrator) {
+        this.migrator = migrator;
+    }
+
+    /**
+     * Start a migration in the background. The files are served as usual while it runs.
+     *
+     * @return Status of the running migration
+     */
+    @PostMapping("/storage/migration")
+    public ResponseEntity<MigrationStatusInfo> start() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(migrator.start());
+    }
+
+    /**
+     * Status of the last migration.
+     *
+     * @return State and file counts of the migration
+     */
+    @GetMapping("/storage/migration")
+    public MigrationStatusInfo status() {
+        return migrator.getStatus();
+    }
+}
@@ -0,0 +1,250 @@
+package hhg0104.codereview.video.storage;
+
+import hhg0104.codereview.video.cache.VideoMetadataCache;
+import hhg0104.codereview.video.entity.VideoEntity;
+import hhg0104.codereview.video.entity.VideoState;
+import hhg0104.codereview.video.property.FileProperties;
+import hhg0104.codereview.video.repository.VideoRepository;
+import hhg0104.codereview.video.response.MigrationStatusInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * This is an online migration of the stored files into the current {@link StorageLayout}, in the background while
+ * the files are being served.
+ * <p>
+ * The blobs stored with another layout depth are moved to their current paths, and the files stored by their name
+ * in the flat upload directory are hashed and added to the content-addressed store. A file is linked at its new
+ * path first and its old path is deleted only after the cached paths are dropped, so a file stays readable during
+ * the whole migration.
+ */
+@Slf4j
+@Component
+public class StorageMigrator {
+
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private BlobStore blobStore;
+
+    private VideoRepository repository;
+
+    private VideoMetadataCache metadataCache;
+
+    private FileProperties fileProp;
+
+    private volatile JobState state = JobState.IDLE;
+
+    private final AtomicLong movedBlobs = new AtomicLong();
+
+    private final AtomicLong migratedFiles = new AtomicLong();
+
+    private final AtomicLong failedFiles = new AtomicLong();
+
+    private volatile LocalDateTime startedAt;
+
+    private volatile LocalDateTime finishedAt;
+
+    @Autowired
+    public StorageMigrator(BlobStore blobStore, VideoRepository repository, VideoMetadataCache metadataCache,
+                           FileProperties fileProp) {
+        this.blobStore = blobStore;
+        this.repository = repository;
+        this.metadataCache = metadataCache;
+        this.fileProp = fileProp;
+    }
+
+    /**
+     * Start a migration in the background, unless one is running already.
+     *
+     * @return Status of the running migration
+     */
+    public synchronized MigrationStatusInfo start() {
+
+        if (state != JobState.RUNNING) {
+            movedBlobs.set(0);
+            migratedFiles.set(0);
+            failedFiles.set(0);
+            startedAt = LocalDateTime.now();
+            finishedAt = null;
+            state = JobState.RUNNING;
+
+            Thread.ofPlatform().name("storage-migration").daemon().start(this::run);
+        }
+
+        return getStatus();
+    }
+
+    public MigrationStatusInfo getStatus() {
+        return new MigrationStatusInfo(state.name(), movedBlobs.get(), migratedFiles.get(), failedFiles.get(),
+                startedAt, finishedAt);
+    }
+
+    private void run() {
+        try {
+            migrate();
+            state = JobState.DONE;
+        } catch (IOException | RuntimeException e) {
+            log.error("The storage migration failed.", e);
+            state = JobState.FAILED;
+        } finally {
+            finishedAt = LocalDateTime.now();
+        }
+    }
+
+    /**
+     * Move the blobs into the current layout, then add the files stored by their name to the store.
+     *
+     * @throws IOException Blob directory read or file move exception
+     */
+    void migrate() throws IOException {
+        relocateBlobs();
+        migrateNamedFiles();
+    }
+
+    private void relocateBlobs() throws IOException {
+
+        Path blobDirectory = blobStore.getBlobDirectory();
+        if (!Files.isDirectory(blobDirectory)) {
+            return;
+        }
+
+        List<Path> previousPaths = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(blobDirectory)) {
+            Iterator<Path> iterator = paths.filter(Files::isRegularFile).iterator();
+            while (iterator.hasNext()) {
+                Path path = iterator.next();
+                String hash = path.getFileName().toString();
+                Path layoutPath = blobStore.getLayoutPath(hash);
+                if (!HASH_PATTERN.matcher(hash).matches() || path.equals(layoutPath)) {
+                    continue;
+                }
+
+                Files.createDirectories(layoutPath.getParent());
+                if (linkOrMove(path, layoutPath)) {
+                    previousPaths.add(path);
+                } else {
+                    metadataCache.invalidateAll();
+                }
+                movedBlobs.incrementAndGet();
+
+                if (previousPaths.size() >= fileProp.getStorageMigrationBatchSize()) {
+                    deletePreviousPaths(previousPaths);
+                }
+            }
+        }
+        deletePreviousPaths(previousPaths);
+
+        deleteEmptyDirectories(blobDirectory);
+    }
+
+    /**
+     * @return True when the file is linked and its previous path is still to be deleted
+     */
+    private boolean linkOrMove(Path path, Path layoutPath) throws IOException {
+        try {
+            Files.createLink(layoutPath, path);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return true;
+        } catch (UnsupportedOperationException e) {
+            Files.move(path, layoutPath, StandardCopyOption.ATOMIC_MOVE);
+            return false;
+        }
+    }
+
+    private void migrateNamedFiles() {
+
+        int batchSize = fileProp.getStorageMigrationBatchSize();
+        long lastFileId = 0;
+        List<VideoEntity> videos;
+        do {
+            videos = repository.findByContentHashIsNullAndStateInAndFileIdGreaterThanOrderByFileId(VideoState.LIVE,
+                    lastFileId, Limit.of(batchSize));
+
+            List<Path> previousPaths = new ArrayList<>();
+            for (VideoEntity video : videos) {
+                lastFileId = video.getFileId();
+
+                Path path = Path.of(fileProp.getUploadBasePath(), video.getName());
+                try {
+                    String hash = ContentHash.of(path);
+                    blobStore.link(path, hash);
+
+                    // A file deleted meanwhile is reclaimed by its name, and its blob is left to the reconciliation.
+                    if (repository.updateContentHash(video.getFileId(), hash, VideoState.LIVE) == 0) {
+                        continue;
+                    }
+
+                    previousPaths.add(path);
+                    migratedFiles.incrementAndGet();
+                } catch (IOException e) {
+                    log.warn("Couldn't migrate the file: " + video.getName(), e);
+                    failedFiles.incrementAndGet();
+                }
+            }
+
+            deletePreviousPaths(previousPaths);
+        } while (videos.size() == batchSize);
+    }
+
+    private void deletePreviousPaths(List<Path> previousPaths) {
+
+        if (previousPaths.isEmpty()) {
+            return;
+        }
+
+        // A cached file must not point at a path which is deleted.
+        metadataCache.invalidateAll();
+
+        for (Path path : previousPaths) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Couldn't delete the migrated file: " + path, e);
+            }
+        }
+        previousPaths.clear();
+    }
+
+    /**
+     * Delete the directories deeper than the current layout. The directories within the layout depth are kept,
+     * as an upload can be about to store a blob in them.
+     */
+    private void deleteEmptyDirectories(Path blobDirectory) throws IOException {
+
+        int layoutDepth = blobStore.getLayoutDepth();
+        List<Path> directories;
+        try (Stream<Path> paths = Files.walk(blobDirectory)) {
+            directories = paths.filter(Files::isDirectory)
+                    .filter(path -> !path.equals(blobDirectory))
+                    .filter(path -> blobDirectory.relativize(path).getNameCount() > layoutDepth)
+                    .sorted(Comparator.reverseOrder())
+                    .toList();
+        }
+
+        for (Path directory : directories) {
+            try {
+                Files.delete(directory);
+            } catch (DirectoryNotEmptyException e) {
+                // It holds a file which is not a blob.
+            }
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package hhg0104.codereview.video.storage;
+
+import hhg0104.codereview.video.entity.VideoState;
+import hhg0104.codereview.video.property.FileProperties;
+import hhg0104.codereview.video.repository.VideoRepository;
+import hhg0104.codereview.video.response.ReconciliationStatusInfo;
+import hhg0104.codereview.video.thumbnail.ThumbnailStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * This is a reconciliation of the upload directory with the video table, in the background after the start,
+ * so the start does not wait for a scan of every stored file.
+ * <p>
+ * The directory is walked once and the files are checked against the DB in parallel batches. A blob no video
+ * references, a file stored by its name without a video, and a temporary file left by a broken upload are moved
+ * to the quarantine directory with their relative paths, where they can be inspected and restored by hand.
+ * Files written within the grace period are skipped, as they can belong to an upload in progress.
+ */
+@Slf4j
+@Component
+public class StorageReconciler {
+
+    public static final String QUARANTINE_DIRECTORY = ".quarantine";
+
+    private static final String STAGING_DIRECTORY = ".uploads";
+
+    private static final String TEMP_FILE_SUFFIX = ".part";
+
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private BlobStore blobStore;
+
+    private BlobReferences blobReferences;
+
+    private VideoRepository repository;
+
+    private FileProperties fileProp;
+
+    private volatile JobState state = JobState.IDLE;
+
+    private final AtomicLong scannedFiles = new AtomicLong();
+
+    private final AtomicLong quarantinedFiles = new AtomicLong();
+
+    private final AtomicLong failedFiles = new AtomicLong();
+
+    private volatile LocalDateTime startedAt;
+
+    private volatile LocalDateTime finishedAt;
+
+    @Autowired
+    public StorageReconciler(BlobStore blobStore, BlobReferences blobReferences, VideoRepository repository,
+                             FileProperties fileProp) {
+        this.blobStore = blobStore;
+        this.blobReferences = blobReferences;
+        this.repository = repository;
+        this.fileProp = fileProp;
+    }
+
+    /**
+     * Start a reconciliation in the background, unless it is disabled or one is running already.
+     *
+     * @return Status of the running reconciliation
+     */
+    public synchronized ReconciliationStatusInfo start() {
+
+        if (fileProp.isReconciliationEnabled() && state != JobState.RUNNING) {
+            scannedFiles.set(0);
+            quarantinedFiles.set(0);
+            failedFiles.set(0);
+            startedAt = LocalDateTime.now();
+            finishedAt = null;
+            state = JobState.RUNNING;
+
+            Thread.ofPlatform().name("storage-reconciliation").daemon().start(this::run);
+        }
+
+        return getStatus();
+    }
+
+    public ReconciliationStatusInfo getStatus() {
+        return new ReconciliationStatusInfo(state.name(), scannedFiles.get(), quarantinedFiles.get(),
+                failedFiles.get(), startedAt, finishedAt);
+    }
+
+    private void run() {
+        try {
+            reconcile();
+            state = JobState.DONE;
+            log.info("Reconciled the upload directory, {} files scanned and {} quarantined.", scannedFiles.get(),
+                    quarantinedFiles.get());
+        } catch (IOException | RuntimeException e) {
+            log.error("The reconciliation of the upload directory failed.", e);
+            state = JobState.FAILED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            state = JobState.FAILED;
+        } finally {
+            finishedAt = LocalDateTime.now();
+        }
+    }
+
+    /**
+     * Walk the upload directory and quarantine the files no video references.
+     *
+     * @throws IOException          Directory read exception
+     * @throws InterruptedException Interrupted while waiting for the batches
+     */
+    void reconcile() throws IOException, InterruptedException {
+
+        Path basePath = Path.of(fileProp.getUploadBasePath());
+        if (!Files.isDirectory(basePath)) {
+            return;
+        }
+
+        int parallelism = fileProp.getReconciliationParallelism();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                Thread.ofPlatform().name("storage-reconciliation-", 0).daemon().factory());
+        try {
+            Files.walkFileTree(basePath, new Scanner(basePath, executor, new Semaphore(parallelism * 2)));
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Quarantine the blobs no video references, including an upload in progress which found the content stored,
+     * as its blob is not touched and its mtime is not in the grace period.
+     */
+    private void reconcileBlobs(Path basePath, List<Path> paths) {
+
+        Map<String, Path> pathsByHash = new HashMap<>();
+        for (Path path : paths) {
+            pathsByHash.put(path.getFileName().toString(), path);
+        }
+
+        blobReferences.deleteUnreferenced(pathsByHash.keySet(), hash -> {
+            if (quarantine(basePath, pathsByHash.get(hash)) != null) {
+                quarantinedFiles.incrementAndGet();
+            }
+        });
+    }
+
+    private void reconcileNamedFiles(Path basePath, List<Path> paths) {
+        reconcileBatch(basePath, paths, names -> repository.findReferencedNames(names, VideoState.LIVE));
+    }
+
+    private void reconcileBatch(Path basePath, List<Path> paths, Function<Set<String>, List<String>> findReferenced) {
+
+        Map<String, Path> pathsByName = new HashMap<>();
+        for (Path path : paths) {
+            pathsByName.put(path.getFileName().toString(), path);
+        }
+
+        Set<String> unreferenced = new HashSet<>(pathsByName.keySet());
+        findReferenced.apply(unreferenced).forEach(unreferenced::remove);
+        if (unreferenced.isEmpty()) {
+            return;
+        }
+
+        Map<String, Path> quarantined = new HashMap<>();
+        for (String name : unreferenced) {
+            Path quarantinePath = quarantine(basePath, pathsByName.get(name));
+            if (quarantinePath != null) {
+                quarantined.put(name, quarantinePath);
+            }
+        }
+
+        // A file can get referenced between the check and the move, e.g. by an upload of the same content.
+        for (String name : findReferenced.apply(quarantined.keySet())) {
+            restore(quarantined.remove(name), pathsByName.get(name));
+        }
+        quarantinedFiles.addAndGet(quarantined.size());
+    }
+
+    private Path quarantine(Path basePath, Path path) {
+
+        Path quarantinePath = basePath.resolve(QUARANTINE_DIRECTORY).resolve(basePath.relativize(path));
+        try {
+            Files.createDirectories(quarantinePath.getParent());
+            Files.move(path, quarantinePath, StandardCopyOption.ATOMIC_MOVE);
+            return quarantinePath;
+        } catch (IOException e) {
+            log.warn("Couldn't quarantine the file: " + path, e);
+            failedFiles.incrementAndGet();
+            return null;
+        }
+    }
+
+    private void restore(Path quarantinePath, Path path) {
+        try {
+            Files.move(quarantinePath, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Couldn't restore the referenced file from the quarantine: " + path, e);
+            failedFiles.incrementAndGet();
+        }
+    }
+
+    /**
+     * Sorts the files of the upload directory into batches, which are reconciled on the executor.
+     * The semaphore bounds the batches waiting for the executor, so a large directory is not held in memory.
+     */
+    private class Scanner extends SimpleFileVisitor<Path> {
+
+        private final Path basePath;
+
+        private final Path blobDirectory;
+
+        private final ExecutorService executor;
+
+        private final Semaphore pendingBatches;
+
+        private final long cutoffTime;
+
+        private List<Path> blobs = new ArrayList<>();
+
+        private List<Path> namedFiles = new ArrayList<>();
+
+        private Scanner(Path basePath, ExecutorService executor, Semaphore pendingBatches) {
+            this.basePath = basePath;
+            this.blobDirectory = blobStore.getBlobDirectory();
+            this.executor = executor;
+            this.pendingBatches = pendingBatches;
+            this.cutoffTime = System.currentTimeMillis() - fileProp.getReconciliationGracePeriod().toMillis();
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            Path name = dir.getFileName();
+            boolean skipped = dir.getParent() != null && dir.getParent().equals(basePath)
+                    && (name.toString().equals(QUARANTINE_DIRECTORY) || name.toString().equals(STAGING_DIRECTORY)
+                    || name.toString().equals(ThumbnailStore.DERIVED_DIRECTORY));
+            return skipped ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+
+            scannedFiles.incrementAndGet();
+            if (!attrs.isRegularFile() || attrs.lastModifiedTime().toMillis() > cutoffTime) {
+                return FileVisitResult.CONTINUE;
+            }
+
+            String name = file.getFileName().toString();
+            if (name.endsWith(TEMP_FILE_SUFFIX)) {
+                if (quarantine(basePath, file) != null) {
+                    quarantinedFiles.incrementAndGet();
+                }
+            } else if (file.startsWith(blobDirectory)) {
+                if (HASH_PATTERN.matcher(name).matches()) {
+                    blobs.add(file);
+                    if (blobs.size() >= fileProp.getReconciliationBatchSize()) {
+                        submit(blobs, true);
+                        blobs = new ArrayList<>();
+                    }
+                }
+            } else if (file.getParent().equals(basePath) && !name.startsWith(".")) {
+                namedFiles.add(file);
+                if (namedFiles.size() >= fileProp.getReconciliationBatchSize()) {
+                    submit(namedFiles, false);
+                    namedFiles = new ArrayList<>();
+                }
+            }
+
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+            if (dir.equals(basePath)) {
+                submit(blobs, true);
+                submit(namedFiles, false);
+            }
+            return super.postVisitDirectory(dir, exc);
+        }
+
+        private void submit(List<Path> batch, boolean blobBatch) throws IOException {
+
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            try {
+                pendingBatches.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the reconciliation batches.", e);
+            }
+
+            executor.execute(() -> {
+                try {
+                    if (blobBatch) {
+                        reconcileBlobs(basePath, batch);
+                    } else {
+                        reconcileNamedFiles(basePath, batch);
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Couldn't reconcile a batch of the upload directory.", e);
+                    failedFiles.addAndGet(batch.size());
+                } finally {
+                    pendingBatches.release();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package hhg0104.codereview.video.storage;
+
+import hhg0104.codereview.video.response.ReconciliationStatusInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * This is a controller class for the reconciliation of the upload directory with the DB.
+ */
+@RestController
+public class StorageReconciliationController {
+
+    private StorageReconciler reconciler;
+
+
+    @Autowired
+    public StorageReconciliationController(StorageReconciler reconciler) {
+        this.reconciler = reconciler;
+    }
+
+    /**
+     * Start a reconciliation in the background. One runs after every start of the application.
+     *
+     * @return Status of the running reconciliation
+     */
+    @PostMapping("/storage/reconciliation")
+    public ResponseEntity<ReconciliationStatusInfo> start() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(reconciler.start());
+    }
+
+    /**
+     * Progress of the last reconciliation.
+     *
+     * @return State and file counts of the reconciliation
+     */
+    @GetMapping("/storage/reconciliation")
+    public ReconciliationStatusInfo status() {
+        return reconciler.getStatus();
+    }
+}
@@ -0,0 +1,19 @@
+package hhg0104.codereview.video.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Metadata of an object in a {@link VideoStorage}.
+ */
+@Getter
+@AllArgsConstructor
+public class StoredObject {
+
+    private long length;
+
+    /**
+     * Last modified time in milliseconds since the epoch.
+     */
+    private long lastModified;
+}
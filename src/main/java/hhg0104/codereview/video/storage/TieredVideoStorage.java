@@ -0,0 +1,248 @@
+package hhg0104.codereview.video.storage;
+
+import hhg0104.codereview.video.download.ByteRange;
+import hhg0104.codereview.video.property.FileProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * This is a video storage on two local tiers, a fast hot tier (e.g. SSD) and a large cold tier (e.g. HDD).
+ * <p>
+ * New objects are written to the hot tier. A background job demotes the objects which were not read for the
+ * demote-after duration, and the least recently read ones while the hot tier is over its capacity. Every object
+ * is kept in the cold tier once it is demoted, so a demoted object read again is promoted by copying it back,
+ * and demoting it again only deletes the hot copy.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "file.storage.type", havingValue = "tiered")
+public class TieredVideoStorage implements VideoStorage {
+
+    /**
+     * An object read as recently as this is not demoted, as its hot path may be about to be opened.
+     */
+    private static final Duration MIN_IDLE_TIME = Duration.ofMinutes(1);
+
+    private final BlobStore hotStore;
+
+    private final BlobStore coldStore;
+
+    private final long hotCapacity;
+
+    private final Duration demoteAfter;
+
+    private final Map<String, Long> lastAccessTimes = new ConcurrentHashMap<>();
+
+    /**
+     * Keys being promoted, to whether the object was deleted during the promotion.
+     */
+    private final Map<String, Boolean> promotions = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService executor;
+
+    @Autowired
+    public TieredVideoStorage(FileProperties fileProp, StorageLayout layout) {
+        this(new BlobStore(Path.of(fileProp.getTieredHotPath()), layout),
+                new BlobStore(Path.of(fileProp.getTieredColdPath()), layout),
+                fileProp.getTieredHotCapacity().toBytes(), fileProp.getTieredDemoteAfter());
+
+        long interval = fileProp.getTieredDemotionInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::runDemotion, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public TieredVideoStorage(BlobStore hotStore, BlobStore coldStore, long hotCapacity, Duration demoteAfter) {
+        this.hotStore = hotStore;
+        this.coldStore = coldStore;
+        this.hotCapacity = hotCapacity;
+        this.demoteAfter = demoteAfter;
+        this.executor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("storage-tiering").daemon().factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public StoredObject stat(String key) throws IOException {
+        StoredObject object = LocalVideoStorage.stat(hotStore, key);
+        return object != null ? object : LocalVideoStorage.stat(coldStore, key);
+    }
+
+    @Override
+    public boolean put(String key, InputStream in, long length) throws IOException {
+        if (Files.exists(coldStore.resolve(key))) {
+            in.transferTo(OutputStream.nullOutputStream());
+            return false;
+        }
+        touch(key);
+        return LocalVideoStorage.put(hotStore, key, in);
+    }
+
+    @Override
+    public boolean put(String key, Path writtenPath) throws IOException {
+        if (Files.exists(coldStore.resolve(key))) {
+            Files.delete(writtenPath);
+            return false;
+        }
+        touch(key);
+        return hotStore.store(writtenPath, key);
+    }
+
+    @Override
+    public InputStream get(String key, ByteRange range) throws IOException {
+
+        File file = getLocalFile(key);
+        if (file == null) {
+            throw new NoSuchFileException(key);
+        }
+
+        return LocalVideoStorage.get(file.toPath(), range);
+    }
+
+    /**
+     * Delete an object from both tiers. A promotion in progress can have opened the cold copy already, so it is
+     * marked deleted and removes the hot copy it writes, while a promotion which starts later finds no cold copy.
+     */
+    @Override
+    public void delete(String key) throws IOException {
+        coldStore.delete(key);
+        promotions.computeIfPresent(key, (k, deleted) -> true);
+        hotStore.delete(key);
+        lastAccessTimes.remove(key);
+    }
+
+    @Override
+    public File getLocalFile(String key) {
+
+        touch(key);
+
+        File hotFile = hotStore.resolve(key).toFile();
+        if (hotFile.exists()) {
+            return hotFile;
+        }
+
+        File coldFile = coldStore.resolve(key).toFile();
+        if (!coldFile.exists()) {
+            return null;
+        }
+
+        if (promotions.putIfAbsent(key, false) == null) {
+            executor.execute(() -> promote(key, coldFile.toPath()));
+        }
+
+        return coldFile;
+    }
+
+    @Override
+    public String getLocation(String key) {
+        File hotFile = hotStore.resolve(key).toFile();
+        return (hotFile.exists() ? hotFile : coldStore.resolve(key).toFile()).getAbsolutePath();
+    }
+
+    private void touch(String key) {
+        lastAccessTimes.put(key, System.currentTimeMillis());
+    }
+
+    private void promote(String key, Path coldPath) {
+        try {
+            hotStore.copyFrom(coldPath, key);
+        } catch (IOException e) {
+            log.warn("Couldn't promote the object to the hot tier: " + key, e);
+        } finally {
+            promotions.computeIfPresent(key, (k, deleted) -> {
+                if (deleted) {
+                    deleteQuietly(k);
+                }
+                return null;
+            });
+        }
+    }
+
+    private void deleteQuietly(String key) {
+        try {
+            hotStore.delete(key);
+        } catch (IOException e) {
+            log.warn("Couldn't delete the promoted copy of a deleted object: " + key, e);
+        }
+    }
+
+    private void runDemotion() {
+        try {
+            demote();
+        } catch (IOException | RuntimeException e) {
+            log.error("The demotion to the cold tier failed.", e);
+        }
+    }
+
+    /**
+     * Demote the idle objects, then the least recently read ones until the hot tier is within its capacity.
+     *
+     * @throws IOException Hot tier read or cold tier write exception
+     */
+    void demote() throws IOException {
+
+        Path hotDirectory = hotStore.getBlobDirectory();
+        if (!Files.isDirectory(hotDirectory)) {
+            return;
+        }
+
+        List<HotObject> objects;
+        try (Stream<Path> paths = Files.walk(hotDirectory)) {
+            objects = paths.filter(Files::isRegularFile)
+                    .filter(path -> !path.getFileName().toString().endsWith(".part"))
+                    .map(this::toHotObject)
+                    .sorted(Comparator.comparingLong(HotObject::lastAccessTime))
+                    .toList();
+        }
+
+        long hotSize = objects.stream().mapToLong(HotObject::length).sum();
+        long now = System.currentTimeMillis();
+        for (HotObject object : objects) {
+            long idleTime = now - object.lastAccessTime();
+            boolean idle = idleTime >= demoteAfter.toMillis();
+            if ((!idle && hotSize <= hotCapacity) || idleTime < MIN_IDLE_TIME.toMillis()) {
+                break;
+            }
+
+            coldStore.copyFrom(object.path(), object.key());
+            Files.delete(object.path());
+            hotSize -= object.length();
+        }
+    }
+
+    private HotObject toHotObject(Path path) {
+
+        File file = path.toFile();
+        String key = file.getName();
+
+        // An object not read since the start counts from its write time.
+        long lastAccessTime = lastAccessTimes.getOrDefault(key, file.lastModified());
+
+        return new HotObject(key, path, file.length(), lastAccessTime);
+    }
+
+    private record HotObject(String key, Path path, long length, long lastAccessTime) {
+    }
+}
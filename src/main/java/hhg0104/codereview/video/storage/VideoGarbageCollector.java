@@ -0,0 +1,308 @@
+package hhg0104.codereview.video.storage;
+
+import hhg0104.codereview.video.entity.BlobDeletionEntity;
+import hhg0104.codereview.video.entity.VideoEntity;
+import hhg0104.codereview.video.entity.VideoState;
+import hhg0104.codereview.video.property.FileProperties;
+import hhg0104.codereview.video.repository.BlobDeletionRepository;
+import hhg0104.codereview.video.repository.VideoRepository;
+import hhg0104.codereview.video.response.GarbageCollectionStatusInfo;
+import hhg0104.codereview.video.thumbnail.ThumbnailStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * This is a background reclamation of the content of the deleted video files.
+ * <p>
+ * A delete only marks the file DELETING, a tombstone, and hands it over here. A bounded pool of workers takes
+ * the tombstones from a bounded queue in batches, deletes the blobs no live file references any more and the files
+ * stored by their name, and moves the reclaimed files to GONE. The deletes are rate limited, so a bulk delete does
+ * not saturate the disk under the downloads. A tombstone which does not fit in the queue, or whose content could not
+ * be reclaimed, stays DELETING and is handed over again by the reaper.
+ * <p>
+ * A blob replaced by another one while its files stay live is deleted after a grace period instead, on a pass of
+ * the reaper, as the requests which resolved a file before the replace can still be reading it.
+ */
+@Slf4j
+@Component
+public class VideoGarbageCollector {
+
+    private VideoRepository repository;
+
+    private BlobDeletionRepository deletionRepository;
+
+    private VideoStorage storage;
+
+    private BlobReferences blobReferences;
+
+    private FileProperties fileProp;
+
+    private ThumbnailStore thumbnailStore;
+
+    private final BlockingQueue<VideoEntity> queue;
+
+    /**
+     * Files in the queue or being reclaimed, so the reaper does not hand over a file twice.
+     */
+    private final Set<Long> pendingFileIds = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService workers;
+
+    private final int batchSize;
+
+    private final long nanosPerFile;
+
+    private long nextPermitNanos;
+
+    private final AtomicLong reclaimedFiles = new AtomicLong();
+
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+
+    private final AtomicLong failedFiles = new AtomicLong();
+
+    private final AtomicLong deferredFiles = new AtomicLong();
+
+    @Autowired
+    public VideoGarbageCollector(VideoRepository repository, BlobDeletionRepository deletionRepository,
+                                 VideoStorage storage, BlobReferences blobReferences, FileProperties fileProp,
+                                 ThumbnailStore thumbnailStore) {
+        this.repository = repository;
+        this.deletionRepository = deletionRepository;
+        this.storage = storage;
+        this.blobReferences = blobReferences;
+        this.fileProp = fileProp;
+        this.thumbnailStore = thumbnailStore;
+        this.queue = new ArrayBlockingQueue<>(Math.max(fileProp.getGcQueueCapacity(), 1));
+        this.batchSize = Math.max(fileProp.getGcBatchSize(), 1);
+        this.nanosPerFile = fileProp.getGcMaxFilesPerSecond() > 0
+                ? TimeUnit.SECONDS.toNanos(1) / fileProp.getGcMaxFilesPerSecond()
+                : 0;
+
+        int workerCount = Math.max(fileProp.getGcWorkers(), 1);
+        this.workers = Executors.newFixedThreadPool(workerCount,
+                Thread.ofPlatform().name("video-gc-", 0).daemon().factory());
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::work);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Hand over DELETING files to be reclaimed in the background.
+     *
+     * @param videos DELETING files
+     * @return Counts of the accepted files, of the ones which were queued already, and of the ones which did not fit
+     * in the queue and are left to the reaper
+     */
+    public Submission submit(List<VideoEntity> videos) {
+
+        int accepted = 0;
+        int pending = 0;
+        int rejected = 0;
+        for (VideoEntity video : videos) {
+            if (!pendingFileIds.add(video.getFileId())) {
+                pending++;
+                continue;
+            }
+            if (queue.offer(video)) {
+                accepted++;
+            } else {
+                pendingFileIds.remove(video.getFileId());
+                deferredFiles.incrementAndGet();
+                rejected++;
+            }
+        }
+
+        return new Submission(accepted, pending, rejected);
+    }
+
+    /**
+     * Delete a replaced blob once the grace period has passed, e.g. a download handed over to sendfile or an HLS
+     * segment of its files can still be reading it. It is kept if a live file references it by then.
+     *
+     * @param hash Content hash of the replaced blob
+     */
+    public void deleteLater(String hash) {
+        deletionRepository.save(new BlobDeletionEntity(hash,
+                LocalDateTime.now().plus(fileProp.getGcReplacedBlobGracePeriod())));
+    }
+
+    /**
+     * Delete the replaced blobs whose grace period has passed, page by page. A blob which failed to be deleted is
+     * tried again on the next pass.
+     *
+     * @param batchSize Blobs per page
+     * @return Count of the deleted blobs
+     */
+    public int reclaimReplacedBlobs(int batchSize) {
+
+        LocalDateTime now = LocalDateTime.now();
+        int deleted = 0;
+        String lastHash = "";
+        List<BlobDeletionEntity> deletions;
+        do {
+            deletions = deletionRepository.findByDeleteAfterBeforeAndContentHashGreaterThanOrderByContentHash(
+                    now, lastHash, Limit.of(batchSize));
+            if (deletions.isEmpty()) {
+                break;
+            }
+            lastHash = deletions.get(deletions.size() - 1).getContentHash();
+
+            List<String> hashes = deletions.stream()
+                    .map(BlobDeletionEntity::getContentHash)
+                    .toList();
+            Set<String> failedHashes = new HashSet<>();
+            Set<String> deletedHashes = blobReferences.deleteUnreferenced(hashes, hash -> {
+                try {
+                    storage.delete(hash);
+                } catch (IOException e) {
+                    log.warn("Couldn't delete the replaced blob, the next pass tries again: " + hash, e);
+                    failedHashes.add(hash);
+                }
+            });
+            deletedHashes.removeAll(failedHashes);
+            deleted += deletedHashes.size();
+
+            deletionRepository.deleteAllByIdInBatch(hashes.stream()
+                    .filter(hash -> !failedHashes.contains(hash))
+                    .toList());
+        } while (deletions.size() == batchSize);
+
+        return deleted;
+    }
+
+    public GarbageCollectionStatusInfo getStatus() {
+        return new GarbageCollectionStatusInfo(queue.size(), queue.size() + queue.remainingCapacity(),
+                reclaimedFiles.get(), reclaimedBytes.get(), failedFiles.get(), deferredFiles.get());
+    }
+
+    private void work() {
+
+        List<VideoEntity> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+
+                throttle(batch.size());
+                reclaim(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.warn("Couldn't reclaim a batch of deleted files, the reaper hands them over again.", e);
+                failedFiles.addAndGet(batch.size());
+            } finally {
+                batch.forEach(video -> pendingFileIds.remove(video.getFileId()));
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Wait for the permits of the files, the workers share one rate.
+     */
+    private void throttle(int files) throws InterruptedException {
+
+        if (nanosPerFile == 0) {
+            return;
+        }
+
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long start = Math.max(now, nextPermitNanos);
+            nextPermitNanos = start + files * nanosPerFile;
+            waitNanos = start - now;
+        }
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+
+    /**
+     * Reclaim the content of DELETING files: the blobs no live file or upload in progress references any more, the
+     * files stored by their name, and the thumbnails. The reclaimed files are moved to GONE, the others stay DELETING.
+     *
+     * @param videos DELETING files
+     */
+    void reclaim(List<VideoEntity> videos) {
+
+        Set<String> hashes = videos.stream()
+                .map(VideoEntity::getContentHash)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<String> failedHashes = new HashSet<>();
+        Set<String> deletedHashes = blobReferences.deleteUnreferenced(hashes, hash -> {
+            try {
+                storage.delete(hash);
+            } catch (IOException e) {
+                log.warn("Couldn't delete the blob, the reaper hands its files over again: " + hash, e);
+                failedHashes.add(hash);
+            }
+        });
+        deletedHashes.removeAll(failedHashes);
+
+        List<Long> reclaimedIds = new ArrayList<>();
+        long bytes = 0;
+        for (VideoEntity video : videos) {
+            String hash = video.getContentHash();
+            if (hash != null && failedHashes.contains(hash)) {
+                failedFiles.incrementAndGet();
+                continue;
+            }
+            try {
+                if (hash == null) {
+                    if (Files.deleteIfExists(Path.of(fileProp.getUploadBasePath(), video.getName()))) {
+                        bytes += video.getSize();
+                    }
+                } else if (deletedHashes.remove(hash)) {
+                    bytes += video.getSize();
+                }
+                thumbnailStore.delete(video.getFileId());
+                reclaimedIds.add(video.getFileId());
+            } catch (IOException e) {
+                log.warn("Couldn't reclaim the file, the reaper hands it over again: " + video.getFileId(), e);
+                failedFiles.incrementAndGet();
+            }
+        }
+
+        if (!reclaimedIds.isEmpty()) {
+            repository.updateState(reclaimedIds, VideoState.DELETING, VideoState.GONE, LocalDateTime.now());
+        }
+        reclaimedFiles.addAndGet(reclaimedIds.size());
+        reclaimedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Result of a submit.
+     *
+     * @param accepted Files queued by the submit
+     * @param pending  Files which were queued or being reclaimed already
+     * @param rejected Files which did not fit in the queue
+     */
+    public record Submission(int accepted, int pending, int rejected) {
+    }
+}
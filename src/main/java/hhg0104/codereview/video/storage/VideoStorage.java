@@ -0,0 +1,120 @@
+package hhg0104.codereview.video.storage;
+
+import hhg0104.codereview.video.download.ByteRange;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * This is an interface for the backends storing the video contents by their content hash.
+ * The backend is chosen by the 'file.storage.type' property.
+ * <p>
+ * An object is never modified once it is stored, as its key is the hash of its content.
+ */
+public interface VideoStorage {
+
+    /**
+     * Return the metadata of an object.
+     *
+     * @param key Content hash
+     * @return Object metadata, or null when there is no object of the key
+     * @throws IOException Storage access exception
+     */
+    StoredObject stat(String key) throws IOException;
+
+    /**
+     * Store an object from a stream. An existing object of the key is kept as it is.
+     *
+     * @param key    Content hash
+     * @param in     Object content
+     * @param length Content length
+     * @return True when a new object is stored, false when the content was already stored
+     * @throws IOException Storage access or stream read exception
+     */
+    boolean put(String key, InputStream in, long length) throws IOException;
+
+    /**
+     * Store a written local file as an object. The local file is consumed, it is moved into the storage or deleted.
+     *
+     * @param key         Content hash
+     * @param writtenPath Path of the written file
+     * @return True when a new object is stored, false when the content was already stored
+     * @throws IOException Storage access or file read exception
+     */
+    default boolean put(String key, Path writtenPath) throws IOException {
+        try (InputStream in = Files.newInputStream(writtenPath)) {
+            return put(key, in, Files.size(writtenPath));
+        } finally {
+            Files.deleteIfExists(writtenPath);
+        }
+    }
+
+    /**
+     * Copy an object to a temporary local file, for a job which has to seek in the content of an object which is
+     * not on a local disk.
+     *
+     * @param key    Content hash
+     * @param prefix Prefix of the temporary file name
+     * @return Temporary file, which the caller deletes
+     * @throws IOException Storage access or file write exception
+     */
+    default Path copyToTempFile(String key, String prefix) throws IOException {
+
+        StoredObject object = stat(key);
+        if (object == null) {
+            throw new FileNotFoundException("There is no object by this key: " + key);
+        }
+
+        Path copyPath = Files.createTempFile(prefix, ".video");
+        try {
+            if (object.getLength() > 0) {
+                try (InputStream in = get(key, new ByteRange(0, object.getLength() - 1))) {
+                    Files.copy(in, copyPath, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            return copyPath;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(copyPath);
+            throw e;
+        }
+    }
+
+    /**
+     * Open a byte range of an object.
+     *
+     * @param key   Content hash
+     * @param range Byte range to read
+     * @return Stream of the range, which the caller closes
+     * @throws IOException Storage access exception
+     */
+    InputStream get(String key, ByteRange range) throws IOException;
+
+    /**
+     * Delete an object, if it exists.
+     *
+     * @param key Content hash
+     * @throws IOException Storage access exception
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Return the local file of an object, so it can be sent with the zero-copy download engine and cached in memory.
+     *
+     * @param key Content hash
+     * @return Local file, or null when the object is not on a local disk
+     */
+    File getLocalFile(String key);
+
+    /**
+     * Return where an object is stored, reported as the location of an uploaded file.
+     *
+     * @param key Content hash
+     * @return Local path or object URI
+     */
+    String getLocation(String key);
+}
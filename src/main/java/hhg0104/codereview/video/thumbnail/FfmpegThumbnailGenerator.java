@@ -0,0 +1,105 @@
+package hhg0104.codereview.video.thumbnail;
+
+import hhg0104.codereview.video.property.FileProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is a thumbnail generator running the ffmpeg and ffprobe installed on the node, which decode every container
+ * and codec of the accepted files. Each run is killed after 'file.thumbnail.timeout'.
+ */
+@Component
+@ConditionalOnProperty(name = "file.thumbnail.generator", havingValue = "ffmpeg")
+public class FfmpegThumbnailGenerator implements ThumbnailGenerator {
+
+    private FileProperties fileProp;
+
+    @Autowired
+    public FfmpegThumbnailGenerator(FileProperties fileProp) {
+        this.fileProp = fileProp;
+    }
+
+    @Override
+    public void generate(Path video, Path posterPath, Path spritePath) throws IOException {
+
+        double duration = probeDuration(video);
+
+        run(List.of(fileProp.getThumbnailFfmpegPath(), "-v", "error", "-y",
+                "-ss", format(duration * fileProp.getThumbnailPosterPosition()), "-i", video.toString(),
+                "-frames:v", "1", "-vf", "scale=" + fileProp.getThumbnailPosterWidth() + ":-2",
+                "-f", "mjpeg", posterPath.toString()));
+
+        int columns = Math.max(fileProp.getThumbnailSpriteColumns(), 1);
+        int rows = Math.max(fileProp.getThumbnailSpriteRows(), 1);
+        double framesPerSecond = duration > 0 ? columns * rows / duration : 1;
+
+        run(List.of(fileProp.getThumbnailFfmpegPath(), "-v", "error", "-y", "-i", video.toString(),
+                "-frames:v", "1", "-vf", "fps=" + format(framesPerSecond)
+                        + ",scale=" + fileProp.getThumbnailSpriteTileWidth() + ":-2"
+                        + ",tile=" + columns + "x" + rows,
+                "-f", "mjpeg", spritePath.toString()));
+    }
+
+    /**
+     * Return the duration of a video in seconds, 0 when the container does not tell.
+     */
+    private double probeDuration(Path video) throws IOException {
+
+        String output = run(List.of(fileProp.getThumbnailFfprobePath(), "-v", "error",
+                "-show_entries", "format=duration", "-of", "default=noprint_wrappers=1:nokey=1",
+                video.toString())).strip();
+
+        try {
+            return Math.max(Double.parseDouble(output), 0);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * Run a command to its end and return its output. The output goes to a file, so a command writing more than
+     * a pipe buffer cannot block.
+     */
+    private String run(List<String> command) throws IOException {
+
+        Path outputPath = Files.createTempFile("thumbnail-", ".log");
+        try {
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(outputPath.toFile())
+                    .start();
+            try {
+                if (!process.waitFor(fileProp.getThumbnailTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                    throw new IOException(command.get(0) + " did not finish in " + fileProp.getThumbnailTimeout());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + command.get(0));
+            } finally {
+                process.destroyForcibly();
+            }
+
+            String output = Files.readString(outputPath);
+            if (process.exitValue() != 0) {
+                throw new IOException(command.get(0) + " exited with " + process.exitValue() + ": " + output.strip());
+            }
+
+            return output;
+        } finally {
+            Files.deleteIfExists(outputPath);
+        }
+    }
+}
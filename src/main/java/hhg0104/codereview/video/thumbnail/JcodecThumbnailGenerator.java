@@ -0,0 +1,115 @@
+package hhg0104.codereview.video.thumbnail;
+
+import hhg0104.codereview.video.property.FileProperties;
+import org.jcodec.api.FrameGrab;
+import org.jcodec.api.JCodecException;
+import org.jcodec.common.DemuxerTrackMeta;
+import org.jcodec.common.io.FileChannelWrapper;
+import org.jcodec.common.io.NIOUtils;
+import org.jcodec.common.model.Picture;
+import org.jcodec.scale.AWTUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * This is a thumbnail generator decoding the frames in the JVM with JCodec, so nothing has to be installed on the
+ * node. It reads the H.264 video of an MP4 file, and the MPEG-1/2 video of an MPEG program stream.
+ * <p>
+ * Every frame is decoded from the preceding key frame, which is slower than ffmpeg for a video with long GOPs.
+ */
+@Component
+@ConditionalOnProperty(name = "file.thumbnail.generator", havingValue = "java", matchIfMissing = true)
+public class JcodecThumbnailGenerator implements ThumbnailGenerator {
+
+    private FileProperties fileProp;
+
+    @Autowired
+    public JcodecThumbnailGenerator(FileProperties fileProp) {
+        this.fileProp = fileProp;
+    }
+
+    @Override
+    public void generate(Path video, Path posterPath, Path spritePath) throws IOException {
+
+        try (FileChannelWrapper channel = NIOUtils.readableChannel(video.toFile())) {
+            FrameGrab grab = FrameGrab.createFrameGrab(channel);
+            DemuxerTrackMeta meta = grab.getVideoTrack().getMeta();
+            double duration = meta != null ? Math.max(meta.getTotalDuration(), 0) : 0;
+            DemuxerTrackMeta.Orientation orientation = meta != null ? meta.getOrientation() : null;
+
+            BufferedImage poster = frameAt(grab, duration * fileProp.getThumbnailPosterPosition(), orientation);
+            writeJpeg(scale(poster, fileProp.getThumbnailPosterWidth()), posterPath);
+
+            int columns = Math.max(fileProp.getThumbnailSpriteColumns(), 1);
+            int rows = Math.max(fileProp.getThumbnailSpriteRows(), 1);
+            int tileWidth = fileProp.getThumbnailSpriteTileWidth();
+            int tiles = columns * rows;
+
+            BufferedImage sprite = null;
+            Graphics2D graphics = null;
+            try {
+                for (int i = 0; i < tiles; i++) {
+                    // The middle of each interval, so the last tile is not past the end of the video.
+                    BufferedImage tile = scale(frameAt(grab, duration * (i + 0.5) / tiles, orientation), tileWidth);
+                    if (sprite == null) {
+                        sprite = new BufferedImage(tile.getWidth() * columns, tile.getHeight() * rows,
+                                BufferedImage.TYPE_INT_RGB);
+                        graphics = sprite.createGraphics();
+                    }
+                    graphics.drawImage(tile, (i % columns) * tile.getWidth(), (i / columns) * tile.getHeight(), null);
+                }
+            } finally {
+                if (graphics != null) {
+                    graphics.dispose();
+                }
+            }
+            writeJpeg(sprite, spritePath);
+        } catch (JCodecException e) {
+            throw new IOException("Cannot decode the video: " + video.getFileName(), e);
+        }
+    }
+
+    private BufferedImage frameAt(FrameGrab grab, double second, DemuxerTrackMeta.Orientation orientation)
+            throws IOException, JCodecException {
+
+        Picture picture = grab.seekToSecondPrecise(second).getNativeFrame();
+        if (picture == null) {
+            throw new IOException("There is no video frame at " + second + "s.");
+        }
+
+        return orientation != null ? AWTUtil.toBufferedImage(picture, orientation) : AWTUtil.toBufferedImage(picture);
+    }
+
+    /**
+     * Scale an image to a width, keeping the aspect ratio with an even height.
+     */
+    private BufferedImage scale(BufferedImage image, int width) {
+
+        int height = Math.max((int) Math.round((double) image.getHeight() * width / image.getWidth() / 2) * 2, 2);
+
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        return scaled;
+    }
+
+    private void writeJpeg(BufferedImage image, Path path) throws IOException {
+        if (!ImageIO.write(image, "jpg", path.toFile())) {
+            throw new IOException("There is no JPEG writer.");
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package hhg0104.codereview.video.thumbnail;
+
+import hhg0104.codereview.exception.UnsupportedFileException;
+import hhg0104.codereview.video.VideoFile;
+import hhg0104.codereview.video.VideoService;
+import hhg0104.codereview.video.property.FileProperties;
+import hhg0104.codereview.video.response.ThumbnailStatusInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * This is a controller class for the thumbnails of the video files.
+ */
+@RestController
+public class ThumbnailController {
+
+    private VideoService service;
+
+    private ThumbnailPipeline pipeline;
+
+    private ThumbnailStore store;
+
+    private FileProperties fileProp;
+
+
+    @Autowired
+    public ThumbnailController(VideoService service, ThumbnailPipeline pipeline, ThumbnailStore store,
+                               FileProperties fileProp) {
+        this.service = service;
+        this.pipeline = pipeline;
+        this.store = store;
+        this.fileProp = fileProp;
+    }
+
+    /**
+     * Poster frame of a video file, a JPEG image. It can be cached by the clients and revalidated with
+     * If-None-Match or If-Modified-Since.
+     *
+     * @param fileId File id
+     * @return Poster frame image
+     * @throws FileNotFoundException    There is no such file, or its thumbnails are not generated yet
+     * @throws UnsupportedFileException The thumbnails of the file failed to generate
+     */
+    @GetMapping("/files/{fileid}/poster")
+    public ResponseEntity<Resource> poster(@PathVariable(value = "fileid") long fileId)
+            throws IOException, UnsupportedFileException {
+        return serve(fileId, store.getPosterPath(fileId));
+    }
+
+    /**
+     * Sprite sheet of a video file, a JPEG image of the frames at even intervals of the video, left to right and top
+     * to bottom. It can be cached by the clients and revalidated with If-None-Match or If-Modified-Since.
+     *
+     * @param fileId File id
+     * @return Sprite sheet image
+     * @throws FileNotFoundException    There is no such file, or its thumbnails are not generated yet
+     * @throws UnsupportedFileException The thumbnails of the file failed to generate
+     */
+    @GetMapping("/files/{fileid}/sprite")
+    public ResponseEntity<Resource> sprite(@PathVariable(value = "fileid") long fileId)
+            throws IOException, UnsupportedFileException {
+        return serve(fileId, store.getSpritePath(fileId));
+    }
+
+    /**
+     * Queue depth and counters of the thumbnail generation since the start.
+     *
+     * @return Status of the thumbnail pipeline
+     */
+    @GetMapping("/thumbnails")
+    public ThumbnailStatusInfo status() {
+        return pipeline.getStatus();
+    }
+
+    /**
+     * Answer a stored thumbnail. The thumbnails of a file uploaded before the pipeline, or rejected by a full queue,
+     * are queued now, and the client asks again later. A file whose generation failed is not queued again until its
+     * retry delay has passed.
+     */
+    private ResponseEntity<Resource> serve(long fileId, Path path) throws IOException, UnsupportedFileException {
+
+        VideoFile video = service.fetchFile(fileId);
+
+        long lastModified;
+        try {
+            lastModified = Files.getLastModifiedTime(path).toMillis();
+        } catch (NoSuchFileException e) {
+            if (store.isFailed(fileId)) {
+                throw new UnsupportedFileException("The thumbnails of this file cannot be generated: " + fileId);
+            }
+            pipeline.submit(fileId, video.getKey(), video.getFile());
+            throw new FileNotFoundException("The thumbnails of this file are not generated yet: " + fileId);
+        }
+
+        // A 304 is answered by Spring when the ETag or the Last-Modified matches the request.
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_JPEG)
+                .cacheControl(CacheControl.maxAge(fileProp.getThumbnailCacheMaxAge()).cachePublic())
+                .eTag(Long.toHexString(fileId) + "-" + Long.toHexString(lastModified))
+                .lastModified(lastModified)
+                .body(new FileSystemResource(path));
+    }
+}
@@ -0,0 +1,22 @@
+package hhg0104.codereview.video.thumbnail;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * This is an interface for the ways to extract the thumbnails of a video file on this node, without any network.
+ * The generator is chosen by the 'file.thumbnail.generator' property.
+ */
+public interface ThumbnailGenerator {
+
+    /**
+     * Write the poster frame and the sprite sheet of a video as JPEG images. The sprite sheet has the frames at even
+     * intervals of the video, left to right and top to bottom.
+     *
+     * @param video      Local video file
+     * @param posterPath Path to write the poster frame to
+     * @param spritePath Path to write the sprite sheet to
+     * @throws IOException The video cannot be decoded or the images cannot be written
+     */
+    void generate(Path video, Path posterPath, Path spritePath) throws IOException;
+}
@@ -0,0 +1,141 @@
+package hhg0104.codereview.video.thumbnail;
+
+import hhg0104.codereview.video.entity.VideoState;
+import hhg0104.codereview.video.property.FileProperties;
+import hhg0104.codereview.video.repository.VideoRepository;
+import hhg0104.codereview.video.response.ThumbnailStatusInfo;
+import hhg0104.codereview.video.storage.VideoStorage;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is a background generation of the thumbnails of the uploaded video files.
+ * <p>
+ * An upload hands its files over here once they are published, and a bounded pool of workers takes them from
+ * a bounded queue, so the decoding never holds an upload request. A file which does not fit in the queue is
+ * rejected; its thumbnails are requested again when a client asks for them. The content of a file in a remote
+ * storage is copied to a temporary local file first, as the generators seek in the video. A file which fails is
+ * recorded in the store, so its thumbnails are not requested again until its retry delay has passed, and the
+ * thumbnails of a file deleted during its generation are dropped instead of stored.
+ */
+@Slf4j
+@Component
+public class ThumbnailPipeline {
+
+    private ThumbnailGenerator generator;
+
+    private ThumbnailStore store;
+
+    private VideoStorage storage;
+
+    private VideoRepository repository;
+
+    private final BlockingQueue<Runnable> queue;
+
+    /**
+     * Files in the queue or being generated, so a file is not generated twice at the same time.
+     */
+    private final Set<Long> pendingFileIds = ConcurrentHashMap.newKeySet();
+
+    private final ThreadPoolExecutor workers;
+
+    private final AtomicLong generatedFiles = new AtomicLong();
+
+    private final AtomicLong failedFiles = new AtomicLong();
+
+    private final AtomicLong rejectedFiles = new AtomicLong();
+
+    @Autowired
+    public ThumbnailPipeline(ThumbnailGenerator generator, ThumbnailStore store, VideoStorage storage,
+                             VideoRepository repository, FileProperties fileProp) {
+        this.generator = generator;
+        this.store = store;
+        this.storage = storage;
+        this.repository = repository;
+        this.queue = new ArrayBlockingQueue<>(Math.max(fileProp.getThumbnailQueueCapacity(), 1));
+
+        int workerCount = Math.max(fileProp.getThumbnailWorkers(), 1);
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS, queue,
+                Thread.ofPlatform().name("video-thumbnail-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Queue the thumbnail generation of a file.
+     *
+     * @param fileId File ID
+     * @param key    Content hash of the file, null for a file stored by its name
+     * @param file   Local file of a file stored by its name, null for an object in the video storage
+     * @return True when the file is queued, false when it is queued already or the queue is full
+     */
+    public boolean submit(long fileId, String key, File file) {
+
+        if (!pendingFileIds.add(fileId)) {
+            return false;
+        }
+
+        try {
+            workers.execute(() -> generate(fileId, key, file));
+            return true;
+        } catch (RejectedExecutionException e) {
+            pendingFileIds.remove(fileId);
+            rejectedFiles.incrementAndGet();
+            return false;
+        }
+    }
+
+    public ThumbnailStatusInfo getStatus() {
+        return new ThumbnailStatusInfo(queue.size(), queue.size() + queue.remainingCapacity(),
+                generatedFiles.get(), failedFiles.get(), rejectedFiles.get());
+    }
+
+    private void generate(long fileId, String key, File file) {
+
+        Path copyPath = null;
+        try {
+            File localFile = key == null ? file : storage.getLocalFile(key);
+            if (localFile == null) {
+                copyPath = storage.copyToTempFile(key, "thumbnail-");
+                localFile = copyPath.toFile();
+            }
+
+            Path videoPath = localFile.toPath();
+            if (store.write(fileId, (posterPath, spritePath) -> generator.generate(videoPath, posterPath, spritePath),
+                    () -> repository.existsByFileIdAndState(fileId, VideoState.ACTIVE))) {
+                generatedFiles.incrementAndGet();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Couldn't generate the thumbnails of the file: " + fileId, e);
+            store.markFailed(fileId);
+            failedFiles.incrementAndGet();
+        } finally {
+            pendingFileIds.remove(fileId);
+            if (copyPath != null) {
+                try {
+                    Files.deleteIfExists(copyPath);
+                } catch (IOException e) {
+                    log.warn("Couldn't delete the local copy: " + copyPath, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package hhg0104.codereview.video.thumbnail;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import hhg0104.codereview.video.property.FileProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+/**
+ * This is the store of the artifacts derived from the video files, in a hidden directory of the upload directory.
+ * The thumbnails of a file are kept by its file id:
+ * <pre>
+ * .derived/thumbnails/{file id}/poster.jpg
+ * .derived/thumbnails/{file id}/sprite.jpg
+ * </pre>
+ * The images are written under temporary names and moved in place, so a reader never sees a partial image.
+ * <p>
+ * A file whose generation failed, e.g. of a codec the generator cannot decode, is remembered in memory until it is
+ * retried, with a delay doubled on every failure, so the requests of its thumbnails do not decode it again.
+ */
+@Component
+public class ThumbnailStore {
+
+    public static final String DERIVED_DIRECTORY = ".derived";
+
+    private static final String THUMBNAIL_DIRECTORY = "thumbnails";
+
+    private static final String POSTER_NAME = "poster.jpg";
+
+    private static final String SPRITE_NAME = "sprite.jpg";
+
+    private static final String TEMP_FILE_SUFFIX = ".part";
+
+    private static final int MAX_FAILED_FILES = 10_000;
+
+    private final Path basePath;
+
+    private final Duration retryAfter;
+
+    private final Duration maxRetryAfter;
+
+    private final Cache<Long, Failure> failures;
+
+    @Autowired
+    public ThumbnailStore(FileProperties fileProp) {
+        this.basePath = Path.of(fileProp.getUploadBasePath(), DERIVED_DIRECTORY, THUMBNAIL_DIRECTORY);
+        this.retryAfter = fileProp.getThumbnailRetryAfter();
+        this.maxRetryAfter = fileProp.getThumbnailMaxRetryAfter();
+        this.failures = Caffeine.newBuilder()
+                .maximumSize(MAX_FAILED_FILES)
+                .expireAfterWrite(maxRetryAfter.multipliedBy(2))
+                .build();
+    }
+
+    public Path getPosterPath(long fileId) {
+        return getDirectory(fileId).resolve(POSTER_NAME);
+    }
+
+    public Path getSpritePath(long fileId) {
+        return getDirectory(fileId).resolve(SPRITE_NAME);
+    }
+
+    /**
+     * Return whether both thumbnails of a file are stored.
+     *
+     * @param fileId File ID
+     * @return True when the poster frame and the sprite sheet exist
+     */
+    public boolean exists(long fileId) {
+        return Files.exists(getPosterPath(fileId)) && Files.exists(getSpritePath(fileId));
+    }
+
+    /**
+     * Write the thumbnails of a file, replacing the stored ones. The file can be deleted while its images are
+     * written, and its thumbnails reclaimed already, so the images are moved in place only while it is still live.
+     * A delete which runs while the temporary images exist fails on the directory, and is retried by the reaper.
+     *
+     * @param fileId File ID
+     * @param writer Writer of the images to the given temporary paths
+     * @param live   Whether the file is still live
+     * @return True when the thumbnails are stored, false when the file was deleted
+     * @throws IOException Image write or move exception
+     */
+    public boolean write(long fileId, ThumbnailWriter writer, BooleanSupplier live) throws IOException {
+
+        Path directory = getDirectory(fileId);
+        Files.createDirectories(directory);
+
+        Path tempPosterPath = directory.resolve(POSTER_NAME + TEMP_FILE_SUFFIX);
+        Path tempSpritePath = directory.resolve(SPRITE_NAME + TEMP_FILE_SUFFIX);
+        try {
+            writer.write(tempPosterPath, tempSpritePath);
+
+            if (live.getAsBoolean()) {
+                Files.move(tempSpritePath, getSpritePath(fileId), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tempPosterPath, getPosterPath(fileId), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+                failures.invalidate(fileId);
+                return true;
+            }
+        } finally {
+            Files.deleteIfExists(tempPosterPath);
+            Files.deleteIfExists(tempSpritePath);
+        }
+
+        delete(fileId);
+        return false;
+    }
+
+    /**
+     * Record a failed generation of the thumbnails of a file. It is retried after the retry delay, doubled on every
+     * failure up to the max retry delay.
+     *
+     * @param fileId File ID
+     */
+    public void markFailed(long fileId) {
+
+        long now = System.currentTimeMillis();
+        failures.asMap().compute(fileId, (id, failure) -> {
+            int count = failure == null ? 1 : failure.count() + 1;
+            long delay = retryAfter.toMillis() << Math.min(count - 1, 30);
+            return new Failure(count, now + Math.min(delay, maxRetryAfter.toMillis()));
+        });
+    }
+
+    /**
+     * Return whether the generation of the thumbnails of a file failed and is not to be retried yet.
+     *
+     * @param fileId File ID
+     * @return True until the retry delay of the last failure has passed
+     */
+    public boolean isFailed(long fileId) {
+        Failure failure = failures.getIfPresent(fileId);
+        return failure != null && System.currentTimeMillis() < failure.retryAt();
+    }
+
+    /**
+     * Delete the thumbnails of a file, if there are any.
+     *
+     * @param fileId File ID
+     * @throws IOException File delete exception
+     */
+    public void delete(long fileId) throws IOException {
+
+        failures.invalidate(fileId);
+
+        Path directory = getDirectory(fileId);
+        if (!Files.exists(directory)) {
+            return;
+        }
+
+        Files.deleteIfExists(getPosterPath(fileId));
+        Files.deleteIfExists(getSpritePath(fileId));
+        Files.deleteIfExists(directory);
+    }
+
+    private Path getDirectory(long fileId) {
+        return basePath.resolve(Long.toString(fileId));
+    }
+
+    private record Failure(int count, long retryAt) {
+    }
+
+    /**
+     * Writes the thumbnail images of a file.
+     */
+    @FunctionalInterface
+    public interface ThumbnailWriter {
+
+        void write(Path posterPath, Path spritePath) throws IOException;
+    }
+}
@@ -0,0 +1,106 @@
+package hhg0104.codereview.video.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This is a span exporter to a local file, one JSON object per line, so the traces can be read without a collector.
+ * It is picked up by the OpenTelemetry auto-configuration next to the OTLP exporter.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "tracing.file.path")
+public class FileSpanExporter implements SpanExporter {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Path path;
+
+    private BufferedWriter writer;
+
+    public FileSpanExporter(@Value("${tracing.file.path}") String path) {
+        this.path = Path.of(path);
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+
+        try {
+            if (writer == null) {
+                if (path.getParent() != null) {
+                    Files.createDirectories(path.getParent());
+                }
+                writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+            }
+
+            for (SpanData span : spans) {
+                writer.write(objectMapper.writeValueAsString(toMap(span)));
+                writer.newLine();
+            }
+            writer.flush();
+
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException e) {
+            log.warn("Couldn't export {} spans to {}.", spans.size(), path, e);
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public synchronized CompletableResultCode shutdown() {
+
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("Couldn't close the span file {}.", path, e);
+                return CompletableResultCode.ofFailure();
+            } finally {
+                writer = null;
+            }
+        }
+
+        return CompletableResultCode.ofSuccess();
+    }
+
+    private Map<String, Object> toMap(SpanData span) {
+
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        span.getAttributes().forEach((key, value) -> attributes.put(key.getKey(), value));
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("trace_id", span.getTraceId());
+        map.put("span_id", span.getSpanId());
+        map.put("parent_span_id", span.getParentSpanId());
+        map.put("name", span.getName());
+        map.put("kind", span.getKind());
+        map.put("start_epoch_nanos", span.getStartEpochNanos());
+        map.put("duration_nanos", span.getEndEpochNanos() - span.getStartEpochNanos());
+        map.put("status", span.getStatus().getStatusCode());
+        map.put("attributes", attributes);
+
+        return map;
+    }
+}
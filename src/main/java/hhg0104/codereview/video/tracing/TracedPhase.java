@@ -0,0 +1,64 @@
+package hhg0104.codereview.video.tracing;
+
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A phase span started by {@link VideoTracing}, ended when it is closed.
+ */
+public class TracedPhase implements AutoCloseable {
+
+    private final Span span;
+
+    private final Tracer.SpanInScope scope;
+
+    private final long startNanos = System.nanoTime();
+
+    TracedPhase(Span span, Tracer.SpanInScope scope) {
+        this.span = span;
+        this.scope = scope;
+    }
+
+    public TracedPhase tag(String key, String value) {
+        span.tag(key, value);
+        return this;
+    }
+
+    /**
+     * Record the bytes transferred in the phase, and the throughput since the phase started.
+     */
+    public TracedPhase transferred(long bytes) {
+
+        span.tag("transfer.bytes", bytes);
+        long elapsedNanos = System.nanoTime() - startNanos;
+        if (elapsedNanos > 0) {
+            span.tag("transfer.bytes_per_second", (double) bytes * TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+        }
+
+        return this;
+    }
+
+    /**
+     * Record the bytes handed over in the phase to be transferred after it, e.g. by the container's sendfile, and
+     * how they are transferred. There is no throughput, as the phase ends before the transfer.
+     */
+    public TracedPhase handedOver(long bytes, String mode) {
+
+        span.tag("transfer.bytes", bytes);
+        span.tag("transfer.mode", mode);
+
+        return this;
+    }
+
+    public void error(Throwable error) {
+        span.error(error);
+    }
+
+    @Override
+    public void close() {
+        scope.close();
+        span.end();
+    }
+}
@@ -0,0 +1,44 @@
+package hhg0104.codereview.video.tracing;
+
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+
+/**
+ * This is a class to trace the phases of the video transfers as child spans of the request span, so a slow request
+ * shows whether the time went to the DB, the file system or the transfer itself.
+ * <p>
+ * The spans are exported to the OTLP endpoint at management.otlp.tracing.endpoint and, when tracing.file.path is set,
+ * to a local file. The tracer is a no-op when the tracing is disabled.
+ */
+@Component
+public class VideoTracing {
+
+    private Tracer tracer;
+
+    @Autowired
+    public VideoTracing(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Start a phase span as the current span. The phase must be closed on the same thread.
+     *
+     * @param name Span name
+     * @return Started phase
+     */
+    public TracedPhase start(String name) {
+        Span span = tracer.nextSpan().name(name).start();
+        return new TracedPhase(span, tracer.withSpan(span));
+    }
+
+    /**
+     * Wrap a task which runs on another thread, so its phases are children of the current span.
+     */
+    public <T> Callable<T> wrap(Callable<T> task) {
+        return tracer.currentTraceContext().wrap(task);
+    }
+}
@@ -0,0 +1,140 @@
+package hhg0104.codereview.video.upload;
+
+import hhg0104.codereview.data.ApiResponseTemplate;
+import hhg0104.codereview.exception.AlreadyExistFileException;
+import hhg0104.codereview.exception.InvalidRequestException;
+import hhg0104.codereview.exception.UnsupportedFileException;
+import hhg0104.codereview.video.VideoFileType;
+import hhg0104.codereview.video.request.UploadSessionRequest;
+import hhg0104.codereview.video.response.UploadSessionInfo;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * This is a controller class for the resumable chunked uploads.
+ */
+@RestController
+public class ChunkedUploadController {
+
+    private ChunkedUploadService service;
+
+
+    @Autowired
+    public ChunkedUploadController(ChunkedUploadService service) {
+        this.service = service;
+    }
+
+    /**
+     * Create an upload session.
+     *
+     * @param request File name, file size and chunk size
+     * @return Created upload session
+     */
+    @PostMapping("/uploads")
+    public ResponseEntity<UploadSessionInfo> create(@RequestBody UploadSessionRequest request)
+            throws UnsupportedFileException, IOException, InvalidRequestException, AlreadyExistFileException {
+
+        VideoFileType.check(request.getName());
+
+        UploadSessionInfo session = service.create(request);
+
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{uploadid}")
+                .buildAndExpand(session.getUploadId())
+                .toUri();
+
+        return ResponseEntity.created(location).body(session);
+    }
+
+    /**
+     * Get an upload session with the chunks written so far.
+     *
+     * @param uploadId Upload ID
+     * @return Upload session
+     */
+    @GetMapping("/uploads/{uploadid}")
+    public UploadSessionInfo fetch(@PathVariable(value = "uploadid") String uploadId) throws FileNotFoundException {
+        return service.fetch(uploadId);
+    }
+
+    /**
+     * Upload a chunk. Chunks can be sent in parallel and in any order.
+     *
+     * @param uploadId   Upload ID
+     * @param chunkIndex Zero-based chunk index
+     * @param request    Request with the raw chunk bytes as its body
+     * @return Empty response
+     */
+    @PutMapping("/uploads/{uploadid}/chunks/{index}")
+    public ResponseEntity<byte[]> writeChunk(@PathVariable(value = "uploadid") String uploadId,
+                                             @PathVariable(value = "index") int chunkIndex,
+                                             HttpServletRequest request) throws IOException, InvalidRequestException {
+
+        service.writeChunk(uploadId, chunkIndex, request.getInputStream());
+
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Complete an upload session. Every chunk must be uploaded.
+     *
+     * @param uploadId Upload ID
+     * @return File create success message
+     */
+    @PostMapping("/uploads/{uploadid}/commit")
+    public ResponseEntity<Resource> commit(@PathVariable(value = "uploadid") String uploadId) throws IOException,
+            InvalidRequestException, AlreadyExistFileException, UnsupportedFileException {
+
+        String createdFileLocation = service.commit(uploadId);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Location", createdFileLocation);
+
+        return createSuccessResponseEntity(ApiResponseTemplate.fileUploadedJson(), HttpStatus.CREATED, headers);
+    }
+
+    /**
+     * Abort an upload session.
+     *
+     * @param uploadId Upload ID
+     * @return Empty response
+     */
+    @DeleteMapping("/uploads/{uploadid}")
+    public ResponseEntity<byte[]> abort(@PathVariable(value = "uploadid") String uploadId) throws IOException {
+
+        service.abort(uploadId);
+
+        return ResponseEntity.noContent().build();
+    }
+
+    private ResponseEntity<Resource> createSuccessResponseEntity(Resource body, HttpStatus httpStatus,
+                                                                 HttpHeaders headers) {
+
+        if (headers == null) {
+            headers = new HttpHeaders();
+        }
+
+        return ResponseEntity
+                .status(httpStatus)
+                .contentType(MediaType.APPLICATION_JSON)
+                .headers(headers)
+                .body(body);
+    }
+}
@@ -0,0 +1,280 @@
+package hhg0104.codereview.video.upload;
+
+import hhg0104.codereview.exception.AlreadyExistFileException;
+import hhg0104.codereview.exception.InvalidRequestException;
+import hhg0104.codereview.exception.UnsupportedFileException;
+import hhg0104.codereview.video.VideoService;
+import hhg0104.codereview.video.entity.UploadChunkEntity;
+import hhg0104.codereview.video.entity.UploadSessionEntity;
+import hhg0104.codereview.video.property.FileProperties;
+import hhg0104.codereview.video.repository.UploadChunkRepository;
+import hhg0104.codereview.video.repository.UploadSessionRepository;
+import hhg0104.codereview.video.request.UploadSessionRequest;
+import hhg0104.codereview.video.response.UploadSessionInfo;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * This is a service class for the resumable uploads. A client creates an upload session, sends the numbered chunks
+ * in any order and over several connections, and commits the session when every chunk is written.
+ * <p>
+ * Each chunk is written at its own offset of a staging file, and the written chunks are recorded in the DB,
+ * so a session can be resumed after a client or a server restart. A session in which no chunk is written for the
+ * session TTL is expired by the {@link UploadSessionReaper}.
+ */
+@Component
+public class ChunkedUploadService {
+
+    private static final String STAGING_DIRECTORY = ".uploads";
+
+    private UploadSessionRepository sessionRepository;
+
+    private UploadChunkRepository chunkRepository;
+
+    private VideoService videoService;
+
+    private FileProperties fileProp;
+
+    @Autowired
+    public ChunkedUploadService(UploadSessionRepository sessionRepository, UploadChunkRepository chunkRepository,
+                                VideoService videoService, FileProperties fileProp) {
+        this.sessionRepository = sessionRepository;
+        this.chunkRepository = chunkRepository;
+        this.videoService = videoService;
+        this.fileProp = fileProp;
+    }
+
+    /**
+     * Create a new upload session with an empty staging file.
+     *
+     * @param request New upload session request
+     * @return Created upload session
+     * @throws IOException               Staging file create exception
+     * @throws InvalidRequestException   Invalid session parameters
+     * @throws AlreadyExistFileException File already exist exception
+     */
+    public UploadSessionInfo create(UploadSessionRequest request) throws IOException, InvalidRequestException,
+            AlreadyExistFileException {
+
+        String fileName = request.getName() == null ? "" : FilenameUtils.getName(request.getName());
+        if (fileName.isEmpty() || request.getSize() < 0 || request.getChunkSize() <= 0) {
+            throw new InvalidRequestException("The name, size and chunk_size of an upload are required.");
+        }
+        long minChunkSize = Math.min(fileProp.getUploadMinChunkSize().toBytes(), Math.max(request.getSize(), 1));
+        if (request.getChunkSize() < minChunkSize) {
+            throw new InvalidRequestException("The chunk_size must be at least " + minChunkSize + " bytes.");
+        }
+        if (UploadSessionEntity.getChunkCount(request.getSize(), request.getChunkSize())
+                > fileProp.getUploadMaxChunkCount()) {
+            throw new InvalidRequestException("An upload can have at most " + fileProp.getUploadMaxChunkCount()
+                    + " chunks, the chunk_size must be larger.");
+        }
+
+        videoService.checkNewFile(fileName);
+
+        UploadSessionEntity session = new UploadSessionEntity();
+        session.setUploadId(UUID.randomUUID().toString());
+        session.setName(fileName);
+        session.setSize(request.getSize());
+        session.setChunkSize(request.getChunkSize());
+        session.setLastWrittenAt(LocalDateTime.now());
+
+        Path stagingPath = getStagingPath(session.getUploadId());
+        Files.createDirectories(stagingPath.getParent());
+        Files.createFile(stagingPath);
+
+        sessionRepository.save(session);
+
+        return toInfo(session, Collections.emptyList());
+    }
+
+    /**
+     * Get an upload session with the chunks written so far.
+     *
+     * @param uploadId Upload ID
+     * @return Upload session
+     * @throws FileNotFoundException Upload session not exists exception
+     */
+    public UploadSessionInfo fetch(String uploadId) throws FileNotFoundException {
+
+        UploadSessionEntity session = fetchSession(uploadId);
+
+        return toInfo(session, chunkRepository.findChunkIndexes(uploadId));
+    }
+
+    /**
+     * Write a chunk at its offset of the staging file. A chunk can be written again, e.g. after a broken connection.
+     *
+     * @param uploadId   Upload ID
+     * @param chunkIndex Zero-based chunk index
+     * @param in         Chunk bytes
+     * @throws IOException             Chunk write exception
+     * @throws InvalidRequestException Invalid chunk index or chunk length
+     */
+    public void writeChunk(String uploadId, int chunkIndex, InputStream in) throws IOException,
+            InvalidRequestException {
+
+        UploadSessionEntity session = fetchSession(uploadId);
+        if (chunkIndex < 0 || chunkIndex >= session.getChunkCount()) {
+            throw new InvalidRequestException("The chunk index must be between 0 and " + (session.getChunkCount() - 1));
+        }
+
+        long offset = session.getChunkOffset(chunkIndex);
+        long length = session.getChunkLength(chunkIndex);
+
+        try (FileChannel channel = FileChannel.open(getStagingPath(uploadId), StandardOpenOption.WRITE)) {
+            writeAt(Channels.newChannel(in), channel, offset, length);
+        }
+
+        chunkRepository.save(new UploadChunkEntity(uploadId, chunkIndex));
+        sessionRepository.updateLastWrittenAt(uploadId, LocalDateTime.now());
+    }
+
+    private void writeAt(ReadableByteChannel in, FileChannel channel, long offset, long length) throws IOException,
+            InvalidRequestException {
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(fileProp.getUploadBufferSize());
+
+        long written = 0;
+        while (in.read(buffer) >= 0) {
+            buffer.flip();
+            if (written + buffer.remaining() > length) {
+                throw new InvalidRequestException("The chunk must be " + length + " bytes.");
+            }
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer, offset + written);
+            }
+            buffer.clear();
+        }
+
+        if (written != length) {
+            throw new InvalidRequestException("The chunk must be " + length + " bytes.");
+        }
+    }
+
+    /**
+     * Complete an upload session and register the staging file as a new video file.
+     *
+     * @param uploadId Upload ID
+     * @return Created file location
+     * @throws IOException               File move exception
+     * @throws InvalidRequestException   Some chunks are not written yet
+     * @throws AlreadyExistFileException File already exist exception
+     * @throws UnsupportedFileException  The content is not in a container of the file extension
+     */
+    public String commit(String uploadId) throws IOException, InvalidRequestException, AlreadyExistFileException,
+            UnsupportedFileException {
+
+        UploadSessionEntity session = fetchSession(uploadId);
+
+        int writtenChunkCount = chunkRepository.findChunkIndexes(uploadId).size();
+        if (writtenChunkCount < session.getChunkCount()) {
+            throw new InvalidRequestException((session.getChunkCount() - writtenChunkCount) + " of "
+                    + session.getChunkCount() + " chunks are not uploaded yet.");
+        }
+
+        String createdFileLocation = videoService.upload(session.getName(), getStagingPath(uploadId), session.getSize());
+
+        chunkRepository.deleteByUploadId(uploadId);
+        sessionRepository.delete(session);
+
+        return createdFileLocation;
+    }
+
+    /**
+     * Abort an upload session and delete its staging file.
+     *
+     * @param uploadId Upload ID
+     * @throws IOException Staging file delete exception
+     */
+    public void abort(String uploadId) throws IOException {
+
+        UploadSessionEntity session = fetchSession(uploadId);
+
+        chunkRepository.deleteByUploadId(uploadId);
+        sessionRepository.delete(session);
+
+        Files.deleteIfExists(getStagingPath(uploadId));
+    }
+
+    /**
+     * Delete the sessions in which no chunk was written since a time, with their chunks and staging files, and
+     * the staging files not written since then which have no session, e.g. after a crash between the creation of
+     * the staging file and the save of its session.
+     *
+     * @param before    Last write time of the expired sessions
+     * @param batchSize Sessions per DB query
+     * @return Deleted sessions and staging files
+     * @throws IOException Staging file delete exception
+     */
+    public int expireSessions(LocalDateTime before, int batchSize) throws IOException {
+
+        int expired = 0;
+        List<UploadSessionEntity> sessions;
+        do {
+            sessions = sessionRepository.findByLastWrittenAtBeforeOrderByUploadId(before, Limit.of(batchSize));
+            for (UploadSessionEntity session : sessions) {
+                chunkRepository.deleteByUploadId(session.getUploadId());
+                sessionRepository.delete(session);
+                Files.deleteIfExists(getStagingPath(session.getUploadId()));
+                expired++;
+            }
+        } while (sessions.size() == batchSize);
+
+        Path stagingDirectory = Path.of(fileProp.getUploadBasePath(), STAGING_DIRECTORY);
+        if (!Files.isDirectory(stagingDirectory)) {
+            return expired;
+        }
+        long beforeMillis = before.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        try (DirectoryStream<Path> stagingFiles = Files.newDirectoryStream(stagingDirectory, "*.part")) {
+            for (Path stagingFile : stagingFiles) {
+                String uploadId = FilenameUtils.removeExtension(stagingFile.getFileName().toString());
+                if (Files.getLastModifiedTime(stagingFile).toMillis() < beforeMillis
+                        && !sessionRepository.existsById(uploadId)) {
+                    Files.deleteIfExists(stagingFile);
+                    expired++;
+                }
+            }
+        }
+
+        return expired;
+    }
+
+    private UploadSessionEntity fetchSession(String uploadId) throws FileNotFoundException {
+
+        UploadSessionEntity session = sessionRepository.findById(uploadId).orElse(null);
+        if (session == null) {
+            throw new FileNotFoundException("There is no upload by this upload id: " + uploadId);
+        }
+
+        return session;
+    }
+
+    private Path getStagingPath(String uploadId) {
+        return Path.of(fileProp.getUploadBasePath(), STAGING_DIRECTORY, uploadId + ".part");
+    }
+
+    private UploadSessionInfo toInfo(UploadSessionEntity session, List<Integer> completedChunks) {
+        return new UploadSessionInfo(session.getUploadId(), session.getName(), session.getSize(),
+                session.getChunkSize(), session.getChunkCount(), completedChunks);
+    }
+}
@@ -0,0 +1,232 @@
+package hhg0104.codereview.video.upload;
+
+import hhg0104.codereview.exception.InvalidRequestException;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This is a forward-only reader of a multipart/form-data request body (RFC 7578).
+ * <p>
+ * The body is read through one bounded direct buffer and a file part is handed over to a channel while it is being
+ * received, so the request is never spooled to a temporary file or held in memory.
+ */
+public class StreamingMultipartReader {
+
+    private static final int MIN_BUFFER_SIZE = 8 * 1024;
+
+    private static final int MAX_HEADER_SIZE = 16 * 1024;
+
+    private final ReadableByteChannel in;
+
+    private final ByteBuffer buffer;
+
+    private final byte[] dashBoundary;
+
+    private final byte[] delimiter;
+
+    private boolean started;
+
+    private boolean finished;
+
+    private boolean inPartBody;
+
+    public StreamingMultipartReader(InputStream in, String boundary, int bufferSize) {
+        this.in = Channels.newChannel(in);
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, MIN_BUFFER_SIZE)).flip();
+        this.dashBoundary = ("--" + boundary).getBytes(StandardCharsets.US_ASCII);
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Move to the next file part, skipping the form fields in between.
+     *
+     * @return File name of the next file part without any path, or null when there are no more parts
+     * @throws IOException             Request read exception
+     * @throws InvalidRequestException The body is not a valid multipart body
+     */
+    public String nextFile() throws IOException, InvalidRequestException {
+
+        if (!started) {
+            scan(dashBoundary, null);
+            started = true;
+        } else if (inPartBody) {
+            transferTo(null);
+        }
+
+        while (!finished) {
+            if (isCloseDelimiter()) {
+                finished = true;
+                break;
+            }
+
+            String fileName = readFileName();
+            inPartBody = true;
+            if (fileName != null && !fileName.isEmpty()) {
+                return FilenameUtils.getName(fileName);
+            }
+
+            transferTo(null);
+        }
+
+        return null;
+    }
+
+    /**
+     * Write the body of the current file part to a channel.
+     *
+     * @param target Channel to write to, the bytes are discarded when it is null
+     * @return Written byte count
+     * @throws IOException Request read or channel write exception
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
+
+        if (!inPartBody) {
+            throw new IllegalStateException("The reader is not positioned on a part body.");
+        }
+
+        long transferred = scan(delimiter, target);
+        inPartBody = false;
+
+        return transferred;
+    }
+
+    private long scan(byte[] pattern, WritableByteChannel target) throws IOException {
+
+        long transferred = 0;
+        while (true) {
+            int index = indexOf(pattern);
+            if (index >= 0) {
+                transferred += write(index, target);
+                buffer.position(index + pattern.length);
+                return transferred;
+            }
+
+            // The tail may be the beginning of the pattern, it is kept until more bytes arrive.
+            int safeEnd = buffer.limit() - (pattern.length - 1);
+            if (safeEnd > buffer.position()) {
+                transferred += write(safeEnd, target);
+            }
+
+            if (fill() < 0) {
+                throw new EOFException("Unexpected end of the multipart body.");
+            }
+        }
+    }
+
+    private int write(int end, WritableByteChannel target) throws IOException {
+
+        int length = end - buffer.position();
+        if (target != null) {
+            ByteBuffer chunk = buffer.duplicate().limit(end);
+            while (chunk.hasRemaining()) {
+                target.write(chunk);
+            }
+        }
+        buffer.position(end);
+
+        return length;
+    }
+
+    private boolean isCloseDelimiter() throws IOException, InvalidRequestException {
+
+        ensure(2);
+        int position = buffer.position();
+        if (buffer.get(position) == '-' && buffer.get(position + 1) == '-') {
+            return true;
+        }
+
+        if (!readLine().isBlank()) {
+            throw new InvalidRequestException("Invalid multipart boundary line.");
+        }
+
+        return false;
+    }
+
+    private String readFileName() throws IOException, InvalidRequestException {
+
+        String fileName = null;
+        int headerSize = 0;
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            headerSize += line.length();
+            if (headerSize > MAX_HEADER_SIZE) {
+                throw new InvalidRequestException("The multipart headers are too large.");
+            }
+
+            int colon = line.indexOf(':');
+            if (colon < 0 || !line.substring(0, colon).trim().equalsIgnoreCase(HttpHeaders.CONTENT_DISPOSITION)) {
+                continue;
+            }
+
+            try {
+                fileName = ContentDisposition.parse(line.substring(colon + 1).trim()).getFilename();
+            } catch (IllegalArgumentException e) {
+                throw new InvalidRequestException("Invalid Content-Disposition header: " + line, e);
+            }
+        }
+
+        return fileName;
+    }
+
+    private String readLine() throws IOException, InvalidRequestException {
+
+        while (true) {
+            for (int i = buffer.position(); i < buffer.limit() - 1; i++) {
+                if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n') {
+                    byte[] line = new byte[i - buffer.position()];
+                    buffer.get(line);
+                    buffer.position(i + 2);
+                    return new String(line, StandardCharsets.UTF_8);
+                }
+            }
+
+            if (buffer.remaining() == buffer.capacity()) {
+                throw new InvalidRequestException("A multipart header line is too long.");
+            }
+            if (fill() < 0) {
+                throw new InvalidRequestException("Unexpected end of the multipart body.");
+            }
+        }
+    }
+
+    private void ensure(int length) throws IOException, InvalidRequestException {
+        while (buffer.remaining() < length) {
+            if (fill() < 0) {
+                throw new InvalidRequestException("Unexpected end of the multipart body.");
+            }
+        }
+    }
+
+    private int indexOf(byte[] pattern) {
+
+        int last = buffer.limit() - pattern.length;
+        for (int i = buffer.position(); i <= last; i++) {
+            int j = 0;
+            while (j < pattern.length && buffer.get(i + j) == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private int fill() throws IOException {
+        buffer.compact();
+        int read = in.read(buffer);
+        buffer.flip();
+        return read;
+    }
+}
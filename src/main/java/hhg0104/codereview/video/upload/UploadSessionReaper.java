@@ -0,0 +1,59 @@
+package hhg0104.codereview.video.upload;
+
+import hhg0104.codereview.video.property.FileProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is a periodic cleanup of the resumable uploads given up by their clients. A session in which no chunk was
+ * written for the session TTL is deleted with its chunks and its staging file, at the interval of the video reaper.
+ */
+@Slf4j
+@Component
+public class UploadSessionReaper {
+
+    private ChunkedUploadService uploadService;
+
+    private Duration sessionTtl;
+
+    private int batchSize;
+
+    private final ScheduledExecutorService executor;
+
+    @Autowired
+    public UploadSessionReaper(ChunkedUploadService uploadService, FileProperties fileProp) {
+        this.uploadService = uploadService;
+        this.sessionTtl = fileProp.getUploadSessionTtl();
+        this.batchSize = fileProp.getReaperBatchSize();
+        this.executor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("upload-session-reaper").daemon().factory());
+
+        long intervalMillis = fileProp.getReaperInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::runReap, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void runReap() {
+        try {
+            int expired = uploadService.expireSessions(LocalDateTime.now().minus(sessionTtl), batchSize);
+            if (expired > 0) {
+                log.info("The upload session reaper deleted {} expired uploads.", expired);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("The upload session reaper failed.", e);
+        }
+    }
+}
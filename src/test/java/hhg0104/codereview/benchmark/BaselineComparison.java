@@ -0,0 +1,118 @@
+package hhg0104.codereview.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compare a JMH JSON result with a baseline result, and exit with 1 when a benchmark got worse than the tolerance.
+ * A benchmark is identified by its name and parameters, and only the benchmarks in both results are compared.
+ * The score is compared, and the allocation per operation too when both results were run with the GC profiler.
+ * <pre>
+ * BaselineComparison &lt;result.json&gt; &lt;baseline.json&gt; &lt;tolerance percent&gt;
+ * </pre>
+ * To set a new baseline, copy a result over the baseline file.
+ */
+public class BaselineComparison {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws IOException {
+
+        Path resultPath = Path.of(args[0]);
+        Path baselinePath = Path.of(args[1]);
+        double tolerance = Double.parseDouble(args[2]) / 100;
+
+        if (!Files.exists(resultPath)) {
+            System.out.println("There is no benchmark result to compare: " + resultPath);
+            return;
+        }
+        if (!Files.exists(baselinePath)) {
+            System.out.println("There is no benchmark baseline, copy " + resultPath + " to " + baselinePath
+                    + " to set one.");
+            return;
+        }
+
+        Map<String, JsonNode> baseline = read(baselinePath);
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, JsonNode> entry : read(resultPath).entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                continue;
+            }
+
+            JsonNode after = entry.getValue();
+            boolean higherIsBetter = "thrpt".equals(after.path("mode").asText());
+            compare(entry.getKey(), before.path("primaryMetric"), after.path("primaryMetric"), higherIsBetter,
+                    tolerance, regressions);
+
+            JsonNode allocationBefore = allocation(before);
+            JsonNode allocationAfter = allocation(after);
+            if (allocationBefore != null && allocationAfter != null) {
+                compare(entry.getKey() + " (allocation)", allocationBefore, allocationAfter, false, tolerance,
+                        regressions);
+            }
+        }
+
+        if (!regressions.isEmpty()) {
+            System.out.println("These benchmarks are worse than the baseline by more than " + args[2] + "%:");
+            regressions.forEach(System.out::println);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, JsonNode> read(Path path) throws IOException {
+
+        Map<String, JsonNode> benchmarks = new LinkedHashMap<>();
+        for (JsonNode benchmark : OBJECT_MAPPER.readTree(path.toFile())) {
+            StringBuilder key = new StringBuilder(benchmark.path("benchmark").asText());
+            benchmark.path("params").fields()
+                    .forEachRemaining(param -> key.append(':').append(param.getKey()).append('=')
+                            .append(param.getValue().asText()));
+            benchmarks.put(key.toString(), benchmark);
+        }
+
+        return benchmarks;
+    }
+
+    /**
+     * Print the change of a metric, and add it to the regressions when it got worse by more than the tolerance.
+     * A throughput is better when it is higher, a time or an allocation when it is lower.
+     */
+    private static void compare(String name, JsonNode before, JsonNode after, boolean higherIsBetter,
+                                double tolerance, List<String> regressions) {
+
+        double scoreBefore = before.path("score").asDouble();
+        double scoreAfter = after.path("score").asDouble();
+        double relative = scoreBefore == 0 ? 0 : (scoreAfter - scoreBefore) / scoreBefore;
+        double change = higherIsBetter ? -relative : relative;
+
+        String line = String.format("%-90s %12.3f -> %12.3f %s (%+.1f%%)", name, scoreBefore, scoreAfter,
+                after.path("scoreUnit").asText(), relative * 100);
+        System.out.println(line);
+        if (change > tolerance) {
+            regressions.add(line);
+        }
+    }
+
+    private static JsonNode allocation(JsonNode benchmark) {
+
+        Iterator<Map.Entry<String, JsonNode>> metrics = benchmark.path("secondaryMetrics").fields();
+        while (metrics.hasNext()) {
+            Map.Entry<String, JsonNode> metric = metrics.next();
+            if (metric.getKey().endsWith("gc.alloc.rate.norm")) {
+                return metric.getValue();
+            }
+        }
+
+        return null;
+    }
+}
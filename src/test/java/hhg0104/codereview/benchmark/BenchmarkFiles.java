@@ -0,0 +1,50 @@
+package hhg0104.codereview.benchmark;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Files of the benchmarks.
+ */
+final class BenchmarkFiles {
+
+    private BenchmarkFiles() {
+    }
+
+    /**
+     * Write a file of random bytes, which the file system cannot compress or skip.
+     */
+    static Path createRandomFile(Path path, long size) throws IOException {
+
+        Random random = new Random(size);
+        byte[] chunk = new byte[64 * 1024];
+        try (OutputStream out = Files.newOutputStream(path)) {
+            for (long remaining = size; remaining > 0; remaining -= chunk.length) {
+                random.nextBytes(chunk);
+                out.write(chunk, 0, (int) Math.min(chunk.length, remaining));
+            }
+        }
+
+        return path;
+    }
+
+    /**
+     * Open a file as a plain stream, which hides the file channel from the copy optimizations of the JDK like
+     * a request body stream does.
+     */
+    static InputStream openRequestBody(Path path) throws IOException {
+        return new FilterInputStream(Files.newInputStream(path)) {
+        };
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+}
@@ -0,0 +1,135 @@
+package hhg0104.codereview.benchmark;
+
+import hhg0104.codereview.video.download.ByteRange;
+import hhg0104.codereview.video.download.DownloadEngine;
+import hhg0104.codereview.video.download.StreamDownloadEngine;
+import hhg0104.codereview.video.download.ZeroCopyDownloadEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.UrlResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the ways to read a download from the upload directory. The body is written to a loopback socket whose
+ * other end is drained by a thread, so transferTo takes the kernel's zero-copy path as it does to a client.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DownloadReadBenchmark {
+
+    @Param({"1048576", "33554432"})
+    private int size;
+
+    private Path directory;
+
+    private File source;
+
+    private ByteRange wholeFile;
+
+    private ServerSocketChannel server;
+
+    private SocketChannel sinkChannel;
+
+    private OutputStream sink;
+
+    private DownloadEngine streamEngine = new StreamDownloadEngine();
+
+    private DownloadEngine zeroCopyEngine = new ZeroCopyDownloadEngine();
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("download-benchmark");
+        source = BenchmarkFiles.createRandomFile(directory.resolve("source.mp4"), size).toFile();
+        wholeFile = new ByteRange(0, size - 1);
+
+        server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        sinkChannel = SocketChannel.open(server.getLocalAddress());
+        SocketChannel drained = server.accept();
+        Thread.ofPlatform().name("download-benchmark-drain").daemon().start(() -> drain(drained));
+        sink = Channels.newOutputStream(sinkChannel);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        sinkChannel.close();
+        server.close();
+        BenchmarkFiles.deleteRecursively(directory);
+    }
+
+    private void drain(SocketChannel channel) {
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+        try (channel) {
+            while (channel.read(buffer) >= 0) {
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            // The benchmark is over.
+        }
+    }
+
+    /**
+     * The read before the download engines: the resource stream copied through a heap buffer.
+     */
+    @Benchmark
+    public long urlResource() throws IOException {
+        try (InputStream in = new UrlResource(source.toURI()).getInputStream()) {
+            return in.transferTo(sink);
+        }
+    }
+
+    @Benchmark
+    public void streamEngine() throws IOException {
+        streamEngine.copy(source, wholeFile, sink);
+    }
+
+    @Benchmark
+    public void zeroCopyEngine() throws IOException {
+        zeroCopyEngine.copy(source, wholeFile, sink);
+    }
+
+    /**
+     * transferTo from the file channel to the socket channel, without the stream wrapper of the response.
+     */
+    @Benchmark
+    public long transferTo() throws IOException {
+
+        long transferred = 0;
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            while (transferred < size) {
+                transferred += in.transferTo(transferred, size - transferred, sinkChannel);
+            }
+        }
+
+        return transferred;
+    }
+}
@@ -0,0 +1,104 @@
+package hhg0104.codereview.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hhg0104.codereview.data.ApiResponseTemplate;
+import hhg0104.codereview.video.entity.VideoEntity;
+import hhg0104.codereview.video.entity.VideoState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the JSON serialization of the responses: the error and message body of {@link ApiResponseTemplate},
+ * and a list of {@link VideoEntity} through an object mapper configured like the one of the message converters.
+ * Run it with the GC profiler, the default of the benchmark profile, to see the allocation per operation
+ * (gc.alloc.rate.norm), e.g. of a new ObjectMapper per response against the shared writer and the pre-encoded body.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class VideoList {
+
+        @Param({"100", "1000"})
+        private int count;
+
+        private ObjectMapper objectMapper;
+
+        private List<VideoEntity> videos;
+
+        @Setup
+        public void setUp() {
+
+            objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+            LocalDateTime now = LocalDateTime.now();
+            videos = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                videos.add(new VideoEntity(i, "video-" + i + ".mp4", 1024L * 1024 * i,
+                        "820b77a8ac2ea08e635022d29f32c4edfeb35c0a3f253b324a041deeb0398489", now, VideoState.ACTIVE,
+                        now, null, null));
+            }
+        }
+    }
+
+    /**
+     * The serialization before the shared writer, which built an ObjectMapper for each response.
+     */
+    @Benchmark
+    public String apiResponseNewObjectMapper() throws JsonProcessingException {
+        return new ObjectMapper().writeValueAsString(ApiResponseTemplate.builder()
+                .errorMessage("There is no file by this file id: 1")
+                .build());
+    }
+
+    @Benchmark
+    public String apiResponseToJson() {
+        return ApiResponseTemplate.builder()
+                .errorMessage("There is no file by this file id: 1")
+                .build()
+                .toJson();
+    }
+
+    @Benchmark
+    public byte[] apiResponseToJsonBytes() {
+        return ApiResponseTemplate.builder()
+                .errorMessage("There is no file by this file id: 1")
+                .build()
+                .toJsonBytes();
+    }
+
+    @Benchmark
+    public long apiResponsePreEncoded() throws IOException {
+        try (InputStream in = ApiResponseTemplate.fileUploadedJson().getInputStream()) {
+            return in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    @Benchmark
+    public byte[] videoEntityList(VideoList list) throws JsonProcessingException {
+        return list.objectMapper.writeValueAsBytes(list.videos);
+    }
+}
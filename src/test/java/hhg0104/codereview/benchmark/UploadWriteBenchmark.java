@@ -0,0 +1,120 @@
+package hhg0104.codereview.benchmark;
+
+import hhg0104.codereview.video.storage.HashingChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the ways to write an upload to the upload directory. The upload is read from a file through a plain
+ * stream, as a request body is, except for the zero-copy write which needs a file channel as the source. Each write
+ * creates a new file, as an upload does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UploadWriteBenchmark {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Param({"1048576", "33554432"})
+    private int size;
+
+    private Path directory;
+
+    private Path source;
+
+    private Path target;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("upload-benchmark");
+        source = BenchmarkFiles.createRandomFile(directory.resolve("source.mp4"), size);
+        target = directory.resolve("target.mp4");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkFiles.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public long filesCopy() throws IOException {
+        Files.deleteIfExists(target);
+        try (InputStream in = BenchmarkFiles.openRequestBody(source)) {
+            return Files.copy(in, target);
+        }
+    }
+
+    @Benchmark
+    public long channel() throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long written = 0;
+        try (ReadableByteChannel in = Channels.newChannel(BenchmarkFiles.openRequestBody(source));
+             FileChannel out = openTarget()) {
+            while (in.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    written += out.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+
+        return written;
+    }
+
+    @Benchmark
+    public long zeroCopy() throws IOException {
+
+        long written = 0;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ); FileChannel out = openTarget()) {
+            while (written < size) {
+                written += out.transferFrom(in, written, size - written);
+            }
+        }
+
+        return written;
+    }
+
+    /**
+     * The write of VideoService: the stream is copied through a channel which hashes the content on the way.
+     */
+    @Benchmark
+    public String hashingChannel() throws IOException {
+
+        try (InputStream in = BenchmarkFiles.openRequestBody(source); HashingChannel out = new HashingChannel(openTarget())) {
+            in.transferTo(Channels.newOutputStream(out));
+            return out.getHash();
+        }
+    }
+
+    private FileChannel openTarget() throws IOException {
+        Files.deleteIfExists(target);
+        return FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+}
@@ -0,0 +1,65 @@
+package hhg0104.codereview.health;
+
+import hhg0104.codereview.video.property.FileProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class UploadDirectoryHealthIndicatorTest {
+
+    @TempDir
+    private Path uploadDirectory;
+
+    /**
+     * Test for the upload directory check, the directory is up with enough free space.
+     */
+    @Test
+    void testHealth() {
+
+        Health health = new UploadDirectoryHealthIndicator(fileProperties(uploadDirectory, DataSize.ofBytes(1)))
+                .health();
+
+        assertEquals(Status.UP, health.getStatus());
+    }
+
+    /**
+     * Test for the upload directory check, the directory is down when the free space is under the threshold.
+     */
+    @Test
+    void testHealthWhenFreeSpaceIsLow() {
+
+        Health health = new UploadDirectoryHealthIndicator(fileProperties(uploadDirectory,
+                DataSize.ofBytes(Long.MAX_VALUE))).health();
+
+        assertEquals(Status.DOWN, health.getStatus());
+    }
+
+    /**
+     * Test for the upload directory check, the directory is down when it is missing.
+     */
+    @Test
+    void testHealthWhenDirectoryIsMissing() {
+
+        Health health = new UploadDirectoryHealthIndicator(fileProperties(uploadDirectory.resolve("missing"),
+                DataSize.ofBytes(1))).health();
+
+        assertEquals(Status.DOWN, health.getStatus());
+    }
+
+    private FileProperties fileProperties(Path uploadBasePath, DataSize minFreeSpace) {
+
+        FileProperties fileProp = mock(FileProperties.class);
+        when(fileProp.getUploadBasePath()).thenReturn(uploadBasePath.toString());
+        when(fileProp.getUploadMinFreeSpace()).thenReturn(minFreeSpace);
+
+        return fileProp;
+    }
+}
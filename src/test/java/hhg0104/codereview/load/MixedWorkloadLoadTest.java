@@ -0,0 +1,316 @@
+package hhg0104.codereview.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * End-to-end load test of one node: the application runs with its real repositories against an in-memory H2 database
+ * in MariaDB mode, and a mixed workload of uploads, downloads, listings and deletes is sent over HTTP.
+ * <pre>
+ * mvn test -Pload-test -Dtest=MixedWorkloadLoadTest -Dload.concurrency=64 -Dload.file-size=1048576
+ * </pre>
+ * Other knobs: load.requests, load.mix (weights of upload, download, list and delete), load.seed-files,
+ * load.virtual-threads.
+ * <p>
+ * The report has the throughput and the p50/p99/p999 latencies of each operation, and the GC and allocation rates of
+ * the JVM, which runs the load client too.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.threads.virtual.enabled=${load.virtual-threads:false}",
+        "spring.datasource.url=jdbc:h2:mem:load;MODE=MariaDB;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "file.upload.base=target/load-test-e2e",
+        "file.media.verify-container=false"
+})
+public class MixedWorkloadLoadTest {
+
+    private static final Path UPLOAD_DIRECTORY = Path.of("target/load-test-e2e");
+
+    private static final String BOUNDARY = "load-test-boundary";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private enum Operation {
+        UPLOAD, DOWNLOAD, LIST, DELETE
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${spring.threads.virtual.enabled}")
+    private boolean virtualThreads;
+
+    @Value("${load.concurrency:32}")
+    private int concurrency;
+
+    @Value("${load.requests:2000}")
+    private int requests;
+
+    @Value("${load.file-size:262144}")
+    private int fileSize;
+
+    @Value("${load.mix:20,60,15,5}")
+    private int[] mix;
+
+    @Value("${load.seed-files:20}")
+    private int seedFiles;
+
+    private HttpClient client;
+
+    private byte[] content;
+
+    /**
+     * Files which the downloads read, they are never deleted.
+     */
+    private final List<Long> seededFileIds = new ArrayList<>();
+
+    /**
+     * Files uploaded by the workload, which the deletes take.
+     */
+    private final Queue<Long> uploadedFileIds = new ConcurrentLinkedQueue<>();
+
+
+    @BeforeAll
+    public static void cleanUp() throws IOException {
+        FileUtils.deleteDirectory(UPLOAD_DIRECTORY.toFile());
+        UPLOAD_DIRECTORY.toFile().mkdirs();
+    }
+
+    /**
+     * Send the mixed workload from many concurrent clients and report the throughput, latencies and GC activity.
+     */
+    @Test
+    public void testMixedWorkload() throws Exception {
+
+        content = new byte[fileSize];
+        ThreadLocalRandom.current().nextBytes(content);
+
+        Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+        Map<Operation, AtomicInteger> failures = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(3));
+            failures.put(operation, new AtomicInteger());
+        }
+        AtomicLong transferredBytes = new AtomicLong();
+        Semaphore inFlight = new Semaphore(concurrency);
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient httpClient = HttpClient.newBuilder().executor(clients).build()) {
+            client = httpClient;
+
+            for (int i = 0; i < seedFiles; i++) {
+                seededFileIds.add(upload());
+            }
+
+            JvmActivity before = JvmActivity.now();
+            for (int i = 0; i < requests; i++) {
+                Operation operation = pick();
+                inFlight.acquire();
+                clients.submit(() -> {
+                    long requestedAt = System.nanoTime();
+                    try {
+                        transferredBytes.addAndGet(execute(operation));
+                    } catch (Exception e) {
+                        failures.get(operation).incrementAndGet();
+                    } finally {
+                        latencies.get(operation).recordValue(
+                                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - requestedAt));
+                        inFlight.release();
+                    }
+                });
+            }
+            inFlight.acquire(concurrency);
+            JvmActivity after = JvmActivity.now();
+
+            report(latencies, failures, transferredBytes.get(), before, after);
+        }
+
+        int totalFailures = failures.values().stream()
+                .mapToInt(AtomicInteger::get)
+                .sum();
+        assertEquals(0, totalFailures);
+    }
+
+    private Operation pick() {
+
+        int total = 0;
+        for (int weight : mix) {
+            total += weight;
+        }
+
+        int value = ThreadLocalRandom.current().nextInt(total);
+        for (int i = 0; i < mix.length; i++) {
+            value -= mix[i];
+            if (value < 0) {
+                return Operation.values()[i];
+            }
+        }
+
+        return Operation.DOWNLOAD;
+    }
+
+    /**
+     * Send one request of the operation.
+     *
+     * @return Content bytes transferred
+     */
+    private long execute(Operation operation) throws Exception {
+
+        switch (operation) {
+            case UPLOAD -> {
+                uploadedFileIds.add(upload());
+                return fileSize;
+            }
+            case DOWNLOAD -> {
+                long fileId = seededFileIds.get(ThreadLocalRandom.current().nextInt(seededFileIds.size()));
+                send(HttpRequest.newBuilder(uri("/files/" + fileId)).GET().build(), 200,
+                        HttpResponse.BodyHandlers.discarding());
+                return fileSize;
+            }
+            case LIST -> {
+                send(HttpRequest.newBuilder(uri("/files?limit=100&order=desc")).GET().build(), 200,
+                        HttpResponse.BodyHandlers.discarding());
+                return 0;
+            }
+            case DELETE -> {
+                Long fileId = uploadedFileIds.poll();
+                if (fileId == null) {
+                    // Nothing uploaded by the workload yet, the seeded files stay for the downloads.
+                    fileId = upload();
+                }
+                send(HttpRequest.newBuilder(uri("/files/" + fileId)).DELETE().build(), 202,
+                        HttpResponse.BodyHandlers.discarding());
+                return 0;
+            }
+            default -> throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+    }
+
+    /**
+     * Upload a new file with distinct content through the batch API, which answers the file id.
+     */
+    private long upload() throws Exception {
+
+        String fileName = "load-" + UUID.randomUUID() + ".mp4";
+        byte[] head = ("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"files\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: video/mp4\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        // The name in front of the shared content makes the content hash of every upload distinct.
+        byte[] prefix = fileName.getBytes(StandardCharsets.US_ASCII);
+        HttpRequest request = HttpRequest.newBuilder(uri("/files/batch"))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(List.of(head, prefix, content, tail)))
+                .build();
+
+        String body = send(request, 201, HttpResponse.BodyHandlers.ofString());
+        JsonNode uploadedFiles = OBJECT_MAPPER.readTree(body);
+
+        return uploadedFiles.get(0).get("file_id").asLong();
+    }
+
+    private <T> T send(HttpRequest request, int expectedStatus, HttpResponse.BodyHandler<T> bodyHandler)
+            throws Exception {
+
+        HttpResponse<T> response = client.send(request, bodyHandler);
+        if (response.statusCode() != expectedStatus) {
+            throw new IllegalStateException(request.method() + " " + request.uri() + ": " + response.statusCode());
+        }
+
+        return response.body();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + "/v1" + path);
+    }
+
+    private void report(Map<Operation, Histogram> latencies, Map<Operation, AtomicInteger> failures,
+                        long transferredBytes, JvmActivity before, JvmActivity after) {
+
+        double seconds = (after.nanoTime - before.nanoTime) / 1e9;
+
+        System.out.printf("[load] virtual threads: %s, concurrency: %d, requests: %d, file size: %d, mix: %s%n",
+                virtualThreads ? "on" : "off", concurrency, requests, fileSize, Arrays.toString(mix));
+        System.out.printf("[load] throughput: %.1f req/s, %.1f MB/s%n", requests / seconds,
+                transferredBytes / seconds / (1024 * 1024));
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation);
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            System.out.printf("[load] %-8s count: %6d, failures: %4d, %8.1f req/s, p50: %8.2f ms, p99: %8.2f ms, "
+                            + "p999: %8.2f ms, max: %8.2f ms%n",
+                    operation, histogram.getTotalCount(), failures.get(operation).get(),
+                    histogram.getTotalCount() / seconds, histogram.getValueAtPercentile(50) / 1e3,
+                    histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3,
+                    histogram.getMaxValue() / 1e3);
+        }
+        System.out.printf("[load] GC: %d collections (%.1f/s), %d ms paused (%.1f%% of the time), "
+                        + "allocation: %.1f MB/s%n",
+                after.gcCount - before.gcCount, (after.gcCount - before.gcCount) / seconds,
+                after.gcMillis - before.gcMillis, (after.gcMillis - before.gcMillis) / 10 / seconds,
+                (after.allocatedBytes - before.allocatedBytes) / seconds / (1024 * 1024));
+    }
+
+    /**
+     * Cumulative GC and allocation counters of the JVM.
+     */
+    private record JvmActivity(long nanoTime, long gcCount, long gcMillis, long allocatedBytes) {
+
+        static JvmActivity now() {
+
+            long gcCount = 0;
+            long gcMillis = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCount += Math.max(gc.getCollectionCount(), 0);
+                gcMillis += Math.max(gc.getCollectionTime(), 0);
+            }
+
+            long allocatedBytes = ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                    .getTotalThreadAllocatedBytes();
+
+            return new JvmActivity(System.nanoTime(), gcCount, gcMillis, allocatedBytes);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package hhg0104.codereview.load;
+
+import hhg0104.codereview.video.entity.VideoEntity;
+import hhg0104.codereview.video.entity.VideoState;
+import hhg0104.codereview.video.repository.BlobDeletionRepository;
+import hhg0104.codereview.video.repository.BlobLockRepository;
+import hhg0104.codereview.video.repository.UploadChunkRepository;
+import hhg0104.codereview.video.repository.UploadSessionRepository;
+import hhg0104.codereview.video.repository.VideoRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.MockBeans;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import javax.sql.DataSource;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+/**
+ * Load test for the download API with and without the virtual-thread mode.
+ * <p>
+ * Every download waits for a simulated DB round trip, so the number of requests in flight is bounded by the
+ * request threads in the platform-thread mode. Run it with both modes and compare the reports:
+ * <pre>
+ * mvn test -Pload-test -Dload.virtual-threads=false
+ * mvn test -Pload-test -Dload.virtual-threads=true
+ * </pre>
+ * Other knobs: load.concurrency, load.requests, load.db-latency-ms, load.file-size.
+ */
+@Tag("load")
+@MockBeans({
+        @MockBean(DataSource.class),
+        @MockBean(EntityManagerFactory.class),
+        @MockBean(BlobDeletionRepository.class),
+        @MockBean(BlobLockRepository.class),
+        @MockBean(UploadSessionRepository.class),
+        @MockBean(UploadChunkRepository.class)
+})
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.threads.virtual.enabled=${load.virtual-threads:false}",
+        "file.upload.base=target/load-test"
+})
+public class VirtualThreadLoadTest {
+
+    private static final Path UPLOAD_DIRECTORY = Path.of("target/load-test");
+
+    private static final String TEST_FILE_NAME = "load-test.mp4";
+
+    @MockBean
+    private VideoRepository repo;
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${spring.threads.virtual.enabled}")
+    private boolean virtualThreads;
+
+    @Value("${load.concurrency:1000}")
+    private int concurrency;
+
+    @Value("${load.requests:10000}")
+    private int requests;
+
+    @Value("${load.db-latency-ms:200}")
+    private long dbLatencyMillis;
+
+    @Value("${load.file-size:65536}")
+    private long fileSize;
+
+
+    @BeforeEach
+    public void init() throws Exception {
+
+        try (RandomAccessFile file = new RandomAccessFile(UPLOAD_DIRECTORY.resolve(TEST_FILE_NAME).toFile(), "rw")) {
+            file.setLength(fileSize);
+        }
+
+        VideoEntity testEntity = new VideoEntity(1, TEST_FILE_NAME, fileSize, null, LocalDateTime.now(), VideoState.ACTIVE, null, null, null);
+        when(repo.findById(1L)).thenAnswer(invocation -> {
+            Thread.sleep(dbLatencyMillis);
+            return Optional.of(testEntity);
+        });
+    }
+
+    /**
+     * Download the same file from many concurrent clients and report the throughput and latency percentiles.
+     */
+    @Test
+    public void testDownloadLoad() throws Exception {
+
+        URI uri = URI.create("http://localhost:" + port + "/v1/files/1");
+        HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+
+        long[] latencies = new long[requests];
+        AtomicInteger failures = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(concurrency);
+
+        long startedAt = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder().executor(clients).build()) {
+            for (int i = 0; i < requests; i++) {
+                int index = i;
+                inFlight.acquire();
+                clients.submit(() -> {
+                    long requestedAt = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    } finally {
+                        latencies[index] = System.nanoTime() - requestedAt;
+                        inFlight.release();
+                    }
+                });
+            }
+            inFlight.acquire(concurrency);
+        }
+        long elapsed = System.nanoTime() - startedAt;
+
+        Arrays.sort(latencies);
+        System.out.printf("[load] virtual threads: %s, concurrency: %d, requests: %d, failures: %d%n",
+                virtualThreads ? "on" : "off", concurrency, requests, failures.get());
+        System.out.printf("[load] throughput: %.1f req/s, p50: %.1f ms, p99: %.1f ms, max: %.1f ms%n",
+                requests / (elapsed / 1e9), percentile(latencies, 0.50), percentile(latencies, 0.99),
+                latencies[latencies.length - 1] / 1e6);
+
+        assertEquals(0, failures.get());
+    }
+
+    private double percentile(long[] sortedLatencies, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(index, 0)] / 1e6;
+    }
+}
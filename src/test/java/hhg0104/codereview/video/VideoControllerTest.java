@@ -1,26 +1,46 @@
 package hhg0104.codereview.video;
 
 import hhg0104.codereview.exception.AlreadyExistFileException;
-import hhg0104.codereview.video.entity.VideoEntity;
+import hhg0104.codereview.video.export.CatalogExporter;
+import hhg0104.codereview.video.export.ExportFormat;
+import hhg0104.codereview.video.repository.BlobDeletionRepository;
+import hhg0104.codereview.video.repository.BlobLockRepository;
+import hhg0104.codereview.video.repository.UploadChunkRepository;
+import hhg0104.codereview.video.repository.UploadSessionRepository;
 import hhg0104.codereview.video.repository.VideoRepository;
+import hhg0104.codereview.video.request.FileListQuery;
+import hhg0104.codereview.video.response.FileInfo;
+import hhg0104.codereview.video.response.FileListPage;
+import hhg0104.codereview.video.response.UploadedFileInfo;
+import hhg0104.codereview.video.upload.StreamingMultipartReader;
 import jakarta.persistence.EntityManagerFactory;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.MockBeans;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.multipart.MultipartFile;
 
 import javax.sql.DataSource;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.Writer;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -28,6 +48,7 @@ import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
@@ -36,6 +57,10 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @MockBeans({
         @MockBean(DataSource.class),
         @MockBean(EntityManagerFactory.class),
+        @MockBean(BlobDeletionRepository.class),
+        @MockBean(BlobLockRepository.class),
+        @MockBean(UploadSessionRepository.class),
+        @MockBean(UploadChunkRepository.class),
         @MockBean(VideoRepository.class)
 })
 @SpringBootTest
@@ -45,6 +70,9 @@ public class VideoControllerTest {
     @MockBean
     private VideoService service;
 
+    @MockBean
+    private CatalogExporter exporter;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -58,7 +86,7 @@ public class VideoControllerTest {
         File testFile = new File(testFilePath);
 
         long testFileId = 1;
-        when(service.fetchFile(testFileId)).thenReturn(testFile);
+        when(service.fetchFile(testFileId)).thenReturn(new VideoFile(testFile.getName(), testFile));
 
         mockMvc.perform(get("/files/" + testFileId))
                 .andDo(print())
@@ -66,6 +94,84 @@ public class VideoControllerTest {
                 .andExpect(content().string("This is test file."));
     }
 
+    /**
+     * Test for the download API, when a single byte range is requested.
+     */
+    @Test
+    public void testDownloadAPIWhenSingleRange() throws Exception {
+
+        File testFile = new File(getClass().getResource("/test_file/test.mp4").getFile());
+
+        long testFileId = 1;
+        when(service.fetchFile(testFileId)).thenReturn(new VideoFile(testFile.getName(), testFile));
+
+        mockMvc.perform(get("/files/" + testFileId)
+                        .header(HttpHeaders.RANGE, "bytes=5-6"))
+                .andDo(print())
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 5-6/18"))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "video/mp4"))
+                .andExpect(content().string("is"));
+    }
+
+    /**
+     * Test for the download API, when multiple byte ranges are requested.
+     */
+    @Test
+    public void testDownloadAPIWhenMultipleRanges() throws Exception {
+
+        File testFile = new File(getClass().getResource("/test_file/test.mp4").getFile());
+
+        long testFileId = 1;
+        when(service.fetchFile(testFileId)).thenReturn(new VideoFile(testFile.getName(), testFile));
+
+        mockMvc.perform(get("/files/" + testFileId)
+                        .header(HttpHeaders.RANGE, "bytes=0-3,-5"))
+                .andDo(print())
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, startsWith("multipart/byteranges; boundary=")))
+                .andExpect(content().string(containsString("Content-Range: bytes 0-3/18\r\n\r\nThis\r\n")))
+                .andExpect(content().string(containsString("Content-Range: bytes 13-17/18\r\n\r\nfile.\r\n")));
+    }
+
+    /**
+     * Test for the download API, when the If-Range validator doesn't match the file.
+     */
+    @Test
+    public void testDownloadAPIWhenIfRangeNotMatched() throws Exception {
+
+        File testFile = new File(getClass().getResource("/test_file/test.mp4").getFile());
+
+        long testFileId = 1;
+        when(service.fetchFile(testFileId)).thenReturn(new VideoFile(testFile.getName(), testFile));
+
+        mockMvc.perform(get("/files/" + testFileId)
+                        .header(HttpHeaders.RANGE, "bytes=5-6")
+                        .header(HttpHeaders.IF_RANGE, "\"outdated\""))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string("This is test file."));
+    }
+
+    /**
+     * Error test for the download API, when the requested range is beyond the file.
+     */
+    @Test
+    public void testDownloadAPIWhenRangeNotSatisfiable() throws Exception {
+
+        File testFile = new File(getClass().getResource("/test_file/test.mp4").getFile());
+
+        long testFileId = 1;
+        when(service.fetchFile(testFileId)).thenReturn(new VideoFile(testFile.getName(), testFile));
+
+        mockMvc.perform(get("/files/" + testFileId)
+                        .header(HttpHeaders.RANGE, "bytes=100-"))
+                .andDo(print())
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */18"));
+    }
+
     /**
      * Error test for the download API, when cannot find the file.
      */
@@ -81,6 +187,7 @@ public class VideoControllerTest {
         mockMvc.perform(get("/files/" + testFileId))
                 .andDo(print())
                 .andExpect(status().isNotFound())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(content().string(expectContent));
     }
 
@@ -90,11 +197,10 @@ public class VideoControllerTest {
     @Test
     public void testDownloadAPIWhenUnsupportedFileException1() throws Exception {
 
-        File mockFile = mock(File.class);
-        when(mockFile.getName()).thenReturn("test.txt");
+        VideoFile testFile = new VideoFile("test.txt", mock(File.class));
 
         long testFileId = 1;
-        when(service.fetchFile(testFileId)).thenReturn(mockFile);
+        when(service.fetchFile(testFileId)).thenReturn(testFile);
 
         String expectContent = "{\"errorMessage\":\"[mp4, mpg4, mpg, mpeg] type files are only supported.\"}";
 
@@ -110,11 +216,10 @@ public class VideoControllerTest {
     @Test
     public void testDownloadAPIWhenUnsupportedFileException2() throws Exception {
 
-        File mockFile = mock(File.class);
-        when(mockFile.getName()).thenReturn("test.avi");
+        VideoFile testFile = new VideoFile("test.avi", mock(File.class));
 
         long testFileId = 1;
-        when(service.fetchFile(testFileId)).thenReturn(mockFile);
+        when(service.fetchFile(testFileId)).thenReturn(testFile);
 
         String expectContent = "{\"errorMessage\":\"[mp4, mpg4, mpg, mpeg] type files are only supported.\"}";
 
@@ -136,7 +241,7 @@ public class VideoControllerTest {
 
         mockMvc.perform(delete("/files/" + testFileId))
                 .andDo(print())
-                .andExpect(status().isNoContent())
+                .andExpect(status().isAccepted())
                 .andExpect(content().string("{}"));
     }
 
@@ -160,6 +265,63 @@ public class VideoControllerTest {
                 .andExpect(content().string(expectContent));
     }
 
+    /**
+     * Test for the batch delete API, success test.
+     */
+    @Test
+    public void testDeleteBatchAPI() throws Exception {
+
+        doNothing().when(service).delete(List.of(1L, 2L, 3L));
+
+        mockMvc.perform(delete("/files").param("file_ids", "1,2,3"))
+                .andDo(print())
+                .andExpect(status().isAccepted())
+                .andExpect(content().string("{}"));
+    }
+
+    /**
+     * Test for the batch upload API, success test.
+     */
+    @Test
+    public void testUploadBatchAPI() throws Exception {
+
+        MockMultipartFile firstFile = new MockMultipartFile("files", "test-1.mp4", "video/mp4", "test contents 1".getBytes());
+        MockMultipartFile secondFile = new MockMultipartFile("files", "test-2.mpg", "video/mpg", "test contents 2".getBytes());
+
+        when(service.upload(ArgumentMatchers.<MultipartFile>anyList())).thenReturn(List.of(
+                new UploadedFileInfo(1, "test-1.mp4", "/usr/local/data/upload/a"),
+                new UploadedFileInfo(2, "test-2.mpg", "/usr/local/data/upload/b")));
+
+        String expectContent = "[{\"name\":\"test-1.mp4\",\"location\":\"/usr/local/data/upload/a\",\"file_id\":1}," +
+                "{\"name\":\"test-2.mpg\",\"location\":\"/usr/local/data/upload/b\",\"file_id\":2}]";
+
+        mockMvc.perform(multipart("/files/batch")
+                        .file(firstFile)
+                        .file(secondFile))
+                .andDo(print())
+                .andExpect(status().isCreated())
+                .andExpect(content().json(expectContent));
+    }
+
+    /**
+     * Error test for the batch upload API, when a file name is in the batch twice.
+     */
+    @Test
+    public void testUploadBatchAPIWhenNameIsDuplicated() throws Exception {
+
+        MockMultipartFile firstFile = new MockMultipartFile("files", "test.mp4", "video/mp4", "test contents 1".getBytes());
+        MockMultipartFile secondFile = new MockMultipartFile("files", "test.mp4", "video/mp4", "test contents 2".getBytes());
+
+        String expectContent = "{\"errorMessage\":\"This file is in the batch more than once: test.mp4\"}";
+
+        mockMvc.perform(multipart("/files/batch")
+                        .file(firstFile)
+                        .file(secondFile))
+                .andDo(print())
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(expectContent));
+    }
+
     /**
      * Test for the upload API, when file extension is supported, mp4.
      */
@@ -317,33 +479,149 @@ public class VideoControllerTest {
                 .andExpect(content().string(expectContent));
     }
 
+    /**
+     * Test for the streaming upload API, success test.
+     */
+    @Test
+    public void testUploadStreamAPI() throws Exception {
+
+        String testFileName = "test.mp4";
+
+        String body = "--XyZ\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"" + testFileName + "\"\r\n" +
+                "Content-Type: video/mp4\r\n" +
+                "\r\n" +
+                "test contents\r\n" +
+                "--XyZ--\r\n";
+
+        String testCreatedFileLocation = "/usr/local/data/upload/" + testFileName;
+        when(service.upload(eq(testFileName), any(StreamingMultipartReader.class))).thenReturn(testCreatedFileLocation);
+
+        String expectContent = "{\"message\":\"File uploaded\"}";
+
+        mockMvc.perform(post("/files/stream")
+                        .contentType("multipart/form-data; boundary=XyZ")
+                        .content(body))
+                .andDo(print())
+                .andExpect(status().isCreated())
+                .andExpect(content().string(expectContent))
+                .andExpect(header().stringValues("Location", testCreatedFileLocation));
+    }
+
+    /**
+     * Error test for the streaming upload API, when there is no file part.
+     */
+    @Test
+    public void testUploadStreamAPIWhenNoFilePart() throws Exception {
+
+        String body = "--XyZ\r\n" +
+                "Content-Disposition: form-data; name=\"title\"\r\n" +
+                "\r\n" +
+                "no file\r\n" +
+                "--XyZ--\r\n";
+
+        String expectContent = "{\"errorMessage\":\"There is no file part in the request.\"}";
+
+        mockMvc.perform(post("/files/stream")
+                        .contentType("multipart/form-data; boundary=XyZ")
+                        .content(body))
+                .andDo(print())
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(expectContent));
+    }
+
+    /**
+     * Test for the export API, CSV format.
+     */
+    @Test
+    public void testExportAPI() throws Exception {
+
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(1);
+            writer.write("file_id,name,size,created_at\n");
+            return null;
+        }).when(exporter).export(eq(ExportFormat.CSV), any(Writer.class));
+
+        mockMvc.perform(get("/files/export?format=csv"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "text/csv;charset=UTF-8"))
+                .andExpect(content().string("file_id,name,size,created_at\n"));
+    }
+
+    /**
+     * Error test for the export API, when the format is not supported.
+     */
+    @Test
+    public void testExportAPIWhenFormatIsInvalid() throws Exception {
+
+        String expectContent = "{\"errorMessage\":\"The format must be ndjson or csv.\"}";
+
+        mockMvc.perform(get("/files/export?format=xml"))
+                .andDo(print())
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(expectContent));
+    }
+
     /**
      * Test for the list API, success test.
      */
     @Test
     public void testListAPI() throws Exception {
 
-        VideoEntity video1 = new VideoEntity(1, "test1.mp4", 1827382, LocalDateTime.of(2022, 12, 11, 10, 38, 11));
-        VideoEntity video2 = new VideoEntity(2, "test2.mpg4", 873892, LocalDateTime.of(2022, 11, 10, 18, 11, 29));
-        VideoEntity video3 = new VideoEntity(3, "test3.mpg", 837828, LocalDateTime.of(2021, 5, 3, 7, 18, 12));
-        VideoEntity video4 = new VideoEntity(4, "test4.mpeg", 229182822, LocalDateTime.of(2022, 8, 9, 20, 14, 10));
+        FileInfo video1 = new FileInfo(1, "test1.mp4", 1827382, LocalDateTime.of(2022, 12, 11, 10, 38, 11));
+        FileInfo video2 = new FileInfo(2, "test2.mpg4", 873892, LocalDateTime.of(2022, 11, 10, 18, 11, 29));
+        FileInfo video3 = new FileInfo(3, "test3.mpg", 837828, LocalDateTime.of(2021, 5, 3, 7, 18, 12));
+        FileInfo video4 = new FileInfo(4, "test4.mpeg", 229182822, LocalDateTime.of(2022, 8, 9, 20, 14, 10));
 
-        List<VideoEntity> videos = new ArrayList<>();
+        List<FileInfo> videos = new ArrayList<>();
         videos.add(video1);
         videos.add(video2);
         videos.add(video3);
         videos.add(video4);
 
-        when(service.list()).thenReturn(videos);
+        when(service.list(any(FileListQuery.class))).thenReturn(new FileListPage(videos, null));
 
         String expectContent = "[{\"name\":\"test1.mp4\",\"size\":1827382,\"file_id\":1,\"created_at\":\"2022-12-11 10:38:11\"}," +
-                "{\"name\":\"test2.mpg4\",\"size\":873892,\"file_id\":2,\"created_at\":\"2022-11-10 06:11:29\"}," +
+                "{\"name\":\"test2.mpg4\",\"size\":873892,\"file_id\":2,\"created_at\":\"2022-11-10 18:11:29\"}," +
                 "{\"name\":\"test3.mpg\",\"size\":837828,\"file_id\":3,\"created_at\":\"2021-05-03 07:18:12\"}," +
-                "{\"name\":\"test4.mpeg\",\"size\":229182822,\"file_id\":4,\"created_at\":\"2022-08-09 08:14:10\"}]";
+                "{\"name\":\"test4.mpeg\",\"size\":229182822,\"file_id\":4,\"created_at\":\"2022-08-09 20:14:10\"}]";
 
         mockMvc.perform(get("/files"))
                 .andDo(print())
                 .andExpect(status().isOk())
+                .andExpect(content().string(expectContent))
+                .andExpect(header().doesNotExist(HttpHeaders.LINK));
+    }
+
+    /**
+     * Test for the list API, when there is a next page.
+     */
+    @Test
+    public void testListAPIWhenNextPageExists() throws Exception {
+
+        FileInfo video = new FileInfo(7, "test7.mp4", 1827382, LocalDateTime.of(2022, 12, 11, 10, 38, 11));
+
+        when(service.list(any(FileListQuery.class))).thenReturn(new FileListPage(List.of(video), "next-cursor"));
+
+        mockMvc.perform(get("/files?sort=size&limit=1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.LINK,
+                        "<http://localhost/files?sort=size&limit=1&cursor=next-cursor>; rel=\"next\""));
+    }
+
+    /**
+     * Error test for the list API, when the page size is out of range.
+     */
+    @Test
+    public void testListAPIWhenLimitIsInvalid() throws Exception {
+
+        String expectContent = "{\"errorMessage\":\"The limit must be between 1 and 1000\"}";
+
+        mockMvc.perform(get("/files?limit=0"))
+                .andDo(print())
+                .andExpect(status().isBadRequest())
                 .andExpect(content().string(expectContent));
     }
 
@@ -353,7 +631,7 @@ public class VideoControllerTest {
     @Test
     public void testListAPIWhenUnknownException() throws Exception {
 
-        when(service.list()).thenThrow(new RuntimeException("This is a test unknown exception."));
+        when(service.list(any(FileListQuery.class))).thenThrow(new RuntimeException("This is a test unknown exception."));
 
         String expectContent = "{\"errorMessage\":\"This is a test unknown exception.\"}";
 
@@ -0,0 +1,109 @@
+package hhg0104.codereview.video;
+
+import hhg0104.codereview.video.entity.VideoEntity;
+import hhg0104.codereview.video.entity.VideoState;
+import hhg0104.codereview.video.property.FileProperties;
+import hhg0104.codereview.video.repository.VideoRepository;
+import hhg0104.codereview.video.storage.VideoGarbageCollector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class VideoReaperTest {
+
+    private VideoRepository repo;
+
+    private VideoGarbageCollector garbageCollector;
+
+    private VideoReaper reaper;
+
+    @BeforeEach
+    public void init() {
+
+        FileProperties fileProp = mock(FileProperties.class);
+        when(fileProp.getReaperInterval()).thenReturn(Duration.ofHours(1));
+        when(fileProp.getReaperTimeout()).thenReturn(Duration.ofHours(1));
+        when(fileProp.getReaperBatchSize()).thenReturn(2);
+
+        repo = mock(VideoRepository.class);
+        garbageCollector = mock(VideoGarbageCollector.class);
+        when(garbageCollector.submit(any())).thenAnswer(invocation ->
+                new VideoGarbageCollector.Submission(invocation.<List<?>>getArgument(0).size(), 0, 0));
+        reaper = new VideoReaper(repo, garbageCollector, fileProp);
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        reaper.shutdown();
+    }
+
+    /**
+     * Test for a reaper pass, the stuck files are moved on and the stale DELETING files are handed over
+     * to the garbage collector page by page, the GONE rows are purged page by page, and the replaced blobs past
+     * their grace period are deleted.
+     */
+    @Test
+    void testReap() {
+
+        List<VideoEntity> firstPage = List.of(deleting(1), deleting(2));
+        List<VideoEntity> secondPage = List.of(deleting(5));
+        when(repo.findByStateAndStateChangedAtBeforeAndFileIdGreaterThanOrderByFileId(
+                eq(VideoState.DELETING), any(), eq(0L), eq(Limit.of(2)))).thenReturn(firstPage);
+        when(repo.findByStateAndStateChangedAtBeforeAndFileIdGreaterThanOrderByFileId(
+                eq(VideoState.DELETING), any(), eq(2L), eq(Limit.of(2)))).thenReturn(secondPage);
+        when(repo.findFileIdsByState(VideoState.GONE, Limit.of(2))).thenReturn(List.of(10L, 11L), List.of(12L));
+        when(repo.deleteInBatchByState(any(), eq(VideoState.GONE))).thenAnswer(invocation ->
+                invocation.<List<?>>getArgument(0).size());
+
+        reaper.reap();
+
+        verify(repo).updateStateBefore(eq(VideoState.PENDING), eq(VideoState.GONE), any(), any());
+        verify(repo).updateStateBefore(eq(VideoState.STORED), eq(VideoState.DELETING), any(), any());
+        verify(garbageCollector).submit(firstPage);
+        verify(garbageCollector).submit(secondPage);
+        verify(repo).deleteInBatchByState(List.of(10L, 11L), VideoState.GONE);
+        verify(repo).deleteInBatchByState(List.of(12L), VideoState.GONE);
+        verify(garbageCollector).reclaimReplacedBlobs(2);
+    }
+
+    /**
+     * Test for a reaper pass, a page of files which are all queued already does not stop the handing over, and
+     * a page which does not fit in the queue does.
+     */
+    @Test
+    void testReapWhenQueued() {
+
+        List<VideoEntity> firstPage = List.of(deleting(1), deleting(2));
+        List<VideoEntity> secondPage = List.of(deleting(3), deleting(4));
+        when(repo.findByStateAndStateChangedAtBeforeAndFileIdGreaterThanOrderByFileId(
+                eq(VideoState.DELETING), any(), eq(0L), eq(Limit.of(2)))).thenReturn(firstPage);
+        when(repo.findByStateAndStateChangedAtBeforeAndFileIdGreaterThanOrderByFileId(
+                eq(VideoState.DELETING), any(), eq(2L), eq(Limit.of(2)))).thenReturn(secondPage);
+        when(garbageCollector.submit(firstPage)).thenReturn(new VideoGarbageCollector.Submission(0, 2, 0));
+        when(garbageCollector.submit(secondPage)).thenReturn(new VideoGarbageCollector.Submission(1, 0, 1));
+
+        reaper.reap();
+
+        verify(garbageCollector).submit(firstPage);
+        verify(garbageCollector).submit(secondPage);
+        verify(repo, never()).findByStateAndStateChangedAtBeforeAndFileIdGreaterThanOrderByFileId(
+                eq(VideoState.DELETING), any(), eq(4L), any());
+    }
+
+    private VideoEntity deleting(long fileId) {
+        return new VideoEntity(fileId, "test-" + fileId + ".mp4", 18, "hash-" + fileId, LocalDateTime.now(),
+                VideoState.DELETING, LocalDateTime.now().minusDays(1), null, null);
+    }
+}
@@ -1,36 +1,100 @@
 package hhg0104.codereview.video;
 
 import hhg0104.codereview.exception.AlreadyExistFileException;
+import hhg0104.codereview.exception.UnsupportedFileException;
+import hhg0104.codereview.video.cache.VideoMetadataCache;
+import hhg0104.codereview.video.entity.BlobLockEntity;
 import hhg0104.codereview.video.entity.VideoEntity;
+import hhg0104.codereview.video.entity.VideoState;
+import hhg0104.codereview.video.media.FastStartPipeline;
+import hhg0104.codereview.video.metrics.VideoMetrics;
 import hhg0104.codereview.video.property.FileProperties;
+import hhg0104.codereview.video.repository.BlobDeletionRepository;
+import hhg0104.codereview.video.repository.BlobLockRepository;
+import hhg0104.codereview.video.repository.UploadChunkRepository;
+import hhg0104.codereview.video.repository.UploadSessionRepository;
 import hhg0104.codereview.video.repository.VideoRepository;
+import hhg0104.codereview.video.request.FileListCursor;
+import hhg0104.codereview.video.request.FileListQuery;
+import hhg0104.codereview.video.request.FileSort;
+import hhg0104.codereview.video.response.FileInfo;
+import hhg0104.codereview.video.response.FileListPage;
+import hhg0104.codereview.video.response.UploadedFileInfo;
+import hhg0104.codereview.video.storage.BlobReferences;
+import hhg0104.codereview.video.storage.BlobStore;
+import hhg0104.codereview.video.storage.HashPrefixLayout;
+import hhg0104.codereview.video.storage.LocalVideoStorage;
+import hhg0104.codereview.video.storage.VideoGarbageCollector;
+import hhg0104.codereview.video.thumbnail.ThumbnailPipeline;
+import hhg0104.codereview.video.tracing.VideoTracing;
+import hhg0104.codereview.video.upload.StreamingMultipartReader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.otel.bridge.OtelCurrentTraceContext;
+import io.micrometer.tracing.otel.bridge.OtelTracer;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
 import jakarta.persistence.EntityManagerFactory;
 import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.MockBeans;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
 
 import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.doNothing;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @MockBeans({
         @MockBean(DataSource.class),
-        @MockBean(EntityManagerFactory.class)
+        @MockBean(EntityManagerFactory.class),
+        @MockBean(BlobDeletionRepository.class),
+        @MockBean(BlobLockRepository.class),
+        @MockBean(UploadSessionRepository.class),
+        @MockBean(UploadChunkRepository.class)
 })
 @SpringBootTest
 public class VideoServiceTest {
@@ -41,6 +105,21 @@ public class VideoServiceTest {
     @Mock
     private FileProperties fileProp;
 
+    private BlobStore blobStore;
+
+    @Mock
+    private VideoGarbageCollector garbageCollector;
+
+    @Mock
+    private ThumbnailPipeline thumbnailPipeline;
+
+    @Mock
+    private FastStartPipeline fastStartPipeline;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private InMemorySpanExporter spanExporter;
+
     private VideoService service;
 
 
@@ -49,8 +128,30 @@ public class VideoServiceTest {
 
         String testFileDirectory = getClass().getResource("/test_file").getPath();
         when(fileProp.getUploadBasePath()).thenReturn(testFileDirectory);
+        when(fileProp.getMediaMaxMoovSize()).thenReturn(DataSize.ofMegabytes(16));
+        when(fileProp.getReaperHeartbeatInterval()).thenReturn(Duration.ofHours(1));
+
+        when(repo.markHashed(anyLong(), any())).thenReturn(1);
+        when(repo.markStored(anyLong(), anyLong(), any(), any(), any())).thenReturn(1);
+        when(repo.updateState(any(), any(), any(), any())).thenReturn(1);
+
+        blobStore = new BlobStore(fileProp, new HashPrefixLayout(2));
+        meterRegistry = new SimpleMeterRegistry();
+        spanExporter = InMemorySpanExporter.create();
+        SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(spanExporter))
+                .build();
+        OtelTracer tracer = new OtelTracer(tracerProvider.get("test"), new OtelCurrentTraceContext(), event -> {
+        });
+        BlobLockRepository blobLockRepo = mock(BlobLockRepository.class);
+        when(blobLockRepo.lockByContentHash(any())).thenReturn(Optional.of(new BlobLockEntity()));
+        service = new VideoService(repo, fileProp, new VideoMetadataCache(100, Duration.ofMinutes(1)), new LocalVideoStorage(blobStore), new BlobReferences(repo, blobLockRepo, mock(PlatformTransactionManager.class)), garbageCollector, thumbnailPipeline, fastStartPipeline, new VideoMetrics(meterRegistry), new VideoTracing(tracer));
+    }
 
-        service = new VideoService(repo, fileProp);
+    @AfterEach
+    public void cleanUp() throws Exception {
+        service.shutdown();
+        FileUtils.deleteDirectory(new File(fileProp.getUploadBasePath(), "blobs"));
     }
 
     /**
@@ -61,7 +162,7 @@ public class VideoServiceTest {
 
         long testId = 1;
         String testFileName = "test.mp4";
-        VideoEntity testEntity = new VideoEntity(testId, testFileName, 877127, LocalDateTime.now());
+        VideoEntity testEntity = new VideoEntity(testId, testFileName, 877127, null, LocalDateTime.now(), VideoState.ACTIVE, null, null, null);
 
         Optional mockResult = mock(Optional.class);
         when(mockResult.orElse(null)).thenReturn(testEntity);
@@ -70,8 +171,26 @@ public class VideoServiceTest {
 
         String expectPath = new File(fileProp.getUploadBasePath(), testFileName).getAbsolutePath();
 
-        File result = service.fetchFile(testId);
-        assertEquals(expectPath, result.getAbsolutePath());
+        VideoFile result = service.fetchFile(testId);
+        assertEquals(testFileName, result.getName());
+        assertEquals(expectPath, result.getFile().getAbsolutePath());
+    }
+
+    /**
+     * Test for the fetchFile method, the second fetch is served from the metadata cache.
+     */
+    @Test
+    void testFetchFileWhenCached() throws Exception {
+
+        long testId = 1;
+        VideoEntity testEntity = new VideoEntity(testId, "test.mp4", 877127, null, LocalDateTime.now(), VideoState.ACTIVE, null, null, null);
+        when(repo.findById(testId)).thenReturn(Optional.of(testEntity));
+
+        VideoFile first = service.fetchFile(testId);
+        VideoFile second = service.fetchFile(testId);
+
+        assertEquals(first, second);
+        verify(repo, times(1)).findById(testId);
     }
 
     /**
@@ -102,7 +221,7 @@ public class VideoServiceTest {
 
         long testId = 1;
         String testFileName = "test-not-exist.mp4";
-        VideoEntity testEntity = new VideoEntity(testId, testFileName, 877127, LocalDateTime.now());
+        VideoEntity testEntity = new VideoEntity(testId, testFileName, 877127, null, LocalDateTime.now(), VideoState.ACTIVE, null, null, null);
 
         Optional mockResult = mock(Optional.class);
         when(mockResult.orElse(null)).thenReturn(testEntity);
@@ -117,30 +236,43 @@ public class VideoServiceTest {
     }
 
     /**
-     * Test for the delete method, success test.
+     * Error test for the fetchFile method, when the file is being deleted.
+     */
+    @Test
+    void testFetchFileWhenDeleting() {
+
+        long testId = 1;
+        VideoEntity testEntity = new VideoEntity(testId, "test.mp4", 877127, null, LocalDateTime.now(),
+                VideoState.DELETING, LocalDateTime.now(), null, null);
+        when(repo.findById(testId)).thenReturn(Optional.of(testEntity));
+
+        FileNotFoundException exception = assertThrows(FileNotFoundException.class, () -> {
+            service.fetchFile(testId);
+        });
+
+        assertEquals("There is no file by this file id: " + testId, exception.getMessage());
+    }
+
+    /**
+     * Test for the delete method, the file is marked DELETING and handed over to the garbage collector.
      */
     @Test
     void testDelete() throws Exception {
 
         String testFileName = "test.mp4";
 
-        File currentTestFile = new File(fileProp.getUploadBasePath(), testFileName);
-        File tempCurrentTestFile = new File(fileProp.getUploadBasePath(), testFileName + ".tmp");
-        FileUtils.copyFile(currentTestFile, tempCurrentTestFile);
-
         long testId = 1;
-        VideoEntity testEntity = new VideoEntity(testId, testFileName, 877127, LocalDateTime.now());
+        VideoEntity testEntity = new VideoEntity(testId, testFileName, 877127, null, LocalDateTime.now(), VideoState.ACTIVE, null, null, null);
 
         Optional mockResult = mock(Optional.class);
         when(mockResult.orElse(null)).thenReturn(testEntity);
         when(repo.findById(testId)).thenReturn(mockResult);
-        doNothing().when(repo).delete(testEntity);
 
         service.delete(testId);
 
-        assertFalse(currentTestFile.exists());
-
-        FileUtils.moveFile(tempCurrentTestFile, currentTestFile);
+        verify(repo).updateState(eq(List.of(testId)), eq(VideoState.ACTIVE), eq(VideoState.DELETING), any());
+        verify(garbageCollector).submit(List.of(testEntity));
+        assertTrue(new File(fileProp.getUploadBasePath(), testFileName).exists());
     }
 
     /**
@@ -169,12 +301,11 @@ public class VideoServiceTest {
 
         long testId = 1;
         String testFileName = "test-not-exist.mp4";
-        VideoEntity testEntity = new VideoEntity(testId, testFileName, 877127, LocalDateTime.now());
+        VideoEntity testEntity = new VideoEntity(testId, testFileName, 877127, null, LocalDateTime.now(), VideoState.ACTIVE, null, null, null);
 
         Optional mockResult = mock(Optional.class);
         when(mockResult.orElse(null)).thenReturn(testEntity);
         when(repo.findById(testId)).thenReturn(mockResult);
-        doNothing().when(repo).delete(testEntity);
 
         FileNotFoundException exception = assertThrows(FileNotFoundException.class, () -> {
             service.delete(testId);
@@ -194,15 +325,341 @@ public class VideoServiceTest {
         MockMultipartFile mockMultipartFile = new MockMultipartFile("file", testNewFileName, "video/mp4",
                 "new test contents".getBytes());
 
-        when(repo.save(any(VideoEntity.class))).thenReturn(null);
-
-        File expectNewFile = new File(fileProp.getUploadBasePath(), testNewFileName);
+        File expectNewFile = blobStore.resolve(sha256("new test contents")).toFile();
 
         String newFilePath = service.upload(mockMultipartFile);
 
         assertEquals(expectNewFile.getAbsolutePath(), newFilePath);
+        assertEquals("new test contents", FileUtils.readFileToString(expectNewFile, StandardCharsets.UTF_8));
+        assertFalse(new File(fileProp.getUploadBasePath(), testNewFileName).exists());
+        verify(thumbnailPipeline).submit(anyLong(), eq(sha256("new test contents")), isNull());
+        verify(fastStartPipeline).submit(eq(sha256("new test contents")), any());
+
+        assertEquals(1, meterRegistry.get("video.upload").tag("outcome", "success").timer().count());
+        assertEquals(17, meterRegistry.get("video.upload.bytes").counter().count());
+        assertEquals(0, meterRegistry.get("video.upload.active").gauge().value());
+    }
 
-        FileUtils.delete(expectNewFile);
+    /**
+     * Test for the heartbeat, the PENDING row of an upload is refreshed while its content is transferred, and not
+     * any more once it is published.
+     */
+    @Test
+    void testHeartbeatWhenUploading() throws Exception {
+
+        when(repo.saveAll(any())).thenAnswer(invocation -> {
+            invocation.<List<VideoEntity>>getArgument(0).forEach(video -> video.setFileId(7));
+            return invocation.getArgument(0);
+        });
+        MockMultipartFile mockMultipartFile = new MockMultipartFile("file", "test-slow.mp4", "video/mp4",
+                "slow test contents".getBytes()) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                service.heartbeat();
+                return super.getInputStream();
+            }
+        };
+
+        service.upload(mockMultipartFile);
+        service.heartbeat();
+
+        verify(repo, times(1)).touchPending(eq(List.of(7L)), any());
+    }
+
+    /**
+     * Test for the upload method, each phase of the upload is traced and the store phase has the transferred bytes.
+     */
+    @Test
+    void testUploadSpans() throws Exception {
+
+        service.upload(new MockMultipartFile("file", "test-traced.mp4", "video/mp4", "traced test contents".getBytes()));
+
+        List<SpanData> spans = spanExporter.getFinishedSpanItems();
+        assertEquals(List.of("video.reserve", "video.store", "video.publish"), spans.stream()
+                .map(SpanData::getName)
+                .toList());
+        assertEquals(20L, spans.get(1).getAttributes().get(AttributeKey.longKey("transfer.bytes")));
+    }
+
+    /**
+     * Error test for the upload method, when the content of a '.mp4' file is not an MP4 file, it is not stored.
+     */
+    @Test
+    void testUploadWhenContainerMismatch() throws Exception {
+
+        when(fileProp.isMediaVerifyContainer()).thenReturn(true);
+
+        UnsupportedFileException exception = assertThrows(UnsupportedFileException.class, () -> {
+            service.upload(new MockMultipartFile("file", "test-renamed.mp4", "video/mp4",
+                    "renamed test contents".getBytes()));
+        });
+
+        assertEquals("The content of this file is not a valid .mp4 file: test-renamed.mp4", exception.getMessage());
+        assertFalse(blobStore.resolve(sha256("renamed test contents")).toFile().exists());
+        verify(repo, never()).markStored(anyLong(), anyLong(), any(), any(), any());
+        verify(repo).updateState(any(), eq(VideoState.PENDING), eq(VideoState.GONE), any());
+    }
+
+    /**
+     * Error test for the upload method, when the upload was given up by the reaper, the stored blob is deleted.
+     */
+    @Test
+    void testUploadWhenAbandoned() throws Exception {
+
+        when(repo.markStored(anyLong(), anyLong(), any(), any(), any())).thenReturn(0);
+
+        IOException exception = assertThrows(IOException.class, () -> {
+            service.upload(new MockMultipartFile("file", "test-abandoned.mp4", "video/mp4",
+                    "abandoned test contents".getBytes()));
+        });
+
+        assertEquals("The upload was abandoned before it was stored: test-abandoned.mp4", exception.getMessage());
+        assertFalse(blobStore.resolve(sha256("abandoned test contents")).toFile().exists());
+        verify(repo).updateState(any(), eq(VideoState.PENDING), eq(VideoState.GONE), any());
+
+        assertEquals(1, meterRegistry.get("video.upload").tag("outcome", "failure").timer().count());
+        assertEquals(0, meterRegistry.get("video.upload.bytes").counter().count());
+    }
+
+    /**
+     * Test for the upload method, when the same content is uploaded under another name, it is stored once.
+     */
+    @Test
+    void testUploadWhenSameContent() throws Exception {
+
+        String firstPath = service.upload(new MockMultipartFile("file", "test-first.mp4", "video/mp4",
+                "same test contents".getBytes()));
+        String secondPath = service.upload(new MockMultipartFile("file", "test-second.mp4", "video/mp4",
+                "same test contents".getBytes()));
+
+        assertEquals(firstPath, secondPath);
+        assertEquals(blobStore.resolve(sha256("same test contents")).toFile().getAbsolutePath(), firstPath);
+
+        verify(repo, times(2)).markStored(anyLong(), eq(18L), eq(sha256("same test contents")), any(), any());
+    }
+
+    /**
+     * Error test for the upload method, when an upload fails after it stored a content which another upload found
+     * stored, the blob is kept for the other upload. The other upload is held between its dedup hit and its publish
+     * while the failed one is cleaned up.
+     */
+    @Test
+    void testUploadWhenFailedUploadSharesContent() throws Exception {
+
+        Map<Long, String> hashes = new ConcurrentHashMap<>();
+        CountDownLatch firstStored = new CountDownLatch(1);
+        CountDownLatch secondStored = new CountDownLatch(1);
+        CountDownLatch firstDiscarded = new CountDownLatch(1);
+
+        when(repo.saveAll(any())).thenAnswer(invocation -> {
+            List<VideoEntity> videos = invocation.getArgument(0);
+            videos.forEach(video -> video.setFileId(video.getName().equals("test-failed.mp4") ? 1 : 2));
+            return videos;
+        });
+        when(repo.markHashed(anyLong(), any())).thenAnswer(invocation -> {
+            hashes.put(invocation.getArgument(0), invocation.getArgument(1));
+            return 1;
+        });
+        when(repo.markStored(eq(1L), anyLong(), any(), any(), any())).thenAnswer(invocation -> {
+            firstStored.countDown();
+            assertTrue(secondStored.await(5, TimeUnit.SECONDS));
+            return 0;
+        });
+        when(repo.markStored(eq(2L), anyLong(), any(), any(), any())).thenAnswer(invocation -> {
+            secondStored.countDown();
+            assertTrue(firstDiscarded.await(5, TimeUnit.SECONDS));
+            hashes.put(2L, invocation.getArgument(2));
+            return 1;
+        });
+        when(repo.updateState(any(), eq(VideoState.PENDING), eq(VideoState.GONE), any())).thenAnswer(invocation -> {
+            Collection<Long> fileIds = invocation.getArgument(0);
+            fileIds.forEach(hashes::remove);
+            return fileIds.size();
+        });
+        when(repo.findReferencedContentHashes(any(), any())).thenAnswer(invocation -> {
+            Collection<String> contentHashes = invocation.getArgument(0);
+            return hashes.values().stream()
+                    .filter(contentHashes::contains)
+                    .distinct()
+                    .toList();
+        });
+
+        CompletableFuture<String> failed = CompletableFuture.supplyAsync(() -> upload("test-failed.mp4"));
+        assertTrue(firstStored.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> deduped = CompletableFuture.supplyAsync(() -> upload("test-deduped.mp4"));
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertEquals("The upload was abandoned before it was stored: test-failed.mp4",
+                exception.getCause().getCause().getMessage());
+        firstDiscarded.countDown();
+
+        assertEquals(blobStore.resolve(sha256("shared test contents")).toFile().getAbsolutePath(),
+                deduped.get(5, TimeUnit.SECONDS));
+        assertTrue(blobStore.resolve(sha256("shared test contents")).toFile().exists());
+    }
+
+    private String upload(String fileName) {
+        try {
+            return service.upload(new MockMultipartFile("file", fileName, "video/mp4",
+                    "shared test contents".getBytes()));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Test for the batch upload method, success test.
+     */
+    @Test
+    void testUploadBatch() throws Exception {
+
+        List<MultipartFile> files = List.of(
+                new MockMultipartFile("files", "test-batch-1.mp4", "video/mp4", "first batch contents".getBytes()),
+                new MockMultipartFile("files", "test-batch-2.mp4", "video/mp4", "second batch contents".getBytes()));
+
+        List<UploadedFileInfo> uploadedFiles = service.upload(files);
+
+        assertEquals(2, uploadedFiles.size());
+        assertEquals("test-batch-2.mp4", uploadedFiles.get(1).getName());
+        assertEquals(blobStore.resolve(sha256("second batch contents")).toFile().getAbsolutePath(),
+                uploadedFiles.get(1).getLocation());
+        assertEquals("first batch contents", FileUtils.readFileToString(
+                blobStore.resolve(sha256("first batch contents")).toFile(), StandardCharsets.UTF_8));
+
+        ArgumentCaptor<List<VideoEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repo).saveAll(captor.capture());
+        assertEquals(VideoState.PENDING, captor.getValue().get(0).getState());
+        verify(repo).markStored(anyLong(), eq(20L), eq(sha256("first batch contents")), any(), any());
+        verify(repo).updateState(any(), eq(VideoState.STORED), eq(VideoState.ACTIVE), any());
+    }
+
+    /**
+     * Error test for the batch upload method, when one of the files already exists, no file is written.
+     */
+    @Test
+    void testUploadBatchWhenFileExists() throws Exception {
+
+        List<MultipartFile> files = List.of(
+                new MockMultipartFile("files", "test-batch-new.mp4", "video/mp4", "new batch contents".getBytes()),
+                new MockMultipartFile("files", "test.mp4", "video/mp4", "existing batch contents".getBytes()));
+
+        AlreadyExistFileException exception = assertThrows(AlreadyExistFileException.class, () -> {
+            service.upload(files);
+        });
+
+        assertEquals("These files already exist: [test.mp4]", exception.getMessage());
+        assertFalse(blobStore.resolve(sha256("new batch contents")).toFile().exists());
+        verify(repo, times(0)).saveAll(any());
+    }
+
+    /**
+     * Error test for the batch upload method, when another upload of the same name inserted its file after the names
+     * were checked, the unique live name rejects the files and no file is written.
+     */
+    @Test
+    void testUploadBatchWhenNameIsTakenConcurrently() throws Exception {
+
+        List<MultipartFile> files = List.of(
+                new MockMultipartFile("files", "test-batch-1.mp4", "video/mp4", "first batch contents".getBytes()),
+                new MockMultipartFile("files", "test-batch-2.mp4", "video/mp4", "second batch contents".getBytes()));
+
+        when(repo.saveAll(any())).thenThrow(new DataIntegrityViolationException("uk_video_live_name"));
+
+        AlreadyExistFileException exception = assertThrows(AlreadyExistFileException.class, () -> {
+            service.upload(files);
+        });
+
+        assertEquals("These files already exist: [test-batch-1.mp4, test-batch-2.mp4]", exception.getMessage());
+        assertFalse(blobStore.resolve(sha256("first batch contents")).toFile().exists());
+        verify(repo, times(0)).markStored(anyLong(), anyLong(), any(), any(), any());
+    }
+
+    /**
+     * Error test for the batch upload method, when the files cannot be marked stored, the stored blobs are rolled back.
+     */
+    @Test
+    void testUploadBatchWhenMarkStoredFails() throws Exception {
+
+        List<MultipartFile> files = List.of(
+                new MockMultipartFile("files", "test-batch-1.mp4", "video/mp4", "first batch contents".getBytes()),
+                new MockMultipartFile("files", "test-batch-2.mp4", "video/mp4", "second batch contents".getBytes()));
+
+        when(repo.markStored(anyLong(), anyLong(), any(), any(), any())).thenThrow(new DataIntegrityViolationException("duplicate name"));
+
+        assertThrows(DataIntegrityViolationException.class, () -> {
+            service.upload(files);
+        });
+
+        assertFalse(blobStore.resolve(sha256("first batch contents")).toFile().exists());
+        assertFalse(blobStore.resolve(sha256("second batch contents")).toFile().exists());
+    }
+
+    /**
+     * Test for the batch delete method, the files are marked DELETING and handed over to the garbage collector.
+     */
+    @Test
+    void testDeleteBatch() throws Exception {
+
+        List<Long> testIds = List.of(1L, 2L);
+        List<VideoEntity> testEntities = List.of(
+                new VideoEntity(1, "test-shared.mp4", 21, sha256("shared batch contents"), LocalDateTime.now(), VideoState.ACTIVE, null, null, null),
+                new VideoEntity(2, "test-batch.mp4", 14, sha256("batch contents"), LocalDateTime.now(), VideoState.ACTIVE, null, null, null));
+        when(repo.findAllById(any())).thenReturn(testEntities);
+
+        service.delete(testIds);
+
+        verify(repo).updateState(eq(testIds), eq(VideoState.ACTIVE), eq(VideoState.DELETING), any());
+        verify(garbageCollector).submit(testEntities);
+    }
+
+    /**
+     * Error test for the batch delete method, when some of the files do not exist, nothing is deleted.
+     */
+    @Test
+    void testDeleteBatchWhenFileInfoIsMissing() {
+
+        when(repo.findAllById(any())).thenReturn(List.of(
+                new VideoEntity(1, "test.mp4", 877127, null, LocalDateTime.now(), VideoState.ACTIVE, null, null, null)));
+
+        FileNotFoundException exception = assertThrows(FileNotFoundException.class, () -> {
+            service.delete(List.of(1L, 2L, 3L));
+        });
+
+        assertEquals("There are no files by these file ids: [2, 3]", exception.getMessage());
+        verify(repo, times(0)).updateState(any(), any(), any(), any());
+    }
+
+    /**
+     * Test for the streaming upload method, success test.
+     */
+    @Test
+    void testUploadStream() throws Exception {
+
+        String testNewFileName = "test-stream.mp4";
+
+        String body = "preamble\r\n" +
+                "--XyZ\r\n" +
+                "Content-Disposition: form-data; name=\"title\"\r\n" +
+                "\r\n" +
+                "a form field\r\n" +
+                "--XyZ\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"" + testNewFileName + "\"\r\n" +
+                "\r\n" +
+                "new test contents\r\n--Xy\r\n" +
+                "--XyZ--\r\n";
+
+        StreamingMultipartReader reader = new StreamingMultipartReader(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), "XyZ", 0);
+
+        assertEquals(testNewFileName, reader.nextFile());
+
+        File expectNewFile = blobStore.resolve(sha256("new test contents\r\n--Xy")).toFile();
+
+        String newFilePath = service.upload(testNewFileName, reader);
+
+        assertEquals(expectNewFile.getAbsolutePath(), newFilePath);
+        assertEquals("new test contents\r\n--Xy", FileUtils.readFileToString(expectNewFile, StandardCharsets.UTF_8));
+        assertNull(reader.nextFile());
     }
 
     /**
@@ -222,4 +679,33 @@ public class VideoServiceTest {
 
         assertEquals("This file already exists: " + testNewFileName, exception.getMessage());
     }
-}
\ No newline at end of file
+
+    /**
+     * Test for the list method, when there are more files than the page size.
+     */
+    @Test
+    void testListWhenNextPageExists() throws Exception {
+
+        FileListQuery query = FileListQuery.of("created_at", "desc", 2, null, null, null, null, null, null, null, null);
+
+        LocalDateTime createdAt = LocalDateTime.of(2022, 12, 11, 10, 38, 11);
+        List<FileInfo> files = List.of(
+                new FileInfo(3, "test3.mp4", 100, createdAt.plusDays(1)),
+                new FileInfo(2, "test2.mp4", 100, createdAt),
+                new FileInfo(1, "test1.mp4", 100, createdAt));
+        when(repo.findPage(query)).thenReturn(files);
+
+        FileListPage page = service.list(query);
+
+        assertEquals(2, page.getFiles().size());
+
+        FileListCursor cursor = FileListCursor.decode(page.getNextCursor(), FileSort.CREATED_AT);
+        assertEquals(createdAt, cursor.getValue());
+        assertEquals(2, cursor.getFileId());
+    }
+
+    private String sha256(String content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                .digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
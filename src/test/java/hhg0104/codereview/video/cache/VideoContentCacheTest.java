@@ -0,0 +1,134 @@
+package hhg0104.codereview.video.cache;
+
+import hhg0104.codereview.video.download.ByteRange;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VideoContentCacheTest {
+
+    private static final String TEST_FILE_CONTENT = "This is test file.";
+
+    @TempDir
+    File directory;
+
+    private File testFile;
+
+
+    @BeforeEach
+    public void init() {
+        testFile = new File(getClass().getResource("/test_file/test.mp4").getPath());
+    }
+
+    /**
+     * Test for the admission, a file is cached on its second request and its ranges are written across the slabs.
+     */
+    @Test
+    void testAcquireAfterAdmission() throws Exception {
+
+        VideoContentCache cache = new VideoContentCache(true, 64, 8, 64, 2);
+
+        assertNull(cache.acquire(testFile, testFile.length(), testFile.lastModified()));
+
+        CachedContent content = cache.acquire(testFile, testFile.length(), testFile.lastModified());
+        assertNotNull(content);
+        assertEquals(1, cache.size());
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            content.write(new ByteRange(0, testFile.length() - 1), out);
+            assertEquals(TEST_FILE_CONTENT, out.toString(StandardCharsets.UTF_8));
+
+            out = new ByteArrayOutputStream();
+            content.write(new ByteRange(5, 12), out);
+            assertEquals(TEST_FILE_CONTENT.substring(5, 13), out.toString(StandardCharsets.UTF_8));
+        } finally {
+            content.release();
+        }
+    }
+
+    /**
+     * Test for a modified file, the stale content is replaced.
+     */
+    @Test
+    void testAcquireWhenFileModified() {
+
+        VideoContentCache cache = new VideoContentCache(true, 64, 8, 64, 1);
+
+        CachedContent content = cache.acquire(testFile, testFile.length(), testFile.lastModified());
+        content.release();
+
+        CachedContent reloaded = cache.acquire(testFile, testFile.length(), testFile.lastModified() + 1000);
+        assertNotNull(reloaded);
+        assertNotSame(content, reloaded);
+        reloaded.release();
+    }
+
+    /**
+     * Test for a file larger than the max entry size, only its leading bytes are cached.
+     */
+    @Test
+    void testAcquireLeadingBytes() {
+
+        VideoContentCache cache = new VideoContentCache(true, 64, 8, 16, 1);
+
+        CachedContent content = cache.acquire(testFile, testFile.length(), testFile.lastModified());
+        try {
+            assertTrue(content.covers(new ByteRange(0, 15)));
+            assertFalse(content.covers(new ByteRange(10, 17)));
+        } finally {
+            content.release();
+        }
+    }
+
+    /**
+     * Test for the disabled cache, nothing is cached.
+     */
+    @Test
+    void testAcquireWhenDisabled() {
+
+        VideoContentCache cache = new VideoContentCache(false, 64, 8, 64, 1);
+
+        assertNull(cache.acquire(testFile, testFile.length(), testFile.lastModified()));
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Test for the entries just over one slab each, they are weighed by the two slabs they hold, so the cache evicts
+     * before the pool runs out and a file requested often enough is still admitted when the cache is full.
+     */
+    @Test
+    void testAcquireWhenEntriesSpanSlabs() throws Exception {
+
+        // 8 slabs of 8 bytes, an entry of 9 bytes holds 2 of them.
+        VideoContentCache cache = new VideoContentCache(true, 64, 8, 9, 1);
+
+        for (int i = 0; i < 8; i++) {
+            File file = new File(directory, "test-" + i + ".mp4");
+            Files.writeString(file.toPath(), "contents-" + i);
+
+            // A new file gets past the frequency of the cached ones after a few requests.
+            CachedContent content = null;
+            for (int attempt = 0; attempt < 10 && content == null; attempt++) {
+                content = cache.acquire(file, file.length(), file.lastModified());
+            }
+            assertNotNull(content, "The file is not admitted: " + file.getName());
+            assertEquals(2, content.getSlabCount());
+            content.release();
+
+            assertTrue(cache.getNativeCache().policy().eviction().orElseThrow().weightedSize().orElseThrow() <= 48);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package hhg0104.codereview.video.cache;
+
+import hhg0104.codereview.video.VideoFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VideoMetadataCacheTest {
+
+    private final VideoFile testFile = new VideoFile("test.mp4",
+            new File(getClass().getResource("/test_file/test.mp4").getPath()));
+
+    /**
+     * Test for the get method with a loader, a file is loaded once and then answered from the cache.
+     */
+    @Test
+    void testGet() throws Exception {
+
+        VideoMetadataCache cache = new VideoMetadataCache(100, Duration.ofMinutes(1));
+
+        assertSame(testFile, cache.get(1, fileId -> testFile));
+        assertSame(testFile, cache.get(1, fileId -> {
+            throw new AssertionError("The cached file is loaded again.");
+        }));
+    }
+
+    /**
+     * Test for the get method with a loader, a load which fails caches nothing.
+     */
+    @Test
+    void testGetWhenLoadFails() {
+
+        VideoMetadataCache cache = new VideoMetadataCache(100, Duration.ofMinutes(1));
+
+        assertThrows(FileNotFoundException.class, () -> cache.get(1, fileId -> {
+            throw new FileNotFoundException("There is no file by this file id: " + fileId);
+        }));
+        assertNull(cache.get(1));
+    }
+
+    /**
+     * Test for the invalidate method, an invalidation during a load, e.g. of a delete which committed after the load
+     * read the DB, removes the loaded file instead of leaving it cached.
+     */
+    @Test
+    void testInvalidateDuringLoad() throws Exception {
+
+        VideoMetadataCache cache = new VideoMetadataCache(100, Duration.ofMinutes(1));
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+
+        CompletableFuture<VideoFile> load = CompletableFuture.supplyAsync(() -> {
+            try {
+                return cache.get(1, fileId -> {
+                    loading.countDown();
+                    // The invalidation waits for this load, so the latch only times out.
+                    try {
+                        invalidated.await(200, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                    return testFile;
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> invalidate = CompletableFuture.runAsync(() -> {
+            cache.invalidate(1);
+            invalidated.countDown();
+        });
+
+        assertSame(testFile, load.get(5, TimeUnit.SECONDS));
+        invalidate.get(5, TimeUnit.SECONDS);
+        assertNull(cache.get(1));
+    }
+
+    /**
+     * Test for the invalidateAll method, a load in progress during the invalidation doesn't stay cached.
+     */
+    @Test
+    void testInvalidateAllDuringLoad() throws Exception {
+
+        VideoMetadataCache cache = new VideoMetadataCache(100, Duration.ofMinutes(1));
+
+        assertSame(testFile, cache.get(1, fileId -> {
+            cache.invalidateAll();
+            return testFile;
+        }));
+        assertNull(cache.get(1));
+    }
+}
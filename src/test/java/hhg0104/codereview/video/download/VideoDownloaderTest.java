@@ -0,0 +1,97 @@
+package hhg0104.codereview.video.download;
+
+import hhg0104.codereview.video.VideoFile;
+import hhg0104.codereview.video.cache.VideoContentCache;
+import hhg0104.codereview.video.metrics.VideoMetrics;
+import hhg0104.codereview.video.storage.VideoStorage;
+import hhg0104.codereview.video.tracing.VideoTracing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.otel.bridge.OtelCurrentTraceContext;
+import io.micrometer.tracing.otel.bridge.OtelTracer;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+
+public class VideoDownloaderTest {
+
+    @TempDir
+    Path directory;
+
+    private InMemorySpanExporter spanExporter;
+
+    private VideoDownloader downloader;
+
+    private VideoFile video;
+
+
+    @BeforeEach
+    public void init() throws Exception {
+
+        spanExporter = InMemorySpanExporter.create();
+        SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(spanExporter))
+                .build();
+        OtelTracer tracer = new OtelTracer(tracerProvider.get("test"), new OtelCurrentTraceContext(), event -> {
+        });
+
+        downloader = new VideoDownloader(new RangeResolver(), new ZeroCopyDownloadEngine(),
+                new VideoContentCache(false, 0, 1, 0, 1), mock(VideoStorage.class),
+                new VideoMetrics(new SimpleMeterRegistry()), new VideoTracing(tracer));
+
+        Path path = Files.write(directory.resolve("test.mp4"), new byte[64 * 1024]);
+        video = new VideoFile("test.mp4", path.toFile());
+    }
+
+    /**
+     * Test for the download method, a body handed over to the container's sendfile is traced with its bytes and
+     * the transfer mode, but no throughput.
+     */
+    @Test
+    void testDownloadWhenSendfile() throws Exception {
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("org.apache.tomcat.sendfile.support", true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        downloader.download(video, new HttpHeaders(), request, response);
+
+        assertEquals(0, response.getContentAsByteArray().length);
+        Attributes attributes = spanExporter.getFinishedSpanItems().get(0).getAttributes();
+        assertEquals(65536L, attributes.get(AttributeKey.longKey("transfer.bytes")));
+        assertEquals("sendfile", attributes.get(AttributeKey.stringKey("transfer.mode")));
+        assertNull(attributes.get(AttributeKey.doubleKey("transfer.bytes_per_second")));
+    }
+
+    /**
+     * Test for the download method, a body written in the request is traced with its throughput.
+     */
+    @Test
+    void testDownloadWhenCopied() throws Exception {
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        downloader.download(video, new HttpHeaders(), new MockHttpServletRequest(), response);
+
+        assertEquals(65536, response.getContentAsByteArray().length);
+        Attributes attributes = spanExporter.getFinishedSpanItems().get(0).getAttributes();
+        assertEquals(65536L, attributes.get(AttributeKey.longKey("transfer.bytes")));
+        assertNull(attributes.get(AttributeKey.stringKey("transfer.mode")));
+        assertNotNull(attributes.get(AttributeKey.doubleKey("transfer.bytes_per_second")));
+    }
+}
@@ -0,0 +1,68 @@
+package hhg0104.codereview.video.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CatalogExporterTest {
+
+    private DriverManagerDataSource dataSource;
+
+    private CatalogExporter exporter;
+
+
+    @BeforeEach
+    public void init() {
+
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:catalog-export;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table video (file_id bigint primary key, name varchar(255), size bigint, "
+                + "created_at timestamp, state varchar(16))");
+        jdbcTemplate.update("insert into video values (1, 'test1.mp4', 1827382, timestamp '2022-12-11 01:05:09', 'ACTIVE')");
+        jdbcTemplate.update("insert into video values (2, 'test, \"2\".mp4', 873892, timestamp '2022-12-11 13:05:09', 'ACTIVE')");
+        jdbcTemplate.update("insert into video values (3, 'test3.mp4', 100, timestamp '2022-12-12 18:00:00', 'DELETING')");
+
+        exporter = new CatalogExporter(dataSource, new ObjectMapper().registerModule(new JavaTimeModule()), 2);
+    }
+
+    @AfterEach
+    public void destroy() {
+        new JdbcTemplate(dataSource).execute("drop table video");
+    }
+
+    /**
+     * Test for the export method in CSV, the names are escaped and the times are written in the 24-hour clock.
+     */
+    @Test
+    void testExportCsv() throws Exception {
+
+        StringWriter writer = new StringWriter();
+        exporter.export(ExportFormat.CSV, writer);
+
+        assertEquals("file_id,name,size,created_at\n"
+                + "1,test1.mp4,1827382,2022-12-11 01:05:09\n"
+                + "2,\"test, \"\"2\"\".mp4\",873892,2022-12-11 13:05:09\n", writer.toString());
+    }
+
+    /**
+     * Test for the export method in NDJSON, one file object per line with the times in the 24-hour clock.
+     */
+    @Test
+    void testExportNdjson() throws Exception {
+
+        StringWriter writer = new StringWriter();
+        exporter.export(ExportFormat.NDJSON, writer);
+
+        assertEquals("{\"name\":\"test1.mp4\",\"size\":1827382,\"file_id\":1,\"created_at\":\"2022-12-11 01:05:09\"}\n"
+                + "{\"name\":\"test, \\\"2\\\".mp4\",\"size\":873892,\"file_id\":2,\"created_at\":\"2022-12-11 13:05:09\"}\n",
+                writer.toString());
+    }
+}
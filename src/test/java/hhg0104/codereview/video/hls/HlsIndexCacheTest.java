@@ -0,0 +1,73 @@
+package hhg0104.codereview.video.hls;
+
+import hhg0104.codereview.exception.UnsupportedFileException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class HlsIndexCacheTest {
+
+    /**
+     * Test for the get method with a loader, concurrent misses of a file wait for a single build of its index.
+     */
+    @Test
+    void testGetWhenMissedConcurrently() throws Exception {
+
+        HlsIndexCache cache = new HlsIndexCache(1024 * 1024);
+        HlsIndex index = mock(HlsIndex.class);
+        AtomicInteger builds = new AtomicInteger();
+        CountDownLatch building = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        HlsIndexCache.Loader loader = key -> {
+            builds.incrementAndGet();
+            building.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return index;
+        };
+        CompletableFuture<HlsIndex> first = CompletableFuture.supplyAsync(() -> get(cache, loader));
+        assertTrue(building.await(5, TimeUnit.SECONDS));
+        CompletableFuture<HlsIndex> second = CompletableFuture.supplyAsync(() -> get(cache, loader));
+        release.countDown();
+
+        assertSame(index, first.get(5, TimeUnit.SECONDS));
+        assertSame(index, second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, builds.get());
+    }
+
+    /**
+     * Test for the get method with a loader, a build which fails caches nothing.
+     */
+    @Test
+    void testGetWhenLoadFails() {
+
+        HlsIndexCache cache = new HlsIndexCache(1024 * 1024);
+
+        assertThrows(UnsupportedFileException.class, () -> cache.get("hash-1", key -> {
+            throw new UnsupportedFileException("There is no video track in this file: " + key);
+        }));
+        assertNull(cache.get("hash-1"));
+    }
+
+    private HlsIndex get(HlsIndexCache cache, HlsIndexCache.Loader loader) {
+        try {
+            return cache.get("hash-1", loader);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package hhg0104.codereview.video.hls;
+
+import hhg0104.codereview.exception.UnsupportedFileException;
+import hhg0104.codereview.video.download.ByteRange;
+import org.jcodec.api.awt.AWTSequenceEncoder;
+import org.jcodec.common.DemuxerTrack;
+import org.jcodec.common.io.NIOUtils;
+import org.jcodec.common.io.SeekableByteChannel;
+import org.jcodec.common.model.Packet;
+import org.jcodec.containers.mp4.demuxer.MP4Demuxer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HlsIndexTest {
+
+    private static final int MAX_MOOV_SIZE = 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Test for the segments of an index, the sample data in the mdat boxes of the segments at the data offsets of
+     * their trun boxes are the frames of the file, in order.
+     */
+    @Test
+    void testSegments() throws Exception {
+
+        Path video = encodeMp4(30);
+        byte[] content = Files.readAllBytes(video);
+        HlsIndex index = createIndex(content, 1000);
+
+        assertTrue(index.getSegmentCount() > 1);
+        double duration = 0;
+        for (int k = 0; k < index.getSegmentCount(); k++) {
+            duration += index.getSegmentDuration(k);
+        }
+        assertEquals(6.0, duration, 0.001);
+        assertEquals(160, index.getWidth());
+        assertEquals(96, index.getHeight());
+        assertTrue(index.getCodecs().startsWith("avc1."), index.getCodecs());
+        assertTrue(index.getPeakBandwidth() >= index.getAverageBandwidth());
+
+        List<ByteBuffer> samples = new ArrayList<>();
+        for (int k = 0; k < index.getSegmentCount(); k++) {
+            samples.addAll(readSamples(assembleSegment(index, k, content), k + 1));
+        }
+        assertEquals(readFrames(video), samples);
+    }
+
+    /**
+     * Test for the initialization segment, a moov box with the sample description of the video track, empty
+     * sample tables and the track extends for the fragments.
+     */
+    @Test
+    void testInitSegment() throws Exception {
+
+        byte[] content = Files.readAllBytes(encodeMp4(10));
+        HlsIndex index = createIndex(content, 1000);
+
+        ByteBuffer init = ByteBuffer.wrap(index.getInitSegment());
+        List<Mp4SampleTables.Box> boxes = Mp4SampleTables.children(init, 0, init.limit());
+        assertEquals(List.of("ftyp", "moov"), boxes.stream().map(Mp4SampleTables.Box::type).toList());
+
+        Mp4SampleTables.Box moov = boxes.get(1);
+        List<String> moovChildren = Mp4SampleTables.children(init, moov.payload(), moov.end()).stream()
+                .map(Mp4SampleTables.Box::type)
+                .toList();
+        assertEquals("mvhd", moovChildren.get(0));
+        assertTrue(moovChildren.contains("trak"));
+        assertEquals("mvex", moovChildren.get(moovChildren.size() - 1));
+
+        Mp4SampleTables.Box stbl = child(init, child(init, child(init, child(init, moov, "trak"), "mdia"), "minf"),
+                "stbl");
+        assertEquals(List.of("stsd", "stts", "stsc", "stsz", "stco"),
+                Mp4SampleTables.children(init, stbl.payload(), stbl.end()).stream()
+                        .map(Mp4SampleTables.Box::type)
+                        .toList());
+        Mp4SampleTables.Box trex = child(init, child(init, moov, "mvex"), "trex");
+        assertEquals(24, trex.payloadLength());
+    }
+
+    /**
+     * Test for the constructor, a file which is not an MP4 file is rejected.
+     */
+    @Test
+    void testWhenNotMp4() {
+
+        byte[] content = new byte[4096];
+        Arrays.fill(content, (byte) 0x47);
+
+        assertThrows(UnsupportedFileException.class, () -> createIndex(content, 1000));
+    }
+
+    private Mp4SampleTables.Box child(ByteBuffer data, Mp4SampleTables.Box parent, String type) {
+        return Mp4SampleTables.children(data, parent.payload(), parent.end()).stream()
+                .filter(box -> box.type().equals(type))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private HlsIndex createIndex(byte[] content, long targetMillis) throws Exception {
+
+        Mp4SampleTables.Movie movie = Mp4SampleTables.read(readerOf(content), content.length, MAX_MOOV_SIZE);
+        return new HlsIndex(movie.mvhd(), movie.tracks(), targetMillis);
+    }
+
+    private Mp4SampleTables.RangeReader readerOf(byte[] content) {
+        return (position, length) -> ByteBuffer.wrap(Arrays.copyOfRange(content, (int) position,
+                (int) position + length));
+    }
+
+    private byte[] assembleSegment(HlsIndex index, int segment, byte[] content) {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(index.getSegmentHeader(segment));
+        for (ByteRange range : index.getSegmentRanges(segment)) {
+            out.write(content, (int) range.getStart(), (int) range.getLength());
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Read the samples of a segment of a single track by its trun box.
+     */
+    private List<ByteBuffer> readSamples(byte[] segment, int sequenceNumber) {
+
+        ByteBuffer data = ByteBuffer.wrap(segment);
+        List<Mp4SampleTables.Box> boxes = Mp4SampleTables.children(data, 0, data.limit());
+        assertEquals(List.of("moof", "mdat"), boxes.stream().map(Mp4SampleTables.Box::type).toList());
+        assertEquals(segment.length, boxes.get(1).end());
+
+        Mp4SampleTables.Box moof = boxes.get(0);
+        List<Mp4SampleTables.Box> moofChildren = Mp4SampleTables.children(data, moof.payload(), moof.end());
+        assertEquals(sequenceNumber, data.getInt(moofChildren.get(0).payload() + 4));
+
+        Mp4SampleTables.Box traf = moofChildren.get(1);
+        Mp4SampleTables.Box trun = Mp4SampleTables.children(data, traf.payload(), traf.end()).stream()
+                .filter(box -> box.type().equals("trun"))
+                .findFirst()
+                .orElseThrow();
+
+        int flags = data.getInt(trun.payload()) & 0xFFFFFF;
+        int entrySize = (flags & 0x800) != 0 ? 16 : 12;
+        int count = data.getInt(trun.payload() + 4);
+        int offset = moof.start() + data.getInt(trun.payload() + 8);
+
+        List<ByteBuffer> samples = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int size = data.getInt(trun.payload() + 12 + i * entrySize + 4);
+            samples.add(ByteBuffer.wrap(Arrays.copyOfRange(segment, offset, offset + size)));
+            offset += size;
+        }
+
+        return samples;
+    }
+
+    private List<ByteBuffer> readFrames(Path path) throws Exception {
+
+        List<ByteBuffer> frames = new ArrayList<>();
+        try (SeekableByteChannel channel = NIOUtils.readableChannel(path.toFile())) {
+            DemuxerTrack track = MP4Demuxer.createRawMP4Demuxer(channel).getVideoTracks().get(0);
+            Packet packet;
+            while ((packet = track.nextFrame()) != null) {
+                frames.add(packet.getData());
+            }
+        }
+
+        return frames;
+    }
+
+    /**
+     * Encode an H.264 MP4 file of distinct frames at 5 frames per second.
+     */
+    private Path encodeMp4(int frameCount) throws Exception {
+
+        Path video = directory.resolve("test.mp4");
+        AWTSequenceEncoder encoder = AWTSequenceEncoder.createSequenceEncoder(video.toFile(), 5);
+        for (int i = 0; i < frameCount; i++) {
+            BufferedImage frame = new BufferedImage(160, 96, BufferedImage.TYPE_3BYTE_BGR);
+            Graphics2D graphics = frame.createGraphics();
+            graphics.setColor(new Color(i * 8, 100, 255 - i * 8));
+            graphics.fillRect(0, 0, 160, 96);
+            graphics.dispose();
+            encoder.encodeImage(frame);
+        }
+        encoder.finish();
+
+        return video;
+    }
+}
@@ -0,0 +1,161 @@
+package hhg0104.codereview.video.media;
+
+import hhg0104.codereview.video.cache.VideoMetadataCache;
+import hhg0104.codereview.video.entity.BlobLockEntity;
+import hhg0104.codereview.video.entity.MediaInfo;
+import hhg0104.codereview.video.entity.VideoState;
+import hhg0104.codereview.video.property.FileProperties;
+import hhg0104.codereview.video.repository.BlobLockRepository;
+import hhg0104.codereview.video.repository.VideoRepository;
+import hhg0104.codereview.video.storage.BlobReferences;
+import hhg0104.codereview.video.storage.BlobStore;
+import hhg0104.codereview.video.storage.ContentHash;
+import hhg0104.codereview.video.storage.HashPrefixLayout;
+import hhg0104.codereview.video.storage.LocalVideoStorage;
+import hhg0104.codereview.video.storage.VideoGarbageCollector;
+import org.jcodec.api.awt.AWTSequenceEncoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FastStartPipelineTest {
+
+    @TempDir
+    Path uploadDirectory;
+
+    private FileProperties fileProp;
+
+    private VideoRepository repository;
+
+    private BlobStore blobStore;
+
+    private VideoGarbageCollector garbageCollector;
+
+    private FastStartPipeline pipeline;
+
+
+    @BeforeEach
+    public void init() {
+
+        fileProp = mock(FileProperties.class);
+        when(fileProp.getUploadBasePath()).thenReturn(uploadDirectory.toString());
+        when(fileProp.getMediaMaxMoovSize()).thenReturn(DataSize.ofMegabytes(16));
+        when(fileProp.isMediaFastStartEnabled()).thenReturn(true);
+        when(fileProp.getMediaFastStartWorkers()).thenReturn(1);
+        when(fileProp.getMediaFastStartQueueCapacity()).thenReturn(1);
+
+        repository = mock(VideoRepository.class);
+        when(repository.replaceContent(any(), anyLong(), any(), any(), any())).thenReturn(1);
+        blobStore = new BlobStore(fileProp, new HashPrefixLayout(2));
+        BlobLockRepository blobLockRepo = mock(BlobLockRepository.class);
+        when(blobLockRepo.lockByContentHash(any())).thenReturn(Optional.of(new BlobLockEntity()));
+        BlobReferences blobReferences = new BlobReferences(repository, blobLockRepo,
+                mock(PlatformTransactionManager.class));
+        garbageCollector = mock(VideoGarbageCollector.class);
+        pipeline = new FastStartPipeline(repository, new LocalVideoStorage(blobStore), blobReferences,
+                garbageCollector, new VideoMetadataCache(100, Duration.ofMinutes(1)), fileProp);
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        pipeline.shutdown();
+    }
+
+    /**
+     * Test for the submit method, the remuxed content is stored under its own hash, the files are moved to it,
+     * and the previous content is handed to the garbage collector, which deletes it after the grace period.
+     */
+    @Test
+    void testSubmit() throws Exception {
+
+        Path video = encodeMp4();
+        String key = ContentHash.of(video);
+        long size = Files.size(video);
+        new LocalVideoStorage(blobStore).put(key, video);
+        // The files reference the remuxed content after the replace.
+        when(repository.findReferencedContentHashes(any(), any())).thenAnswer(invocation ->
+                invocation.<Collection<String>>getArgument(0).stream()
+                        .filter(hash -> !hash.equals(key))
+                        .toList());
+
+        MediaInfo media = new MediaInfo();
+        media.setContainer(MediaContainer.MP4);
+        media.setFastStart(false);
+        assertTrue(pipeline.submit(key, media));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pipeline.getStatus().getRemuxedFiles() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        ArgumentCaptor<String> remuxedKey = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<MediaInfo> remuxedMedia = ArgumentCaptor.forClass(MediaInfo.class);
+        verify(repository).replaceContent(eq(key), eq(size), remuxedKey.capture(), remuxedMedia.capture(),
+                eq(EnumSet.of(VideoState.STORED, VideoState.ACTIVE)));
+
+        assertNotEquals(key, remuxedKey.getValue());
+        assertEquals(remuxedKey.getValue(), ContentHash.of(blobStore.resolve(remuxedKey.getValue())));
+        assertTrue(remuxedMedia.getValue().getFastStart());
+        assertEquals(MediaContainer.MP4, remuxedMedia.getValue().getContainer());
+        assertTrue(Files.exists(blobStore.resolve(key)));
+        verify(garbageCollector).deleteLater(key);
+        try (var files = Files.list(uploadDirectory)) {
+            assertEquals(List.of("blobs"), files.map(path -> path.getFileName().toString()).toList());
+        }
+    }
+
+    /**
+     * Test for the submit method, a content with the moov box before the media data, or not an MP4 file,
+     * is not queued.
+     */
+    @Test
+    void testSubmitWhenFastStart() {
+
+        MediaInfo media = new MediaInfo();
+        media.setContainer(MediaContainer.MP4);
+        media.setFastStart(true);
+        assertFalse(pipeline.submit("hash-1", media));
+
+        media = new MediaInfo();
+        media.setContainer(MediaContainer.MPEG_PS);
+        assertFalse(pipeline.submit("hash-2", media));
+
+        assertEquals(0, pipeline.getStatus().getQueueDepth());
+    }
+
+    private Path encodeMp4() throws Exception {
+
+        Path video = uploadDirectory.resolve("test.mp4");
+        AWTSequenceEncoder encoder = AWTSequenceEncoder.createSequenceEncoder(video.toFile(), 5);
+        for (int i = 0; i < 10; i++) {
+            encoder.encodeImage(new BufferedImage(160, 96, BufferedImage.TYPE_3BYTE_BGR));
+        }
+        encoder.finish();
+
+        return video;
+    }
+}
@@ -0,0 +1,128 @@
+package hhg0104.codereview.video.media;
+
+import hhg0104.codereview.video.entity.MediaInfo;
+import org.jcodec.api.awt.AWTSequenceEncoder;
+import org.jcodec.common.DemuxerTrack;
+import org.jcodec.common.io.NIOUtils;
+import org.jcodec.common.io.SeekableByteChannel;
+import org.jcodec.common.model.Packet;
+import org.jcodec.containers.mp4.demuxer.MP4Demuxer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FastStartRemuxerTest {
+
+    private static final int MAX_MOOV_SIZE = 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Test for the remux method, the moov box is moved before the media data and the frames are still found
+     * at their shifted chunk offsets.
+     */
+    @Test
+    void testRemux() throws Exception {
+
+        Path video = encodeMp4();
+        Path remuxed = directory.resolve("remuxed.mp4");
+
+        long moovOffset;
+        try (FileChannel source = FileChannel.open(video, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(remuxed, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            moovOffset = new FastStartRemuxer(MAX_MOOV_SIZE).remux(source, target);
+        }
+
+        MediaInfo before = probe(video);
+        MediaInfo after = probe(remuxed);
+        assertFalse(before.getFastStart());
+        assertTrue(after.getFastStart());
+        assertEquals(moovOffset, after.getMoovOffset());
+        assertTrue(after.getMoovOffset() < before.getMoovOffset());
+        assertEquals(Files.size(video), Files.size(remuxed));
+        assertEquals(before.getDurationMillis(), after.getDurationMillis());
+
+        List<ByteBuffer> frames = readFrames(video);
+        assertEquals(10, frames.size());
+        assertEquals(frames, readFrames(remuxed));
+    }
+
+    /**
+     * Test for the remux method, a file whose moov box is before the media data already is not written again.
+     */
+    @Test
+    void testRemuxWhenFastStart() throws Exception {
+
+        Path video = encodeMp4();
+        Path remuxed = directory.resolve("remuxed.mp4");
+        try (FileChannel source = FileChannel.open(video, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(remuxed, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            new FastStartRemuxer(MAX_MOOV_SIZE).remux(source, target);
+        }
+
+        Path again = directory.resolve("again.mp4");
+        try (FileChannel source = FileChannel.open(remuxed, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(again, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            assertEquals(-1, new FastStartRemuxer(MAX_MOOV_SIZE).remux(source, target));
+        }
+        assertEquals(0, Files.size(again));
+    }
+
+    private MediaInfo probe(Path path) throws Exception {
+
+        byte[] content = Files.readAllBytes(path);
+        MediaProbe probe = new MediaProbe(MAX_MOOV_SIZE);
+        probe.update(ByteBuffer.wrap(content));
+
+        return probe.finish(content.length);
+    }
+
+    private List<ByteBuffer> readFrames(Path path) throws Exception {
+
+        List<ByteBuffer> frames = new ArrayList<>();
+        try (SeekableByteChannel channel = NIOUtils.readableChannel(path.toFile())) {
+            DemuxerTrack track = MP4Demuxer.createMP4Demuxer(channel).getVideoTracks().get(0);
+            Packet packet;
+            while ((packet = track.nextFrame()) != null) {
+                frames.add(packet.getData());
+            }
+        }
+
+        return frames;
+    }
+
+    /**
+     * Encode an H.264 MP4 file of 10 distinct frames, the moov box is written at the end.
+     */
+    private Path encodeMp4() throws Exception {
+
+        Path video = directory.resolve("test.mp4");
+        AWTSequenceEncoder encoder = AWTSequenceEncoder.createSequenceEncoder(video.toFile(), 5);
+        for (int i = 0; i < 10; i++) {
+            BufferedImage frame = new BufferedImage(160, 96, BufferedImage.TYPE_3BYTE_BGR);
+            Graphics2D graphics = frame.createGraphics();
+            graphics.setColor(new Color(i * 25, 100, 255 - i * 25));
+            graphics.fillRect(0, 0, 160, 96);
+            graphics.dispose();
+            encoder.encodeImage(frame);
+        }
+        encoder.finish();
+
+        return video;
+    }
+}
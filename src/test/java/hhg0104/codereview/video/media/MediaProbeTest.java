@@ -0,0 +1,158 @@
+package hhg0104.codereview.video.media;
+
+import hhg0104.codereview.video.entity.MediaInfo;
+import org.jcodec.api.awt.AWTSequenceEncoder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MediaProbeTest {
+
+    private static final int MAX_MOOV_SIZE = 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Test for an MP4 file fed in small pieces, the duration and the video track are read from the moov box
+     * at the end of the file.
+     */
+    @Test
+    void testMp4() throws Exception {
+
+        byte[] content = encodeMp4();
+
+        MediaProbe probe = new MediaProbe(MAX_MOOV_SIZE);
+        for (int offset = 0; offset < content.length; offset += 7) {
+            probe.update(ByteBuffer.wrap(content, offset, Math.min(7, content.length - offset)));
+        }
+        MediaInfo info = probe.finish(content.length);
+
+        assertEquals(MediaContainer.MP4, info.getContainer());
+        assertEquals(2000L, info.getDurationMillis());
+        assertEquals("avc1", info.getVideoCodec());
+        assertNull(info.getAudioCodec());
+        assertEquals(160, info.getWidth());
+        assertEquals(96, info.getHeight());
+        assertEquals(content.length * 8L * 1000 / 2000, info.getBitRate());
+        assertTrue(info.getMoovOffset() > 0);
+    }
+
+    /**
+     * Test for the observe method, the bytes are written through to the target channel while they are parsed.
+     */
+    @Test
+    void testObserve() throws Exception {
+
+        byte[] content = encodeMp4();
+
+        MediaProbe probe = new MediaProbe(MAX_MOOV_SIZE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (WritableByteChannel channel = probe.observe(Channels.newChannel(out))) {
+            channel.write(ByteBuffer.wrap(content));
+        }
+
+        assertArrayEquals(content, out.toByteArray());
+        assertEquals(MediaContainer.MP4, probe.finish(content.length).getContainer());
+    }
+
+    /**
+     * Test for an MP4 file with a moov box larger than the limit, the container is recognized without the attributes.
+     */
+    @Test
+    void testMp4WhenMoovTooLarge() throws Exception {
+
+        byte[] content = encodeMp4();
+
+        MediaProbe probe = new MediaProbe(16);
+        probe.update(ByteBuffer.wrap(content));
+        MediaInfo info = probe.finish(content.length);
+
+        assertEquals(MediaContainer.MP4, info.getContainer());
+        assertNull(info.getDurationMillis());
+        assertNull(info.getVideoCodec());
+        assertTrue(info.getMoovOffset() > 0);
+    }
+
+    /**
+     * Error test for a truncated MP4 file, the last box runs past the end of the file.
+     */
+    @Test
+    void testMp4WhenTruncated() throws Exception {
+
+        byte[] content = Arrays.copyOf(encodeMp4(), 1000);
+
+        MediaProbe probe = new MediaProbe(MAX_MOOV_SIZE);
+        probe.update(ByteBuffer.wrap(content));
+
+        assertEquals(MediaContainer.UNKNOWN, probe.finish(content.length).getContainer());
+    }
+
+    /**
+     * Test for an MPEG-2 program stream, the mux rate of the pack header and the resolution of the sequence header.
+     */
+    @Test
+    void testMpegProgramStream() {
+
+        byte[] content = new byte[64];
+        // Pack header with a mux rate of 25200 * 50 bytes per second.
+        System.arraycopy(new byte[]{0, 0, 1, (byte) 0xBA, 0x44, 0, 4, 0, 4, 1, 0x01, (byte) 0x89, (byte) 0xC3,
+                (byte) 0xF8}, 0, content, 0, 14);
+        // Sequence header of 720x576, then a sequence extension.
+        System.arraycopy(new byte[]{0, 0, 1, (byte) 0xB3, 0x2D, 0x02, 0x40, 0x33, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xE0, 0x18, 0, 0, 1, (byte) 0xB5, 0x14}, 0, content, 14, 17);
+
+        MediaProbe probe = new MediaProbe(MAX_MOOV_SIZE);
+        probe.update(ByteBuffer.wrap(content));
+        MediaInfo info = probe.finish(content.length);
+
+        assertEquals(MediaContainer.MPEG_PS, info.getContainer());
+        assertEquals("mpeg2video", info.getVideoCodec());
+        assertEquals(720, info.getWidth());
+        assertEquals(576, info.getHeight());
+        assertEquals(25200L * 50 * 8, info.getBitRate());
+        assertNull(info.getDurationMillis());
+    }
+
+    /**
+     * Test for a file which is not a video file.
+     */
+    @Test
+    void testUnknown() {
+
+        byte[] content = "plain test contents".getBytes();
+
+        MediaProbe probe = new MediaProbe(MAX_MOOV_SIZE);
+        probe.update(ByteBuffer.wrap(content));
+
+        assertEquals(MediaContainer.UNKNOWN, probe.finish(content.length).getContainer());
+    }
+
+    /**
+     * Encode an H.264 MP4 file of 10 frames of 160x96 at 5 frames per second, the moov box is written at the end.
+     */
+    private byte[] encodeMp4() throws Exception {
+
+        Path video = directory.resolve("test.mp4");
+        AWTSequenceEncoder encoder = AWTSequenceEncoder.createSequenceEncoder(video.toFile(), 5);
+        for (int i = 0; i < 10; i++) {
+            encoder.encodeImage(new BufferedImage(160, 96, BufferedImage.TYPE_3BYTE_BGR));
+        }
+        encoder.finish();
+
+        return Files.readAllBytes(video);
+    }
+}
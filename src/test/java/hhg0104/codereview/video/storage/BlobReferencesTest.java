@@ -0,0 +1,169 @@
+package hhg0104.codereview.video.storage;
+
+import hhg0104.codereview.video.entity.BlobLockEntity;
+import hhg0104.codereview.video.repository.BlobLockRepository;
+import hhg0104.codereview.video.repository.VideoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BlobReferencesTest {
+
+    private static final String HASH = "820b77a8ac2ea08e635022d29f32c4edfeb35c0a3f253b324a041deeb0398489";
+
+    private static final String OTHER_HASH = "0000000000000000000000000000000000000000000000000000000000000000";
+
+    private final Map<Long, String> hashes = new ConcurrentHashMap<>();
+
+    private VideoRepository repo;
+
+    private BlobLockRepository blobLockRepo;
+
+    private BlobReferences references;
+
+
+    @BeforeEach
+    public void init() {
+
+        repo = mock(VideoRepository.class);
+        when(repo.markHashed(anyLong(), any())).thenAnswer(invocation -> {
+            hashes.put(invocation.getArgument(0), invocation.getArgument(1));
+            return 1;
+        });
+        when(repo.findReferencedContentHashes(any(), any())).thenAnswer(invocation -> {
+            Collection<String> contentHashes = invocation.getArgument(0);
+            return hashes.values().stream()
+                    .filter(contentHashes::contains)
+                    .distinct()
+                    .toList();
+        });
+
+        blobLockRepo = mock(BlobLockRepository.class);
+        when(blobLockRepo.lockByContentHash(any())).thenReturn(Optional.of(new BlobLockEntity()));
+        references = new BlobReferences(repo, blobLockRepo, mock(PlatformTransactionManager.class));
+    }
+
+    /**
+     * Test for the deleteUnreferenced method, only the blobs no video references are deleted.
+     */
+    @Test
+    void testDeleteUnreferenced() {
+
+        hashes.put(1L, HASH);
+        List<String> deleted = new CopyOnWriteArrayList<>();
+
+        assertEquals(Set.of(OTHER_HASH), references.deleteUnreferenced(List.of(HASH, OTHER_HASH), deleted::add));
+        assertEquals(List.of(OTHER_HASH), deleted);
+    }
+
+    /**
+     * Test for the deleteUnreferenced method, a delete during the store of an upload of the same content waits for
+     * it, and sees the upload as a reference.
+     */
+    @Test
+    void testDeleteUnreferencedWhileStoring() throws Exception {
+
+        CountDownLatch storing = new CountDownLatch(1);
+        CountDownLatch deleting = new CountDownLatch(1);
+        List<String> deleted = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<Boolean> store = CompletableFuture.supplyAsync(() -> {
+            try {
+                return references.reference(1, HASH, () -> {
+                    storing.countDown();
+                    // The delete waits for this store, so the latch only times out.
+                    try {
+                        deleting.await(200, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return false;
+                });
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertTrue(storing.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Set<String>> delete = CompletableFuture.supplyAsync(() -> {
+            deleting.countDown();
+            return references.deleteUnreferenced(List.of(HASH), deleted::add);
+        });
+
+        assertFalse(store.get(5, TimeUnit.SECONDS));
+        assertEquals(Set.of(), delete.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(), deleted);
+    }
+
+    /**
+     * Test for the deleteUnreferenced method, a blob referenced by an upload of another node while the delete waited
+     * for the lock of its row is kept, as it is checked again under the lock.
+     */
+    @Test
+    void testDeleteUnreferencedWhenReferencedByAnotherNode() {
+
+        List<String> deleted = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            hashes.put(2L, HASH);
+            return Optional.of(new BlobLockEntity(HASH));
+        }).when(blobLockRepo).lockByContentHash(HASH);
+
+        assertEquals(Set.of(), references.deleteUnreferenced(List.of(HASH), deleted::add));
+        assertEquals(List.of(), deleted);
+    }
+
+    /**
+     * Test for the reference method, the upload waits for a delete of the blob in progress on another node after it
+     * recorded the hash, and before it stores the content.
+     */
+    @Test
+    void testReferenceWaitsForDelete() throws Exception {
+
+        List<String> calls = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            calls.add(hashes.containsKey(1L) ? "lock after record" : "lock before record");
+            return Optional.empty();
+        }).when(blobLockRepo).lockByContentHash(HASH);
+
+        references.reference(1, HASH, () -> calls.add("store"));
+
+        assertEquals(List.of("lock after record", "store"), calls);
+    }
+
+    /**
+     * Error test for the reference method, when the upload is not PENDING any more, nothing is stored.
+     */
+    @Test
+    void testReferenceWhenAbandoned() {
+
+        doReturn(0).when(repo).markHashed(anyLong(), any());
+
+        IOException exception = assertThrows(IOException.class, () -> references.reference(1, HASH, () -> {
+            throw new AssertionError("The content of an abandoned upload is stored.");
+        }));
+        assertEquals("The upload was abandoned before it was stored: 1", exception.getMessage());
+    }
+}
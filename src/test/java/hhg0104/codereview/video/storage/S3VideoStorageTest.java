@@ -0,0 +1,90 @@
+package hhg0104.codereview.video.storage;
+
+import hhg0104.codereview.video.download.ByteRange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.BucketAlreadyOwnedByYouException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This test runs against an S3-compatible server, e.g. a local MinIO:
+ * <pre>
+ * docker run -p 9000:9000 minio/minio server /data
+ * mvn test -Dtest=S3VideoStorageTest -Ds3.endpoint=http://localhost:9000 -Ds3.access-key=minioadmin -Ds3.secret-key=minioadmin
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "s3.endpoint", matches = ".+")
+public class S3VideoStorageTest {
+
+    private static final String TEST_CONTENT = "This is test file.";
+
+    private static final String TEST_BUCKET = "video-storage-test";
+
+    private S3VideoStorage storage;
+
+    private String key;
+
+
+    @BeforeEach
+    public void init() {
+
+        S3Client client = S3Client.builder()
+                .endpointOverride(URI.create(System.getProperty("s3.endpoint")))
+                .region(Region.US_EAST_1)
+                .forcePathStyle(true)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(
+                        System.getProperty("s3.access-key"), System.getProperty("s3.secret-key"))))
+                .build();
+        try {
+            client.createBucket(request -> request.bucket(TEST_BUCKET));
+        } catch (BucketAlreadyOwnedByYouException e) {
+            // Created by an earlier run.
+        }
+
+        storage = new S3VideoStorage(client, TEST_BUCKET, "test/");
+        key = UUID.randomUUID().toString();
+    }
+
+    @AfterEach
+    public void cleanUp() throws Exception {
+        storage.delete(key);
+        storage.close();
+    }
+
+    /**
+     * Test for a whole object lifecycle, put, stat, range get and delete.
+     */
+    @Test
+    void testObjectLifecycle() throws Exception {
+
+        byte[] content = TEST_CONTENT.getBytes(StandardCharsets.UTF_8);
+
+        assertNull(storage.stat(key));
+        assertTrue(storage.put(key, new ByteArrayInputStream(content), content.length));
+        assertFalse(storage.put(key, new ByteArrayInputStream(content), content.length));
+
+        assertEquals(content.length, storage.stat(key).getLength());
+        try (InputStream in = storage.get(key, new ByteRange(5, 6))) {
+            assertEquals("is", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        storage.delete(key);
+        assertNull(storage.stat(key));
+    }
+}
@@ -0,0 +1,132 @@
+package hhg0104.codereview.video.storage;
+
+import hhg0104.codereview.video.cache.VideoMetadataCache;
+import hhg0104.codereview.video.entity.VideoEntity;
+import hhg0104.codereview.video.entity.VideoState;
+import hhg0104.codereview.video.property.FileProperties;
+import hhg0104.codereview.video.repository.VideoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Limit;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StorageMigratorTest {
+
+    private static final String TEST_CONTENT = "This is test file.";
+
+    private static final String TEST_HASH = "820b77a8ac2ea08e635022d29f32c4edfeb35c0a3f253b324a041deeb0398489";
+
+    @TempDir
+    Path uploadDirectory;
+
+    private VideoRepository repo;
+
+    private BlobStore blobStore;
+
+    private StorageMigrator migrator;
+
+
+    @BeforeEach
+    public void init() {
+
+        FileProperties fileProp = mock(FileProperties.class);
+        when(fileProp.getUploadBasePath()).thenReturn(uploadDirectory.toString());
+        when(fileProp.getStorageMigrationBatchSize()).thenReturn(10);
+
+        repo = mock(VideoRepository.class);
+        when(repo.findByContentHashIsNullAndStateInAndFileIdGreaterThanOrderByFileId(eq(VideoState.LIVE), anyLong(),
+                any(Limit.class)))
+                .thenReturn(List.of());
+
+        blobStore = new BlobStore(fileProp, new HashPrefixLayout(2));
+        migrator = new StorageMigrator(blobStore, repo, new VideoMetadataCache(100, Duration.ofMinutes(1)), fileProp);
+    }
+
+    /**
+     * Test for a blob stored in the flat layout, it is found before the migration and moved into the current layout.
+     */
+    @Test
+    void testMigrateFlatBlob() throws Exception {
+
+        Path flatPath = blobStore.getBlobDirectory().resolve(TEST_HASH);
+        Files.createDirectories(flatPath.getParent());
+        Files.writeString(flatPath, TEST_CONTENT);
+
+        assertEquals(flatPath, blobStore.resolve(TEST_HASH));
+
+        migrator.migrate();
+
+        Path layoutPath = blobStore.getBlobDirectory().resolve("82").resolve("0b").resolve(TEST_HASH);
+        assertEquals(layoutPath, blobStore.resolve(TEST_HASH));
+        assertEquals(TEST_CONTENT, Files.readString(layoutPath));
+        assertFalse(Files.exists(flatPath));
+        assertEquals(1, migrator.getStatus().getMovedBlobs());
+    }
+
+    /**
+     * Test for a file stored by its name, it is hashed into the store and its row references the blob.
+     */
+    @Test
+    void testMigrateNamedFile() throws Exception {
+
+        Path namedPath = uploadDirectory.resolve("test-legacy.mp4");
+        Files.writeString(namedPath, TEST_CONTENT);
+
+        VideoEntity video = new VideoEntity(1, "test-legacy.mp4", 18, null, LocalDateTime.now(), VideoState.ACTIVE, null,
+                null, null);
+        when(repo.findByContentHashIsNullAndStateInAndFileIdGreaterThanOrderByFileId(eq(VideoState.LIVE), anyLong(),
+                any(Limit.class)))
+                .thenReturn(List.of(video));
+        when(repo.updateContentHash(1, TEST_HASH, VideoState.LIVE)).thenReturn(1);
+
+        migrator.migrate();
+
+        assertEquals(TEST_CONTENT, Files.readString(blobStore.getLayoutPath(TEST_HASH), StandardCharsets.UTF_8));
+        assertFalse(Files.exists(namedPath));
+        assertEquals(1, migrator.getStatus().getMigratedFiles());
+        verify(repo).updateContentHash(1, TEST_HASH, VideoState.LIVE);
+        verify(repo, never()).save(any());
+    }
+
+    /**
+     * Test for a file stored by its name which is deleted during the migration, its row is not written back and the
+     * file is left to be reclaimed by its name.
+     */
+    @Test
+    void testMigrateNamedFileWhenDeleted() throws Exception {
+
+        Path namedPath = uploadDirectory.resolve("test-deleted.mp4");
+        Files.writeString(namedPath, TEST_CONTENT);
+
+        VideoEntity video = new VideoEntity(1, "test-deleted.mp4", 18, null, LocalDateTime.now(), VideoState.ACTIVE,
+                null, null, null);
+        when(repo.findByContentHashIsNullAndStateInAndFileIdGreaterThanOrderByFileId(eq(VideoState.LIVE), anyLong(),
+                any(Limit.class)))
+                .thenReturn(List.of(video));
+        when(repo.updateContentHash(1, TEST_HASH, VideoState.LIVE)).thenReturn(0);
+
+        migrator.migrate();
+
+        assertTrue(Files.exists(namedPath));
+        assertEquals(0, migrator.getStatus().getMigratedFiles());
+        verify(repo, never()).save(any());
+    }
+}
@@ -0,0 +1,101 @@
+package hhg0104.codereview.video.storage;
+
+import hhg0104.codereview.video.entity.BlobLockEntity;
+import hhg0104.codereview.video.property.FileProperties;
+import hhg0104.codereview.video.repository.BlobLockRepository;
+import hhg0104.codereview.video.repository.VideoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StorageReconcilerTest {
+
+    private static final String REFERENCED_HASH = "820b77a8ac2ea08e635022d29f32c4edfeb35c0a3f253b324a041deeb0398489";
+
+    private static final String ORPHAN_HASH = "0000000000000000000000000000000000000000000000000000000000000000";
+
+    @TempDir
+    Path uploadDirectory;
+
+    private VideoRepository repo;
+
+    private BlobStore blobStore;
+
+    private StorageReconciler reconciler;
+
+
+    @BeforeEach
+    public void init() {
+
+        FileProperties fileProp = mock(FileProperties.class);
+        when(fileProp.getUploadBasePath()).thenReturn(uploadDirectory.toString());
+        when(fileProp.getReconciliationBatchSize()).thenReturn(1);
+        when(fileProp.getReconciliationParallelism()).thenReturn(2);
+        when(fileProp.getReconciliationGracePeriod()).thenReturn(Duration.ofHours(1));
+
+        repo = mock(VideoRepository.class);
+        when(repo.findReferencedContentHashes(any(), any())).thenAnswer(invocation ->
+                invocation.<Collection<String>>getArgument(0).stream()
+                        .filter(REFERENCED_HASH::equals)
+                        .toList());
+        when(repo.findReferencedNames(any(), any())).thenReturn(List.of());
+
+        blobStore = new BlobStore(fileProp, new HashPrefixLayout(2));
+        BlobLockRepository blobLockRepo = mock(BlobLockRepository.class);
+        when(blobLockRepo.lockByContentHash(any())).thenReturn(Optional.of(new BlobLockEntity()));
+        BlobReferences blobReferences = new BlobReferences(repo, blobLockRepo,
+                mock(PlatformTransactionManager.class));
+        reconciler = new StorageReconciler(blobStore, blobReferences, repo, fileProp);
+    }
+
+    /**
+     * Test for the reconciliation, the unreferenced old files are quarantined and the others are kept.
+     */
+    @Test
+    void testReconcile() throws Exception {
+
+        Path referencedBlob = writeOldFile(blobStore.getLayoutPath(REFERENCED_HASH));
+        Path orphanBlob = writeOldFile(blobStore.getLayoutPath(ORPHAN_HASH));
+        Path orphanNamedFile = writeOldFile(uploadDirectory.resolve("test-orphan.mp4"));
+        Path brokenUpload = writeOldFile(uploadDirectory.resolve(".test-broken.mp4.1234.part"));
+        Path recentNamedFile = Files.writeString(uploadDirectory.resolve("test-recent.mp4"), "recent");
+
+        reconciler.reconcile();
+
+        assertTrue(Files.exists(referencedBlob));
+        assertTrue(Files.exists(recentNamedFile));
+        assertFalse(Files.exists(orphanBlob));
+        assertFalse(Files.exists(orphanNamedFile));
+        assertFalse(Files.exists(brokenUpload));
+
+        Path quarantine = uploadDirectory.resolve(StorageReconciler.QUARANTINE_DIRECTORY);
+        assertTrue(Files.exists(quarantine.resolve(uploadDirectory.relativize(orphanBlob))));
+        assertTrue(Files.exists(quarantine.resolve("test-orphan.mp4")));
+        assertEquals(3, reconciler.getStatus().getQuarantinedFiles());
+        assertEquals(5, reconciler.getStatus().getScannedFiles());
+    }
+
+    private Path writeOldFile(Path path) throws Exception {
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, "test contents");
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+        return path;
+    }
+}
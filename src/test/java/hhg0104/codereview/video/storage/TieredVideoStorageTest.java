@@ -0,0 +1,144 @@
+package hhg0104.codereview.video.storage;
+
+import hhg0104.codereview.video.download.ByteRange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TieredVideoStorageTest {
+
+    private static final String TEST_CONTENT = "This is test file.";
+
+    private static final String TEST_HASH = "820b77a8ac2ea08e635022d29f32c4edfeb35c0a3f253b324a041deeb0398489";
+
+    @TempDir
+    Path tempDirectory;
+
+    private BlobStore hotStore;
+
+    private BlobStore coldStore;
+
+    private TieredVideoStorage storage;
+
+
+    @BeforeEach
+    public void init() {
+        hotStore = new BlobStore(tempDirectory.resolve("hot"), new HashPrefixLayout(2));
+        coldStore = new BlobStore(tempDirectory.resolve("cold"), new HashPrefixLayout(2));
+        storage = new TieredVideoStorage(hotStore, coldStore, 1024, Duration.ofDays(1));
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        storage.shutdown();
+    }
+
+    /**
+     * Test for the put method, a new object is written to the hot tier and read by range.
+     */
+    @Test
+    void testPut() throws Exception {
+
+        Path writtenPath = Files.writeString(tempDirectory.resolve("written.part"), TEST_CONTENT);
+
+        assertTrue(storage.put(TEST_HASH, writtenPath));
+
+        assertTrue(Files.exists(hotStore.getLayoutPath(TEST_HASH)));
+        assertEquals(18, storage.stat(TEST_HASH).getLength());
+        try (InputStream in = storage.get(TEST_HASH, new ByteRange(5, 6))) {
+            assertEquals("is", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Test for the demotion, an idle object moves to the cold tier and is promoted back when it is read.
+     */
+    @Test
+    void testDemoteAndPromote() throws Exception {
+
+        Path hotPath = hotStore.getLayoutPath(TEST_HASH);
+        Files.createDirectories(hotPath.getParent());
+        Files.writeString(hotPath, TEST_CONTENT);
+        Files.setLastModifiedTime(hotPath, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+
+        storage.demote();
+
+        assertFalse(Files.exists(hotPath));
+        assertEquals(coldStore.getLayoutPath(TEST_HASH).toFile(), storage.getLocalFile(TEST_HASH));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Files.exists(hotPath) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(TEST_CONTENT, Files.readString(hotPath));
+        assertEquals(hotPath.toFile(), storage.getLocalFile(TEST_HASH));
+    }
+
+    /**
+     * Test for the delete method, a promotion which was copying the object when it was deleted does not leave the
+     * hot copy behind.
+     */
+    @Test
+    void testDeleteWhilePromoting() throws Exception {
+
+        CountDownLatch copying = new CountDownLatch(1);
+        CountDownLatch deleted = new CountDownLatch(1);
+        CountDownLatch copied = new CountDownLatch(1);
+        BlobStore slowHotStore = new BlobStore(tempDirectory.resolve("hot"), new HashPrefixLayout(2)) {
+            @Override
+            public void copyFrom(Path path, String hash) throws IOException {
+                // The cold copy is read before the delete and written after it.
+                byte[] content = Files.readAllBytes(path);
+                copying.countDown();
+                try {
+                    deleted.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                Path hotPath = getLayoutPath(hash);
+                Files.createDirectories(hotPath.getParent());
+                Files.write(hotPath, content);
+                copied.countDown();
+            }
+        };
+        storage.shutdown();
+        storage = new TieredVideoStorage(slowHotStore, coldStore, 1024, Duration.ofDays(1));
+
+        Path coldPath = coldStore.getLayoutPath(TEST_HASH);
+        Files.createDirectories(coldPath.getParent());
+        Files.writeString(coldPath, TEST_CONTENT);
+
+        assertEquals(coldPath.toFile(), storage.getLocalFile(TEST_HASH));
+        assertTrue(copying.await(5, TimeUnit.SECONDS));
+        storage.delete(TEST_HASH);
+        deleted.countDown();
+        assertTrue(copied.await(5, TimeUnit.SECONDS));
+
+        Path hotPath = hotStore.getLayoutPath(TEST_HASH);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (Files.exists(hotPath) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(Files.exists(hotPath));
+        assertFalse(Files.exists(coldPath));
+        assertNull(storage.getLocalFile(TEST_HASH));
+    }
+}
@@ -0,0 +1,216 @@
+package hhg0104.codereview.video.storage;
+
+import hhg0104.codereview.video.entity.BlobDeletionEntity;
+import hhg0104.codereview.video.entity.BlobLockEntity;
+import hhg0104.codereview.video.entity.VideoEntity;
+import hhg0104.codereview.video.entity.VideoState;
+import hhg0104.codereview.video.property.FileProperties;
+import hhg0104.codereview.video.repository.BlobDeletionRepository;
+import hhg0104.codereview.video.repository.BlobLockRepository;
+import hhg0104.codereview.video.repository.VideoRepository;
+import hhg0104.codereview.video.response.GarbageCollectionStatusInfo;
+import hhg0104.codereview.video.thumbnail.ThumbnailStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class VideoGarbageCollectorTest {
+
+    private static final String TEST_CONTENT = "This is test file.";
+
+    private static final String SHARED_HASH = "820b77a8ac2ea08e635022d29f32c4edfeb35c0a3f253b324a041deeb0398489";
+
+    private static final String ORPHAN_HASH = "0000000000000000000000000000000000000000000000000000000000000001";
+
+    @TempDir
+    Path uploadDirectory;
+
+    private FileProperties fileProp;
+
+    private VideoRepository repo;
+
+    private BlobDeletionRepository deletionRepo;
+
+    private BlobStore blobStore;
+
+    private ThumbnailStore thumbnailStore;
+
+    private BlobReferences blobReferences;
+
+    private VideoGarbageCollector collector;
+
+
+    @BeforeEach
+    public void init() {
+
+        fileProp = mock(FileProperties.class);
+        when(fileProp.getUploadBasePath()).thenReturn(uploadDirectory.toString());
+        when(fileProp.getGcWorkers()).thenReturn(2);
+        when(fileProp.getGcQueueCapacity()).thenReturn(10);
+        when(fileProp.getGcBatchSize()).thenReturn(2);
+        when(fileProp.getGcMaxFilesPerSecond()).thenReturn(1000);
+        when(fileProp.getThumbnailRetryAfter()).thenReturn(Duration.ofMinutes(1));
+        when(fileProp.getThumbnailMaxRetryAfter()).thenReturn(Duration.ofDays(1));
+
+        repo = mock(VideoRepository.class);
+        when(repo.findReferencedContentHashes(any(), any())).thenReturn(List.of(SHARED_HASH));
+
+        blobStore = new BlobStore(fileProp, new HashPrefixLayout(2));
+        thumbnailStore = new ThumbnailStore(fileProp);
+        BlobLockRepository blobLockRepo = mock(BlobLockRepository.class);
+        when(blobLockRepo.lockByContentHash(any())).thenReturn(Optional.of(new BlobLockEntity()));
+        blobReferences = new BlobReferences(repo, blobLockRepo,
+                mock(PlatformTransactionManager.class));
+        deletionRepo = mock(BlobDeletionRepository.class);
+        collector = new VideoGarbageCollector(repo, deletionRepo, new LocalVideoStorage(blobStore), blobReferences,
+                fileProp, thumbnailStore);
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        collector.shutdown();
+    }
+
+    /**
+     * Test for the reclamation, the unreferenced blob, the named file and the thumbnails are deleted and the shared
+     * blob is kept.
+     */
+    @Test
+    void testReclaim() throws Exception {
+
+        Path sharedBlob = writeFile(blobStore.getLayoutPath(SHARED_HASH));
+        Path orphanBlob = writeFile(blobStore.getLayoutPath(ORPHAN_HASH));
+        Path namedFile = writeFile(uploadDirectory.resolve("test-named.mp4"));
+        Path poster = writeFile(thumbnailStore.getPosterPath(2));
+
+        collector.reclaim(List.of(
+                deleting(1, "test-shared.mp4", SHARED_HASH),
+                deleting(2, "test-orphan.mp4", ORPHAN_HASH),
+                deleting(3, "test-named.mp4", null)));
+
+        assertTrue(Files.exists(sharedBlob));
+        assertFalse(Files.exists(orphanBlob));
+        assertFalse(Files.exists(namedFile));
+        assertFalse(Files.exists(poster));
+        verify(repo).updateState(eq(List.of(1L, 2L, 3L)), eq(VideoState.DELETING), eq(VideoState.GONE), any());
+
+        GarbageCollectionStatusInfo status = collector.getStatus();
+        assertEquals(3, status.getReclaimedFiles());
+        assertEquals(36, status.getReclaimedBytes());
+    }
+
+    /**
+     * Test for the submit method, the submitted files are reclaimed by the workers and a file is taken only once.
+     */
+    @Test
+    void testSubmit() throws Exception {
+
+        Path orphanBlob = writeFile(blobStore.getLayoutPath(ORPHAN_HASH));
+        Path namedFile = writeFile(uploadDirectory.resolve("test-named.mp4"));
+
+        List<VideoEntity> videos = List.of(
+                deleting(1, "test-orphan.mp4", ORPHAN_HASH),
+                deleting(2, "test-named.mp4", null));
+
+        assertEquals(new VideoGarbageCollector.Submission(2, 0, 0), collector.submit(videos));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (collector.getStatus().getReclaimedFiles() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertFalse(Files.exists(orphanBlob));
+        assertFalse(Files.exists(namedFile));
+        assertEquals(0, collector.getStatus().getQueueDepth());
+        assertEquals(10, collector.getStatus().getQueueCapacity());
+    }
+
+    /**
+     * Test for the submit method, a file which is queued or being reclaimed already is counted apart from a file
+     * which does not fit in the queue.
+     */
+    @Test
+    void testSubmitWhenQueueIsFull() throws Exception {
+
+        when(fileProp.getGcWorkers()).thenReturn(1);
+        when(fileProp.getGcQueueCapacity()).thenReturn(1);
+        CountDownLatch reclaiming = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(repo.updateState(any(), any(), any(), any())).thenAnswer(invocation -> {
+            reclaiming.countDown();
+            release.await();
+            return 1;
+        });
+        VideoGarbageCollector blockedCollector = new VideoGarbageCollector(repo, deletionRepo,
+                new LocalVideoStorage(blobStore), blobReferences, fileProp, thumbnailStore);
+        try {
+            assertEquals(new VideoGarbageCollector.Submission(1, 0, 0),
+                    blockedCollector.submit(List.of(deleting(1, "test-1.mp4", null))));
+            assertTrue(reclaiming.await(5, TimeUnit.SECONDS));
+
+            assertEquals(new VideoGarbageCollector.Submission(1, 1, 1), blockedCollector.submit(List.of(
+                    deleting(1, "test-1.mp4", null),
+                    deleting(2, "test-2.mp4", null),
+                    deleting(3, "test-3.mp4", null))));
+        } finally {
+            release.countDown();
+            blockedCollector.shutdown();
+        }
+    }
+
+    /**
+     * Test for the reclaimReplacedBlobs method, a replaced blob is deleted once its grace period has passed unless
+     * a live file references it again, and the due rows are removed.
+     */
+    @Test
+    void testReclaimReplacedBlobs() throws Exception {
+
+        Path sharedBlob = writeFile(blobStore.getLayoutPath(SHARED_HASH));
+        Path orphanBlob = writeFile(blobStore.getLayoutPath(ORPHAN_HASH));
+        LocalDateTime due = LocalDateTime.now().minusMinutes(1);
+        when(deletionRepo.findByDeleteAfterBeforeAndContentHashGreaterThanOrderByContentHash(any(), eq(""), any()))
+                .thenReturn(List.of(new BlobDeletionEntity(ORPHAN_HASH, due),
+                        new BlobDeletionEntity(SHARED_HASH, due)));
+        when(deletionRepo.findByDeleteAfterBeforeAndContentHashGreaterThanOrderByContentHash(any(), eq(SHARED_HASH),
+                any())).thenReturn(List.of());
+
+        assertEquals(1, collector.reclaimReplacedBlobs(2));
+
+        assertTrue(Files.exists(sharedBlob));
+        assertFalse(Files.exists(orphanBlob));
+        verify(deletionRepo).findByDeleteAfterBeforeAndContentHashGreaterThanOrderByContentHash(any(), eq(SHARED_HASH),
+                eq(Limit.of(2)));
+        verify(deletionRepo).deleteAllByIdInBatch(List.of(ORPHAN_HASH, SHARED_HASH));
+    }
+
+    private VideoEntity deleting(long fileId, String name, String hash) {
+        return new VideoEntity(fileId, name, TEST_CONTENT.length(), hash, LocalDateTime.now(), VideoState.DELETING,
+                LocalDateTime.now(), null, null);
+    }
+
+    private Path writeFile(Path path) throws Exception {
+        Files.createDirectories(path.getParent());
+        return Files.writeString(path, TEST_CONTENT);
+    }
+}
@@ -0,0 +1,61 @@
+package hhg0104.codereview.video.thumbnail;
+
+import hhg0104.codereview.video.property.FileProperties;
+import org.jcodec.api.awt.AWTSequenceEncoder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class JcodecThumbnailGeneratorTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Test for the generate method, the poster frame and the sprite sheet of an H.264 MP4 file are written
+     * in the configured sizes.
+     */
+    @Test
+    void testGenerate() throws Exception {
+
+        Path video = directory.resolve("test.mp4");
+        AWTSequenceEncoder encoder = AWTSequenceEncoder.createSequenceEncoder(video.toFile(), 5);
+        for (int i = 0; i < 10; i++) {
+            BufferedImage frame = new BufferedImage(160, 96, BufferedImage.TYPE_3BYTE_BGR);
+            Graphics2D graphics = frame.createGraphics();
+            graphics.setColor(new Color(i * 25, 100, 255 - i * 25));
+            graphics.fillRect(0, 0, 160, 96);
+            graphics.dispose();
+            encoder.encodeImage(frame);
+        }
+        encoder.finish();
+
+        FileProperties fileProp = mock(FileProperties.class);
+        when(fileProp.getThumbnailPosterWidth()).thenReturn(80);
+        when(fileProp.getThumbnailPosterPosition()).thenReturn(0.1);
+        when(fileProp.getThumbnailSpriteColumns()).thenReturn(3);
+        when(fileProp.getThumbnailSpriteRows()).thenReturn(2);
+        when(fileProp.getThumbnailSpriteTileWidth()).thenReturn(40);
+
+        Path posterPath = directory.resolve("poster.jpg");
+        Path spritePath = directory.resolve("sprite.jpg");
+        new JcodecThumbnailGenerator(fileProp).generate(video, posterPath, spritePath);
+
+        BufferedImage poster = ImageIO.read(posterPath.toFile());
+        assertEquals(80, poster.getWidth());
+        assertEquals(48, poster.getHeight());
+
+        BufferedImage sprite = ImageIO.read(spritePath.toFile());
+        assertEquals(3 * 40, sprite.getWidth());
+        assertEquals(2 * 24, sprite.getHeight());
+    }
+}
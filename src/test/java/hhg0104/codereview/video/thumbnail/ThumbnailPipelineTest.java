@@ -0,0 +1,189 @@
+package hhg0104.codereview.video.thumbnail;
+
+import hhg0104.codereview.video.entity.VideoState;
+import hhg0104.codereview.video.property.FileProperties;
+import hhg0104.codereview.video.repository.VideoRepository;
+import hhg0104.codereview.video.response.ThumbnailStatusInfo;
+import hhg0104.codereview.video.storage.VideoStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ThumbnailPipelineTest {
+
+    private static final String TEST_KEY = "820b77a8ac2ea08e635022d29f32c4edfeb35c0a3f253b324a041deeb0398489";
+
+    @TempDir
+    Path uploadDirectory;
+
+    private ThumbnailGenerator generator;
+
+    private ThumbnailStore store;
+
+    private VideoRepository repo;
+
+    private ThumbnailPipeline pipeline;
+
+
+    @BeforeEach
+    public void init() throws Exception {
+
+        FileProperties fileProp = mock(FileProperties.class);
+        when(fileProp.getUploadBasePath()).thenReturn(uploadDirectory.toString());
+        when(fileProp.getThumbnailWorkers()).thenReturn(1);
+        when(fileProp.getThumbnailQueueCapacity()).thenReturn(1);
+        when(fileProp.getThumbnailRetryAfter()).thenReturn(Duration.ofMinutes(1));
+        when(fileProp.getThumbnailMaxRetryAfter()).thenReturn(Duration.ofDays(1));
+
+        Path video = Files.writeString(uploadDirectory.resolve("test.mp4"), "This is test file.");
+        VideoStorage storage = mock(VideoStorage.class);
+        when(storage.getLocalFile(TEST_KEY)).thenReturn(video.toFile());
+
+        repo = mock(VideoRepository.class);
+        when(repo.existsByFileIdAndState(anyLong(), eq(VideoState.ACTIVE))).thenReturn(true);
+
+        generator = mock(ThumbnailGenerator.class);
+        store = new ThumbnailStore(fileProp);
+        pipeline = new ThumbnailPipeline(generator, store, storage, repo, fileProp);
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        pipeline.shutdown();
+    }
+
+    /**
+     * Test for the submit method, the thumbnails are written to the store by a worker.
+     */
+    @Test
+    void testSubmit() throws Exception {
+
+        doAnswer(invocation -> {
+            Files.writeString(invocation.getArgument(1), "poster");
+            Files.writeString(invocation.getArgument(2), "sprite");
+            return null;
+        }).when(generator).generate(any(), any(), any());
+
+        assertTrue(pipeline.submit(1, TEST_KEY, null));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pipeline.getStatus().getGeneratedFiles() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(store.exists(1));
+        assertEquals("poster", Files.readString(store.getPosterPath(1)));
+        assertEquals("sprite", Files.readString(store.getSpritePath(1)));
+    }
+
+    /**
+     * Test for the submit method, a file whose generation failed is recorded as failed, until its thumbnails are
+     * generated.
+     */
+    @Test
+    void testSubmitWhenGenerationFails() throws Exception {
+
+        doThrow(new IOException("Unsupported codec")).when(generator).generate(any(), any(), any());
+
+        assertTrue(pipeline.submit(1, TEST_KEY, null));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pipeline.getStatus().getFailedFiles() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(store.isFailed(1));
+        assertFalse(store.exists(1));
+        assertEquals(1, pipeline.getStatus().getFailedFiles());
+        verify(generator, times(1)).generate(any(), any(), any());
+
+        store.write(1, (posterPath, spritePath) -> {
+            Files.writeString(posterPath, "poster");
+            Files.writeString(spritePath, "sprite");
+        }, () -> true);
+        assertFalse(store.isFailed(1));
+    }
+
+    /**
+     * Test for the submit method, the thumbnails of a file deleted during its generation are not stored, so they are
+     * not left behind the reclaim of the file.
+     */
+    @Test
+    void testSubmitWhenDeletedDuringGeneration() throws Exception {
+
+        doAnswer(invocation -> {
+            Files.writeString(invocation.getArgument(1), "poster");
+            Files.writeString(invocation.getArgument(2), "sprite");
+            return null;
+        }).when(generator).generate(any(), any(), any());
+        CountDownLatch checked = new CountDownLatch(1);
+        when(repo.existsByFileIdAndState(1, VideoState.ACTIVE)).thenAnswer(invocation -> {
+            checked.countDown();
+            return false;
+        });
+
+        assertTrue(pipeline.submit(1, TEST_KEY, null));
+        assertTrue(checked.await(5, TimeUnit.SECONDS));
+
+        Path directory = store.getPosterPath(1).getParent();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (Files.exists(directory) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertFalse(store.exists(1));
+        assertFalse(Files.exists(directory));
+        assertEquals(0, pipeline.getStatus().getGeneratedFiles());
+        assertEquals(0, pipeline.getStatus().getFailedFiles());
+    }
+
+    /**
+     * Test for the submit method, a file is rejected while the worker is busy and the queue is full, and a queued
+     * file is not queued twice.
+     */
+    @Test
+    void testSubmitWhenQueueIsFull() throws Exception {
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        }).when(generator).generate(any(), any(), any());
+
+        assertTrue(pipeline.submit(1, TEST_KEY, null));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.submit(2, TEST_KEY, null));
+        assertFalse(pipeline.submit(2, TEST_KEY, null));
+        assertFalse(pipeline.submit(3, TEST_KEY, null));
+
+        ThumbnailStatusInfo status = pipeline.getStatus();
+        assertEquals(1, status.getQueueDepth());
+        assertEquals(1, status.getQueueCapacity());
+        assertEquals(1, status.getRejectedFiles());
+
+        release.countDown();
+    }
+}
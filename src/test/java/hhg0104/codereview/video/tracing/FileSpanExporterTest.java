@@ -0,0 +1,57 @@
+package hhg0104.codereview.video.tracing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FileSpanExporterTest {
+
+    @TempDir
+    private Path directory;
+
+    /**
+     * Test for the file exporter, each span is written as one JSON line with its parent and attributes.
+     */
+    @Test
+    void testExport() throws Exception {
+
+        Path path = directory.resolve("traces/traces.jsonl");
+        FileSpanExporter exporter = new FileSpanExporter(path.toString());
+        try (SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(exporter))
+                .build()) {
+            Tracer tracer = tracerProvider.get("test");
+
+            Span parent = tracer.spanBuilder("http get").startSpan();
+            try (Scope scope = parent.makeCurrent()) {
+                tracer.spanBuilder("video.write").startSpan()
+                        .setAttribute("transfer.bytes", 18L)
+                        .end();
+            }
+            parent.end();
+        }
+
+        List<String> lines = Files.readAllLines(path);
+        assertEquals(2, lines.size());
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        JsonNode child = objectMapper.readTree(lines.get(0));
+        JsonNode parent = objectMapper.readTree(lines.get(1));
+        assertEquals("video.write", child.get("name").asText());
+        assertEquals(parent.get("span_id").asText(), child.get("parent_span_id").asText());
+        assertEquals(parent.get("trace_id").asText(), child.get("trace_id").asText());
+        assertEquals(18, child.get("attributes").get("transfer.bytes").asLong());
+    }
+}
@@ -0,0 +1,258 @@
+package hhg0104.codereview.video.upload;
+
+import hhg0104.codereview.exception.InvalidRequestException;
+import hhg0104.codereview.video.VideoService;
+import hhg0104.codereview.video.cache.VideoMetadataCache;
+import hhg0104.codereview.video.entity.BlobLockEntity;
+import hhg0104.codereview.video.entity.UploadChunkEntity;
+import hhg0104.codereview.video.entity.UploadSessionEntity;
+import hhg0104.codereview.video.media.FastStartPipeline;
+import hhg0104.codereview.video.metrics.VideoMetrics;
+import hhg0104.codereview.video.property.FileProperties;
+import hhg0104.codereview.video.repository.BlobDeletionRepository;
+import hhg0104.codereview.video.repository.BlobLockRepository;
+import hhg0104.codereview.video.repository.UploadChunkRepository;
+import hhg0104.codereview.video.repository.UploadSessionRepository;
+import hhg0104.codereview.video.repository.VideoRepository;
+import hhg0104.codereview.video.request.UploadSessionRequest;
+import hhg0104.codereview.video.response.UploadSessionInfo;
+import hhg0104.codereview.video.storage.BlobReferences;
+import hhg0104.codereview.video.storage.BlobStore;
+import hhg0104.codereview.video.storage.HashPrefixLayout;
+import hhg0104.codereview.video.storage.LocalVideoStorage;
+import hhg0104.codereview.video.storage.VideoGarbageCollector;
+import hhg0104.codereview.video.thumbnail.ThumbnailPipeline;
+import hhg0104.codereview.video.tracing.VideoTracing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import jakarta.persistence.EntityManagerFactory;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.MockBeans;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@MockBeans({
+        @MockBean(DataSource.class),
+        @MockBean(EntityManagerFactory.class),
+        @MockBean(BlobDeletionRepository.class),
+        @MockBean(BlobLockRepository.class)
+})
+@SpringBootTest
+public class ChunkedUploadServiceTest {
+
+    @MockBean
+    private UploadSessionRepository sessionRepo;
+
+    @MockBean
+    private UploadChunkRepository chunkRepo;
+
+    @MockBean
+    private VideoRepository videoRepo;
+
+    @Mock
+    private FileProperties fileProp;
+
+    private ChunkedUploadService service;
+
+
+    @BeforeEach
+    public void init() {
+
+        String testFileDirectory = getClass().getResource("/test_file").getPath();
+        when(fileProp.getUploadBasePath()).thenReturn(testFileDirectory);
+        when(fileProp.getUploadBufferSize()).thenReturn(4);
+        when(fileProp.getMediaMaxMoovSize()).thenReturn(DataSize.ofMegabytes(16));
+        when(fileProp.getUploadMinChunkSize()).thenReturn(DataSize.ofBytes(4));
+        when(fileProp.getUploadMaxChunkCount()).thenReturn(10000);
+        when(fileProp.getReaperHeartbeatInterval()).thenReturn(Duration.ofHours(1));
+
+        BlobLockRepository blobLockRepo = mock(BlobLockRepository.class);
+        when(blobLockRepo.lockByContentHash(any())).thenReturn(Optional.of(new BlobLockEntity()));
+        service = new ChunkedUploadService(sessionRepo, chunkRepo, new VideoService(videoRepo, fileProp, new VideoMetadataCache(100, Duration.ofMinutes(1)), new LocalVideoStorage(new BlobStore(fileProp, new HashPrefixLayout(2))), new BlobReferences(videoRepo, blobLockRepo, mock(PlatformTransactionManager.class)), mock(VideoGarbageCollector.class), mock(ThumbnailPipeline.class), mock(FastStartPipeline.class), new VideoMetrics(new SimpleMeterRegistry()), new VideoTracing(Tracer.NOOP)), fileProp);
+    }
+
+    /**
+     * Test for a whole chunked upload, the chunks are written out of order and committed.
+     */
+    @Test
+    void testChunkedUpload() throws Exception {
+
+        String testNewFileName = "test-chunked.mp4";
+
+        UploadSessionRequest request = new UploadSessionRequest();
+        request.setName(testNewFileName);
+        request.setSize(13);
+        request.setChunkSize(5);
+
+        UploadSessionInfo created = service.create(request);
+        assertEquals(3, created.getChunkCount());
+
+        ArgumentCaptor<UploadSessionEntity> sessionCaptor = ArgumentCaptor.forClass(UploadSessionEntity.class);
+        verify(sessionRepo).save(sessionCaptor.capture());
+
+        String uploadId = created.getUploadId();
+        when(sessionRepo.findById(uploadId)).thenReturn(Optional.of(sessionCaptor.getValue()));
+
+        service.writeChunk(uploadId, 2, new ByteArrayInputStream("nts".getBytes(StandardCharsets.UTF_8)));
+        service.writeChunk(uploadId, 0, new ByteArrayInputStream("test ".getBytes(StandardCharsets.UTF_8)));
+        service.writeChunk(uploadId, 1, new ByteArrayInputStream("conte".getBytes(StandardCharsets.UTF_8)));
+        verify(chunkRepo, times(3)).save(any(UploadChunkEntity.class));
+
+        when(chunkRepo.findChunkIndexes(uploadId)).thenReturn(Arrays.asList(0, 1, 2));
+        when(videoRepo.markHashed(anyLong(), any())).thenReturn(1);
+        when(videoRepo.markStored(anyLong(), anyLong(), any(), any(), any())).thenReturn(1);
+
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                .digest("test contents".getBytes(StandardCharsets.UTF_8)));
+        File expectNewFile = new BlobStore(fileProp, new HashPrefixLayout(2)).resolve(hash).toFile();
+
+        String newFilePath = service.commit(uploadId);
+
+        assertEquals(expectNewFile.getAbsolutePath(), newFilePath);
+        assertEquals("test contents", FileUtils.readFileToString(expectNewFile, StandardCharsets.UTF_8));
+        assertFalse(new File(fileProp.getUploadBasePath(), ".uploads/" + uploadId + ".part").exists());
+
+        FileUtils.deleteDirectory(new File(fileProp.getUploadBasePath(), "blobs"));
+    }
+
+    /**
+     * Error test for the writeChunk method, when the chunk is longer than the chunk size.
+     */
+    @Test
+    void testWriteChunkWhenChunkIsTooLong() throws Exception {
+
+        String uploadId = "test-upload-id";
+        UploadSessionEntity session = new UploadSessionEntity(uploadId, "test-chunked.mp4", 13, 5, null, null);
+        when(sessionRepo.findById(uploadId)).thenReturn(Optional.of(session));
+
+        File stagingFile = new File(fileProp.getUploadBasePath(), ".uploads/" + uploadId + ".part");
+        FileUtils.touch(stagingFile);
+
+        InvalidRequestException exception = assertThrows(InvalidRequestException.class, () -> {
+            service.writeChunk(uploadId, 2, new ByteArrayInputStream("contents".getBytes(StandardCharsets.UTF_8)));
+        });
+
+        assertEquals("The chunk must be 3 bytes.", exception.getMessage());
+
+        FileUtils.delete(stagingFile);
+    }
+
+    /**
+     * Error test for the commit method, when some chunks are not uploaded yet.
+     */
+    @Test
+    void testCommitWhenChunksAreMissing() {
+
+        String uploadId = "test-upload-id";
+        UploadSessionEntity session = new UploadSessionEntity(uploadId, "test-chunked.mp4", 13, 5, null, null);
+        when(sessionRepo.findById(uploadId)).thenReturn(Optional.of(session));
+        when(chunkRepo.findChunkIndexes(uploadId)).thenReturn(Arrays.asList(0, 2));
+
+        InvalidRequestException exception = assertThrows(InvalidRequestException.class, () -> {
+            service.commit(uploadId);
+        });
+
+        assertEquals("1 of 3 chunks are not uploaded yet.", exception.getMessage());
+    }
+
+    /**
+     * Error test for the create method, when the chunk size makes more chunks than an upload can have.
+     */
+    @Test
+    void testCreateWhenTooManyChunks() {
+
+        UploadSessionRequest request = new UploadSessionRequest();
+        request.setName("test-chunked.mp4");
+        request.setSize(3L * 1024 * 1024 * 1024);
+        request.setChunkSize(4);
+
+        InvalidRequestException exception = assertThrows(InvalidRequestException.class, () -> {
+            service.create(request);
+        });
+
+        assertEquals("An upload can have at most 10000 chunks, the chunk_size must be larger.", exception.getMessage());
+        verify(sessionRepo, never()).save(any(UploadSessionEntity.class));
+    }
+
+    /**
+     * Error test for the create method, when the chunk size is below the min chunk size.
+     */
+    @Test
+    void testCreateWhenChunkSizeIsTooSmall() {
+
+        UploadSessionRequest request = new UploadSessionRequest();
+        request.setName("test-chunked.mp4");
+        request.setSize(13);
+        request.setChunkSize(1);
+
+        InvalidRequestException exception = assertThrows(InvalidRequestException.class, () -> {
+            service.create(request);
+        });
+
+        assertEquals("The chunk_size must be at least 4 bytes.", exception.getMessage());
+    }
+
+    /**
+     * Test for the expireSessions method, an idle session is deleted with its chunks and staging file, and an old
+     * staging file without a session is deleted while a recent one is kept.
+     */
+    @Test
+    void testExpireSessions() throws Exception {
+
+        LocalDateTime now = LocalDateTime.now();
+        UploadSessionEntity idle = new UploadSessionEntity("test-idle-upload", "test-chunked.mp4", 13, 5, null,
+                now.minusDays(2));
+        when(sessionRepo.findByLastWrittenAtBeforeOrderByUploadId(any(), any())).thenReturn(List.of(idle));
+
+        File idleFile = new File(fileProp.getUploadBasePath(), ".uploads/test-idle-upload.part");
+        File orphanFile = new File(fileProp.getUploadBasePath(), ".uploads/test-orphan-upload.part");
+        File recentFile = new File(fileProp.getUploadBasePath(), ".uploads/test-recent-upload.part");
+        FileUtils.touch(idleFile);
+        FileUtils.touch(orphanFile);
+        FileUtils.touch(recentFile);
+        long oldMillis = System.currentTimeMillis() - Duration.ofDays(2).toMillis();
+        idleFile.setLastModified(oldMillis);
+        orphanFile.setLastModified(oldMillis);
+
+        int expired = service.expireSessions(now.minusDays(1), 100);
+
+        assertEquals(2, expired);
+        verify(chunkRepo).deleteByUploadId("test-idle-upload");
+        verify(sessionRepo).delete(idle);
+        assertFalse(idleFile.exists());
+        assertFalse(orphanFile.exists());
+        assertTrue(recentFile.exists());
+
+        FileUtils.delete(recentFile);
+    }
+}